@@ -0,0 +1,256 @@
+package com.github.webapp_minifier;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map.Entry;
+import java.util.Properties;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+import com.github.webapp_minifier.sync.SourceTree;
+
+/**
+ * This class indexes every file which the URL of an external CSS or JavaScript file may resolve
+ * to, that is every file within the target directory and the
+ * {@link com.github.webapp_minifier.options.PluginOptions#getOtherDirectories() other
+ * directories}. The directories are walked once per run, after which determining if a file exists
+ * is a lookup of its normalized absolute path rather than a call to the file system. This class is
+ * safe to share between threads once built.
+ * <p>
+ * Files created after the index is built, such as the minified files, are not indexed.
+ * <p>
+ * When the target directory is on a case-insensitive file system, such as the defaults of Windows
+ * and macOS, the paths are indexed and looked up in lower case so that a URL differing from the
+ * file name only by case finds the file, as {@link File#exists()} would.
+ *
+ * @author Lonny
+ */
+public class AssetIndex {
+
+   /** Splits paths into their names. */
+   private static final Pattern SEPARATOR = Pattern.compile(Pattern.quote(File.separator));
+
+   /** The normalized absolute paths of the indexed files. */
+   private final Set<String> paths = new HashSet<String>();
+
+   /** Indicates if the paths are compared regardless of case. */
+   private final boolean caseInsensitive;
+
+   /**
+    * Constructs a new, empty index comparing paths by case.
+    */
+   public AssetIndex() {
+      this(false);
+   }
+
+   /**
+    * Constructs a new, empty index.
+    *
+    * @param caseInsensitive
+    *           indicates if the paths are compared regardless of case.
+    */
+   public AssetIndex(final boolean caseInsensitive) {
+      this.caseInsensitive = caseInsensitive;
+   }
+
+   /**
+    * Builds the index of the files within the target directory and the other directories.
+    *
+    * @param targetDirectory
+    *           the target directory.
+    * @param otherDirectories
+    *           the other directories keyed by URL prefix.
+    * @return the index.
+    * @throws IOException
+    *            if a directory could not be resolved.
+    */
+   public static AssetIndex build(final File targetDirectory, final Properties otherDirectories)
+         throws IOException {
+      final AssetIndex index = new AssetIndex(isCaseInsensitive(targetDirectory));
+      final Set<String> visited = new HashSet<String>();
+      index.addDirectory(targetDirectory, visited);
+      if (otherDirectories != null) {
+         for (final Entry<Object, Object> entry : otherDirectories.entrySet()) {
+            index.addDirectory(new File((String) entry.getValue()), visited);
+         }
+      }
+      return index;
+   }
+
+   /**
+    * Builds the index of the files within the target directory from a walk of a directory it
+    * mirrors, such as the source directory it was synchronized with, and of the files within the
+    * other directories.
+    *
+    * @param targetDirectory
+    *           the target directory.
+    * @param targetTree
+    *           the walk of the directory mirrored by the target directory.
+    * @param otherDirectories
+    *           the other directories keyed by URL prefix.
+    * @return the index.
+    * @throws IOException
+    *            if a directory could not be resolved.
+    */
+   public static AssetIndex build(final File targetDirectory, final SourceTree targetTree,
+         final Properties otherDirectories) throws IOException {
+      final AssetIndex index = new AssetIndex(isCaseInsensitive(targetDirectory));
+      for (final String name : targetTree.getFiles()) {
+         index.add(new File(targetDirectory, name));
+      }
+      final Set<String> visited = new HashSet<String>();
+      visited.add(targetDirectory.getCanonicalPath());
+      if (otherDirectories != null) {
+         for (final Entry<Object, Object> entry : otherDirectories.entrySet()) {
+            index.addDirectory(new File((String) entry.getValue()), visited);
+         }
+      }
+      return index;
+   }
+
+   /**
+    * Determines if the file system of a directory ignores case, by looking up the name of the
+    * directory, or of its closest ancestor with letters in its name, with its case swapped.
+    *
+    * @param directory
+    *           the directory.
+    * @return <code>true</code> if the swapped name finds the same entry.
+    */
+   static boolean isCaseInsensitive(final File directory) {
+      File file = directory.getAbsoluteFile();
+      while (file.getParentFile() != null) {
+         final File parent = file.getParentFile();
+         final String swapped = swapCase(file.getName());
+         if (!swapped.equals(file.getName()) && file.exists()) {
+            final String[] names = parent.list();
+            return new File(parent, swapped).exists()
+                  && ((names == null) || !Arrays.asList(names).contains(swapped));
+         }
+         file = parent;
+      }
+      return false;
+   }
+
+   /**
+    * Swaps the case of the letters of a name.
+    *
+    * @param name
+    *           the name.
+    * @return the name with its upper case letters in lower case and the others in upper case.
+    */
+   private static String swapCase(final String name) {
+      final StringBuilder swapped = new StringBuilder(name.length());
+      for (int i = 0; i < name.length(); i++) {
+         final char c = name.charAt(i);
+         if (Character.isUpperCase(c)) {
+            swapped.append(Character.toLowerCase(c));
+         } else {
+            swapped.append(Character.toUpperCase(c));
+         }
+      }
+      return swapped.toString();
+   }
+
+   /**
+    * Adds the files within a directory and its subdirectories. Directories which have already been
+    * visited, for example through a symbolic link, are skipped.
+    *
+    * @param directory
+    *           the directory.
+    * @param visited
+    *           the canonical paths of the visited directories.
+    * @throws IOException
+    *            if a directory could not be resolved.
+    */
+   private void addDirectory(final File directory, final Set<String> visited) throws IOException {
+      if (!visited.add(directory.getCanonicalPath())) {
+         return;
+      }
+      final File[] children = directory.listFiles();
+      if (children == null) {
+         return;
+      }
+      for (final File child : children) {
+         if (child.isDirectory()) {
+            addDirectory(child, visited);
+         } else {
+            add(child);
+         }
+      }
+   }
+
+   /**
+    * Adds a file to the index.
+    *
+    * @param file
+    *           the file.
+    */
+   public void add(final File file) {
+      this.paths.add(getKey(file));
+   }
+
+   /**
+    * Determines if a file is indexed.
+    *
+    * @param file
+    *           the file.
+    * @return <code>true</code> if the file exists in the indexed directories.
+    */
+   public boolean exists(final File file) {
+      return this.paths.contains(getKey(file));
+   }
+
+   /**
+    * Returns the key of a file in the index.
+    *
+    * @param file
+    *           the file.
+    * @return the normalized path, in lower case if the paths are compared regardless of case.
+    */
+   private String getKey(final File file) {
+      final String path = normalize(file);
+      return this.caseInsensitive ? path.toLowerCase(Locale.ENGLISH) : path;
+   }
+
+   /**
+    * Returns the number of indexed files.
+    *
+    * @return the number of files.
+    */
+   public int size() {
+      return this.paths.size();
+   }
+
+   /**
+    * Returns the absolute path of a file without any <code>.</code> or <code>..</code> names,
+    * without accessing the file system.
+    *
+    * @param file
+    *           the file.
+    * @return the normalized path.
+    */
+   static String normalize(final File file) {
+      final String[] names = SEPARATOR.split(file.getAbsolutePath(), -1);
+      final List<String> normalized = new ArrayList<String>();
+      for (int i = 1; i < names.length; i++) {
+         final String name = names[i];
+         if ("..".equals(name)) {
+            if (!normalized.isEmpty()) {
+               normalized.remove(normalized.size() - 1);
+            }
+         } else if (!name.isEmpty() && !".".equals(name)) {
+            normalized.add(name);
+         }
+      }
+      final StringBuilder path = new StringBuilder(names[0]);
+      for (final String name : normalized) {
+         path.append(File.separatorChar).append(name);
+      }
+      return path.toString();
+   }
+}
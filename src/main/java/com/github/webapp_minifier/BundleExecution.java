@@ -0,0 +1,387 @@
+package com.github.webapp_minifier;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+import org.apache.maven.plugin.logging.Log;
+
+import com.github.webapp_minifier.compressor.CompressorRegistry;
+import com.github.webapp_minifier.options.CompressorFingerprint;
+import com.github.webapp_minifier.summary.MinifiedFileMetrics;
+
+/**
+ * This class executes the minified files planned by every HTML file of a run, between planning
+ * the HTML files with {@link HtmlFileTask} and rewriting them with
+ * {@link HtmlFileResult#commit(MinifiedFileBuilder, MinifiedFileBuilder, Charset)}. Minified
+ * files with the same ordered inputs and options are compressed once, each by its own
+ * {@link BundleTask} on the threads of the executor. Every planned file is then written through
+ * its builder in the order it was planned, and the metrics of the files which reuse the
+ * compression of an identical file are copied and flagged as reused.
+ * <p>
+ * The HTML files are added as soon as each has been planned. The code of the inputs is interned
+ * by its hash while planning, so an asset referenced by many HTML files is held once, and only
+ * the inputs of the first file of each key are kept once a file has been added.
+ * <p>
+ * The embedded code of the HTML files is planned the same way, each block as a file of one input
+ * sharing the keys of the files, and its compressed code replaces its placeholder in the HTML
+ * content once every file has been written.
+ * <p>
+ * The minified JavaScript files left to the site compilation are not executed.
+ *
+ * @author Lonny
+ */
+public class BundleExecution {
+
+   /**
+    * A minified file planned by an HTML file.
+    */
+   private static final class PlannedFile {
+      /** The minified file. */
+      private final MinifiedFileInfo fileInfo;
+
+      /** The builder which created the file. */
+      private final MinifiedFileBuilder builder;
+
+      /** The key of the inputs of the file. */
+      private final String key;
+
+      /**
+       * The metrics of the inputs of the file if it reuses the compression of an identical file,
+       * otherwise <code>null</code>.
+       */
+      private final List<MinifiedFileMetrics> reusedMetrics;
+
+      /**
+       * Constructs a new planned file.
+       *
+       * @param fileInfo
+       *           the minified file.
+       * @param builder
+       *           the builder which created the file.
+       * @param key
+       *           the key of the inputs of the file.
+       * @param reusedMetrics
+       *           the metrics of the inputs of the file if it reuses the compression of an
+       *           identical file, otherwise <code>null</code>.
+       */
+      public PlannedFile(final MinifiedFileInfo fileInfo, final MinifiedFileBuilder builder,
+            final String key, final List<MinifiedFileMetrics> reusedMetrics) {
+         this.fileInfo = fileInfo;
+         this.builder = builder;
+         this.key = key;
+         this.reusedMetrics = reusedMetrics;
+      }
+   }
+
+   /**
+    * A block of embedded code planned by an HTML file.
+    */
+   private static final class PlannedCode {
+      /** The key of the code. */
+      private final String key;
+
+      /**
+       * The metrics of the code if it reuses the compression of identical code, otherwise
+       * <code>null</code>.
+       */
+      private final List<MinifiedFileMetrics> reusedMetrics;
+
+      /**
+       * Constructs a new planned block of code.
+       *
+       * @param key
+       *           the key of the code.
+       * @param reusedMetrics
+       *           the metrics of the code if it reuses the compression of identical code,
+       *           otherwise <code>null</code>.
+       */
+      public PlannedCode(final String key, final List<MinifiedFileMetrics> reusedMetrics) {
+         this.key = key;
+         this.reusedMetrics = reusedMetrics;
+      }
+   }
+
+   /** The log instance. */
+   private final Log log;
+
+   /** The cache of previously minified code. */
+   private final MinificationCache minificationCache;
+
+   /** The registry of the compressors of each thread. */
+   private final CompressorRegistry compressorRegistry;
+
+   /** The encoding of the minified files. */
+   private final Charset charset;
+
+   /** The planned files in the order they were planned. */
+   private final List<PlannedFile> plannedFiles = new ArrayList<PlannedFile>();
+
+   /** The embedded code planned by each HTML file in the order of its placeholders. */
+   private final Map<HtmlFileResult, List<PlannedCode>> plannedCodes = new LinkedHashMap<HtmlFileResult, List<PlannedCode>>();
+
+   /** The inputs of the first planned file or code of each key. */
+   private final Map<String, List<MinifiedFileInput>> distinctInputs = new LinkedHashMap<String, List<MinifiedFileInput>>();
+
+   /** The interned code of the inputs keyed by its hash. */
+   private final ConcurrentMap<String, String> codes = new ConcurrentHashMap<String, String>();
+
+   /**
+    * Constructs a new execution.
+    *
+    * @param log
+    *           the log instance.
+    * @param minificationCache
+    *           the cache of previously minified code.
+    * @param compressorRegistry
+    *           the registry of the compressors of each thread.
+    * @param charset
+    *           the encoding of the minified files.
+    */
+   public BundleExecution(final Log log, final MinificationCache minificationCache,
+         final CompressorRegistry compressorRegistry, final Charset charset) {
+      this.log = log;
+      this.minificationCache = minificationCache;
+      this.compressorRegistry = compressorRegistry;
+      this.charset = charset;
+   }
+
+   /**
+    * Returns the key identifying the ordered inputs of a minified file and their options.
+    *
+    * @param inputs
+    *           the inputs.
+    * @return the key.
+    */
+   public static String getKey(final List<MinifiedFileInput> inputs) {
+      final StringBuilder key = new StringBuilder();
+      for (final MinifiedFileInput input : inputs) {
+         key.append(input.getCompressor().getClass().getName()).append(';');
+         if (input.getOptions() != null) {
+            key.append(CompressorFingerprint.of(input.getOptions()));
+         }
+         key.append(';').append(input.getHash());
+         key.append('\n');
+      }
+      return key.toString();
+   }
+
+   /**
+    * Interns the code of an input being planned, so that identical code found by any HTML file is
+    * held once. This may be called by several threads.
+    *
+    * @param input
+    *           the input.
+    * @return the input, or an equivalent input holding the interned code.
+    */
+   public MinifiedFileInput intern(final MinifiedFileInput input) {
+      final String hash = input.getHash();
+      final String code = this.codes.putIfAbsent(hash, input.getCode());
+      if ((code == null) || (code == input.getCode())) {
+         return input;
+      }
+      return new MinifiedFileInput(input.getCompressor(), input.getOptions(), code,
+            input.getMetrics(), hash);
+   }
+
+   /**
+    * Adds the minified files and the embedded code planned by an HTML file which have pending
+    * inputs. Only the inputs of the first file or code of each key are kept, the inputs of the
+    * others being cleared.
+    *
+    * @param result
+    *           the planned result of the HTML file.
+    */
+   public void add(final HtmlFileResult result) {
+      add(result.getCssFileBuilder(), result.getSiteFiles());
+      add(result.getJsFileBuilder(), result.getSiteFiles());
+
+      final List<MinifiedFileInput> embeddedInputs = result.getEmbeddedInputs();
+      if (embeddedInputs.isEmpty()) {
+         return;
+      }
+      final List<PlannedCode> codes = new ArrayList<PlannedCode>();
+      for (final MinifiedFileInput input : embeddedInputs) {
+         final List<MinifiedFileInput> inputs = Collections.singletonList(input);
+         final String key = getKey(inputs);
+         List<MinifiedFileMetrics> reusedMetrics = null;
+         if (this.distinctInputs.containsKey(key)) {
+            reusedMetrics = Collections.singletonList(input.getMetrics());
+         } else {
+            this.distinctInputs.put(key, inputs);
+         }
+         codes.add(new PlannedCode(key, reusedMetrics));
+      }
+      embeddedInputs.clear();
+      this.plannedCodes.put(result, codes);
+   }
+
+   /**
+    * Adds the minified files created by one builder which have pending inputs.
+    *
+    * @param builder
+    *           the builder.
+    * @param siteFiles
+    *           the files left to the site compilation.
+    */
+   private void add(final MinifiedFileBuilder builder, final List<MinifiedFileInfo> siteFiles) {
+      for (final MinifiedFileInfo fileInfo : builder.getFiles()) {
+         final List<MinifiedFileInput> inputs = fileInfo.getInputs();
+         if (inputs.isEmpty() || siteFiles.contains(fileInfo)) {
+            continue;
+         }
+         final String key = getKey(inputs);
+         List<MinifiedFileMetrics> reusedMetrics = null;
+         if (this.distinctInputs.containsKey(key)) {
+            reusedMetrics = new ArrayList<MinifiedFileMetrics>();
+            for (final MinifiedFileInput input : inputs) {
+               reusedMetrics.add(input.getMetrics());
+            }
+         } else {
+            this.distinctInputs.put(key, new ArrayList<MinifiedFileInput>(inputs));
+         }
+         inputs.clear();
+         this.plannedFiles.add(new PlannedFile(fileInfo, builder, key, reusedMetrics));
+      }
+   }
+
+   /**
+    * Returns the number of planned files.
+    *
+    * @return the number of files.
+    */
+   public int getFileCount() {
+      return this.plannedFiles.size();
+   }
+
+   /**
+    * Returns the number of distinct files, each compressed once.
+    *
+    * @return the number of distinct files.
+    */
+   public int getDistinctCount() {
+      return this.distinctInputs.size();
+   }
+
+   /**
+    * Compresses the distinct files and code, writes every planned file and replaces the
+    * placeholders of the embedded code in the HTML content.
+    *
+    * @param executor
+    *           the executor compressing the files.
+    * @throws IOException
+    *            if a file could not be compressed or written.
+    */
+   public void execute(final ExecutorService executor) throws IOException {
+      this.codes.clear();
+      final Map<String, Future<List<String>>> futures = new LinkedHashMap<String, Future<List<String>>>();
+      for (final Entry<String, List<MinifiedFileInput>> entry : this.distinctInputs.entrySet()) {
+         futures.put(entry.getKey(), executor.submit(new BundleTask(this.log,
+               this.minificationCache, this.compressorRegistry, entry.getValue())));
+      }
+
+      for (final PlannedFile plannedFile : this.plannedFiles) {
+         final List<String> codes = get(plannedFile.fileInfo.getFile(),
+               futures.get(plannedFile.key));
+         if (plannedFile.reusedMetrics != null) {
+            reuse(plannedFile.reusedMetrics, this.distinctInputs.get(plannedFile.key));
+            this.log.info("Reused the minified file of " + plannedFile.reusedMetrics.size()
+                  + " inputs");
+         }
+         write(plannedFile, codes);
+      }
+
+      int codeCount = 0;
+      for (final Entry<HtmlFileResult, List<PlannedCode>> entry : this.plannedCodes.entrySet()) {
+         final List<String> codes = new ArrayList<String>();
+         for (final PlannedCode plannedCode : entry.getValue()) {
+            codes.add(get(entry.getKey().getHtmlFile(), futures.get(plannedCode.key)).get(0));
+            if (plannedCode.reusedMetrics != null) {
+               reuse(plannedCode.reusedMetrics, this.distinctInputs.get(plannedCode.key));
+            }
+         }
+         entry.getKey().replaceEmbeddedCode(codes, this.charset);
+         codeCount += codes.size();
+      }
+      this.log.info("Compressed " + this.distinctInputs.size() + " distinct minified files for "
+            + this.plannedFiles.size() + " planned files and " + codeCount
+            + " embedded blocks");
+   }
+
+   /**
+    * Copies the metrics of the inputs of an identical minified file which has already been
+    * compressed to the inputs of a minified file which reuses it, flagging them as reused.
+    *
+    * @param metrics
+    *           the metrics of each input of the reusing file.
+    * @param compressed
+    *           the inputs of the compressed file.
+    */
+   private static void reuse(final List<MinifiedFileMetrics> metrics,
+         final List<MinifiedFileInput> compressed) {
+      for (int i = 0; i < metrics.size(); i++) {
+         final MinifiedFileMetrics source = compressed.get(i).getMetrics();
+         final MinifiedFileMetrics target = metrics.get(i);
+         target.setOriginalLength(source.getOriginalLength());
+         target.setMinifiedLength(source.getMinifiedLength());
+         target.setTime(0);
+         target.setCacheHit(true);
+      }
+   }
+
+   /**
+    * Writes a planned file through the channel owned by its builder.
+    *
+    * @param plannedFile
+    *           the planned file.
+    * @param codes
+    *           the minified code of the file.
+    * @throws IOException
+    *            if the file could not be written.
+    */
+   private void write(final PlannedFile plannedFile, final List<String> codes)
+         throws IOException {
+      try {
+         for (final String code : codes) {
+            plannedFile.builder.write(plannedFile.fileInfo, code, this.charset);
+         }
+         plannedFile.builder.closeFile();
+      } finally {
+         plannedFile.builder.finishFile();
+      }
+   }
+
+   /**
+    * Waits for the inputs of a planned file or code to be compressed.
+    *
+    * @param file
+    *           the planned file or the HTML file of the planned code.
+    * @param future
+    *           the result of the compression.
+    * @return the minified code.
+    * @throws IOException
+    *            if the inputs could not be compressed.
+    */
+   private static List<String> get(final File file, final Future<List<String>> future)
+         throws IOException {
+      try {
+         return future.get();
+      } catch (final InterruptedException e) {
+         Thread.currentThread().interrupt();
+         throw new IOException("Interrupted while compressing " + file, e);
+      } catch (final ExecutionException e) {
+         throw new IOException("Failed to compress " + file, e.getCause());
+      }
+   }
+}
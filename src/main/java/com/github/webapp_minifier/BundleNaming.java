@@ -0,0 +1,20 @@
+package com.github.webapp_minifier;
+
+/**
+ * The ways the final names of the minified files are chosen.
+ *
+ * @author Lonny
+ */
+public enum BundleNaming {
+   /**
+    * Numbers the minified files in the order the HTML files are processed, for example
+    * <code>js-3.js</code>. Identical minified files share the number of the first.
+    */
+   SEQUENTIAL,
+
+   /**
+    * Names the minified files after a hash of their content, for example
+    * <code>js-3f9a1c0e52b7.js</code>. Identical minified files share a single file.
+    */
+   CONTENT_HASH;
+}
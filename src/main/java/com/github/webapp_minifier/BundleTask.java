@@ -0,0 +1,140 @@
+package com.github.webapp_minifier;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+
+import org.apache.maven.plugin.logging.Log;
+
+import com.github.webapp_minifier.compressor.BundleCompressor;
+import com.github.webapp_minifier.compressor.CompressorRegistry;
+import com.github.webapp_minifier.summary.MinifiedFileMetrics;
+import com.googlecode.htmlcompressor.compressor.Compressor;
+
+/**
+ * This class compresses the inputs of one minified file. Consecutive inputs which use the same
+ * {@link BundleCompressor} are compressed together in a single pass, and the metrics of each
+ * input are recorded.
+ * <p>
+ * The compressors of the inputs are exchanged for the equivalent compressors of the compressing
+ * thread, handed out by a {@link CompressorRegistry}, so that inputs planned by one thread may be
+ * compressed by another.
+ *
+ * @author Lonny
+ */
+public class BundleTask implements Callable<List<String>> {
+
+   /** The log instance. */
+   private final Log log;
+
+   /** The cache of previously minified code. */
+   private final MinificationCache minificationCache;
+
+   /** The registry of the compressors of each thread. */
+   private final CompressorRegistry compressorRegistry;
+
+   /** The inputs of the minified file. */
+   private final List<MinifiedFileInput> inputs;
+
+   /**
+    * Constructs a new task.
+    *
+    * @param log
+    *           the log instance.
+    * @param minificationCache
+    *           the cache of previously minified code.
+    * @param compressorRegistry
+    *           the registry of the compressors of each thread.
+    * @param inputs
+    *           the inputs of the minified file.
+    */
+   public BundleTask(final Log log, final MinificationCache minificationCache,
+         final CompressorRegistry compressorRegistry, final List<MinifiedFileInput> inputs) {
+      this.log = log;
+      this.minificationCache = minificationCache;
+      this.compressorRegistry = compressorRegistry;
+      this.inputs = inputs;
+   }
+
+   /**
+    * Compresses the inputs.
+    *
+    * @return the minified code of each group of inputs compressed together, in order.
+    */
+   @Override
+   public List<String> call() {
+      final List<MinifiedFileInput> localInputs = getLocalInputs();
+      final List<String> codes = new ArrayList<String>();
+      int start = 0;
+      while (start < localInputs.size()) {
+         final Compressor compressor = localInputs.get(start).getCompressor();
+         int end = start + 1;
+         if (compressor instanceof BundleCompressor) {
+            while ((end < localInputs.size())
+                  && (localInputs.get(end).getCompressor() == compressor)) {
+               end++;
+            }
+         }
+         codes.add(minify(localInputs.subList(start, end)));
+         start = end;
+      }
+      return codes;
+   }
+
+   /**
+    * Returns the inputs with the compressors of the current thread.
+    *
+    * @return the inputs, sharing the metrics of the original inputs.
+    */
+   private List<MinifiedFileInput> getLocalInputs() {
+      final List<MinifiedFileInput> localInputs = new ArrayList<MinifiedFileInput>();
+      for (final MinifiedFileInput input : this.inputs) {
+         final Compressor compressor = input.getOptions() == null ? input.getCompressor()
+               : this.compressorRegistry.getEquivalentCompressor(input.getCompressor(),
+                     input.getOptions());
+         localInputs.add(new MinifiedFileInput(compressor, input.getOptions(), input.getCode(),
+               input.getMetrics(), input.getHash()));
+      }
+      return localInputs;
+   }
+
+   /**
+    * Minifies the inputs, which must share the same compressor.
+    *
+    * @param group
+    *           the inputs to be minified.
+    * @return the minified output.
+    */
+   protected String minify(final List<MinifiedFileInput> group) {
+      final MinifiedFileInput first = group.get(0);
+      if (group.size() == 1) {
+         final String input = first.getCode();
+         final String compressed = this.minificationCache.compress(first.getCompressor(),
+               first.getOptions(), input, first.getMetrics());
+         if (first.getMetrics().isCacheHit()) {
+            this.log.info("Reused the minified input of " + input.length() + " characters");
+         } else {
+            this.log.info("Reduced input from " + input.length() + " to " + compressed.length()
+                  + " characters");
+         }
+         return compressed;
+      }
+
+      final List<String> codes = new ArrayList<String>();
+      for (final MinifiedFileInput input : group) {
+         codes.add(input.getCode());
+      }
+      final MinifiedFileMetrics total = new MinifiedFileMetrics();
+      final String compressed = this.minificationCache.compress(
+            (BundleCompressor) first.getCompressor(), first.getOptions(), codes, total);
+      if (total.isCacheHit()) {
+         this.log.info("Reused the minified bundle of " + group.size() + " inputs");
+      } else {
+         this.log.info("Reduced " + group.size() + " inputs from " + total.getOriginalLength()
+               + " to " + compressed.length() + " characters");
+      }
+
+      MinifiedFileInput.attribute(group, total);
+      return compressed;
+   }
+}
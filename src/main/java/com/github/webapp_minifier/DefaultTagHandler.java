@@ -1,23 +1,24 @@
 package com.github.webapp_minifier;
 
-import java.io.BufferedOutputStream;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileNotFoundException;
-import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
-import java.io.OutputStream;
+import java.nio.charset.Charset;
 import java.util.ArrayList;
-import java.util.Collection;
-import java.util.HashMap;
-import java.util.Map;
-import java.util.Map.Entry;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
 
 import org.apache.maven.plugin.logging.Log;
 import org.codehaus.plexus.util.IOUtil;
 
 import com.github.webapp_minifier.compressor.ClosureJavaScriptCompressor;
+import com.github.webapp_minifier.compressor.CompressorRegistry;
+import com.github.webapp_minifier.options.CompressorFingerprint;
 import com.github.webapp_minifier.options.DefaultInlineConfigurationHandler;
 import com.github.webapp_minifier.options.DefaultOverridablePluginOptions;
 import com.github.webapp_minifier.options.DirectiveHandler;
@@ -27,12 +28,11 @@ import com.github.webapp_minifier.options.OverridablePluginOptions;
 import com.github.webapp_minifier.options.ParseOptionException;
 import com.github.webapp_minifier.options.PluginOptions;
 import com.github.webapp_minifier.replacer.NodeHandler;
+import com.github.webapp_minifier.site.SitePlan;
 import com.github.webapp_minifier.summary.HtmlFileSummary;
 import com.github.webapp_minifier.summary.MinificationSummary;
 import com.github.webapp_minifier.summary.MinifiedFileMetrics;
 import com.googlecode.htmlcompressor.compressor.Compressor;
-import com.googlecode.htmlcompressor.compressor.YuiCssCompressor;
-import com.googlecode.htmlcompressor.compressor.YuiJavaScriptCompressor;
 
 /**
  * This class provides the default {@link NodeHandler} implementation. It directs the minification
@@ -60,12 +60,49 @@ public class DefaultTagHandler implements NodeHandler, DirectiveHandler {
    /** The minification report. */
    private final MinificationSummary minificationSummary = new MinificationSummary();
 
-   /** Contains the mapping of original file to compressed file information. */
-   private final Map<File, Collection<MinifiedFileInfo>> minifiedFiles = new HashMap<File, Collection<MinifiedFileInfo>>();
+   /** The cache of previously minified code, possibly shared with other handlers. */
+   private final MinificationCache minificationCache;
+
+   /** The registry of reusable compressors, possibly shared with other handlers. */
+   private final CompressorRegistry compressorRegistry;
 
    /** The file currently being parsed. */
    private HtmlFileSummary currentFile;
 
+   /** The external files read or searched for while handling the nodes. */
+   private final Set<File> dependencies = new LinkedHashSet<File>();
+
+   /** Finds the external files. */
+   private SourceFileLocator locator;
+
+   /**
+    * The directory of the current HTML file relative to the target directory or
+    * <code>null</code>.
+    */
+   private String baseUri;
+
+   /** The plan of the site compilation or <code>null</code> if each file is compiled alone. */
+   private SitePlan sitePlan;
+
+   /** The execution interning the code of the inputs or <code>null</code>. */
+   private BundleExecution bundleExecution;
+
+   /** Indicates that the current HTML file loads the common chunk of the site compilation. */
+   private boolean commonLoaded;
+
+   /** The number of scripts of the common chunk handled so far. */
+   private int commonScriptIndex;
+
+   /** The minified JavaScript files left to the site compilation. */
+   private final List<MinifiedFileInfo> siteFiles = new ArrayList<MinifiedFileInfo>();
+
+   /** The prefix of the placeholders standing for the embedded code until it is compressed. */
+   private final String embeddedPrefix = "webapp-minifier-embedded-"
+         + UUID.randomUUID().toString().replace("-", "") + "-";
+
+   /** The embedded code left to the {@link BundleExecution}, indexed by its placeholder. */
+   private final List<MinifiedFileInput> embeddedInputs = new ArrayList<MinifiedFileInput>();
+
    private final OptionsParser optionsParser;
 
    /**
@@ -77,60 +114,108 @@ public class DefaultTagHandler implements NodeHandler, DirectiveHandler {
     *           the options.
     */
    public DefaultTagHandler(final Log log, final PluginOptions options) {
+      this(log, options, new MinifiedFileBuilder(options.getTargetDirectory(),
+            options.getCssPrefix(), "css"), new MinifiedFileBuilder(options.getTargetDirectory(),
+            options.getJsPrefix(), "js"), new MinificationCache());
+   }
+
+   /**
+    * Constructs a new instance using the given log, options, minified file builders and cache with
+    * compressors which are not shared with other handlers.
+    *
+    * @param log
+    *           the log instance.
+    * @param options
+    *           the options.
+    * @param cssFileBuilder
+    *           the builder for minified CSS files.
+    * @param jsFileBuilder
+    *           the builder for minified JavaScript files.
+    * @param minificationCache
+    *           the cache of previously minified code.
+    */
+   public DefaultTagHandler(final Log log, final PluginOptions options,
+         final MinifiedFileBuilder cssFileBuilder, final MinifiedFileBuilder jsFileBuilder,
+         final MinificationCache minificationCache) {
+      this(log, options, cssFileBuilder, jsFileBuilder, minificationCache,
+            new CompressorRegistry());
+   }
+
+   /**
+    * Constructs a new instance using the given log, options, minified file builders, cache and
+    * compressor registry.
+    *
+    * @param log
+    *           the log instance.
+    * @param options
+    *           the options.
+    * @param cssFileBuilder
+    *           the builder for minified CSS files.
+    * @param jsFileBuilder
+    *           the builder for minified JavaScript files.
+    * @param minificationCache
+    *           the cache of previously minified code.
+    * @param compressorRegistry
+    *           the registry of reusable compressors, possibly shared with other handlers.
+    */
+   public DefaultTagHandler(final Log log, final PluginOptions options,
+         final MinifiedFileBuilder cssFileBuilder, final MinifiedFileBuilder jsFileBuilder,
+         final MinificationCache minificationCache, final CompressorRegistry compressorRegistry) {
       this.log = log;
       this.pluginOptions = options;
-      final MinifiedFileBuilder cssFileBuilder = new MinifiedFileBuilder(
-            options.getTargetDirectory(), options.getCssPrefix(), "css");
+      this.minificationCache = minificationCache;
+      this.compressorRegistry = compressorRegistry;
       this.cssContext = new MinificationContext("YUI", createCssCompressor(options), cssFileBuilder);
-      final MinifiedFileBuilder jsFileBuilder = new MinifiedFileBuilder(
-            options.getTargetDirectory(), options.getJsPrefix(), "js");
       this.jsContext = new MinificationContext(options.getJsCompressorEngine().toString(),
             createJavaScriptCompressor(options), jsFileBuilder);
       this.optionsParser = new OptionsParser(log);
+      this.locator = new SourceFileLocator(log, options);
    }
 
    /**
-    * Constructs a new YUI Compressor using the requested configuration.
+    * Sets the plan of the site compilation. The leading scripts of each HTML file which are part of
+    * the common chunk are replaced by the common chunk, and the minified JavaScript files of those
+    * HTML files are left to the site compilation instead of being planned for a
+    * {@link BundleExecution}.
     *
-    * @param options
-    *           the plugin options.
-    * @return the new YUI Compressor.
+    * @param sitePlan
+    *           the plan or <code>null</code> if each file is compiled alone.
     */
-   protected YuiCssCompressor createYuiCssCompressor(final OverridablePluginOptions options) {
-      final YuiCssCompressor compressor = new YuiCssCompressor();
-      compressor.setLineBreak(options.getYuiCssLineBreak());
-      return compressor;
+   public void setSitePlan(final SitePlan sitePlan) {
+      this.sitePlan = sitePlan;
    }
 
    /**
-    * Constructs a new Google Closure Compressor using the requested configuration.
+    * Sets the execution which will compress the planned minified files, so that the code of each
+    * input is interned by it.
     *
-    * @param options
-    *           the plugin options.
-    * @return the new Google Closure Compressor.
+    * @param bundleExecution
+    *           the execution or <code>null</code> if the code is not interned.
     */
-   protected ClosureJavaScriptCompressor createClosureJsCompressor(
-         final OverridablePluginOptions options) {
-      final ClosureJavaScriptCompressor closureJavaScriptCompressor = new ClosureJavaScriptCompressor(
-            options.getClosureCompilationLevel());
-      // TODO: Allow overriding of Closure compiler options.
-      return closureJavaScriptCompressor;
+   public void setBundleExecution(final BundleExecution bundleExecution) {
+      this.bundleExecution = bundleExecution;
    }
 
    /**
-    * Constructs a new YUI JavaScript Compressor using the requested configuration.
+    * Sets the index in which the files referenced by external CSS and JavaScript URLs are looked
+    * up instead of the file system.
     *
-    * @param options
-    *           the plugin options.
-    * @return the new YUI Compressor.
+    * @param assetIndex
+    *           the index or <code>null</code> to search the file system.
     */
-   protected YuiJavaScriptCompressor createYuiJsCompressor(final OverridablePluginOptions options) {
-      final YuiJavaScriptCompressor compressor = new YuiJavaScriptCompressor();
-      compressor.setDisableOptimizations(options.isYuiJsDisableOptimizations());
-      compressor.setLineBreak(options.getYuiJsLineBreak());
-      compressor.setNoMunge(options.isYuiJsNoMunge());
-      compressor.setPreserveAllSemiColons(options.isYuiJsPreserveAllSemiColons());
-      return compressor;
+   public void setAssetIndex(final AssetIndex assetIndex) {
+      this.locator = new SourceFileLocator(this.log, this.pluginOptions, assetIndex);
+   }
+
+   /**
+    * Sets the base URI of the HTML file, against which relative URLs are resolved first.
+    *
+    * @param baseUri
+    *           the directory of the HTML file relative to the target directory, ending with a
+    *           slash, or <code>null</code>.
+    */
+   public void setBaseUri(final String baseUri) {
+      this.baseUri = baseUri;
    }
 
    /**
@@ -145,7 +230,7 @@ public class DefaultTagHandler implements NodeHandler, DirectiveHandler {
       if (options.isSkipJsMinify()) {
          compressor = null;
       } else {
-         compressor = createYuiCssCompressor(options);
+         compressor = this.compressorRegistry.getCssCompressor(options);
       }
       return compressor;
    }
@@ -163,14 +248,7 @@ public class DefaultTagHandler implements NodeHandler, DirectiveHandler {
       if (options.isSkipJsMinify()) {
          compressor = null;
       } else {
-         switch (options.getJsCompressorEngine()) {
-         case CLOSURE:
-            compressor = createClosureJsCompressor(options);
-            break;
-         case YUI:
-         default:
-            compressor = createYuiJsCompressor(options);
-         }
+         compressor = this.compressorRegistry.getJavaScriptCompressor(options);
       }
       return compressor;
    }
@@ -180,6 +258,8 @@ public class DefaultTagHandler implements NodeHandler, DirectiveHandler {
       this.options = new DefaultOverridablePluginOptions(this.pluginOptions);
       this.currentFile = new HtmlFileSummary();
       this.currentFile.setFile(file);
+      this.commonLoaded = (this.sitePlan != null) && this.sitePlan.isCommonLoaded(file);
+      this.commonScriptIndex = 0;
       this.minificationSummary.getHtmlFiles().add(this.currentFile);
    }
 
@@ -241,6 +321,18 @@ public class DefaultTagHandler implements NodeHandler, DirectiveHandler {
    @Override
    public String handleExternalJs(final String url) throws IOException {
       this.log.debug("Handling external JavaScript '" + url + "'");
+      final List<File> commonScripts = this.commonLoaded ? this.sitePlan.getCommonScripts()
+            : Collections.<File> emptyList();
+      if (this.commonScriptIndex < commonScripts.size()) {
+         // The first common script is replaced by the common chunk and the others are removed.
+         final MinifiedFileMetrics metrics = new MinifiedFileMetrics();
+         metrics.setSource(url);
+         metrics.setDestination(this.sitePlan.getCommonFileName());
+         metrics.setMinifier(this.jsContext.getMinifier());
+         this.currentFile.getMinifiedFiles().add(metrics);
+         this.commonScriptIndex++;
+         return this.commonScriptIndex == 1 ? this.sitePlan.getCommonFileName() : null;
+      }
       final String result = minifyExternalCode(url, this.jsContext);
       return result;
    }
@@ -291,6 +383,17 @@ public class DefaultTagHandler implements NodeHandler, DirectiveHandler {
       return this.minificationSummary;
    }
 
+   /**
+    * Returns the external CSS and JavaScript files read or searched for while handling the nodes.
+    * Files which were searched for but not found are included since creating them would change the
+    * output.
+    *
+    * @return the external files.
+    */
+   public Set<File> getDependencies() {
+      return this.dependencies;
+   }
+
    /**
     * Minifies the external code.
     *
@@ -310,61 +413,33 @@ public class DefaultTagHandler implements NodeHandler, DirectiveHandler {
       final Compressor compressor = context.getCompressor();
       final MinifiedFileBuilder builder = context.getFileBuilder();
       if (compressor != null) {
-         // TODO: Determine if the file has already been minified.
-         File sourceFile = new File(this.pluginOptions.getTargetDirectory(), urlString);
-
-         // If the file exists, get it's input stream.
-         InputStream inputStream = null;
-         if (sourceFile.exists()) {
-            inputStream = new FileInputStream(sourceFile);
-         } else {
-            // Otherwise, search the "other directories" for a matching
-            // file.
-            for (final Entry<Object, Object> entry : this.pluginOptions.getOtherDirectories()
-                  .entrySet()) {
-               String key = (String) entry.getKey();
-               if (!key.endsWith("/")) {
-                  key = key + '/';
-               }
-               if (urlString.startsWith(key)) {
-                  this.log.debug("Searching for '" + urlString + "' using key '" + key
-                        + "' which points to '" + entry.getValue() + "'");
-                  final File otherTarget = new File((String) entry.getValue());
-                  sourceFile = new File(otherTarget, urlString.substring(key.length()));
-                  if (sourceFile.exists()) {
-                     inputStream = new FileInputStream(sourceFile);
-                     break;
-                  }
-               }
-            }
-         }
+         final File sourceFile = this.locator.locate(urlString, this.baseUri,
+               this.dependencies);
 
-         // If an input stream was not found for the current URL string, skip
-         // the tag and create a new minified file next time.
-         if (inputStream == null) {
+         // If a file was not found for the current URL string, skip the tag
+         // and create a new minified file next time.
+         if (sourceFile == null) {
             this.log.debug("Did not find '" + urlString + "'.  Its content will not be minified.");
             builder.finishFile();
          } else {
-            // Minify the contents of the input stream.
-            final String original = IOUtil.toString(inputStream, this.pluginOptions.getEncoding(),
-                  8192);
+            // Minify the contents of the file.
+            final String original;
+            InputStream inputStream = null;
+            try {
+               inputStream = new FileInputStream(sourceFile);
+               original = IOUtil.toString(inputStream, this.pluginOptions.getEncoding(), 8192);
+            } finally {
+               IOUtil.close(inputStream);
+            }
             final MinifiedFileInfo fileInfo = builder.getCurrentFile();
-            final File destinationFile = fileInfo.getFile();
             final MinifiedFileMetrics metrics = new MinifiedFileMetrics();
             metrics.setSource(urlString);
             metrics.setMinifier(context.getMinifier());
-            result = minify(compressor, original, destinationFile, metrics);
+            result = append(compressor, original, fileInfo, metrics);
             this.currentFile.getMinifiedFiles().add(metrics);
 
             // Keep track of which inputs went into which outputs.
             fileInfo.getFiles().add(sourceFile);
-            if (this.minifiedFiles.containsKey(sourceFile)) {
-               this.minifiedFiles.get(sourceFile).add(fileInfo);
-            } else {
-               final Collection<MinifiedFileInfo> c = new ArrayList<MinifiedFileInfo>();
-               c.add(fileInfo);
-               this.minifiedFiles.put(sourceFile, c);
-            }
          }
       }
       return result;
@@ -383,7 +458,8 @@ public class DefaultTagHandler implements NodeHandler, DirectiveHandler {
     *           the minification context.
     * @param metrics
     *           the place to store metrics about minification.
-    * @return the minified result or <code>null</code> if it was added to another file.
+    * @return the minified result, a placeholder for it if it is compressed by the
+    *         {@link BundleExecution}, or <code>null</code> if it was added to another file.
     * @throws FileNotFoundException
     *            if the minified file could not be created.
     * @throws IOException
@@ -400,18 +476,19 @@ public class DefaultTagHandler implements NodeHandler, DirectiveHandler {
          builder.finishFile();
       } else if (mergeEmbedded && !builder.isNewFile()) {
          final MinifiedFileInfo fileInfo = builder.getCurrentFile();
-         final File file = fileInfo.getFile();
          metrics.setMinifier(context.getMinifier());
-         minify(compressor, text, file, metrics);
+         append(compressor, text, fileInfo, metrics);
          fileInfo.setEmbeddedIncluded(true);
          result = null;
+      } else if (this.bundleExecution != null) {
+         final MinifiedFileInput input = new MinifiedFileInput(compressor,
+               new DefaultOverridablePluginOptions(this.options), text, metrics);
+         result = this.embeddedPrefix + this.embeddedInputs.size();
+         this.embeddedInputs.add(this.bundleExecution.intern(input));
+         metrics.setMinifier(context.getMinifier());
+         builder.finishFile();
       } else {
-         final long startTime = System.nanoTime();
-         result = compressor.compress(text);
-         final long endTime = System.nanoTime();
-         metrics.setTime(endTime - startTime);
-         metrics.setOriginalLength(text.length());
-         metrics.setMinifiedLength(result.length());
+         result = this.minificationCache.compress(compressor, this.options, text, metrics);
          metrics.setMinifier(context.getMinifier());
          builder.finishFile();
       }
@@ -419,49 +496,127 @@ public class DefaultTagHandler implements NodeHandler, DirectiveHandler {
    }
 
    /**
-    * Minifies the input using the provided compressor.
+    * Appends the input to the minified file. The input is compressed when the file is executed by
+    * a {@link BundleExecution}.
     *
     * @param compressor
     *           the compressor
     * @param input
     *           the input to be minified.
-    * @param destinationFile
-    *           the destination file.
+    * @param fileInfo
+    *           the minified file.
     * @param metrics
     *           the place to store metrics about minification.
-    * @return the destination file name if the file was created or <code>null</code> if the minified
-    *         output was appended to the file.
-    * @throws FileNotFoundException
-    *            if the file exists but is a directory rather than a regular file, does not exist
-    *            but cannot be created, or cannot be opened for any other reason.
-    * @throws IOException
-    *            if an error occurs while copying the minified output to the file.
+    * @return the destination file name if this is the first input of the file or
+    *         <code>null</code> if the input was appended to the file.
     */
-   protected String minify(final Compressor compressor, final String input,
-         final File destinationFile, final MinifiedFileMetrics metrics)
-               throws FileNotFoundException, IOException {
-      String result;
-      OutputStream oStream = null;
-      try {
-         if (destinationFile.exists()) {
-            result = null;
-         } else {
-            result = destinationFile.getName();
+   protected String append(final Compressor compressor, final String input,
+         final MinifiedFileInfo fileInfo, final MinifiedFileMetrics metrics) {
+      final String name = fileInfo.getFile().getName();
+      final String result = fileInfo.getInputs().isEmpty() ? name : null;
+      metrics.setDestination(name);
+      final MinifiedFileInput fileInput = new MinifiedFileInput(compressor,
+            new DefaultOverridablePluginOptions(this.options), input, metrics);
+      fileInfo.getInputs().add(
+            this.bundleExecution == null ? fileInput : this.bundleExecution.intern(fileInput));
+      return result;
+   }
+
+   /**
+    * Returns the minified JavaScript files whose inputs are compiled by the site compilation. They
+    * are not executed by a {@link BundleExecution}.
+    *
+    * @return the minified files.
+    */
+   public List<MinifiedFileInfo> getSiteFiles() {
+      return this.siteFiles;
+   }
+
+   /**
+    * Returns the prefix of the placeholders standing for the embedded code compressed by the
+    * {@link BundleExecution}. Each placeholder is followed by the index of its input.
+    *
+    * @return the prefix.
+    */
+   public String getEmbeddedPrefix() {
+      return this.embeddedPrefix;
+   }
+
+   /**
+    * Returns the embedded code left to the {@link BundleExecution}, in the order of the indexes
+    * of the placeholders.
+    *
+    * @return the inputs.
+    */
+   public List<MinifiedFileInput> getEmbeddedInputs() {
+      return this.embeddedInputs;
+   }
+
+   /**
+    * Completes the plan of the minified files once the nodes have been handled, setting aside the
+    * minified JavaScript files left to the site compilation. The other files keep their pending
+    * inputs, to be compressed and written by a {@link BundleExecution}. This must be called once
+    * the nodes have been handled.
+    */
+   public void planFiles() {
+      for (final MinifiedFileInfo fileInfo : this.jsContext.getFileBuilder().getFiles()) {
+         if (isSiteCompiled(fileInfo)) {
+            this.siteFiles.add(fileInfo);
          }
-         oStream = new BufferedOutputStream(new FileOutputStream(destinationFile, true));
-         final long startTime = System.nanoTime();
-         final String compressed = compressor.compress(input);
-         final long endTime = System.nanoTime();
-         metrics.setTime(endTime - startTime);
-         metrics.setOriginalLength(input.length());
-         metrics.setMinifiedLength(compressed.length());
-         metrics.setDestination(destinationFile.getName());
-         IOUtil.copy(compressed, oStream);
-         this.log.info("Reduced input from " + input.length() + " to " + compressed.length()
-               + " characters");
-      } finally {
-         IOUtil.close(oStream);
       }
+   }
+
+   /**
+    * Minifies the HTML produced by replacing the tags of the current HTML file, unless HTML
+    * minification is skipped by the options in effect at the end of the file or the encoding is
+    * not supported, which the mojo rejects before processing any file. The sizes and time are
+    * recorded in the summary of the HTML file, and the placeholders of the embedded code are
+    * preserved.
+    *
+    * @param html
+    *           the HTML produced by replacing the tags.
+    * @param summary
+    *           the summary of the HTML file.
+    * @return the minified HTML or the given HTML if it is not minified.
+    */
+   public byte[] minifyHtml(final byte[] html, final HtmlFileSummary summary) {
+      final String charsetName = this.pluginOptions.getEncoding();
+      if (this.options.isSkipHtmlMinify() || (charsetName == null)
+            || !Charset.isSupported(charsetName)) {
+         return html;
+      }
+      final Charset charset = Charset.forName(charsetName);
+      final Compressor compressor = this.compressorRegistry.getHtmlCompressor(this.options);
+      final long startTime = System.nanoTime();
+      final byte[] result = compressor.compress(new String(html, charset)).getBytes(charset);
+      final long endTime = System.nanoTime();
+      summary.setHtmlMinified(true);
+      summary.setHtmlOriginalLength(html.length);
+      summary.setHtmlMinifiedLength(result.length);
+      summary.setHtmlTime(endTime - startTime);
       return result;
    }
+
+   /**
+    * Determines if the inputs of the minified JavaScript file are left to the site compilation.
+    * This is the case when the HTML file loads the common chunk and every input uses the Closure
+    * Compiler with the options of the site compilation.
+    *
+    * @param fileInfo
+    *           the minified file.
+    * @return <code>true</code> if the file is compiled by the site compilation.
+    */
+   protected boolean isSiteCompiled(final MinifiedFileInfo fileInfo) {
+      if (!this.commonLoaded || fileInfo.getInputs().isEmpty()) {
+         return false;
+      }
+      for (final MinifiedFileInput input : fileInfo.getInputs()) {
+         if (!(input.getCompressor() instanceof ClosureJavaScriptCompressor)
+               || !this.sitePlan.getFingerprint().equals(
+                     CompressorFingerprint.of(input.getOptions()))) {
+            return false;
+         }
+      }
+      return true;
+   }
 }
@@ -0,0 +1,205 @@
+package com.github.webapp_minifier;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.reflect.Array;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+
+import org.codehaus.plexus.util.FileUtils;
+import org.codehaus.plexus.util.IOUtil;
+
+/**
+ * This class replaces the HTML files of the minified directory with their processed content
+ * according to an {@link HtmlOutput}. The processed content is always written to a temporary file
+ * next to the HTML file first, so an HTML file is never left partially written.
+ * <p>
+ * With {@link HtmlOutput#REPLACE} the temporary file is moved over the HTML file through
+ * <code>java.nio.file.Files</code> with an atomic move when running on Java 7 or later. Otherwise
+ * the file is renamed, which replaces the HTML file atomically on POSIX file systems. The originals
+ * may be kept in a directory outside the minified directory, so that they are not packaged. They
+ * are copied there before the HTML file is replaced, so the HTML file never goes missing.
+ *
+ * @author Lonny
+ */
+public class HtmlFileReplacer {
+
+   /** The extension of the temporary files. */
+   private static final String TEMPORARY_EXTENSION = ".min";
+
+   /** The extension of the original files kept by {@link HtmlOutput#BACKUP}. */
+   private static final String BACKUP_EXTENSION = ".bak";
+
+   /**
+    * The <code>java.nio.file.Files.move(Path, Path, CopyOption...)</code> method if available.
+    */
+   private static final Method MOVE;
+
+   /** The <code>java.io.File.toPath()</code> method if available. */
+   private static final Method TO_PATH;
+
+   /** The options of an atomic move if available. */
+   private static final Object ATOMIC_MOVE_OPTIONS;
+
+   static {
+      Method move = null;
+      Method toPath = null;
+      Object options = null;
+      try {
+         final Class<?> pathClass = Class.forName("java.nio.file.Path");
+         final Class<?> filesClass = Class.forName("java.nio.file.Files");
+         final Class<?> copyOptionClass = Class.forName("java.nio.file.CopyOption");
+         @SuppressWarnings({ "unchecked", "rawtypes" })
+         final Object atomicMove = Enum.valueOf(
+               (Class) Class.forName("java.nio.file.StandardCopyOption"), "ATOMIC_MOVE");
+         options = Array.newInstance(copyOptionClass, 1);
+         Array.set(options, 0, atomicMove);
+         move = filesClass.getMethod("move", pathClass, pathClass, options.getClass());
+         toPath = File.class.getMethod("toPath");
+      } catch (final ClassNotFoundException e) {
+         move = null;
+      } catch (final NoSuchMethodException e) {
+         move = null;
+      }
+      MOVE = move;
+      TO_PATH = toPath;
+      ATOMIC_MOVE_OPTIONS = options;
+   }
+
+   /** The directory containing the HTML files. */
+   private final File directory;
+
+   /** The way the HTML files are replaced. */
+   private final HtmlOutput output;
+
+   /** The directory keeping the original HTML files or <code>null</code>. */
+   private final File originalsDirectory;
+
+   /**
+    * Constructs a new instance.
+    *
+    * @param directory
+    *           the directory containing the HTML files.
+    * @param output
+    *           the way the HTML files are replaced.
+    * @param originalsDirectory
+    *           the directory keeping the original HTML files replaced by
+    *           {@link HtmlOutput#REPLACE} or <code>null</code> to discard them. It must be outside
+    *           the directory containing the HTML files.
+    * @throws IOException
+    *            if the directories could not be resolved.
+    */
+   public HtmlFileReplacer(final File directory, final HtmlOutput output,
+         final File originalsDirectory) throws IOException {
+      if (directory == null) {
+         throw new IllegalArgumentException("The directory cannot be null");
+      }
+      if (output == null) {
+         throw new IllegalArgumentException("The HTML output cannot be null");
+      }
+      if ((originalsDirectory != null) && isWithin(originalsDirectory, directory)) {
+         throw new IllegalArgumentException("The originals directory " + originalsDirectory
+               + " must be outside " + directory);
+      }
+      this.directory = directory;
+      this.output = output;
+      this.originalsDirectory = originalsDirectory;
+   }
+
+   /**
+    * Replaces an HTML file with its processed content. Any original which is kept is copied before
+    * the HTML file is replaced, so the HTML file exists throughout.
+    *
+    * @param fileName
+    *           the name of the HTML file relative to the directory.
+    * @param html
+    *           the processed HTML content.
+    * @throws IOException
+    *            if the HTML file could not be replaced.
+    */
+   public void replace(final String fileName, final byte[] html) throws IOException {
+      final File htmlFile = new File(this.directory, fileName);
+      final File temporaryFile = new File(this.directory, fileName + TEMPORARY_EXTENSION);
+      OutputStream outputStream = null;
+      try {
+         outputStream = new FileOutputStream(temporaryFile);
+         outputStream.write(html);
+         outputStream.close();
+         outputStream = null;
+      } finally {
+         IOUtil.close(outputStream);
+      }
+
+      if (this.output == HtmlOutput.BACKUP) {
+         keep(htmlFile, new File(this.directory, fileName + BACKUP_EXTENSION));
+      } else if (this.originalsDirectory != null) {
+         keep(htmlFile, new File(this.originalsDirectory, fileName));
+      }
+      move(temporaryFile, htmlFile);
+   }
+
+   /**
+    * Copies an original HTML file rather than moving it, so that the HTML file exists until it is
+    * replaced. An existing copy is deleted first, so that a copy linked to another file is never
+    * written through.
+    *
+    * @param htmlFile
+    *           the original HTML file.
+    * @param originalFile
+    *           the copy to keep.
+    * @throws IOException
+    *            if the original could not be copied.
+    */
+   private static void keep(final File htmlFile, final File originalFile) throws IOException {
+      originalFile.getParentFile().mkdirs();
+      if (!originalFile.delete() && originalFile.exists()) {
+         throw new IOException("Failed to delete " + originalFile);
+      }
+      FileUtils.copyFile(htmlFile, originalFile);
+   }
+
+   /**
+    * Moves a file over another, replacing it atomically when the platform allows it.
+    *
+    * @param source
+    *           the file to move.
+    * @param target
+    *           the file to replace.
+    * @throws IOException
+    *            if the file could not be moved.
+    */
+   private static void move(final File source, final File target) throws IOException {
+      if (MOVE != null) {
+         try {
+            MOVE.invoke(null, TO_PATH.invoke(source), TO_PATH.invoke(target), ATOMIC_MOVE_OPTIONS);
+            return;
+         } catch (final IllegalAccessException e) {
+            throw new IOException("Failed to move " + source + " to " + target, e);
+         } catch (final InvocationTargetException e) {
+            // The file system does not support atomic moves, so the file is renamed.
+         }
+      }
+      if (!source.renameTo(target) && !(target.delete() && source.renameTo(target))) {
+         throw new IOException("Failed to rename " + source.getName() + " to " + target.getName());
+      }
+   }
+
+   /**
+    * Determines if a file is within a directory or is the directory.
+    *
+    * @param file
+    *           the file.
+    * @param directory
+    *           the directory.
+    * @return <code>true</code> if the file is within the directory.
+    * @throws IOException
+    *            if the paths could not be resolved.
+    */
+   private static boolean isWithin(final File file, final File directory) throws IOException {
+      final String path = file.getCanonicalPath();
+      final String directoryPath = directory.getCanonicalPath();
+      return path.equals(directoryPath) || path.startsWith(directoryPath + File.separator);
+   }
+}
@@ -0,0 +1,365 @@
+package com.github.webapp_minifier;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+
+import com.github.webapp_minifier.incremental.DependencyEntry;
+import com.github.webapp_minifier.summary.HtmlFileSummary;
+import com.github.webapp_minifier.summary.MinifiedFileMetrics;
+import com.github.webapp_minifier.utils.CommonUtils;
+import com.google.common.io.Files;
+
+/**
+ * This class contains the result of an {@link HtmlFileTask}: the processed HTML and the minified
+ * files it references under their temporary names.
+ *
+ * @author Lonny
+ */
+public class HtmlFileResult {
+
+   /** The processed HTML file. */
+   private final File htmlFile;
+
+   /** The processed HTML content. */
+   private byte[] html;
+
+   /** The summary of the minification performed on the HTML file. */
+   private final HtmlFileSummary summary;
+
+   /** The builder of the temporary minified CSS files. */
+   private final MinifiedFileBuilder cssFileBuilder;
+
+   /** The builder of the temporary minified JavaScript files. */
+   private final MinifiedFileBuilder jsFileBuilder;
+
+   /** The token contained in the temporary minified file names. */
+   private String token;
+
+   /** The hash of the original HTML content. */
+   private String hash;
+
+   /** The files read while processing the HTML file and their hashes. */
+   private final Collection<DependencyEntry> dependencies = new ArrayList<DependencyEntry>();
+
+   /** Whether the result was restored from a previous build. */
+   private boolean restored;
+
+   /** Whether the HTML file was left untouched because it contains nothing to minify. */
+   private final boolean skipped;
+
+   /** The minified JavaScript files left to the site compilation. */
+   private final List<MinifiedFileInfo> siteFiles = new ArrayList<MinifiedFileInfo>();
+
+   /** The prefix of the placeholders standing for the embedded code until it is compressed. */
+   private String embeddedPrefix;
+
+   /** The embedded code left to the {@link BundleExecution}, indexed by its placeholder. */
+   private final List<MinifiedFileInput> embeddedInputs = new ArrayList<MinifiedFileInput>();
+
+   /** The final files of the committed minified files. */
+   private final Map<MinifiedFileInfo, File> committedFiles = new IdentityHashMap<MinifiedFileInfo, File>();
+
+   /**
+    * Constructs a new result.
+    *
+    * @param htmlFile
+    *           the processed HTML file.
+    * @param html
+    *           the processed HTML content.
+    * @param summary
+    *           the summary of the minification performed on the HTML file.
+    * @param cssFileBuilder
+    *           the builder of the temporary minified CSS files.
+    * @param jsFileBuilder
+    *           the builder of the temporary minified JavaScript files.
+    */
+   public HtmlFileResult(final File htmlFile, final byte[] html, final HtmlFileSummary summary,
+         final MinifiedFileBuilder cssFileBuilder, final MinifiedFileBuilder jsFileBuilder) {
+      this.htmlFile = htmlFile;
+      this.html = html;
+      this.summary = summary;
+      this.cssFileBuilder = cssFileBuilder;
+      this.jsFileBuilder = jsFileBuilder;
+      this.skipped = false;
+   }
+
+   /**
+    * Constructs the result of an HTML file left untouched because it contains nothing to minify.
+    * Such a result has no content or summary and must not be committed.
+    *
+    * @param htmlFile
+    *           the HTML file.
+    */
+   public HtmlFileResult(final File htmlFile) {
+      this.htmlFile = htmlFile;
+      this.html = null;
+      this.summary = null;
+      this.cssFileBuilder = null;
+      this.jsFileBuilder = null;
+      this.skipped = true;
+   }
+
+   /**
+    * Returns the processed HTML file.
+    *
+    * @return the processed HTML file.
+    */
+   public File getHtmlFile() {
+      return this.htmlFile;
+   }
+
+   /**
+    * Returns the processed HTML content.
+    *
+    * @return the processed HTML content.
+    */
+   public byte[] getHtml() {
+      return this.html;
+   }
+
+   /**
+    * Returns the summary of the minification performed on the HTML file.
+    *
+    * @return the summary.
+    */
+   public HtmlFileSummary getSummary() {
+      return this.summary;
+   }
+
+   /**
+    * Returns the builder of the temporary minified CSS files.
+    *
+    * @return the builder of the temporary minified CSS files.
+    */
+   public MinifiedFileBuilder getCssFileBuilder() {
+      return this.cssFileBuilder;
+   }
+
+   /**
+    * Returns the builder of the temporary minified JavaScript files.
+    *
+    * @return the builder of the temporary minified JavaScript files.
+    */
+   public MinifiedFileBuilder getJsFileBuilder() {
+      return this.jsFileBuilder;
+   }
+
+   /**
+    * Returns the token contained in the temporary minified file names.
+    *
+    * @return the token.
+    */
+   public String getToken() {
+      return this.token;
+   }
+
+   /**
+    * Sets the token contained in the temporary minified file names.
+    *
+    * @param token
+    *           the token.
+    */
+   public void setToken(final String token) {
+      this.token = token;
+   }
+
+   /**
+    * Returns the hash of the original HTML content.
+    *
+    * @return the hash.
+    */
+   public String getHash() {
+      return this.hash;
+   }
+
+   /**
+    * Sets the hash of the original HTML content.
+    *
+    * @param hash
+    *           the hash.
+    */
+   public void setHash(final String hash) {
+      this.hash = hash;
+   }
+
+   /**
+    * Returns the files read while processing the HTML file and their hashes.
+    *
+    * @return the dependencies.
+    */
+   public Collection<DependencyEntry> getDependencies() {
+      return this.dependencies;
+   }
+
+   /**
+    * Returns whether the result was restored from a previous build.
+    *
+    * @return <code>true</code> if the result was restored.
+    */
+   public boolean isRestored() {
+      return this.restored;
+   }
+
+   /**
+    * Sets whether the result was restored from a previous build.
+    *
+    * @param restored
+    *           <code>true</code> if the result was restored.
+    */
+   public void setRestored(final boolean restored) {
+      this.restored = restored;
+   }
+
+   /**
+    * Returns whether the HTML file was left untouched because it contains nothing to minify.
+    *
+    * @return <code>true</code> if the HTML file was skipped.
+    */
+   public boolean isSkipped() {
+      return this.skipped;
+   }
+
+   /**
+    * Returns the minified JavaScript files left to the site compilation. These files are not
+    * written until the site compilation completes.
+    *
+    * @return the minified files.
+    */
+   public List<MinifiedFileInfo> getSiteFiles() {
+      return this.siteFiles;
+   }
+
+   /**
+    * Returns the prefix of the placeholders standing for the embedded code until it is compressed.
+    *
+    * @return the prefix or <code>null</code> if there are no placeholders.
+    */
+   public String getEmbeddedPrefix() {
+      return this.embeddedPrefix;
+   }
+
+   /**
+    * Sets the prefix of the placeholders standing for the embedded code until it is compressed.
+    *
+    * @param embeddedPrefix
+    *           the prefix.
+    */
+   public void setEmbeddedPrefix(final String embeddedPrefix) {
+      this.embeddedPrefix = embeddedPrefix;
+   }
+
+   /**
+    * Returns the embedded code left to the {@link BundleExecution}, in the order of the indexes
+    * of the placeholders.
+    *
+    * @return the inputs.
+    */
+   public List<MinifiedFileInput> getEmbeddedInputs() {
+      return this.embeddedInputs;
+   }
+
+   /**
+    * Replaces the placeholders of the embedded code by the compressed code and updates the HTML
+    * sizes of the summary, which were measured with the placeholders.
+    *
+    * @param codes
+    *           the compressed code of each placeholder.
+    * @param charset
+    *           the encoding of the HTML content.
+    */
+   public void replaceEmbeddedCode(final List<String> codes, final Charset charset) {
+      final int length = this.html.length;
+      this.html = CommonUtils.replaceIndexed(this.html, this.embeddedPrefix, codes, charset);
+      if (this.summary.isHtmlMinified()) {
+         final int delta = this.html.length - length;
+         this.summary.setHtmlOriginalLength(this.summary.getHtmlOriginalLength() + delta);
+         this.summary.setHtmlMinifiedLength(this.summary.getHtmlMinifiedLength() + delta);
+      }
+   }
+
+   /**
+    * Returns the final file of a committed minified file.
+    *
+    * @param fileInfo
+    *           the temporary minified file.
+    * @return the final file or <code>null</code> if the file has not been committed.
+    */
+   public File getCommittedFile(final MinifiedFileInfo fileInfo) {
+      return this.committedFiles.get(fileInfo);
+   }
+
+   /**
+    * Renames the temporary minified files to the final names provided by the given builders and
+    * updates the HTML content and summary to reference the final names. Results must be committed
+    * in a fixed order for the final names to be reproducible.
+    *
+    * @param cssNames
+    *           the builder providing the final minified CSS file names.
+    * @param jsNames
+    *           the builder providing the final minified JavaScript file names.
+    * @param charset
+    *           the encoding of the HTML content.
+    * @throws IOException
+    *            if a temporary minified file could not be renamed.
+    */
+   public void commit(final MinifiedFileBuilder cssNames, final MinifiedFileBuilder jsNames,
+         final Charset charset) throws IOException {
+      final Map<String, String> names = new LinkedHashMap<String, String>();
+      rename(this.cssFileBuilder, cssNames, names);
+      rename(this.jsFileBuilder, jsNames, names);
+
+      for (final Entry<String, String> entry : names.entrySet()) {
+         this.html = CommonUtils.replace(this.html, entry.getKey(), entry.getValue(),
+               charset);
+      }
+      for (final MinifiedFileMetrics metrics : this.summary.getMinifiedFiles()) {
+         final String name = names.get(metrics.getDestination());
+         if (name != null) {
+            metrics.setDestination(name);
+         }
+      }
+   }
+
+   /**
+    * Renames the temporary files created by one builder to the final names chosen by another.
+    *
+    * @param temporary
+    *           the builder of the temporary files.
+    * @param names
+    *           the builder providing the final names.
+    * @param renamed
+    *           the mapping of temporary to final names to populate.
+    * @throws IOException
+    *            if a temporary minified file could not be renamed.
+    */
+   private void rename(final MinifiedFileBuilder temporary, final MinifiedFileBuilder names,
+         final Map<String, String> renamed) throws IOException {
+      for (final MinifiedFileInfo fileInfo : temporary.getFiles()) {
+         final File source = fileInfo.getFile();
+         final File destination = names.getFinalFile(source);
+         if (source.exists()) {
+            if (destination.isFile() && Files.equal(source, destination)) {
+               // The final file of an identical file is kept since File.renameTo does not
+               // replace an existing file on every platform.
+               if (!source.delete()) {
+                  throw new IOException("Failed to delete " + source.getName());
+               }
+            } else if ((destination.exists() && !destination.delete())
+                  || !source.renameTo(destination)) {
+               throw new IOException("Failed to rename " + source.getName() + " to "
+                     + destination.getName());
+            }
+         }
+         renamed.put(source.getName(), destination.getName());
+         this.committedFiles.put(fileInfo, destination);
+      }
+   }
+}
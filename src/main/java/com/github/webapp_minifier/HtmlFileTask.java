@@ -0,0 +1,245 @@
+package com.github.webapp_minifier;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.util.UUID;
+import java.util.concurrent.Callable;
+
+import org.apache.maven.plugin.logging.Log;
+
+import com.github.webapp_minifier.compressor.CompressorRegistry;
+import com.github.webapp_minifier.incremental.DependencyEntry;
+import com.github.webapp_minifier.incremental.IncrementalBuild;
+import com.github.webapp_minifier.options.PluginOptions;
+import com.github.webapp_minifier.replacer.TagReplacer;
+import com.github.webapp_minifier.replacer.TagReplacerFactory;
+import com.github.webapp_minifier.site.SitePlan;
+import com.github.webapp_minifier.summary.HtmlFileSummary;
+import com.github.webapp_minifier.utils.CommonUtils;
+import com.google.common.hash.Hashing;
+import com.google.common.io.Files;
+
+/**
+ * This class plans the minification of a single HTML file. Each task owns its own
+ * {@link DefaultTagHandler} and {@link TagReplacer} so that several HTML files can be planned
+ * concurrently. The task replaces the tags and records the ordered inputs of each minified file
+ * without compressing them; the minified files planned by every HTML file are then compressed and
+ * written by a {@link BundleExecution}.
+ * <p>
+ * Since the final minified file names depend upon the files produced by every HTML file processed
+ * before this one, the minified files are planned under temporary names containing a unique token.
+ * The names are finalized by {@link HtmlFileResult#commit(MinifiedFileBuilder,
+ * MinifiedFileBuilder, java.nio.charset.Charset)} in a fixed order, once the files have been
+ * written.
+ * <p>
+ * When an {@link IncrementalBuild} is provided and the HTML file is unchanged since the previous
+ * build, its previous result is restored instead of processing it again.
+ * <p>
+ * Once its tags have been replaced, the HTML itself is minified unless the options in effect at
+ * the end of the file skip HTML minification.
+ * <p>
+ * When a {@link PageScanner} is provided and finds nothing to minify in the HTML file, the tags
+ * are not replaced. The file is left untouched and a skipped result is returned unless the HTML
+ * itself is minified.
+ *
+ * @author Lonny
+ */
+public class HtmlFileTask implements Callable<HtmlFileResult> {
+
+   /** The log instance. */
+   private final Log log;
+
+   /** The plugin options. */
+   private final PluginOptions options;
+
+   /** The HTML document parser name. */
+   private final String parser;
+
+   /** The name of the HTML file relative to the target directory. */
+   private final String fileName;
+
+   /** The HTML file to process. */
+   private final File htmlFile;
+
+   /** The cache of previously minified code shared by all tasks. */
+   private final MinificationCache minificationCache;
+
+   /** The registry of reusable compressors shared by all tasks. */
+   private final CompressorRegistry compressorRegistry;
+
+   /** The state of the previous build or <code>null</code> if every file must be processed. */
+   private final IncrementalBuild incrementalBuild;
+
+   /** The plan of the site compilation or <code>null</code> if each file is compiled alone. */
+   private SitePlan sitePlan;
+
+   /** The scanner of HTML files or <code>null</code> if every file is processed. */
+   private PageScanner pageScanner;
+
+   /** The index of the referenced files or <code>null</code> to search the file system. */
+   private AssetIndex assetIndex;
+
+   /** The execution interning the code of the inputs or <code>null</code>. */
+   private BundleExecution bundleExecution;
+
+   /**
+    * Constructs a new task.
+    *
+    * @param log
+    *           the log instance.
+    * @param options
+    *           the plugin options.
+    * @param parser
+    *           the HTML document parser name.
+    * @param fileName
+    *           the name of the HTML file relative to the target directory.
+    * @param htmlFile
+    *           the HTML file to process.
+    * @param minificationCache
+    *           the cache of previously minified code shared by all tasks.
+    * @param compressorRegistry
+    *           the registry of reusable compressors shared by all tasks.
+    * @param incrementalBuild
+    *           the state of the previous build or <code>null</code> if every file must be
+    *           processed.
+    */
+   public HtmlFileTask(final Log log, final PluginOptions options, final String parser,
+         final String fileName, final File htmlFile, final MinificationCache minificationCache,
+         final CompressorRegistry compressorRegistry, final IncrementalBuild incrementalBuild) {
+      this.log = log;
+      this.options = options;
+      this.parser = parser;
+      this.fileName = fileName;
+      this.htmlFile = htmlFile;
+      this.minificationCache = minificationCache;
+      this.compressorRegistry = compressorRegistry;
+      this.incrementalBuild = incrementalBuild;
+   }
+
+   /**
+    * Sets the plan of the site compilation.
+    *
+    * @param sitePlan
+    *           the plan or <code>null</code> if each file is compiled alone.
+    */
+   public void setSitePlan(final SitePlan sitePlan) {
+      this.sitePlan = sitePlan;
+   }
+
+   /**
+    * Sets the scanner which determines whether the HTML file needs processing.
+    *
+    * @param pageScanner
+    *           the scanner or <code>null</code> if the HTML file is always processed.
+    */
+   public void setPageScanner(final PageScanner pageScanner) {
+      this.pageScanner = pageScanner;
+   }
+
+   /**
+    * Sets the index in which the files referenced by external CSS and JavaScript URLs are looked
+    * up instead of the file system.
+    *
+    * @param assetIndex
+    *           the index or <code>null</code> to search the file system.
+    */
+   public void setAssetIndex(final AssetIndex assetIndex) {
+      this.assetIndex = assetIndex;
+   }
+
+   /**
+    * Sets the execution which will compress the planned minified files, so that the code of each
+    * input is interned by it.
+    *
+    * @param bundleExecution
+    *           the execution or <code>null</code> if the code is not interned.
+    */
+   public void setBundleExecution(final BundleExecution bundleExecution) {
+      this.bundleExecution = bundleExecution;
+   }
+
+   /**
+    * Creates a builder of temporary minified files whose names contain the given token.
+    *
+    * @param options
+    *           the plugin options.
+    * @param prefix
+    *           the prefix of the final file names.
+    * @param extension
+    *           the file extension.
+    * @param token
+    *           the token unique to the processing of one HTML file.
+    * @return the builder.
+    */
+   public static MinifiedFileBuilder createFileBuilder(final PluginOptions options,
+         final String prefix, final String extension, final String token) {
+      return new MinifiedFileBuilder(options.getTargetDirectory(), prefix + '-' + token, extension);
+   }
+
+   @Override
+   public HtmlFileResult call() throws Exception {
+      final byte[] content = Files.toByteArray(this.htmlFile);
+      final boolean replaceTags = (this.pageScanner == null)
+            || this.pageScanner.needsProcessing(content);
+      if (!replaceTags && this.options.isSkipHtmlMinify()) {
+         this.log.debug("Skipping " + this.htmlFile + " since it contains nothing to minify");
+         return new HtmlFileResult(this.htmlFile);
+      }
+      String hash = null;
+      if (this.incrementalBuild != null) {
+         hash = Hashing.sha256().hashBytes(content).toString();
+         final HtmlFileResult result = this.incrementalBuild.restore(this.fileName,
+               this.htmlFile, hash);
+         if (result != null) {
+            return result;
+         }
+      }
+
+      final String token = UUID.randomUUID().toString().replace("-", "");
+      final File targetDirectory = this.options.getTargetDirectory();
+      final MinifiedFileBuilder cssFileBuilder = createFileBuilder(this.options,
+            this.options.getCssPrefix(), "css", token);
+      final MinifiedFileBuilder jsFileBuilder = createFileBuilder(this.options,
+            this.options.getJsPrefix(), "js", token);
+      final DefaultTagHandler tagHandler = new DefaultTagHandler(this.log, this.options,
+            cssFileBuilder, jsFileBuilder, this.minificationCache, this.compressorRegistry);
+      tagHandler.setSitePlan(this.sitePlan);
+      tagHandler.setAssetIndex(this.assetIndex);
+      tagHandler.setBundleExecution(this.bundleExecution);
+      final String baseUri = CommonUtils.getBaseUri(this.htmlFile, targetDirectory);
+      tagHandler.setBaseUri(baseUri);
+      final TagReplacer tagReplacer = TagReplacerFactory.getReplacer(this.parser, this.log,
+            this.options.getEncoding());
+
+      this.log.info("Processing " + this.htmlFile.getCanonicalFile());
+      tagHandler.start(this.htmlFile);
+      byte[] html = content;
+      if (replaceTags) {
+         final ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+         tagReplacer.process(new ByteArrayInputStream(content), tagHandler, baseUri,
+               outputStream);
+         html = outputStream.toByteArray();
+      } else {
+         tagHandler.complete();
+      }
+      tagHandler.planFiles();
+
+      final HtmlFileSummary summary = tagHandler.getReport().getHtmlFiles().iterator().next();
+      html = tagHandler.minifyHtml(html, summary);
+      final HtmlFileResult result = new HtmlFileResult(this.htmlFile, html, summary,
+            cssFileBuilder, jsFileBuilder);
+      result.setToken(token);
+      result.setHash(hash);
+      result.getSiteFiles().addAll(tagHandler.getSiteFiles());
+      result.setEmbeddedPrefix(tagHandler.getEmbeddedPrefix());
+      result.getEmbeddedInputs().addAll(tagHandler.getEmbeddedInputs());
+      if (this.incrementalBuild != null) {
+         for (final File dependency : tagHandler.getDependencies()) {
+            result.getDependencies().add(new DependencyEntry(dependency,
+                  this.incrementalBuild.hashDependency(dependency)));
+         }
+      }
+      return result;
+   }
+}
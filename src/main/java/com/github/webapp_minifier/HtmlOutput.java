@@ -0,0 +1,19 @@
+package com.github.webapp_minifier;
+
+/**
+ * The ways the processed HTML files replace the original HTML files in the minified directory.
+ *
+ * @author Lonny
+ */
+public enum HtmlOutput {
+   /**
+    * Keeps the original HTML file next to the processed file with a <code>.bak</code> extension.
+    */
+   BACKUP,
+
+   /**
+    * Writes the processed HTML file to a temporary file which atomically replaces the original
+    * HTML file. The original is discarded unless an originals directory is given.
+    */
+   REPLACE;
+}
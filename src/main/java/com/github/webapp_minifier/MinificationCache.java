@@ -0,0 +1,200 @@
+package com.github.webapp_minifier;
+
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+
+import com.github.webapp_minifier.compressor.BundleCompressor;
+import com.github.webapp_minifier.options.CompressorFingerprint;
+import com.github.webapp_minifier.options.OverridablePluginOptions;
+import com.github.webapp_minifier.summary.MinifiedFileMetrics;
+import com.google.common.base.Charsets;
+import com.google.common.hash.Hashing;
+import com.googlecode.htmlcompressor.compressor.Compressor;
+
+/**
+ * This class remembers the output of every compression performed during a run so that code
+ * referenced by many HTML files is only compressed once. Entries are keyed by the hash of the
+ * input and the options that affect the compressor. When a {@link PersistentMinificationCache} is
+ * provided, it is consulted before compressing and updated afterwards. This class is safe to share
+ * between threads; concurrent requests for the same entry wait for a single compression.
+ *
+ * @author Lonny
+ */
+public class MinificationCache {
+
+   /** The compressed output keyed by input hash and options. */
+   private final ConcurrentMap<String, FutureTask<String>> entries = new ConcurrentHashMap<String, FutureTask<String>>();
+
+   /** The cache which persists between builds or <code>null</code> if there is none. */
+   private final PersistentMinificationCache persistentCache;
+
+   /** Constructs a new cache which only remembers results for the current run. */
+   public MinificationCache() {
+      this(null);
+   }
+
+   /**
+    * Constructs a new cache backed by the given persistent cache.
+    *
+    * @param persistentCache
+    *           the cache which persists between builds or <code>null</code> if there is none.
+    */
+   public MinificationCache(final PersistentMinificationCache persistentCache) {
+      this.persistentCache = persistentCache;
+   }
+
+   /**
+    * Compresses the input, reusing a previous result when one exists. The time, lengths and cache
+    * hit flag are recorded in the metrics.
+    *
+    * @param compressor
+    *           the compressor.
+    * @param options
+    *           the options used to create the compressor.
+    * @param input
+    *           the input to compress.
+    * @param metrics
+    *           the place to store metrics about minification.
+    * @return the compressed input.
+    */
+   public String compress(final Compressor compressor, final OverridablePluginOptions options,
+         final String input, final MinifiedFileMetrics metrics) {
+      return compress(getKey(compressor, options, input), new Callable<String>() {
+         @Override
+         public String call() {
+            return compressor.compress(input);
+         }
+      }, input.length(), metrics);
+   }
+
+   /**
+    * Compresses the inputs together, reusing a previous result when one exists. The total time,
+    * lengths and cache hit flag are recorded in the metrics.
+    *
+    * @param compressor
+    *           the compressor.
+    * @param options
+    *           the options used to create the compressor.
+    * @param inputs
+    *           the inputs to compress.
+    * @param metrics
+    *           the place to store metrics about minification.
+    * @return the compressed inputs.
+    */
+   public String compress(final BundleCompressor compressor,
+         final OverridablePluginOptions options, final List<String> inputs,
+         final MinifiedFileMetrics metrics) {
+      final StringBuilder hashes = new StringBuilder("bundle");
+      int length = 0;
+      for (final String input : inputs) {
+         hashes.append(';').append(Hashing.sha256().hashString(input, Charsets.UTF_8));
+         length += input.length();
+      }
+      return compress(getKey(compressor, options, hashes.toString()), new Callable<String>() {
+         @Override
+         public String call() {
+            return compressor.compressBundle(inputs);
+         }
+      }, length, metrics);
+   }
+
+   /**
+    * Performs the compression unless the result for the key is already known.
+    *
+    * @param key
+    *           the cache key.
+    * @param compression
+    *           performs the compression.
+    * @param originalLength
+    *           the length of the input.
+    * @param metrics
+    *           the place to store metrics about minification.
+    * @return the compressed input.
+    */
+   private String compress(final String key, final Callable<String> compression,
+         final int originalLength, final MinifiedFileMetrics metrics) {
+      final long startTime = System.nanoTime();
+      final boolean[] compressed = new boolean[1];
+      final FutureTask<String> task = new FutureTask<String>(new Callable<String>() {
+         @Override
+         public String call() throws Exception {
+            return load(key, compression, compressed);
+         }
+      });
+      FutureTask<String> entry = this.entries.putIfAbsent(key, task);
+      if (entry == null) {
+         entry = task;
+         task.run();
+      }
+
+      final String result;
+      try {
+         result = entry.get();
+      } catch (final InterruptedException e) {
+         Thread.currentThread().interrupt();
+         throw new IllegalStateException("Interrupted while waiting for compression", e);
+      } catch (final ExecutionException e) {
+         this.entries.remove(key, entry);
+         if (e.getCause() instanceof RuntimeException) {
+            throw (RuntimeException) e.getCause();
+         }
+         throw new IllegalStateException("Failed to compress the input", e.getCause());
+      }
+      final long endTime = System.nanoTime();
+      metrics.setTime(endTime - startTime);
+      metrics.setCacheHit(!compressed[0]);
+      metrics.setOriginalLength(originalLength);
+      metrics.setMinifiedLength(result.length());
+      return result;
+   }
+
+   /**
+    * Loads the compressed input from the persistent cache or compresses it.
+    *
+    * @param key
+    *           the cache key.
+    * @param compression
+    *           performs the compression.
+    * @param compressed
+    *           set to <code>true</code> if the input had to be compressed.
+    * @return the compressed input.
+    * @throws Exception
+    *            if the compression fails.
+    */
+   private String load(final String key, final Callable<String> compression,
+         final boolean[] compressed) throws Exception {
+      String result = null;
+      if (this.persistentCache != null) {
+         result = this.persistentCache.get(key);
+      }
+      if (result == null) {
+         result = compression.call();
+         compressed[0] = true;
+         if (this.persistentCache != null) {
+            this.persistentCache.put(key, result);
+         }
+      }
+      return result;
+   }
+
+   /**
+    * Returns the cache key for the given compression.
+    *
+    * @param compressor
+    *           the compressor.
+    * @param options
+    *           the options used to create the compressor.
+    * @param input
+    *           the input to compress.
+    * @return the cache key.
+    */
+   protected String getKey(final Compressor compressor, final OverridablePluginOptions options,
+         final String input) {
+      return compressor.getClass().getName() + ';' + CompressorFingerprint.of(options) + ';'
+            + Hashing.sha256().hashString(input, Charsets.UTF_8);
+   }
+}
@@ -1,20 +1,51 @@
 package com.github.webapp_minifier;
 
 import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.codehaus.plexus.util.IOUtil;
+
+import com.google.common.hash.Hashing;
+import com.google.common.io.Files;
 
 /**
  * This class assists in the creation of {@link MinifiedFileInfo} instances.
+ * <p>
+ * The builder also owns the channel of the minified file being written, so that a file is opened
+ * once however many inputs are written to it. The channel is closed by {@link #closeFile()} or
+ * {@link #finishFile()}.
  * 
  * @author Lonny
  */
 public class MinifiedFileBuilder {
 
+   /** The number of hexadecimal digits of the content hash in a file name. */
+   private static final int HASH_LENGTH = 12;
+
+   /** The size of the buffer of encoded bytes. */
+   private static final int BUFFER_SIZE = 8192;
+
    /** The file count. */
    private int fileCount = 0;
 
    /** The current minified file. */
    private MinifiedFileInfo currentFile;
 
+   /** All of the minified files created by this builder, in creation order. */
+   private final List<MinifiedFileInfo> files = new ArrayList<MinifiedFileInfo>();
+
    /** The target directory for the minified files. */
    private final File targetDirectory;
 
@@ -24,6 +55,21 @@ public class MinifiedFileBuilder {
    /** The minified file extension. */
    private final String extension;
 
+   /** The way the final file names are chosen. */
+   private final BundleNaming naming;
+
+   /** The numbered final files keyed by the hash of their content. */
+   private final Map<String, File> numberedFiles = new HashMap<String, File>();
+
+   /** The minified file being written or <code>null</code>. */
+   private MinifiedFileInfo writtenFile;
+
+   /** The channel of the minified file being written or <code>null</code>. */
+   private FileChannel channel;
+
+   /** The buffer of encoded bytes, allocated by the first write. */
+   private ByteBuffer buffer;
+
    /**
     * Constructs a new instance with the given parameters.
     * 
@@ -36,6 +82,23 @@ public class MinifiedFileBuilder {
     */
    public MinifiedFileBuilder(final File targetDirectory, final String prefix,
          final String extension) {
+      this(targetDirectory, prefix, extension, BundleNaming.SEQUENTIAL);
+   }
+
+   /**
+    * Constructs a new instance with the given parameters.
+    * 
+    * @param targetDirectory
+    *           the target directory for minified files.
+    * @param prefix
+    *           the prefix for minified files.
+    * @param extension
+    *           the extension for minified files.
+    * @param naming
+    *           the way the final file names are chosen by {@link #getFinalFile(File)}.
+    */
+   public MinifiedFileBuilder(final File targetDirectory, final String prefix,
+         final String extension, final BundleNaming naming) {
       if (targetDirectory == null) {
          throw new IllegalArgumentException(
                "The target directory cannot be null");
@@ -46,9 +109,13 @@ public class MinifiedFileBuilder {
       if (extension == null) {
          throw new IllegalArgumentException("The file extension cannot be null");
       }
+      if (naming == null) {
+         throw new IllegalArgumentException("The naming cannot be null");
+      }
       this.targetDirectory = targetDirectory;
       this.prefix = prefix;
       this.extension = extension;
+      this.naming = naming;
    }
 
    /**
@@ -72,14 +139,130 @@ public class MinifiedFileBuilder {
          final File file = new File(this.targetDirectory, this.prefix + '-'
                + ++this.fileCount + '.' + this.extension);
          this.currentFile = new MinifiedFileInfo(file);
+         this.files.add(this.currentFile);
       }
       return this.currentFile;
    }
 
    /**
-    * Finishes the currently minified file.
+    * Returns all of the minified files created by this builder in the order
+    * they were created.
+    * 
+    * @return the minified files created by this builder.
+    */
+   public List<MinifiedFileInfo> getFiles() {
+      return this.files;
+   }
+
+   /**
+    * Returns the final file of a minified file written under a temporary name. With
+    * {@link BundleNaming#CONTENT_HASH} the name is derived from the content of the temporary file.
+    * Otherwise the next numbered file is returned, unless a file with the same content has already
+    * been numbered. Either way, identical files are given the same final file. A temporary file
+    * which has not been written yet is always given the next numbered file.
+    * 
+    * @param temporaryFile
+    *           the minified file written under a temporary name.
+    * @return the final file.
+    * @throws IOException
+    *            if the temporary file could not be read.
+    */
+   public File getFinalFile(final File temporaryFile) throws IOException {
+      String hash = null;
+      if (temporaryFile.isFile()) {
+         hash = Files.hash(temporaryFile, Hashing.sha256()).toString();
+         if (this.naming == BundleNaming.CONTENT_HASH) {
+            return new File(this.targetDirectory, this.prefix + '-'
+                  + hash.substring(0, HASH_LENGTH) + '.' + this.extension);
+         }
+         final File file = this.numberedFiles.get(hash);
+         if (file != null) {
+            return file;
+         }
+      }
+      final File file = getCurrentFile().getFile();
+      finishFile();
+      if (hash != null) {
+         this.numberedFiles.put(hash, file);
+      }
+      return file;
+   }
+
+   /**
+    * Writes code to a minified file. The file is created by the first write and stays open until
+    * it is closed or another file is written.
+    * 
+    * @param fileInfo
+    *           the minified file.
+    * @param code
+    *           the code to append to the file.
+    * @param charset
+    *           the encoding of the file.
+    * @throws IOException
+    *            if the file could not be created or written.
+    */
+   public void write(final MinifiedFileInfo fileInfo, final CharSequence code,
+         final Charset charset) throws IOException {
+      if (this.writtenFile != fileInfo) {
+         closeFile();
+         this.channel = new FileOutputStream(fileInfo.getFile()).getChannel();
+         this.writtenFile = fileInfo;
+      }
+      if (this.buffer == null) {
+         this.buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+      }
+      final CharsetEncoder encoder = charset.newEncoder()
+            .onMalformedInput(CodingErrorAction.REPLACE)
+            .onUnmappableCharacter(CodingErrorAction.REPLACE);
+      final CharBuffer chars = CharBuffer.wrap(code);
+      CoderResult result;
+      do {
+         result = encoder.encode(chars, this.buffer, true);
+         drainBuffer();
+      } while (result.isOverflow());
+      do {
+         result = encoder.flush(this.buffer);
+         drainBuffer();
+      } while (result.isOverflow());
+   }
+
+   /**
+    * Writes the encoded bytes to the channel and empties the buffer.
+    * 
+    * @throws IOException
+    *            if the bytes could not be written.
+    */
+   private void drainBuffer() throws IOException {
+      this.buffer.flip();
+      while (this.buffer.hasRemaining()) {
+         this.channel.write(this.buffer);
+      }
+      this.buffer.clear();
+   }
+
+   /**
+    * Closes the channel of the minified file being written, if any.
+    * 
+    * @throws IOException
+    *            if the channel could not be closed.
+    */
+   public void closeFile() throws IOException {
+      final FileChannel openChannel = this.channel;
+      this.channel = null;
+      this.writtenFile = null;
+      if (openChannel != null) {
+         openChannel.close();
+      }
+   }
+
+   /**
+    * Finishes the currently minified file. The channel of a file being written is closed quietly,
+    * {@link #closeFile()} reports errors.
     */
    public void finishFile() {
       this.currentFile = null;
+      IOUtil.close(this.channel);
+      this.channel = null;
+      this.writtenFile = null;
    }
 }
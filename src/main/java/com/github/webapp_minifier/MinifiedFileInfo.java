@@ -16,6 +16,9 @@ public class MinifiedFileInfo {
    /** The list of files minified into this file. */
    private final List<File> files = new ArrayList<File>();
 
+   /** The inputs which have not been compressed into the file yet. */
+   private final List<MinifiedFileInput> inputs = new ArrayList<MinifiedFileInput>();
+
    /** Indicates if embedded content is also included in the file. */
    private boolean embeddedIncluded;
 
@@ -44,6 +47,16 @@ public class MinifiedFileInfo {
       return this.files;
    }
 
+   /**
+    * Returns the inputs which have not been compressed into the file yet, in the order they will
+    * appear in the file.
+    * 
+    * @return the pending inputs.
+    */
+   public List<MinifiedFileInput> getInputs() {
+      return this.inputs;
+   }
+
    /**
     * Indicates if the minified file contains embedded content.
     * 
@@ -0,0 +1,154 @@
+package com.github.webapp_minifier;
+
+import java.util.List;
+
+import com.github.webapp_minifier.options.OverridablePluginOptions;
+import com.github.webapp_minifier.summary.MinifiedFileMetrics;
+import com.google.common.base.Charsets;
+import com.google.common.hash.Hashing;
+import com.googlecode.htmlcompressor.compressor.Compressor;
+
+/**
+ * This class contains a single input waiting to be compressed into a minified file.
+ *
+ * @author Lonny
+ */
+public class MinifiedFileInput {
+
+   /** The compressor to use. */
+   private final Compressor compressor;
+
+   /** The options in effect when the input was found. */
+   private final OverridablePluginOptions options;
+
+   /** The code to compress. */
+   private final String code;
+
+   /** The place to store metrics about minification. */
+   private final MinifiedFileMetrics metrics;
+
+   /** The SHA-256 hash of the code, computed when first needed. */
+   private volatile String hash;
+
+   /**
+    * Constructs a new input.
+    *
+    * @param compressor
+    *           the compressor to use.
+    * @param options
+    *           the options in effect when the input was found.
+    * @param code
+    *           the code to compress.
+    * @param metrics
+    *           the place to store metrics about minification.
+    */
+   public MinifiedFileInput(final Compressor compressor, final OverridablePluginOptions options,
+         final String code, final MinifiedFileMetrics metrics) {
+      this.compressor = compressor;
+      this.options = options;
+      this.code = code;
+      this.metrics = metrics;
+   }
+
+   /**
+    * Constructs a new input whose code has already been hashed.
+    *
+    * @param compressor
+    *           the compressor to use.
+    * @param options
+    *           the options in effect when the input was found.
+    * @param code
+    *           the code to compress.
+    * @param metrics
+    *           the place to store metrics about minification.
+    * @param hash
+    *           the SHA-256 hash of the code.
+    */
+   public MinifiedFileInput(final Compressor compressor, final OverridablePluginOptions options,
+         final String code, final MinifiedFileMetrics metrics, final String hash) {
+      this(compressor, options, code, metrics);
+      this.hash = hash;
+   }
+
+   /**
+    * Returns the compressor to use.
+    *
+    * @return the compressor.
+    */
+   public Compressor getCompressor() {
+      return this.compressor;
+   }
+
+   /**
+    * Returns the options in effect when the input was found.
+    *
+    * @return the options.
+    */
+   public OverridablePluginOptions getOptions() {
+      return this.options;
+   }
+
+   /**
+    * Returns the code to compress.
+    *
+    * @return the code.
+    */
+   public String getCode() {
+      return this.code;
+   }
+
+   /**
+    * Returns the SHA-256 hash of the code, computing it the first time.
+    *
+    * @return the hash.
+    */
+   public String getHash() {
+      if (this.hash == null) {
+         this.hash = Hashing.sha256().hashString(this.code, Charsets.UTF_8).toString();
+      }
+      return this.hash;
+   }
+
+   /**
+    * Returns the place to store metrics about minification.
+    *
+    * @return the metrics.
+    */
+   public MinifiedFileMetrics getMetrics() {
+      return this.metrics;
+   }
+
+   /**
+    * Attributes the metrics of inputs compressed together to each input in proportion to its
+    * length.
+    *
+    * @param inputs
+    *           the inputs compressed together.
+    * @param total
+    *           the metrics of the combined compression.
+    */
+   public static void attribute(final List<MinifiedFileInput> inputs,
+         final MinifiedFileMetrics total) {
+      long remainingTime = total.getTime();
+      int remainingLength = total.getMinifiedLength();
+      for (int i = 0; i < inputs.size(); i++) {
+         final MinifiedFileMetrics metrics = inputs.get(i).getMetrics();
+         final int length = inputs.get(i).getCode().length();
+         metrics.setOriginalLength(length);
+         metrics.setCacheHit(total.isCacheHit());
+         if (i == (inputs.size() - 1)) {
+            metrics.setTime(remainingTime);
+            metrics.setMinifiedLength(remainingLength);
+         } else {
+            final double share = total.getOriginalLength() == 0 ? 0
+                  : (double) length / total.getOriginalLength();
+            final long time = (long) (total.getTime() * share);
+            final int minifiedLength = (int) (total.getMinifiedLength() * share);
+            metrics.setTime(time);
+            metrics.setMinifiedLength(minifiedLength);
+            remainingTime -= time;
+            remainingLength -= minifiedLength;
+         }
+      }
+   }
+}
@@ -0,0 +1,158 @@
+package com.github.webapp_minifier;
+
+import java.io.UnsupportedEncodingException;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+
+import com.github.webapp_minifier.options.OptionsParser;
+
+/**
+ * This class quickly determines whether an HTML file contains anything the plugin would change,
+ * without decoding or parsing it. An HTML file without any <code>&lt;script</code>,
+ * <code>&lt;link</code> or <code>&lt;style</code> tag and without any inline option comment can be
+ * left untouched.
+ * <p>
+ * The bytes are compared with the ASCII encoding of the tag names, so the scan is only enabled
+ * for encodings which encode ASCII characters as single bytes. For any other encoding every HTML
+ * file is reported as needing processing.
+ *
+ * @author Lonny
+ */
+public class PageScanner {
+
+   /** The lower case names of the tags which are replaced. */
+   private static final byte[][] TAG_NAMES = { ascii("script"), ascii("link"), ascii("style") };
+
+   /** The header of the inline option comments. */
+   private static final byte[] OPTION_HEADER = ascii(OptionsParser.OPTION_HEADER);
+
+   /** Indicates that the encoding allows the bytes to be scanned. */
+   private final boolean enabled;
+
+   /**
+    * Constructs a new scanner.
+    *
+    * @param charsetName
+    *           the character set encoding name of the HTML files or <code>null</code> if it is
+    *           detected from each file.
+    */
+   public PageScanner(final String charsetName) {
+      this.enabled = isAsciiCompatible(charsetName);
+   }
+
+   /**
+    * Determines if the scanner examines the HTML files.
+    *
+    * @return <code>true</code> if HTML files may be reported as not needing processing.
+    */
+   public boolean isEnabled() {
+      return this.enabled;
+   }
+
+   /**
+    * Determines if an HTML file may need processing.
+    *
+    * @param content
+    *           the content of the HTML file.
+    * @return <code>false</code> if the HTML file can be left untouched.
+    */
+   public boolean needsProcessing(final byte[] content) {
+      if (!this.enabled) {
+         return true;
+      }
+      final int length = content.length;
+      for (int i = 0; i < length; i++) {
+         final byte b = content[i];
+         if (b == '<') {
+            for (final byte[] tagName : TAG_NAMES) {
+               if (regionMatchesIgnoreCase(content, i + 1, tagName)) {
+                  return true;
+               }
+            }
+         } else if ((b == OPTION_HEADER[0]) && regionMatches(content, i, OPTION_HEADER)) {
+            return true;
+         }
+      }
+      return false;
+   }
+
+   /**
+    * Determines if the content contains the given bytes at the given offset.
+    *
+    * @param content
+    *           the content.
+    * @param offset
+    *           the offset.
+    * @param expected
+    *           the expected bytes.
+    * @return <code>true</code> if the bytes are found.
+    */
+   private static boolean regionMatches(final byte[] content, final int offset,
+         final byte[] expected) {
+      if (offset + expected.length > content.length) {
+         return false;
+      }
+      for (int i = 0; i < expected.length; i++) {
+         if (content[offset + i] != expected[i]) {
+            return false;
+         }
+      }
+      return true;
+   }
+
+   /**
+    * Determines if the content contains the given lower case ASCII letters at the given offset,
+    * ignoring case.
+    *
+    * @param content
+    *           the content.
+    * @param offset
+    *           the offset.
+    * @param expected
+    *           the expected lower case letters.
+    * @return <code>true</code> if the letters are found.
+    */
+   private static boolean regionMatchesIgnoreCase(final byte[] content, final int offset,
+         final byte[] expected) {
+      if (offset + expected.length > content.length) {
+         return false;
+      }
+      for (int i = 0; i < expected.length; i++) {
+         if ((content[offset + i] | 0x20) != expected[i]) {
+            return false;
+         }
+      }
+      return true;
+   }
+
+   /**
+    * Determines if the encoding encodes the scanned ASCII characters as single bytes.
+    *
+    * @param charsetName
+    *           the character set encoding name.
+    * @return <code>true</code> if the bytes can be scanned.
+    */
+   private static boolean isAsciiCompatible(final String charsetName) {
+      if ((charsetName == null) || !Charset.isSupported(charsetName)) {
+         return false;
+      }
+      final Charset charset = Charset.forName(charsetName);
+      final String text = "<SCRIPTLINKSTYLEscriptlinkstyle" + OptionsParser.OPTION_HEADER;
+      return Arrays.equals(ascii(text), text.getBytes(charset));
+   }
+
+   /**
+    * Encodes ASCII text.
+    *
+    * @param text
+    *           the text.
+    * @return the bytes.
+    */
+   private static byte[] ascii(final String text) {
+      try {
+         return text.getBytes("US-ASCII");
+      } catch (final UnsupportedEncodingException e) {
+         throw new IllegalStateException(e);
+      }
+   }
+}
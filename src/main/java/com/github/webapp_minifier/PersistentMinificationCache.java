@@ -0,0 +1,220 @@
+package com.github.webapp_minifier;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.maven.plugin.logging.Log;
+import org.codehaus.plexus.util.IOUtil;
+
+import com.google.common.base.Charsets;
+import com.google.common.hash.Hashing;
+
+/**
+ * This class stores minified output in a directory so that it can be reused by later builds. Each
+ * entry is a file named by the hash of its cache key and the plugin version. Reading an entry
+ * updates its modification time, which allows the least recently used entries to be evicted once
+ * the directory grows beyond its maximum size. This class is safe to share between threads and
+ * between builds sharing the same directory.
+ *
+ * @author Lonny
+ */
+public class PersistentMinificationCache {
+
+   /** The suffix of partially written entries. */
+   private static final String TEMP_SUFFIX = ".tmp";
+
+   /** The log instance. */
+   private final Log log;
+
+   /** The cache directory. */
+   private final File directory;
+
+   /** The maximum size of the cache directory in bytes. */
+   private final long maxSize;
+
+   /** The version of the plugin which created the entries. */
+   private final String version;
+
+   /** The number of entries found. */
+   private final AtomicInteger hits = new AtomicInteger();
+
+   /** The number of entries not found. */
+   private final AtomicInteger misses = new AtomicInteger();
+
+   /**
+    * Constructs a new cache.
+    *
+    * @param log
+    *           the log instance.
+    * @param directory
+    *           the cache directory.
+    * @param maxSize
+    *           the maximum size of the cache directory in bytes.
+    * @param version
+    *           the version of the plugin. Entries created by other versions are never used.
+    */
+   public PersistentMinificationCache(final Log log, final File directory, final long maxSize,
+         final String version) {
+      if (directory == null) {
+         throw new IllegalArgumentException("The cache directory cannot be null");
+      }
+      this.log = log;
+      this.directory = directory;
+      this.maxSize = maxSize;
+      this.version = version;
+   }
+
+   /**
+    * Returns the cached value for the given key.
+    *
+    * @param key
+    *           the cache key.
+    * @return the cached value or <code>null</code> if it is not cached.
+    */
+   public String get(final String key) {
+      final File file = getFile(key);
+      if (file.isFile()) {
+         InputStream inputStream = null;
+         try {
+            inputStream = new FileInputStream(file);
+            final String value = IOUtil.toString(inputStream, Charsets.UTF_8.name());
+            file.setLastModified(System.currentTimeMillis());
+            this.hits.incrementAndGet();
+            return value;
+         } catch (final IOException e) {
+            this.log.warn("Failed to read the cache entry " + file, e);
+         } finally {
+            IOUtil.close(inputStream);
+         }
+      }
+      this.misses.incrementAndGet();
+      return null;
+   }
+
+   /**
+    * Stores the value for the given key.
+    *
+    * @param key
+    *           the cache key.
+    * @param value
+    *           the value to store.
+    */
+   public void put(final String key, final String value) {
+      final File file = getFile(key);
+      File tempFile = null;
+      OutputStream outputStream = null;
+      try {
+         if (!file.getParentFile().isDirectory() && !file.getParentFile().mkdirs()
+               && !file.getParentFile().isDirectory()) {
+            throw new IOException("Failed to create " + file.getParentFile());
+         }
+         tempFile = File.createTempFile(file.getName(), TEMP_SUFFIX, file.getParentFile());
+         outputStream = new FileOutputStream(tempFile);
+         outputStream.write(value.getBytes(Charsets.UTF_8.name()));
+         outputStream.close();
+         outputStream = null;
+         // Another build may have stored the same entry in the meantime.
+         if (!tempFile.renameTo(file) && !file.isFile()) {
+            throw new IOException("Failed to rename " + tempFile + " to " + file);
+         }
+      } catch (final IOException e) {
+         this.log.warn("Failed to write the cache entry " + file, e);
+      } finally {
+         IOUtil.close(outputStream);
+         if (tempFile != null) {
+            tempFile.delete();
+         }
+      }
+   }
+
+   /**
+    * Deletes the least recently used entries until the cache directory is no larger than its
+    * maximum size.
+    */
+   public void evict() {
+      final List<File> files = new ArrayList<File>();
+      final File[] subdirectories = this.directory.listFiles();
+      if (subdirectories == null) {
+         return;
+      }
+      long size = 0;
+      for (final File subdirectory : subdirectories) {
+         final File[] entries = subdirectory.listFiles();
+         if (entries != null) {
+            for (final File entry : entries) {
+               files.add(entry);
+               size += entry.length();
+            }
+         }
+      }
+      if (size <= this.maxSize) {
+         return;
+      }
+
+      final File[] sorted = files.toArray(new File[files.size()]);
+      final long[] lastModified = new long[sorted.length];
+      final Integer[] order = new Integer[sorted.length];
+      for (int i = 0; i < sorted.length; i++) {
+         lastModified[i] = sorted[i].lastModified();
+         order[i] = i;
+      }
+      Arrays.sort(order, new Comparator<Integer>() {
+         @Override
+         public int compare(final Integer o1, final Integer o2) {
+            final long l1 = lastModified[o1];
+            final long l2 = lastModified[o2];
+            return l1 < l2 ? -1 : (l1 == l2 ? 0 : 1);
+         }
+      });
+      int evicted = 0;
+      for (int i = 0; (i < order.length) && (size > this.maxSize); i++) {
+         final File file = sorted[order[i]];
+         final long length = file.length();
+         if (file.delete()) {
+            size -= length;
+            evicted++;
+         }
+      }
+      this.log.debug("Evicted " + evicted + " entries from " + this.directory);
+   }
+
+   /**
+    * Returns the number of entries found.
+    *
+    * @return the number of cache hits.
+    */
+   public int getHits() {
+      return this.hits.get();
+   }
+
+   /**
+    * Returns the number of entries not found.
+    *
+    * @return the number of cache misses.
+    */
+   public int getMisses() {
+      return this.misses.get();
+   }
+
+   /**
+    * Returns the file for the given key.
+    *
+    * @param key
+    *           the cache key.
+    * @return the file for the key.
+    */
+   protected File getFile(final String key) {
+      final String hash = Hashing.sha256().hashString(this.version + ';' + key, Charsets.UTF_8)
+            .toString();
+      return new File(new File(this.directory, hash.substring(0, 2)), hash);
+   }
+}
@@ -0,0 +1,154 @@
+package com.github.webapp_minifier;
+
+import java.io.File;
+import java.util.Collection;
+import java.util.Map.Entry;
+import java.util.regex.Pattern;
+
+import org.apache.maven.plugin.logging.Log;
+
+import com.github.webapp_minifier.options.PluginOptions;
+
+/**
+ * This class finds the file referenced by the URL of an external CSS or JavaScript file. A relative
+ * URL is first resolved against the base URI of its HTML file. The URL is then resolved against
+ * the target directory and then against the matching {@link PluginOptions#getOtherDirectories()
+ * other directories}.
+ * <p>
+ * When an {@link AssetIndex} is given, the candidate files are looked up in the index instead of
+ * the file system.
+ *
+ * @author Lonny
+ */
+public class SourceFileLocator {
+
+   /** Matches URLs starting with a scheme, such as <code>http:</code>. */
+   private static final Pattern SCHEME = Pattern.compile("^[a-zA-Z][a-zA-Z0-9+.-]*:");
+
+   /** The log instance. */
+   private final Log log;
+
+   /** The plugin options. */
+   private final PluginOptions options;
+
+   /** The index of the files or <code>null</code> to search the file system. */
+   private final AssetIndex index;
+
+   /**
+    * Constructs a new instance searching the file system.
+    *
+    * @param log
+    *           the log instance.
+    * @param options
+    *           the plugin options.
+    */
+   public SourceFileLocator(final Log log, final PluginOptions options) {
+      this(log, options, null);
+   }
+
+   /**
+    * Constructs a new instance.
+    *
+    * @param log
+    *           the log instance.
+    * @param options
+    *           the plugin options.
+    * @param index
+    *           the index of the files or <code>null</code> to search the file system.
+    */
+   public SourceFileLocator(final Log log, final PluginOptions options, final AssetIndex index) {
+      this.log = log;
+      this.options = options;
+      this.index = index;
+   }
+
+   /**
+    * Finds the file referenced by the URL.
+    *
+    * @param urlString
+    *           the URL of the external file.
+    * @param searched
+    *           the collection to which every file searched for is added, or <code>null</code>.
+    * @return the file or <code>null</code> if it could not be found.
+    */
+   public File locate(final String urlString, final Collection<File> searched) {
+      return locate(urlString, null, searched);
+   }
+
+   /**
+    * Finds the file referenced by the URL.
+    *
+    * @param urlString
+    *           the URL of the external file.
+    * @param baseUri
+    *           the directory of the HTML file relative to the target directory, ending with a
+    *           slash, or <code>null</code>.
+    * @param searched
+    *           the collection to which every file searched for is added, or <code>null</code>.
+    * @return the file or <code>null</code> if it could not be found.
+    */
+   public File locate(final String urlString, final String baseUri,
+         final Collection<File> searched) {
+      File sourceFile;
+      if ((baseUri != null) && (baseUri.length() > 0) && isRelative(urlString)) {
+         sourceFile = new File(new File(this.options.getTargetDirectory(), baseUri), urlString);
+         if (searched != null) {
+            searched.add(sourceFile);
+         }
+         if (exists(sourceFile)) {
+            return sourceFile;
+         }
+      }
+
+      sourceFile = new File(this.options.getTargetDirectory(), urlString);
+      if (searched != null) {
+         searched.add(sourceFile);
+      }
+      if (exists(sourceFile)) {
+         return sourceFile;
+      }
+
+      // Otherwise, search the "other directories" for a matching file.
+      for (final Entry<Object, Object> entry : this.options.getOtherDirectories().entrySet()) {
+         String key = (String) entry.getKey();
+         if (!key.endsWith("/")) {
+            key = key + '/';
+         }
+         if (urlString.startsWith(key)) {
+            this.log.debug("Searching for '" + urlString + "' using key '" + key
+                  + "' which points to '" + entry.getValue() + "'");
+            final File otherTarget = new File((String) entry.getValue());
+            sourceFile = new File(otherTarget, urlString.substring(key.length()));
+            if (searched != null) {
+               searched.add(sourceFile);
+            }
+            if (exists(sourceFile)) {
+               return sourceFile;
+            }
+         }
+      }
+      return null;
+   }
+
+   /**
+    * Determines if a URL is relative to the document containing it.
+    *
+    * @param urlString
+    *           the URL.
+    * @return <code>true</code> if the URL has no scheme and does not start with a slash.
+    */
+   private static boolean isRelative(final String urlString) {
+      return !urlString.startsWith("/") && !SCHEME.matcher(urlString).find();
+   }
+
+   /**
+    * Determines if a candidate file exists.
+    *
+    * @param file
+    *           the candidate file.
+    * @return <code>true</code> if the file exists.
+    */
+   private boolean exists(final File file) {
+      return this.index == null ? file.exists() : this.index.exists(file);
+   }
+}
@@ -16,15 +16,21 @@ package com.github.webapp_minifier;
  * limitations under the License.
  */
 
-import java.io.BufferedInputStream;
-import java.io.BufferedOutputStream;
 import java.io.File;
-import java.io.FileInputStream;
-import java.io.FileOutputStream;
 import java.io.IOException;
-import java.io.InputStream;
-import java.io.OutputStream;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Properties;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import javax.xml.bind.JAXBContext;
 import javax.xml.bind.JAXBException;
@@ -41,16 +47,25 @@ import org.apache.maven.plugins.annotations.Parameter;
 import org.apache.maven.plugins.annotations.ResolutionScope;
 import org.apache.maven.project.MavenProject;
 import org.codehaus.plexus.component.annotations.Requirement;
-import org.codehaus.plexus.util.DirectoryScanner;
-import org.codehaus.plexus.util.FileUtils;
-import org.codehaus.plexus.util.IOUtil;
 import org.codehaus.plexus.util.xml.Xpp3Dom;
 
+import com.github.webapp_minifier.compressor.ClosureJavaScriptCompressor;
+import com.github.webapp_minifier.compressor.CompressorRegistry;
+import com.github.webapp_minifier.gzip.Precompression;
+import com.github.webapp_minifier.incremental.IncrementalBuild;
+import com.github.webapp_minifier.options.CompressorFingerprint;
 import com.github.webapp_minifier.options.JavaScriptCompressor;
 import com.github.webapp_minifier.options.PluginOptions;
 import com.github.webapp_minifier.replacer.TagReplacer;
-import com.github.webapp_minifier.replacer.TagReplacerFactory;
+import com.github.webapp_minifier.site.ScriptGraphTask;
+import com.github.webapp_minifier.site.SiteCompilation;
+import com.github.webapp_minifier.site.SitePlan;
 import com.github.webapp_minifier.summary.MinificationSummary;
+import com.github.webapp_minifier.sync.DirectorySynchronizer;
+import com.github.webapp_minifier.sync.FileStager;
+import com.github.webapp_minifier.sync.SourceTree;
+import com.github.webapp_minifier.sync.StagingStrategy;
+import com.github.webapp_minifier.sync.SyncMode;
 import com.github.webapp_minifier.utils.CommonUtils;
 import com.google.javascript.jscomp.CompilationLevel;
 
@@ -59,6 +74,9 @@ import com.google.javascript.jscomp.CompilationLevel;
  */
 @Mojo(name = "minify-webapp", defaultPhase = LifecyclePhase.PREPARE_PACKAGE, threadSafe = true, requiresDependencyResolution = ResolutionScope.COMPILE)
 public class WebappMinifierMojo extends AbstractMojo implements PluginOptions {
+   /** The name of the summary file written to the minified directory. */
+   public static final String SUMMARY_FILE_NAME = "webapp-minifier-summary.xml";
+
    /** Get the Maven project. */
    @Parameter(defaultValue = "${project}", required = true, readonly = true)
    private MavenProject project;
@@ -83,13 +101,22 @@ public class WebappMinifierMojo extends AbstractMojo implements PluginOptions {
     * The HTML document parser. <br/>
     * Possible values are:
     * <ul>
-    * <li>jsoup
+    * <li><b>jsoup</b> - Parses each HTML file into a document using <a
+    * href="http://jsoup.org/">jsoup</a> and serializes the whole document again.
+    * <li><b>jsoup-patch</b> - Parses each HTML file using jsoup but copies the original bytes
+    * around the replaced tags rather than serializing the document, which keeps the HTML as
+    * authored. The document is still serialized if the replaced tags cannot be located.
+    * <li><b>streaming</b> - Tokenizes each HTML file as it is read and copies everything except the
+    * replaced tags as authored, without building a document, which suits large generated JSPs.
     * </ul>
+    * Whichever parser is used, each HTML file is read whole and its rewritten HTML is kept in
+    * memory until the final minified file names are known, so an HTML file is held in memory about
+    * twice while it is processed. The streaming parser only avoids the document tree.
     *
     * @since 1.0
     */
-   @Parameter(defaultValue = "jsoup", required = true, readonly = true)
-   private final String parser = "jsoup";
+   @Parameter(defaultValue = "jsoup", required = true)
+   private String parser = "jsoup";
 
    /**
     * TODO: Make the <code>TagReplacer</code> pluggable.
@@ -188,7 +215,8 @@ public class WebappMinifierMojo extends AbstractMojo implements PluginOptions {
    private boolean mergeEmbeddedJs;
 
    /**
-    * The character encoding used for HTML, JavScript and CSS files.
+    * The character encoding used for HTML, JavScript and CSS files. It must be supported by the
+    * JVM when HTML files are minified.
     *
     * @since 1.0
     */
@@ -326,70 +354,307 @@ public class WebappMinifierMojo extends AbstractMojo implements PluginOptions {
    @Parameter(defaultValue = "false")
    private boolean yuiJsPreserveAllSemiColons;
 
+   /**
+    * Instructs the plugin to skip minifying the HTML files themselves. When enabled, comments and
+    * redundant whitespace are removed from each HTML file after its tags have been replaced. The
+    * contents of <code>&lt;pre&gt;</code>, <code>&lt;textarea&gt;</code>,
+    * <code>&lt;script&gt;</code> and <code>&lt;style&gt;</code> tags, conditional comments and
+    * server side script blocks such as JSP scriptlets are preserved.<br/>
+    * <br/>
+    * <b>NOTE:</b> This option can be overridden inline.
+    *
+    * @since 1.0
+    */
+   @Parameter(defaultValue = "true")
+   private boolean skipHtmlMinify = true;
+
+   /**
+    * Instructs the HTML minifier to remove the spaces between tags. This may change the rendering
+    * of inline elements separated only by whitespace.<br/>
+    * <br/>
+    * <b>NOTE:</b> This option can be overridden inline.
+    *
+    * @since 1.0
+    */
+   @Parameter(defaultValue = "false")
+   private boolean htmlRemoveIntertagSpaces;
+
+   /**
+    * Instructs the HTML minifier to remove the quotes around attribute values when they are not
+    * required.<br/>
+    * <br/>
+    * <b>NOTE:</b> This option can be overridden inline.
+    *
+    * @since 1.0
+    */
+   @Parameter(defaultValue = "false")
+   private boolean htmlRemoveQuotes;
+
+   /**
+    * Instructs the HTML minifier to preserve line breaks while collapsing other whitespace.<br/>
+    * <br/>
+    * <b>NOTE:</b> This option can be overridden inline.
+    *
+    * @since 1.0
+    */
+   @Parameter(defaultValue = "false")
+   private boolean htmlPreserveLineBreaks;
+
+   /**
+    * The number of HTML files to process concurrently. Each HTML file is processed by its own
+    * worker and the results are merged in a fixed order, so the minified files and summary are the
+    * same regardless of the number of threads.
+    *
+    * @since 1.0
+    */
+   @Parameter(defaultValue = "1")
+   private int threads = 1;
+
+   /**
+    * The directory where minified CSS and JavaScript are cached between builds. Entries are keyed
+    * by the content being minified and the options affecting the compressor. The directory may be
+    * shared by several projects.
+    *
+    * @since 1.0
+    */
+   @Parameter(defaultValue = "${project.build.directory}/webapp-minifier-cache")
+   private File cacheDirectory;
+
+   /**
+    * The maximum size of the {@link #cacheDirectory} in bytes. The least recently used entries are
+    * deleted once the cache grows beyond this size.
+    *
+    * @since 1.0
+    */
+   @Parameter(defaultValue = "104857600")
+   private long cacheMaxSize = 104857600;
+
+   /**
+    * Skips reading and writing the {@link #cacheDirectory}.
+    *
+    * @since 1.0
+    */
+   @Parameter(defaultValue = "false")
+   private boolean skipCache;
+
+   /**
+    * The directory where the processed HTML and minified files of each HTML file are kept between
+    * builds. HTML files which are unchanged since the previous build, along with the CSS and
+    * JavaScript files they reference, are restored from this directory instead of being processed
+    * again.
+    *
+    * @since 1.0
+    */
+   @Parameter(defaultValue = "${project.build.directory}/webapp-minifier-incremental")
+   private File incrementalDirectory;
+
+   /**
+    * Skips the incremental build, processing every HTML file.
+    *
+    * @since 1.0
+    */
+   @Parameter(defaultValue = "false")
+   private boolean skipIncremental;
+
+   /**
+    * How the source directory is staged into the minified directory:
+    * <ul>
+    * <li><b>COPY</b> - Deletes the minified directory and copies every file.
+    * <li><b>TIMESTAMP</b> - Copies the files whose size or modification time changed and deletes
+    * the files which no longer exist in the source directory.
+    * <li><b>HASH</b> - Copies the files whose size or content changed and deletes the files which
+    * no longer exist in the source directory.
+    * </ul>
+    *
+    * @since 1.0
+    */
+   @Parameter(defaultValue = "TIMESTAMP")
+   private String syncMode = SyncMode.TIMESTAMP.name();
+
+   /**
+    * How files which are not modified by the plugin, such as images and fonts, are placed into the
+    * minified directory:
+    * <ul>
+    * <li><b>COPY</b> - Copies the files.
+    * <li><b>HARDLINK</b> - Creates hard links to the source files. Requires Java 7 or later.
+    * <li><b>REFLINK</b> - Creates copy-on-write clones of the source files using <code>cp</code>,
+    * started once per directory of changed files. Requires a file system supporting clones, such
+    * as Btrfs, XFS or APFS.
+    * </ul>
+    * The HTML files being processed are always copied. When links or clones cannot be created, for
+    * example because the directories are on different devices, the files are copied.
+    *
+    * @since 1.0
+    */
+   @Parameter(defaultValue = "COPY")
+   private String stagingStrategy = StagingStrategy.COPY.name();
+
+   /**
+    * Compiles the JavaScript of every HTML file in a single Google Closure Compiler compilation.
+    * The run of leading scripts shared by the most HTML files is compiled into a common chunk,
+    * named after the {@link #jsPrefix} with a <code>-common.js</code> suffix, which replaces those
+    * scripts in every HTML file starting with them. The remaining minified JavaScript files of
+    * those HTML files become chunks depending upon the common chunk, so that code can be shared
+    * between them, which is most effective with <code>ADVANCED_OPTIMIZATIONS</code>.<br/>
+    * <br/>
+    * <b>NOTE:</b> This option requires the <code>CLOSURE</code> {@link #jsCompressorEngineString
+    * JavaScript compressor} and disables the incremental build.
+    *
+    * @since 1.0
+    */
+   @Parameter(defaultValue = "false")
+   private boolean wholeSiteJs;
+
+   /**
+    * How the minified CSS and JavaScript files are named:
+    * <ul>
+    * <li><b>SEQUENTIAL</b> - Numbers the files in the order the HTML files are processed, for
+    * example <code>js-3.js</code>. Identical files share the number of the first.
+    * <li><b>CONTENT_HASH</b> - Names the files after a hash of their content, for example
+    * <code>js-3f9a1c0e52b7.js</code>, so that they can be cached as immutable. Identical files
+    * produced by different HTML files share a single file.
+    * </ul>
+    * Chunks of the {@link #wholeSiteJs whole site compilation} are written after the HTML files
+    * and are always numbered.
+    *
+    * @since 1.0
+    */
+   @Parameter(defaultValue = "SEQUENTIAL")
+   private String bundleNaming = BundleNaming.SEQUENTIAL.name();
+
+   /**
+    * How the processed HTML files replace the original HTML files in the minified directory:
+    * <ul>
+    * <li><b>BACKUP</b> - Keeps each original HTML file next to the processed file with a
+    * <code>.bak</code> extension.
+    * <li><b>REPLACE</b> - Writes each processed HTML file to a temporary file which atomically
+    * replaces the original. The originals are discarded unless an {@link #originalsDirectory} is
+    * given, so they are not packaged with the web application.
+    * </ul>
+    *
+    * @since 1.0
+    */
+   @Parameter(defaultValue = "BACKUP")
+   private String htmlOutput = HtmlOutput.BACKUP.name();
+
+   /**
+    * The directory keeping the original HTML files replaced by the <code>REPLACE</code>
+    * {@link #htmlOutput}, under the same relative paths. It must be outside the minified
+    * directory.
+    *
+    * @since 1.0
+    */
+   @Parameter
+   private File originalsDirectory;
+
+   /**
+    * Writes a gzip compressed copy with a <code>.gz</code> extension next to every minified CSS
+    * and JavaScript file, so that web servers can serve the precompressed files. The files are
+    * compressed concurrently by the {@link #threads} and the compressed sizes are recorded in the
+    * summary.
+    *
+    * @since 1.0
+    */
+   @Parameter(defaultValue = "false")
+   private boolean gzip;
+
+   /**
+    * Also writes a gzip compressed copy of every processed HTML file when {@link #gzip} is
+    * enabled.
+    *
+    * @since 1.0
+    */
+   @Parameter(defaultValue = "false")
+   private boolean gzipHtml;
+
+   /**
+    * The deflate compression level of the gzip compressed copies, from 1 for the fastest to 9 for
+    * the smallest.
+    *
+    * @since 1.0
+    */
+   @Parameter(defaultValue = "9")
+   private int gzipLevel = 9;
+
+   /**
+    * Enables the maximum compression mode of the gzip compressed copies for release builds. Each
+    * file is also compressed by a Zopfli style encoder, which takes around a hundred times longer
+    * than {@link #gzipLevel} to produce files a few percent smaller, and the smaller copy is
+    * written. Both compressed sizes are recorded in the summary. It may be enabled from the command
+    * line with <code>-DwebappMinifier.release</code>.
+    *
+    * @since 1.0
+    */
+   @Parameter(defaultValue = "false", property = "webappMinifier.release")
+   private boolean release;
+
+   /** The version of this plugin, used to invalidate cached results from other versions. */
+   @Parameter(defaultValue = "${plugin.version}", readonly = true)
+   private String pluginVersion;
+
    /**
     * @see org.apache.maven.plugin.AbstractMojo#execute()
     */
    @Override
    public void execute() throws MojoExecutionException {
+      // Read the manifest of the previous build before the target directory is replaced.
+      final File manifestFile = new File(this.minifiedDirectory, IncrementalBuild.MANIFEST_FILE_NAME);
+      final IncrementalBuild incrementalBuild = createIncrementalBuild(manifestFile);
+
       // Copy the source directory to the target directory.
+      final SyncMode mode;
+      final StagingStrategy strategy;
+      try {
+         mode = SyncMode.valueOf(this.syncMode.toUpperCase());
+         strategy = StagingStrategy.valueOf(this.stagingStrategy.toUpperCase());
+      } catch (final IllegalArgumentException e) {
+         throw new MojoExecutionException("Unknown sync mode " + this.syncMode
+               + " or staging strategy " + this.stagingStrategy, e);
+      }
+      if (!this.skipMinify && !this.skipHtmlMinify
+            && ((this.encoding == null) || !Charset.isSupported(this.encoding))) {
+         throw new MojoExecutionException("HTML files cannot be minified with the unsupported "
+               + "encoding " + this.encoding);
+      }
+      final SourceTree sourceTree = walkSourceDirectory();
+      final String[] fileNames = getFilesToProcess(sourceTree);
       try {
          getLog().debug("Copying " + this.sourceDirectory + " to " + this.minifiedDirectory);
-         if (this.minifiedDirectory.exists()) {
-            FileUtils.deleteDirectory(this.minifiedDirectory);
+         final DirectorySynchronizer synchronizer = new DirectorySynchronizer(getLog(), mode,
+               new FileStager(getLog(), strategy));
+         if (!this.skipMinify) {
+            synchronizer.setMaterializedFiles(Arrays.asList(fileNames));
          }
-         FileUtils.copyDirectoryStructure(this.sourceDirectory, this.minifiedDirectory);
+         synchronizer.synchronize(sourceTree, this.minifiedDirectory);
       } catch (final IOException e) {
          throw new MojoExecutionException("Failed to copy the source directory", e);
       }
 
       if (!this.skipMinify) {
          // Process each of the requested files.
-         final DefaultTagHandler tagHandler = new DefaultTagHandler(getLog(), this);
-         final TagReplacer tagReplacer = TagReplacerFactory.getReplacer(this.parser, getLog(),
-               this.encoding);
-         for (final String fileName : getFilesToProcess()) {
-            final File htmlFile = new File(this.minifiedDirectory, fileName);
-            final File minifiedHtmlFile = new File(this.minifiedDirectory, fileName + ".min");
-            final File htmlFileBackup = new File(this.minifiedDirectory, fileName + ".bak");
-
-            InputStream inputStream = null;
-            OutputStream outputStream = null;
-            try {
-               getLog().info("Processing " + htmlFile.getCanonicalFile());
-               final String baseUri = CommonUtils.getBaseUri(htmlFile, this.minifiedDirectory);
-               inputStream = new BufferedInputStream(new FileInputStream(htmlFile));
-               outputStream = new BufferedOutputStream(new FileOutputStream(minifiedHtmlFile));
-               tagHandler.start(htmlFile);
-               tagReplacer.process(inputStream, tagHandler, baseUri, outputStream);
-            } catch (final IOException e) {
-               throw new MojoExecutionException("Failed to process " + htmlFile, e);
-            } finally {
-               IOUtil.close(inputStream);
-               IOUtil.close(outputStream);
-            }
-            if (!htmlFile.renameTo(htmlFileBackup)) {
-               throw new MojoExecutionException("Failed to rename " + htmlFile.getName() + " to "
-                     + htmlFileBackup.getName());
-            }
-            if (!minifiedHtmlFile.renameTo(htmlFile)) {
-               throw new MojoExecutionException("Failed to rename " + minifiedHtmlFile.getName()
-                     + " to " + htmlFile.getName());
-            }
-         }
+         final MinificationSummary summary = processFiles(fileNames, sourceTree, incrementalBuild);
 
          // Write out the summary file.
-         final File summaryFile = new File(this.minifiedDirectory, "webapp-minifier-summary.xml");
+         final File summaryFile = new File(this.minifiedDirectory, SUMMARY_FILE_NAME);
          try {
             final JAXBContext context = JAXBContext.newInstance(MinificationSummary.class);
             final Marshaller marshaller = context.createMarshaller();
             marshaller.setProperty(Marshaller.JAXB_FORMATTED_OUTPUT, true);
             marshaller.setProperty(Marshaller.JAXB_ENCODING, getEncoding());
-            marshaller.marshal(tagHandler.getReport(), summaryFile);
-            tagHandler.getReport();
+            marshaller.marshal(summary, summaryFile);
          } catch (final JAXBException e) {
             throw new MojoExecutionException("Failed to marshal the plugin's summary to XML", e);
          }
 
+         // Write out the manifest used by the next incremental build.
+         if (incrementalBuild != null) {
+            try {
+               incrementalBuild.write(manifestFile);
+            } catch (final IOException e) {
+               throw new MojoExecutionException("Failed to write the incremental build manifest", e);
+            }
+         }
+
          // Attempt to configure the maven-war-plugin.
          if (this.project != null) {
             this.project.getProperties().setProperty("war.warName", "my-name.war");
@@ -417,26 +682,345 @@ public class WebappMinifierMojo extends AbstractMojo implements PluginOptions {
    }
 
    /**
-    * Returns the array of files to process.
+    * Walks the source directory once using a pool of {@link #threads} workers. The walk serves
+    * the synchronization of the minified directory, the matching of the HTML files to process and
+    * the index of the files they reference.
     *
-    * @return the array of files to process.
+    * @return the walked source directory.
+    * @throws MojoExecutionException
+    *            if the source directory could not be walked.
     */
-   protected String[] getFilesToProcess() {
-      final DirectoryScanner directoryScanner = new DirectoryScanner();
-      directoryScanner.setBasedir(this.minifiedDirectory);
+   protected SourceTree walkSourceDirectory() throws MojoExecutionException {
+      final ExecutorService executor = Executors.newFixedThreadPool(Math.max(1, this.threads));
+      try {
+         return SourceTree.walk(this.sourceDirectory, executor);
+      } catch (final IOException e) {
+         throw new MojoExecutionException("Failed to walk the source directory", e);
+      } finally {
+         executor.shutdownNow();
+      }
+   }
+
+   /**
+    * Processes the given HTML files in three phases using a pool of {@link #threads} workers.
+    * Every HTML file is first planned, then the distinct minified files are compressed and every
+    * planned file is written, and finally the HTML files are rewritten. The results are committed
+    * in the order of the given file names.
+    *
+    * @param fileNames
+    *           the names of the HTML files to process.
+    * @param sourceTree
+    *           the walked source directory, which the minified directory mirrors.
+    * @param incrementalBuild
+    *           the state of the previous build or <code>null</code> if every file must be
+    *           processed.
+    * @return the summary of the minification performed.
+    * @throws MojoExecutionException
+    *            if processing any of the files fails.
+    */
+   protected MinificationSummary processFiles(final String[] fileNames,
+         final SourceTree sourceTree, final IncrementalBuild incrementalBuild)
+         throws MojoExecutionException {
+      final BundleNaming naming;
+      try {
+         naming = BundleNaming.valueOf(this.bundleNaming.toUpperCase());
+      } catch (final IllegalArgumentException e) {
+         throw new MojoExecutionException("Unknown bundle naming " + this.bundleNaming, e);
+      }
+      final HtmlFileReplacer htmlFileReplacer;
+      try {
+         htmlFileReplacer = new HtmlFileReplacer(this.minifiedDirectory,
+               HtmlOutput.valueOf(this.htmlOutput.toUpperCase()), this.originalsDirectory);
+      } catch (final IllegalArgumentException e) {
+         throw new MojoExecutionException("Invalid HTML output " + this.htmlOutput
+               + " or originals directory " + this.originalsDirectory, e);
+      } catch (final IOException e) {
+         throw new MojoExecutionException("Failed to resolve the originals directory "
+               + this.originalsDirectory, e);
+      }
+      final MinificationSummary summary = new MinificationSummary();
+      final MinifiedFileBuilder cssNames = new MinifiedFileBuilder(this.minifiedDirectory,
+            this.cssPrefix, "css", naming);
+      final MinifiedFileBuilder jsNames = new MinifiedFileBuilder(this.minifiedDirectory,
+            this.jsPrefix, "js", naming);
+      final PersistentMinificationCache persistentCache = createPersistentCache();
+      final MinificationCache minificationCache = new MinificationCache(persistentCache);
+      final CompressorRegistry compressorRegistry = new CompressorRegistry();
+      final PageScanner pageScanner = new PageScanner(this.encoding);
+      final AssetIndex assetIndex;
+      try {
+         assetIndex = AssetIndex.build(this.minifiedDirectory, sourceTree,
+               getOtherDirectories());
+      } catch (final IOException e) {
+         throw new MojoExecutionException("Failed to index " + this.minifiedDirectory, e);
+      }
+      getLog().debug("Indexed " + assetIndex.size() + " files");
+      if (!pageScanner.isEnabled()) {
+         getLog().debug("Every HTML file is processed since the encoding '" + this.encoding
+               + "' cannot be scanned");
+      }
+      final Precompression precompression;
+      try {
+         precompression = this.gzip ? new Precompression(getLog(), this.minifiedDirectory,
+               this.gzipLevel, this.release) : null;
+      } catch (final IllegalArgumentException e) {
+         throw new MojoExecutionException("Invalid gzip level " + this.gzipLevel, e);
+      }
+      final Charset charset = CommonUtils.getCharset(this.encoding);
+      final List<File> writtenHtmlFiles = new ArrayList<File>();
+      int skippedHtmlFiles = 0;
+      final ExecutorService executor = Executors.newFixedThreadPool(Math.max(1, this.threads));
+      try {
+         final SitePlan sitePlan = isWholeSiteJs() ? createSitePlan(fileNames, assetIndex,
+               executor) : null;
+         final SiteCompilation siteCompilation = sitePlan == null ? null : new SiteCompilation(
+               getLog(), this, sitePlan);
+
+         // Plan every HTML file, adding each to the execution as soon as it has been planned.
+         final BundleExecution execution = new BundleExecution(getLog(), minificationCache,
+               compressorRegistry, charset);
+         final List<Future<HtmlFileResult>> futures = new ArrayList<Future<HtmlFileResult>>();
+         for (final String fileName : fileNames) {
+            final File htmlFile = new File(this.minifiedDirectory, fileName);
+            final HtmlFileTask task = new HtmlFileTask(getLog(), this, this.parser, fileName,
+                  htmlFile, minificationCache, compressorRegistry, incrementalBuild);
+            task.setSitePlan(sitePlan);
+            task.setPageScanner(pageScanner);
+            task.setAssetIndex(assetIndex);
+            task.setBundleExecution(execution);
+            futures.add(executor.submit(task));
+         }
+         final List<HtmlFileResult> results = new ArrayList<HtmlFileResult>();
+         for (int i = 0; i < fileNames.length; i++) {
+            final File htmlFile = new File(this.minifiedDirectory, fileNames[i]);
+            final HtmlFileResult result;
+            try {
+               result = futures.get(i).get();
+            } catch (final InterruptedException e) {
+               Thread.currentThread().interrupt();
+               throw new MojoExecutionException("Interrupted while processing " + htmlFile, e);
+            } catch (final ExecutionException e) {
+               throw new MojoExecutionException("Failed to process " + htmlFile, e.getCause());
+            }
+            if (!result.isSkipped()) {
+               execution.add(result);
+            }
+            results.add(result);
+         }
 
+         // Compress each distinct minified file once and write every planned file.
+         try {
+            execution.execute(executor);
+         } catch (final IOException e) {
+            throw new MojoExecutionException("Failed to write the minified files", e);
+         }
+
+         // Rewrite the HTML files in order to reference the final minified file names.
+         for (int i = 0; i < fileNames.length; i++) {
+            final File htmlFile = new File(this.minifiedDirectory, fileNames[i]);
+            final HtmlFileResult result = results.get(i);
+            if (result.isSkipped()) {
+               skippedHtmlFiles++;
+               continue;
+            }
+            try {
+               if (incrementalBuild != null) {
+                  incrementalBuild.save(fileNames[i], result);
+               }
+               result.commit(cssNames, jsNames, charset);
+               if (siteCompilation != null) {
+                  siteCompilation.addPage(result);
+               }
+            } catch (final IOException e) {
+               throw new MojoExecutionException("Failed to process " + htmlFile, e);
+            }
+            writeHtmlFile(htmlFileReplacer, fileNames[i], result.getHtml());
+            writtenHtmlFiles.add(htmlFile);
+            summary.getHtmlFiles().add(result.getSummary());
+         }
+         if (siteCompilation != null) {
+            try {
+               siteCompilation.compile(new ClosureJavaScriptCompressor(
+                     getClosureCompilationLevel()));
+            } catch (final IOException e) {
+               throw new MojoExecutionException("Failed to compile the site's JavaScript", e);
+            }
+         }
+         if (precompression != null) {
+            try {
+               precompression.compress(summary, this.gzipHtml ? writtenHtmlFiles
+                     : Collections.<File> emptyList(), executor);
+            } catch (final IOException e) {
+               throw new MojoExecutionException("Failed to compress the minified files", e);
+            }
+         }
+      } finally {
+         executor.shutdownNow();
+      }
+      summary.setSkippedHtmlFiles(skippedHtmlFiles);
+      if (skippedHtmlFiles > 0) {
+         getLog().info("Left " + skippedHtmlFiles
+               + " HTML files untouched since they contain nothing to minify");
+      }
+      if (persistentCache != null) {
+         persistentCache.evict();
+         summary.setCacheHits(persistentCache.getHits());
+         summary.setCacheMisses(persistentCache.getMisses());
+         getLog().info("Minification cache: " + persistentCache.getHits() + " hits, "
+               + persistentCache.getMisses() + " misses");
+      }
+      return summary;
+   }
+
+   /**
+    * Returns whether the JavaScript of every HTML file is compiled together.
+    *
+    * @return <code>true</code> if the site compilation is enabled.
+    */
+   protected boolean isWholeSiteJs() {
+      return this.wholeSiteJs && !this.skipJsMinify
+            && (getJsCompressorEngine() == JavaScriptCompressor.CLOSURE);
+   }
+
+   /**
+    * Plans the site compilation by collecting the leading scripts of every HTML file.
+    *
+    * @param fileNames
+    *           the names of the HTML files to process.
+    * @param assetIndex
+    *           the index of the referenced files.
+    * @param executor
+    *           the executor examining the HTML files.
+    * @return the plan of the site compilation.
+    * @throws MojoExecutionException
+    *            if examining any of the files fails.
+    */
+   protected SitePlan createSitePlan(final String[] fileNames, final AssetIndex assetIndex,
+         final ExecutorService executor) throws MojoExecutionException {
+      final List<Future<List<File>>> futures = new ArrayList<Future<List<File>>>();
+      for (final String fileName : fileNames) {
+         final ScriptGraphTask task = new ScriptGraphTask(getLog(), this, this.parser, new File(
+               this.minifiedDirectory, fileName));
+         task.setAssetIndex(assetIndex);
+         futures.add(executor.submit(task));
+      }
+      final Map<File, List<File>> leadingScripts = new LinkedHashMap<File, List<File>>();
+      for (int i = 0; i < fileNames.length; i++) {
+         final File htmlFile = new File(this.minifiedDirectory, fileNames[i]);
+         try {
+            leadingScripts.put(htmlFile, futures.get(i).get());
+         } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new MojoExecutionException("Interrupted while examining " + htmlFile, e);
+         } catch (final ExecutionException e) {
+            throw new MojoExecutionException("Failed to examine " + htmlFile, e.getCause());
+         }
+      }
+      final SitePlan plan = SitePlan.create(this.jsPrefix + "-common.js",
+            CompressorFingerprint.of(this), leadingScripts);
+      getLog().info("Sharing " + plan.getCommonScripts().size() + " common scripts");
+      return plan;
+   }
+
+   /**
+    * Creates the cache of minified results which persists between builds.
+    *
+    * @return the persistent cache or <code>null</code> if it should not be used.
+    */
+   protected PersistentMinificationCache createPersistentCache() {
+      if (this.skipCache || (this.cacheDirectory == null)) {
+         return null;
+      }
+      return new PersistentMinificationCache(getLog(), this.cacheDirectory, this.cacheMaxSize,
+            StringUtils.defaultString(this.pluginVersion, "unknown"));
+   }
+
+   /**
+    * Creates the state of the incremental build, reading the manifest of the previous build.
+    *
+    * @param manifestFile
+    *           the manifest file of the previous build.
+    * @return the incremental build or <code>null</code> if every file should be processed.
+    */
+   protected IncrementalBuild createIncrementalBuild(final File manifestFile) {
+      if (this.skipMinify || this.skipIncremental || (this.incrementalDirectory == null)
+            || isWholeSiteJs()) {
+         return null;
+      }
+      return new IncrementalBuild(getLog(), this.incrementalDirectory, this,
+            getOptionsFingerprint(), IncrementalBuild.load(manifestFile, getLog()));
+   }
+
+   /**
+    * Returns the fingerprint of the options that affect the processing of an HTML file. Options
+    * overridden inline are part of the HTML file itself and are therefore not included.
+    *
+    * @return the fingerprint.
+    */
+   protected String getOptionsFingerprint() {
+      final StringBuilder builder = new StringBuilder();
+      builder.append("version=").append(this.pluginVersion);
+      builder.append(";minifiedDirectory=").append(this.minifiedDirectory.getAbsolutePath());
+      builder.append(";parser=").append(this.parser);
+      builder.append(";encoding=").append(this.encoding);
+      builder.append(";cssPrefix=").append(this.cssPrefix);
+      builder.append(";jsPrefix=").append(this.jsPrefix);
+      builder.append(";skipCssMinify=").append(this.skipCssMinify);
+      builder.append(";skipEmbeddedCssMinify=").append(this.skipEmbeddedCssMinify);
+      builder.append(";skipJsMinify=").append(this.skipJsMinify);
+      builder.append(";skipEmbeddedJsMinify=").append(this.skipEmbeddedJsMinify);
+      builder.append(";mergeEmbeddedCss=").append(this.mergeEmbeddedCss);
+      builder.append(";mergeEmbeddedJs=").append(this.mergeEmbeddedJs);
+      builder.append(";skipHtmlMinify=").append(this.skipHtmlMinify);
+      builder.append(";htmlRemoveIntertagSpaces=").append(this.htmlRemoveIntertagSpaces);
+      builder.append(";htmlRemoveQuotes=").append(this.htmlRemoveQuotes);
+      builder.append(";htmlPreserveLineBreaks=").append(this.htmlPreserveLineBreaks);
+      builder.append(";otherDirectories=").append(
+            new TreeMap<Object, Object>(this.otherDirectories));
+      builder.append(';').append(CompressorFingerprint.of(this));
+      return builder.toString();
+   }
+
+   /**
+    * Replaces the HTML file with its processed content according to the {@link #htmlOutput}.
+    *
+    * @param htmlFileReplacer
+    *           the replacer of the HTML files.
+    * @param fileName
+    *           the name of the HTML file.
+    * @param html
+    *           the processed HTML content.
+    * @throws MojoExecutionException
+    *            if the HTML file could not be replaced.
+    */
+   protected void writeHtmlFile(final HtmlFileReplacer htmlFileReplacer, final String fileName,
+         final byte[] html) throws MojoExecutionException {
+      try {
+         htmlFileReplacer.replace(fileName, html);
+      } catch (final IOException e) {
+         throw new MojoExecutionException("Failed to process "
+               + new File(this.minifiedDirectory, fileName), e);
+      }
+   }
+
+   /**
+    * Returns the names of the HTML files within the walked directory matching the includes and
+    * excludes.
+    *
+    * @param tree
+    *           the walked directory.
+    * @return the names of the HTML files relative to the directory.
+    */
+   protected String[] getFilesToProcess(final SourceTree tree) {
       final String[] includes = CommonUtils.isEmpty(this.htmlIncludes) ? getDefaultIncludes()
             : this.htmlIncludes;
       getLog().debug("HTML Includes: " + ArrayUtils.toString(includes));
-      directoryScanner.setIncludes(includes);
 
       final String[] excludes = CommonUtils.isEmpty(this.htmlExcludes) ? getDefaultExcludes()
             : this.htmlExcludes;
       getLog().debug("HTML Excludes: " + ArrayUtils.toString(excludes));
-      directoryScanner.setExcludes(excludes);
 
-      directoryScanner.scan();
-      return directoryScanner.getIncludedFiles();
+      return tree.match(includes, excludes);
    }
 
    /**
@@ -621,6 +1205,46 @@ public class WebappMinifierMojo extends AbstractMojo implements PluginOptions {
       this.yuiJsPreserveAllSemiColons = flag;
    }
 
+   @Override
+   public boolean isSkipHtmlMinify() {
+      return this.skipHtmlMinify;
+   }
+
+   @Override
+   public void setSkipHtmlMinify(final boolean flag) {
+      this.skipHtmlMinify = flag;
+   }
+
+   @Override
+   public boolean isHtmlRemoveIntertagSpaces() {
+      return this.htmlRemoveIntertagSpaces;
+   }
+
+   @Override
+   public void setHtmlRemoveIntertagSpaces(final boolean flag) {
+      this.htmlRemoveIntertagSpaces = flag;
+   }
+
+   @Override
+   public boolean isHtmlRemoveQuotes() {
+      return this.htmlRemoveQuotes;
+   }
+
+   @Override
+   public void setHtmlRemoveQuotes(final boolean flag) {
+      this.htmlRemoveQuotes = flag;
+   }
+
+   @Override
+   public boolean isHtmlPreserveLineBreaks() {
+      return this.htmlPreserveLineBreaks;
+   }
+
+   @Override
+   public void setHtmlPreserveLineBreaks(final boolean flag) {
+      this.htmlPreserveLineBreaks = flag;
+   }
+
    @Override
    public String getCssPrefix() {
       return this.cssPrefix;
@@ -126,6 +126,20 @@ public class WebappMinifierReportMojo extends AbstractMavenReport {
       sink.sectionTitle1_();
       sink.text(getDescription(locale));
 
+      if (summary.getSkippedHtmlFiles() > 0) {
+         sink.paragraph();
+         sink.text(summary.getSkippedHtmlFiles()
+               + " HTML files contained nothing to minify and were left untouched.");
+         sink.paragraph_();
+      }
+
+      if ((summary.getCacheHits() > 0) || (summary.getCacheMisses() > 0)) {
+         sink.paragraph();
+         sink.text("Minification cache: " + summary.getCacheHits() + " hits, "
+               + summary.getCacheMisses() + " misses.");
+         sink.paragraph_();
+      }
+
       for (final HtmlFileSummary htmlFile : summary.getHtmlFiles()) {
 
          final Map<String, MutableInt> destCounts = getDestinationCounts(htmlFile
@@ -135,6 +149,25 @@ public class WebappMinifierReportMojo extends AbstractMavenReport {
          sink.text(htmlFile.getFile().getName());
          sink.sectionTitle2_();
 
+         if (htmlFile.isHtmlMinified()) {
+            final int originalLength = htmlFile.getHtmlOriginalLength();
+            final int minifiedLength = htmlFile.getHtmlMinifiedLength();
+            sink.paragraph();
+            sink.text("HTML minified from " + this.lengthFormatter.format(originalLength)
+                  + " to " + this.lengthFormatter.format(minifiedLength) + " ("
+                  + this.percentFormatter.format((originalLength - minifiedLength)
+                        / (float) originalLength) + ") in "
+                  + this.timeFormatter.format(htmlFile.getHtmlTime() / 1000000.0) + ".");
+            sink.paragraph_();
+         }
+
+         boolean gzipped = false;
+         boolean maxGzipped = false;
+         for (final MinifiedFileMetrics metrics : htmlFile.getMinifiedFiles()) {
+            gzipped |= metrics.getGzipLength() > 0;
+            maxGzipped |= metrics.getMaxGzipLength() > 0;
+         }
+
          // The results table.
          sink.table();
          sink.tableRows(null, true);
@@ -159,6 +192,16 @@ public class WebappMinifierReportMojo extends AbstractMavenReport {
          sink.tableHeaderCell();
          sink.text("% Minified");
          sink.tableHeaderCell_();
+         if (gzipped) {
+            sink.tableHeaderCell();
+            sink.text("Gzipped Size");
+            sink.tableHeaderCell_();
+         }
+         if (maxGzipped) {
+            sink.tableHeaderCell();
+            sink.text("Max Gzipped Size");
+            sink.tableHeaderCell_();
+         }
          sink.tableHeaderCell();
          sink.text("Time");
          sink.tableHeaderCell_();
@@ -167,6 +210,8 @@ public class WebappMinifierReportMojo extends AbstractMavenReport {
          final Set<String> minifiers = new TreeSet<String>();
          int totalOriginalLength = 0;
          int totalMinifiedLength = 0;
+         int totalGzipLength = 0;
+         int totalMaxGzipLength = 0;
          double totalTime = 0;
          final SinkEventAttributes centeredAttributes = new SinkEventAttributeSet();
          centeredAttributes.addAttribute(SinkEventAttributes.ALIGN, "center");
@@ -219,10 +264,31 @@ public class WebappMinifierReportMojo extends AbstractMavenReport {
                   / (float) originalLength));
             sink.tableCell_();
 
-            final double time = metrics.getTime() / 1000000.0;
-            totalTime += time;
+            if (gzipped) {
+               final int gzipLength = metrics.getGzipLength();
+               totalGzipLength += gzipLength;
+               sink.tableCell(rightAttributes);
+               sink.text(gzipLength > 0 ? this.lengthFormatter.format(gzipLength) : "");
+               sink.tableCell_();
+            }
+
+            if (maxGzipped) {
+               final int maxGzipLength = metrics.getMaxGzipLength();
+               totalMaxGzipLength += maxGzipLength;
+               sink.tableCell(rightAttributes);
+               sink.text(maxGzipLength > 0 ? this.lengthFormatter.format(maxGzipLength) : "");
+               sink.tableCell_();
+            }
+
+            // Reused results are not included in the total minification time.
             sink.tableCell(rightAttributes);
-            sink.text(this.timeFormatter.format(time));
+            if (metrics.isCacheHit()) {
+               sink.text("Reused");
+            } else {
+               final double time = metrics.getTime() / 1000000.0;
+               totalTime += time;
+               sink.text(this.timeFormatter.format(time));
+            }
             sink.tableCell_();
 
             sink.tableRow_();
@@ -256,6 +322,18 @@ public class WebappMinifierReportMojo extends AbstractMavenReport {
                   / (float) totalOriginalLength));
             sink.tableCell_();
 
+            if (gzipped) {
+               sink.tableCell(rightAttributes);
+               sink.text(this.lengthFormatter.format(totalGzipLength));
+               sink.tableCell_();
+            }
+
+            if (maxGzipped) {
+               sink.tableCell(rightAttributes);
+               sink.text(this.lengthFormatter.format(totalMaxGzipLength));
+               sink.tableCell_();
+            }
+
             sink.tableCell(rightAttributes);
             sink.text(this.timeFormatter.format(totalTime));
             sink.tableCell_();
@@ -320,7 +398,8 @@ public class WebappMinifierReportMojo extends AbstractMavenReport {
       try {
          final JAXBContext context = JAXBContext.newInstance(MinificationSummary.class);
          final Unmarshaller unmarshaller = context.createUnmarshaller();
-         final File summaryFile = new File(this.minifiedDirectory, "webapp-minifier-summary.xml");
+         final File summaryFile = new File(this.minifiedDirectory,
+               WebappMinifierMojo.SUMMARY_FILE_NAME);
          if (summaryFile.exists()) {
             summary = (MinificationSummary) unmarshaller.unmarshal(summaryFile);
          } else {
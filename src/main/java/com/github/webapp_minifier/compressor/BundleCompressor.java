@@ -0,0 +1,22 @@
+package com.github.webapp_minifier.compressor;
+
+import java.util.List;
+
+import com.googlecode.htmlcompressor.compressor.Compressor;
+
+/**
+ * A {@link Compressor} which can compress several sources that are written to the same minified
+ * file in a single pass.
+ *
+ * @author Lonny
+ */
+public interface BundleCompressor extends Compressor {
+   /**
+    * Compresses the sources together.
+    *
+    * @param sources
+    *           the sources in the order they appear in the minified file.
+    * @return the compressed sources.
+    */
+   String compressBundle(List<String> sources);
+}
@@ -16,9 +16,9 @@ package com.github.webapp_minifier.compressor;
 
 import java.io.IOException;
 import java.io.InputStream;
-import java.io.StringWriter;
 import java.nio.charset.Charset;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 import java.util.logging.Level;
 import java.util.zip.ZipEntry;
@@ -29,6 +29,7 @@ import com.google.common.io.ByteStreams;
 import com.google.javascript.jscomp.CompilationLevel;
 import com.google.javascript.jscomp.Compiler;
 import com.google.javascript.jscomp.CompilerOptions;
+import com.google.javascript.jscomp.JSModule;
 import com.google.javascript.jscomp.Result;
 import com.google.javascript.jscomp.SourceFile;
 import com.google.javascript.jscomp.WarningLevel;
@@ -41,14 +42,15 @@ import com.googlecode.htmlcompressor.compressor.HtmlCompressor;
  * {@link HtmlCompressor} for inline JavaScript compression.
  * <p>
  * <b>NOTE:</b> This class has been modified from the original to work with newer versions of the
- * Closure Compiler.
+ * Closure Compiler. The default externs are read once per JVM and shared by every instance, and
+ * the compilation and warning levels are only applied to the compiler options when they change.
  *
  * @author <a href="mailto:serg472@gmail.com">Sergiy Kovalchuk</a>
  *
  * @see HtmlCompressor#setJavaScriptCompressor(Compressor)
  * @see <a href="http://code.google.com/closure/compiler/">Google Closure Compiler</a>
  */
-public class ClosureJavaScriptCompressor implements Compressor {
+public class ClosureJavaScriptCompressor implements BundleCompressor {
 
    public static final String COMPILATION_LEVEL_SIMPLE = "simple";
    public static final String COMPILATION_LEVEL_ADVANCED = "advanced";
@@ -61,6 +63,10 @@ public class ClosureJavaScriptCompressor implements Compressor {
    private WarningLevel warningLevel = WarningLevel.DEFAULT;
    private boolean customExternsOnly = false;
    private List<SourceFile> externs = null;
+   private boolean optionsApplied = false;
+
+   // default externs, read once per JVM
+   private static volatile List<SourceFile> defaultExterns = null;
 
    public ClosureJavaScriptCompressor() {
    }
@@ -71,23 +77,122 @@ public class ClosureJavaScriptCompressor implements Compressor {
 
    @Override
    public String compress(final String source) {
+      final String result = compile(Collections.singletonList(SourceFile.fromCode("source.js",
+            source)));
+      return result == null ? source : result;
+   }
 
-      final StringWriter writer = new StringWriter();
-
-      // prepare source
+   /**
+    * Compiles the sources together as separate inputs of a single compilation. If the compilation
+    * fails, each source is compressed on its own so that only the sources which cannot be compiled
+    * are left as they are.
+    *
+    * @param sources
+    *           the sources in the order they appear in the minified file.
+    * @return the compiled sources.
+    */
+   @Override
+   public String compressBundle(final List<String> sources) {
       final List<SourceFile> input = new ArrayList<SourceFile>();
-      input.add(SourceFile.fromCode("source.js", source));
+      for (int i = 0; i < sources.size(); i++) {
+         input.add(SourceFile.fromCode("source-" + (i + 1) + ".js", sources.get(i)));
+      }
+      String result = compile(input);
+      if (result == null) {
+         final StringBuilder builder = new StringBuilder();
+         for (final String source : sources) {
+            builder.append(compress(source));
+         }
+         result = builder.toString();
+      }
+      return result;
+   }
+
+   /**
+    * Compiles the modules together in a single compilation so that code can be shared and moved
+    * between them. Module <code>i</code> is loaded after the module at
+    * <code>dependencies[i]</code>, or has no dependency when that is negative, and must appear
+    * after it in the list.
+    *
+    * @param modules
+    *           the sources of each module.
+    * @param dependencies
+    *           the index of the module each module depends on or <code>-1</code>.
+    * @return the compiled code of each module or <code>null</code> if the compilation failed.
+    */
+   public List<String> compressModules(final List<List<String>> modules, final int[] dependencies) {
+      final List<JSModule> jsModules = new ArrayList<JSModule>();
+      for (int i = 0; i < modules.size(); i++) {
+         final JSModule module = new JSModule("module-" + i);
+         final List<String> sources = modules.get(i);
+         for (int j = 0; j < sources.size(); j++) {
+            module.add(SourceFile.fromCode("module-" + i + "-" + (j + 1) + ".js", sources.get(j)));
+         }
+         if (sources.isEmpty()) {
+            module.add(SourceFile.fromCode("module-" + i + ".js", ""));
+         }
+         if (dependencies[i] >= 0) {
+            module.addDependency(jsModules.get(dependencies[i]));
+         }
+         jsModules.add(module);
+      }
+
+      final Compiler compiler = createCompiler();
+      final Result result = compiler.compileModules(getExternsList(), jsModules,
+            this.compilerOptions);
+      if (!result.success) {
+         return null;
+      }
+      final List<String> output = new ArrayList<String>();
+      for (final JSModule module : jsModules) {
+         output.add(compiler.toSource(module));
+      }
+      return output;
+   }
+
+   /**
+    * Compiles the inputs.
+    *
+    * @param input
+    *           the inputs.
+    * @return the compiled code or <code>null</code> if the compilation failed.
+    */
+   private String compile(final List<SourceFile> input) {
+      final Compiler compiler = createCompiler();
+      final Result result = compiler.compile(getExternsList(), input, this.compilerOptions);
+      return result.success ? compiler.toSource() : null;
+   }
+
+   /**
+    * Creates a compiler and applies the compilation and warning levels to the options.
+    *
+    * @return the new compiler.
+    */
+   private Compiler createCompiler() {
+      Compiler.setLoggingLevel(this.loggingLevel);
+
+      final Compiler compiler = new Compiler();
+      compiler.disableThreads();
 
-      // prepare externs
-      List<SourceFile> externsList = new ArrayList<SourceFile>();
+      if (!this.optionsApplied) {
+         this.compilationLevel.setOptionsForCompilationLevel(this.compilerOptions);
+         this.warningLevel.setOptionsForWarningLevel(this.compilerOptions);
+         this.optionsApplied = true;
+      }
+      return compiler;
+   }
+
+   /**
+    * Returns the externs for the compilation level.
+    *
+    * @return the externs.
+    */
+   private List<SourceFile> getExternsList() {
+      final List<SourceFile> externsList = new ArrayList<SourceFile>();
       if (this.compilationLevel.equals(CompilationLevel.ADVANCED_OPTIMIZATIONS)) {
          // default externs
          if (!this.customExternsOnly) {
-            try {
-               externsList = getDefaultExterns();
-            } catch (final IOException e) {
-               e.printStackTrace();
-            }
+            externsList.addAll(getDefaultExterns());
          }
          // add user defined externs
          if (this.externs != null) {
@@ -103,39 +208,55 @@ public class ClosureJavaScriptCompressor implements Compressor {
          // empty externs
          externsList.add(SourceFile.fromCode("externs.js", ""));
       }
+      return externsList;
+   }
 
-      Compiler.setLoggingLevel(this.loggingLevel);
-
-      final Compiler compiler = new Compiler();
-      compiler.disableThreads();
-
-      this.compilationLevel.setOptionsForCompilationLevel(this.compilerOptions);
-      this.warningLevel.setOptionsForWarningLevel(this.compilerOptions);
-
-      final Result result = compiler.compile(externsList, input, this.compilerOptions);
-
-      if (result.success) {
-         writer.write(compiler.toSource());
-      } else {
-         writer.write(source);
+   /**
+    * Returns the default externs defined inside Closure's jar. They are read the first time they
+    * are needed and shared by every instance afterwards. A failed read is not cached, so the next
+    * call reads them again.
+    *
+    * @return the unmodifiable list of default externs.
+    * @throws IllegalStateException
+    *            if the default externs could not be read.
+    */
+   public static List<SourceFile> getDefaultExterns() {
+      List<SourceFile> externs = defaultExterns;
+      if (externs == null) {
+         synchronized (ClosureJavaScriptCompressor.class) {
+            externs = defaultExterns;
+            if (externs == null) {
+               externs = readExterns("/externs.zip");
+               defaultExterns = externs;
+            }
+         }
       }
-
-      return writer.toString();
-
+      return externs;
    }
 
-   // read default externs from closure.jar
-   private List<SourceFile> getDefaultExterns() throws IOException {
-      final InputStream input = ClosureJavaScriptCompressor.class
-            .getResourceAsStream("/externs.zip");
-      final ZipInputStream zip = new ZipInputStream(input);
-      final List<SourceFile> externs = Lists.newLinkedList();
-      for (ZipEntry entry = null; (entry = zip.getNextEntry()) != null;) {
-         final InputStream entryStream = ByteStreams.limit(zip, entry.getSize());
-         externs.add(SourceFile.fromInputStream(entry.getName(), entryStream,
-               Charset.forName("UTF-8")));
+   // read externs from a zip resource such as the one of closure.jar
+   static List<SourceFile> readExterns(final String resource) {
+      final InputStream input = ClosureJavaScriptCompressor.class.getResourceAsStream(resource);
+      if (input == null) {
+         throw new IllegalStateException("Failed to find the externs " + resource);
       }
-      return externs;
+      final List<SourceFile> externs = Lists.newArrayList();
+      try {
+         final ZipInputStream zip = new ZipInputStream(input);
+         try {
+            for (ZipEntry entry = null; (entry = zip.getNextEntry()) != null;) {
+               final InputStream entryStream = ByteStreams.limit(zip, entry.getSize());
+               // Read the code now so that it is not read again by every compilation.
+               externs.add(SourceFile.fromCode(entry.getName(), new String(
+                     ByteStreams.toByteArray(entryStream), Charset.forName("UTF-8"))));
+            }
+         } finally {
+            zip.close();
+         }
+      } catch (final IOException e) {
+         throw new IllegalStateException("Failed to read the externs " + resource, e);
+      }
+      return Collections.unmodifiableList(externs);
    }
 
    /**
@@ -173,6 +294,7 @@ public class ClosureJavaScriptCompressor implements Compressor {
     */
    public void setCompilationLevel(final CompilationLevel compilationLevel) {
       this.compilationLevel = compilationLevel;
+      this.optionsApplied = false;
    }
 
    /**
@@ -199,6 +321,7 @@ public class ClosureJavaScriptCompressor implements Compressor {
     */
    public void setCompilerOptions(final CompilerOptions compilerOptions) {
       this.compilerOptions = compilerOptions;
+      this.optionsApplied = false;
    }
 
    /**
@@ -279,6 +402,7 @@ public class ClosureJavaScriptCompressor implements Compressor {
     */
    public void setWarningLevel(final WarningLevel warningLevel) {
       this.warningLevel = warningLevel;
+      this.optionsApplied = false;
    }
 
    /**
@@ -0,0 +1,184 @@
+package com.github.webapp_minifier.compressor;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+import com.github.webapp_minifier.options.CompressorFingerprint;
+import com.github.webapp_minifier.options.OverridablePluginOptions;
+import com.googlecode.htmlcompressor.compressor.Compressor;
+import com.googlecode.htmlcompressor.compressor.HtmlCompressor;
+import com.googlecode.htmlcompressor.compressor.YuiCssCompressor;
+import com.googlecode.htmlcompressor.compressor.YuiJavaScriptCompressor;
+
+/**
+ * This class hands out reusable compressors keyed by the options which affect them, so that
+ * switching options inline does not construct and warm up new compressors. The compressors are
+ * not thread safe, so each thread is given its own instances. A registry may therefore be shared
+ * by every thread processing HTML files, but a compressor must not be passed to another thread.
+ *
+ * @author Lonny
+ */
+public class CompressorRegistry {
+
+   /** The compressors of the current thread keyed by their options. */
+   private final ThreadLocal<Map<String, Compressor>> compressors = new ThreadLocal<Map<String, Compressor>>() {
+      @Override
+      protected Map<String, Compressor> initialValue() {
+         return new HashMap<String, Compressor>();
+      }
+   };
+
+   /**
+    * Returns the CSS compressor for the given options.
+    *
+    * @param options
+    *           the plugin options.
+    * @return the CSS compressor.
+    */
+   public Compressor getCssCompressor(final OverridablePluginOptions options) {
+      final String key = "css;yuiCssLineBreak=" + options.getYuiCssLineBreak();
+      final Map<String, Compressor> threadCompressors = this.compressors.get();
+      Compressor compressor = threadCompressors.get(key);
+      if (compressor == null) {
+         compressor = createYuiCssCompressor(options);
+         threadCompressors.put(key, compressor);
+      }
+      return compressor;
+   }
+
+   /**
+    * Returns the JavaScript compressor for the given options.
+    *
+    * @param options
+    *           the plugin options.
+    * @return the JavaScript compressor.
+    */
+   public Compressor getJavaScriptCompressor(final OverridablePluginOptions options) {
+      final String key = "js;" + CompressorFingerprint.of(options);
+      final Map<String, Compressor> threadCompressors = this.compressors.get();
+      Compressor compressor = threadCompressors.get(key);
+      if (compressor == null) {
+         switch (options.getJsCompressorEngine()) {
+         case CLOSURE:
+            compressor = createClosureJsCompressor(options);
+            break;
+         case YUI:
+         default:
+            compressor = createYuiJsCompressor(options);
+         }
+         threadCompressors.put(key, compressor);
+      }
+      return compressor;
+   }
+
+   /**
+    * Returns the compressor of the current thread equivalent to a compressor handed out to
+    * another thread, so that code planned by one thread may be compressed by another. Compressors
+    * which were not handed out by a registry are returned as is.
+    *
+    * @param compressor
+    *           the compressor handed out to another thread.
+    * @param options
+    *           the plugin options for which the compressor was handed out.
+    * @return the equivalent compressor.
+    */
+   public Compressor getEquivalentCompressor(final Compressor compressor,
+         final OverridablePluginOptions options) {
+      if (compressor instanceof YuiCssCompressor) {
+         return getCssCompressor(options);
+      }
+      if ((compressor instanceof ClosureJavaScriptCompressor)
+            || (compressor instanceof YuiJavaScriptCompressor)) {
+         return getJavaScriptCompressor(options);
+      }
+      return compressor;
+   }
+
+   /**
+    * Returns the HTML compressor for the given options.
+    *
+    * @param options
+    *           the plugin options.
+    * @return the HTML compressor.
+    */
+   public Compressor getHtmlCompressor(final OverridablePluginOptions options) {
+      final String key = "html;htmlRemoveIntertagSpaces=" + options.isHtmlRemoveIntertagSpaces()
+            + ";htmlRemoveQuotes=" + options.isHtmlRemoveQuotes() + ";htmlPreserveLineBreaks="
+            + options.isHtmlPreserveLineBreaks();
+      final Map<String, Compressor> threadCompressors = this.compressors.get();
+      Compressor compressor = threadCompressors.get(key);
+      if (compressor == null) {
+         compressor = createHtmlCompressor(options);
+         threadCompressors.put(key, compressor);
+      }
+      return compressor;
+   }
+
+   /**
+    * Constructs a new HTML Compressor using the requested configuration. Comments and multiple
+    * spaces are removed, while the embedded CSS and JavaScript are left to the other compressors
+    * and server side script blocks are preserved.
+    *
+    * @param options
+    *           the plugin options.
+    * @return the new HTML Compressor.
+    */
+   protected HtmlCompressor createHtmlCompressor(final OverridablePluginOptions options) {
+      final HtmlCompressor compressor = new HtmlCompressor();
+      compressor.setRemoveComments(true);
+      compressor.setRemoveMultiSpaces(true);
+      compressor.setRemoveIntertagSpaces(options.isHtmlRemoveIntertagSpaces());
+      compressor.setRemoveQuotes(options.isHtmlRemoveQuotes());
+      compressor.setPreserveLineBreaks(options.isHtmlPreserveLineBreaks());
+      compressor.setCompressCss(false);
+      compressor.setCompressJavaScript(false);
+      compressor.setPreservePatterns(Collections.singletonList(
+            HtmlCompressor.SERVER_SCRIPT_TAG_PATTERN));
+      return compressor;
+   }
+
+   /**
+    * Constructs a new YUI Compressor using the requested configuration.
+    *
+    * @param options
+    *           the plugin options.
+    * @return the new YUI Compressor.
+    */
+   protected YuiCssCompressor createYuiCssCompressor(final OverridablePluginOptions options) {
+      final YuiCssCompressor compressor = new YuiCssCompressor();
+      compressor.setLineBreak(options.getYuiCssLineBreak());
+      return compressor;
+   }
+
+   /**
+    * Constructs a new Google Closure Compressor using the requested configuration.
+    *
+    * @param options
+    *           the plugin options.
+    * @return the new Google Closure Compressor.
+    */
+   protected ClosureJavaScriptCompressor createClosureJsCompressor(
+         final OverridablePluginOptions options) {
+      final ClosureJavaScriptCompressor closureJavaScriptCompressor = new ClosureJavaScriptCompressor(
+            options.getClosureCompilationLevel());
+      // TODO: Allow overriding of Closure compiler options.
+      return closureJavaScriptCompressor;
+   }
+
+   /**
+    * Constructs a new YUI JavaScript Compressor using the requested configuration.
+    *
+    * @param options
+    *           the plugin options.
+    * @return the new YUI Compressor.
+    */
+   protected YuiJavaScriptCompressor createYuiJsCompressor(final OverridablePluginOptions options) {
+      final YuiJavaScriptCompressor compressor = new YuiJavaScriptCompressor();
+      compressor.setDisableOptimizations(options.isYuiJsDisableOptimizations());
+      compressor.setLineBreak(options.getYuiJsLineBreak());
+      compressor.setNoMunge(options.isYuiJsNoMunge());
+      compressor.setPreserveAllSemiColons(options.isYuiJsPreserveAllSemiColons());
+      return compressor;
+   }
+}
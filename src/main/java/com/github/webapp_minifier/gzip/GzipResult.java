@@ -0,0 +1,55 @@
+package com.github.webapp_minifier.gzip;
+
+/**
+ * This class holds the compressed lengths of a file compressed by a {@link GzipTask}.
+ *
+ * @author Lonny
+ */
+public final class GzipResult {
+
+   /** The length compressed by the deflate compression level. */
+   private final long length;
+
+   /** The length compressed by the maximum compression mode or 0 if it was not used. */
+   private final long maximumLength;
+
+   /**
+    * Constructs a new result.
+    *
+    * @param length
+    *           the length compressed by the deflate compression level.
+    * @param maximumLength
+    *           the length compressed by the maximum compression mode or 0 if it was not used.
+    */
+   public GzipResult(final long length, final long maximumLength) {
+      this.length = length;
+      this.maximumLength = maximumLength;
+   }
+
+   /**
+    * Returns the length compressed by the deflate compression level.
+    *
+    * @return the compressed length.
+    */
+   public long getLength() {
+      return this.length;
+   }
+
+   /**
+    * Returns the length compressed by the maximum compression mode.
+    *
+    * @return the compressed length or 0 if the mode was not used.
+    */
+   public long getMaximumLength() {
+      return this.maximumLength;
+   }
+
+   /**
+    * Returns the length of the written compressed copy, the shorter of the two lengths.
+    *
+    * @return the written length.
+    */
+   public long getWrittenLength() {
+      return this.maximumLength > 0 ? Math.min(this.length, this.maximumLength) : this.length;
+   }
+}
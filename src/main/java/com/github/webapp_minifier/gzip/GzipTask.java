@@ -0,0 +1,183 @@
+package com.github.webapp_minifier.gzip;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.concurrent.Callable;
+import java.util.zip.CRC32;
+import java.util.zip.GZIPOutputStream;
+
+import org.codehaus.plexus.util.IOUtil;
+
+import com.google.common.io.Files;
+
+/**
+ * This class writes a gzip compressed copy of a single file next to it, with a <code>.gz</code>
+ * extension, so that web servers can serve the precompressed file.
+ * <p>
+ * In the maximum compression mode the file is also compressed by an {@link OptimalDeflater},
+ * which takes far longer than the deflate compression level, and the shorter of the two results is
+ * written.
+ *
+ * @author Lonny
+ */
+public class GzipTask implements Callable<GzipResult> {
+
+   /** The extension appended to the names of the compressed files. */
+   public static final String EXTENSION = ".gz";
+
+   /** The number of times the maximum compression mode parses the file. */
+   private static final int MAXIMUM_ITERATIONS = 15;
+
+   /** The gzip header without a file name, modification time or extra flags. */
+   private static final byte[] HEADER = { 0x1f, (byte) 0x8b, 8, 0, 0, 0, 0, 0, 0, 0 };
+
+   /** The size of the buffers. */
+   private static final int BUFFER_SIZE = 8192;
+
+   /** The file to compress. */
+   private final File file;
+
+   /** The deflate compression level. */
+   private final int level;
+
+   /** Indicates that the maximum compression mode is used. */
+   private final boolean maximum;
+
+   /**
+    * A gzip output stream with a configurable compression level.
+    */
+   private static final class LevelGzipOutputStream extends GZIPOutputStream {
+      /**
+       * Constructs a new stream.
+       *
+       * @param out
+       *           the output stream.
+       * @param level
+       *           the deflate compression level.
+       * @throws IOException
+       *            if the header could not be written.
+       */
+      public LevelGzipOutputStream(final OutputStream out, final int level) throws IOException {
+         super(out, BUFFER_SIZE);
+         this.def.setLevel(level);
+      }
+   }
+
+   /**
+    * Constructs a new task.
+    *
+    * @param file
+    *           the file to compress.
+    * @param level
+    *           the deflate compression level, from 1 for the fastest to 9 for the smallest.
+    */
+   public GzipTask(final File file, final int level) {
+      this(file, level, false);
+   }
+
+   /**
+    * Constructs a new task.
+    *
+    * @param file
+    *           the file to compress.
+    * @param level
+    *           the deflate compression level, from 1 for the fastest to 9 for the smallest.
+    * @param maximum
+    *           <code>true</code> to also use the maximum compression mode.
+    */
+   public GzipTask(final File file, final int level, final boolean maximum) {
+      this.file = file;
+      this.level = level;
+      this.maximum = maximum;
+   }
+
+   /**
+    * Returns the compressed copy of a file.
+    *
+    * @param file
+    *           the file.
+    * @return the compressed copy.
+    */
+   public static File getCompressedFile(final File file) {
+      return new File(file.getPath() + EXTENSION);
+   }
+
+   /**
+    * Compresses the file.
+    *
+    * @return the compressed lengths.
+    * @throws IOException
+    *            if the file could not be read or the compressed copy could not be written.
+    */
+   @Override
+   public GzipResult call() throws IOException {
+      final File compressedFile = getCompressedFile(this.file);
+      if (this.maximum) {
+         final byte[] content = Files.toByteArray(this.file);
+         final ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+         final OutputStream outputStream = new LevelGzipOutputStream(compressed, this.level);
+         outputStream.write(content);
+         outputStream.close();
+         final byte[] maximumCompressed = compressMaximum(content);
+         Files.write(maximumCompressed.length < compressed.size() ? maximumCompressed
+               : compressed.toByteArray(), compressedFile);
+         return new GzipResult(compressed.size(), maximumCompressed.length);
+      }
+
+      InputStream inputStream = null;
+      OutputStream outputStream = null;
+      try {
+         inputStream = new BufferedInputStream(new FileInputStream(this.file), BUFFER_SIZE);
+         outputStream = new LevelGzipOutputStream(new FileOutputStream(compressedFile),
+               this.level);
+         IOUtil.copy(inputStream, outputStream, BUFFER_SIZE);
+         outputStream.close();
+         outputStream = null;
+      } finally {
+         IOUtil.close(inputStream);
+         IOUtil.close(outputStream);
+      }
+      return new GzipResult(compressedFile.length(), 0);
+   }
+
+   /**
+    * Compresses content into the gzip format in the maximum compression mode.
+    *
+    * @param content
+    *           the content.
+    * @return the gzip compressed content.
+    */
+   static byte[] compressMaximum(final byte[] content) {
+      final byte[] deflated = OptimalDeflater.deflate(content, MAXIMUM_ITERATIONS);
+      final CRC32 crc = new CRC32();
+      crc.update(content);
+      final byte[] compressed = new byte[HEADER.length + deflated.length + 8];
+      System.arraycopy(HEADER, 0, compressed, 0, HEADER.length);
+      System.arraycopy(deflated, 0, compressed, HEADER.length, deflated.length);
+      writeInt(compressed, HEADER.length + deflated.length, (int) crc.getValue());
+      writeInt(compressed, HEADER.length + deflated.length + 4, content.length);
+      return compressed;
+   }
+
+   /**
+    * Writes a little endian integer, as used by the gzip trailer.
+    *
+    * @param bytes
+    *           the output.
+    * @param offset
+    *           the offset of the integer.
+    * @param value
+    *           the integer.
+    */
+   private static void writeInt(final byte[] bytes, final int offset, final int value) {
+      for (int i = 0; i < 4; i++) {
+         bytes[offset + i] = (byte) (value >>> (8 * i));
+      }
+   }
+}
@@ -0,0 +1,723 @@
+package com.github.webapp_minifier.gzip;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.PriorityQueue;
+
+/**
+ * This class compresses data into a raw deflate stream in the style of Zopfli, spending far more
+ * time than {@link java.util.zip.Deflater} to find a shorter encoding. Every match of every length
+ * is found once, then the data is parsed several times, each parse choosing the cheapest sequence
+ * of literals and matches under the symbol costs of the Huffman codes of the previous parse. The
+ * shortest parse is written as a single dynamic Huffman block.
+ *
+ * @author Lonny
+ */
+final class OptimalDeflater {
+
+   /** The largest distance of a match. */
+   private static final int WINDOW_SIZE = 32768;
+
+   /** The mask of the positions within the window. */
+   private static final int WINDOW_MASK = WINDOW_SIZE - 1;
+
+   /** The shortest match. */
+   private static final int MIN_MATCH = 3;
+
+   /** The longest match. */
+   private static final int MAX_MATCH = 258;
+
+   /** The largest number of earlier positions examined for matches at each position. */
+   private static final int MAX_CHAIN_LENGTH = 4096;
+
+   /** The number of bits of the hash of the first bytes of a match. */
+   private static final int HASH_BITS = 15;
+
+   /** The number of literal and length symbols. */
+   private static final int LITERAL_LENGTH_SYMBOLS = 286;
+
+   /** The number of distance symbols. */
+   private static final int DISTANCE_SYMBOLS = 30;
+
+   /** The end of block symbol. */
+   private static final int END_OF_BLOCK = 256;
+
+   /** The longest code of the literal, length and distance symbols. */
+   private static final int MAX_CODE_LENGTH = 15;
+
+   /** The longest code of the code length symbols. */
+   private static final int MAX_CODE_LENGTH_CODE_LENGTH = 7;
+
+   /** The shortest length of each length symbol. */
+   private static final int[] LENGTH_BASE = { 3, 4, 5, 6, 7, 8, 9, 10, 11, 13, 15, 17, 19, 23, 27,
+         31, 35, 43, 51, 59, 67, 83, 99, 115, 131, 163, 195, 227, 258 };
+
+   /** The number of extra bits of each length symbol. */
+   private static final int[] LENGTH_EXTRA_BITS = { 0, 0, 0, 0, 0, 0, 0, 0, 1, 1, 1, 1, 2, 2, 2,
+         2, 3, 3, 3, 3, 4, 4, 4, 4, 5, 5, 5, 5, 0 };
+
+   /** The shortest distance of each distance symbol. */
+   private static final int[] DISTANCE_BASE = { 1, 2, 3, 4, 5, 7, 9, 13, 17, 25, 33, 49, 65, 97,
+         129, 193, 257, 385, 513, 769, 1025, 1537, 2049, 3073, 4097, 6145, 8193, 12289, 16385,
+         24577 };
+
+   /** The number of extra bits of each distance symbol. */
+   private static final int[] DISTANCE_EXTRA_BITS = { 0, 0, 0, 0, 1, 1, 2, 2, 3, 3, 4, 4, 5, 5,
+         6, 6, 7, 7, 8, 8, 9, 9, 10, 10, 11, 11, 12, 12, 13, 13 };
+
+   /** The order in which the lengths of the code length codes are written. */
+   private static final int[] CODE_LENGTH_ORDER = { 16, 17, 18, 0, 8, 7, 9, 6, 10, 5, 11, 4, 12,
+         3, 13, 2, 14, 1, 15 };
+
+   /** The length symbol of each match length, less the first length symbol. */
+   private static final int[] LENGTH_SYMBOLS = new int[MAX_MATCH + 1];
+
+   /** The distance symbol of each match distance. */
+   private static final byte[] DISTANCE_SYMBOLS_BY_DISTANCE = new byte[WINDOW_SIZE + 1];
+
+   static {
+      for (int symbol = 0; symbol < LENGTH_BASE.length; symbol++) {
+         final int end = Math.min(MAX_MATCH, LENGTH_BASE[symbol]
+               + (1 << LENGTH_EXTRA_BITS[symbol]) - 1);
+         for (int length = LENGTH_BASE[symbol]; length <= end; length++) {
+            LENGTH_SYMBOLS[length] = symbol;
+         }
+      }
+      for (int symbol = 0; symbol < DISTANCE_BASE.length; symbol++) {
+         final int end = DISTANCE_BASE[symbol] + (1 << DISTANCE_EXTRA_BITS[symbol]) - 1;
+         for (int distance = DISTANCE_BASE[symbol]; distance <= end; distance++) {
+            DISTANCE_SYMBOLS_BY_DISTANCE[distance] = (byte) symbol;
+         }
+      }
+   }
+
+   /**
+    * A sequence of literals and matches covering the data.
+    */
+   private static final class Parse {
+      /** The literal byte or the match length of each element. */
+      private final int[] values;
+
+      /** The match distance of each element or 0 for a literal. */
+      private final int[] distances;
+
+      /** The number of elements. */
+      private final int size;
+
+      /**
+       * Constructs a new parse.
+       *
+       * @param values
+       *           the literal byte or the match length of each element.
+       * @param distances
+       *           the match distance of each element or 0 for a literal.
+       * @param size
+       *           the number of elements.
+       */
+      public Parse(final int[] values, final int[] distances, final int size) {
+         this.values = values;
+         this.distances = distances;
+         this.size = size;
+      }
+   }
+
+   /**
+    * Writes bits starting with the least significant bit of each byte.
+    */
+   private static final class BitWriter {
+      /** The written bytes. */
+      private byte[] bytes = new byte[1024];
+
+      /** The number of written bytes. */
+      private int length = 0;
+
+      /** The bits which do not fill a byte yet. */
+      private int buffer = 0;
+
+      /** The number of bits in the buffer. */
+      private int bufferLength = 0;
+
+      /**
+       * Writes bits.
+       *
+       * @param value
+       *           the bits, least significant first.
+       * @param count
+       *           the number of bits, at most 16.
+       */
+      public void write(final int value, final int count) {
+         this.buffer |= value << this.bufferLength;
+         this.bufferLength += count;
+         while (this.bufferLength >= 8) {
+            append((byte) this.buffer);
+            this.buffer >>>= 8;
+            this.bufferLength -= 8;
+         }
+      }
+
+      /**
+       * Returns the written bytes, padding the last byte with zero bits.
+       *
+       * @return the bytes.
+       */
+      public byte[] toByteArray() {
+         if (this.bufferLength > 0) {
+            append((byte) this.buffer);
+            this.buffer = 0;
+            this.bufferLength = 0;
+         }
+         return Arrays.copyOf(this.bytes, this.length);
+      }
+
+      /**
+       * Appends a byte.
+       *
+       * @param b
+       *           the byte.
+       */
+      private void append(final byte b) {
+         if (this.length == this.bytes.length) {
+            this.bytes = Arrays.copyOf(this.bytes, this.bytes.length * 2);
+         }
+         this.bytes[this.length++] = b;
+      }
+   }
+
+   /** The data to compress. */
+   private final byte[] data;
+
+   /** The index of the first match of each position in the match arrays. */
+   private final int[] matchOffsets;
+
+   /**
+    * The longest length of each match. The matches of a position have increasing lengths and
+    * each is the nearest match for the lengths greater than the length of the previous one.
+    */
+   private int[] matchLengths = new int[1024];
+
+   /** The distance of each match. */
+   private int[] matchDistances = new int[1024];
+
+   /** The number of matches. */
+   private int matchCount = 0;
+
+   /**
+    * Constructs a new instance.
+    *
+    * @param data
+    *           the data to compress.
+    */
+   private OptimalDeflater(final byte[] data) {
+      this.data = data;
+      this.matchOffsets = new int[data.length + 1];
+   }
+
+   /**
+    * Compresses data into a raw deflate stream.
+    *
+    * @param data
+    *           the data to compress.
+    * @param iterations
+    *           the number of times the data is parsed, at least 1.
+    * @return the deflate stream.
+    */
+   public static byte[] deflate(final byte[] data, final int iterations) {
+      if (iterations < 1) {
+         throw new IllegalArgumentException("At least one iteration is required");
+      }
+      final OptimalDeflater deflater = new OptimalDeflater(data);
+      deflater.findMatches();
+
+      byte[] best = null;
+      float[] literalLengthCosts = getFixedLiteralLengthCosts();
+      float[] distanceCosts = new float[DISTANCE_SYMBOLS];
+      Arrays.fill(distanceCosts, 5);
+      for (int i = 0; i < iterations; i++) {
+         final Parse parse = deflater.parse(literalLengthCosts, distanceCosts);
+         final int[] literalLengthCounts = new int[LITERAL_LENGTH_SYMBOLS];
+         final int[] distanceCounts = new int[DISTANCE_SYMBOLS];
+         count(parse, literalLengthCounts, distanceCounts);
+
+         final byte[] deflated = encode(parse, literalLengthCounts, distanceCounts);
+         if ((best == null) || (deflated.length < best.length)) {
+            best = deflated;
+         }
+         literalLengthCosts = getCosts(literalLengthCounts);
+         distanceCosts = getCosts(distanceCounts);
+      }
+      return best;
+   }
+
+   /**
+    * Finds, for each position, the nearest match of every length using hash chains.
+    */
+   private void findMatches() {
+      final int length = this.data.length;
+      final int[] head = new int[1 << HASH_BITS];
+      Arrays.fill(head, -1);
+      final int[] previous = new int[WINDOW_SIZE];
+      for (int i = 0; i < length; i++) {
+         this.matchOffsets[i] = this.matchCount;
+         if (i + MIN_MATCH > length) {
+            continue;
+         }
+         final int hash = hash(i);
+         final int maxLength = Math.min(MAX_MATCH, length - i);
+         int best = MIN_MATCH - 1;
+         int candidate = head[hash];
+         for (int chain = 0; (candidate >= 0) && (i - candidate <= WINDOW_SIZE)
+               && (chain < MAX_CHAIN_LENGTH); chain++) {
+            if (this.data[candidate + best] == this.data[i + best]) {
+               int matchLength = 0;
+               while ((matchLength < maxLength)
+                     && (this.data[candidate + matchLength] == this.data[i + matchLength])) {
+                  matchLength++;
+               }
+               if (matchLength > best) {
+                  addMatch(matchLength, i - candidate);
+                  best = matchLength;
+                  if (best == maxLength) {
+                     break;
+                  }
+               }
+            }
+            final int next = previous[candidate & WINDOW_MASK];
+            if (next >= candidate) {
+               // The chain was overwritten by a position outside the window.
+               break;
+            }
+            candidate = next;
+         }
+         previous[i & WINDOW_MASK] = head[hash];
+         head[hash] = i;
+      }
+      this.matchOffsets[length] = this.matchCount;
+   }
+
+   /**
+    * Hashes the first bytes of a match.
+    *
+    * @param position
+    *           the position of the match.
+    * @return the hash.
+    */
+   private int hash(final int position) {
+      final int value = ((this.data[position] & 0xff) << 16)
+            | ((this.data[position + 1] & 0xff) << 8) | (this.data[position + 2] & 0xff);
+      return ((value * 0x9E3779B1) >>> (32 - HASH_BITS));
+   }
+
+   /**
+    * Records a match of the current position.
+    *
+    * @param length
+    *           the length of the match.
+    * @param distance
+    *           the distance of the match.
+    */
+   private void addMatch(final int length, final int distance) {
+      if (this.matchCount == this.matchLengths.length) {
+         this.matchLengths = Arrays.copyOf(this.matchLengths, this.matchCount * 2);
+         this.matchDistances = Arrays.copyOf(this.matchDistances, this.matchCount * 2);
+      }
+      this.matchLengths[this.matchCount] = length;
+      this.matchDistances[this.matchCount] = distance;
+      this.matchCount++;
+   }
+
+   /**
+    * Finds the cheapest sequence of literals and matches covering the data.
+    *
+    * @param literalLengthCosts
+    *           the cost in bits of each literal and length symbol.
+    * @param distanceCosts
+    *           the cost in bits of each distance symbol.
+    * @return the parse.
+    */
+   private Parse parse(final float[] literalLengthCosts, final float[] distanceCosts) {
+      final int length = this.data.length;
+      final float[] lengthCosts = new float[MAX_MATCH + 1];
+      for (int matchLength = MIN_MATCH; matchLength <= MAX_MATCH; matchLength++) {
+         final int symbol = LENGTH_SYMBOLS[matchLength];
+         lengthCosts[matchLength] = literalLengthCosts[END_OF_BLOCK + 1 + symbol]
+               + LENGTH_EXTRA_BITS[symbol];
+      }
+
+      // The cheapest cost of each position and the last step reaching it.
+      final float[] costs = new float[length + 1];
+      Arrays.fill(costs, Float.MAX_VALUE);
+      costs[0] = 0;
+      final int[] stepLengths = new int[length + 1];
+      final int[] stepDistances = new int[length + 1];
+      for (int i = 0; i < length; i++) {
+         final float cost = costs[i];
+         final float literalCost = cost + literalLengthCosts[this.data[i] & 0xff];
+         if (literalCost < costs[i + 1]) {
+            costs[i + 1] = literalCost;
+            stepLengths[i + 1] = 1;
+            stepDistances[i + 1] = 0;
+         }
+         int matchLength = MIN_MATCH;
+         for (int match = this.matchOffsets[i]; match < this.matchOffsets[i + 1]; match++) {
+            final int distance = this.matchDistances[match];
+            final int symbol = DISTANCE_SYMBOLS_BY_DISTANCE[distance];
+            final float matchCost = cost + distanceCosts[symbol] + DISTANCE_EXTRA_BITS[symbol];
+            for (final int maxLength = this.matchLengths[match]; matchLength <= maxLength; matchLength++) {
+               final float total = matchCost + lengthCosts[matchLength];
+               if (total < costs[i + matchLength]) {
+                  costs[i + matchLength] = total;
+                  stepLengths[i + matchLength] = matchLength;
+                  stepDistances[i + matchLength] = distance;
+               }
+            }
+         }
+      }
+
+      // Follow the steps back from the end.
+      int size = 0;
+      for (int position = length; position > 0; position -= stepLengths[position]) {
+         size++;
+      }
+      final int[] values = new int[size];
+      final int[] distances = new int[size];
+      int index = size;
+      for (int position = length; position > 0; position -= stepLengths[position]) {
+         index--;
+         distances[index] = stepDistances[position];
+         values[index] = stepDistances[position] == 0 ? this.data[position - 1] & 0xff
+               : stepLengths[position];
+      }
+      return new Parse(values, distances, size);
+   }
+
+   /**
+    * Returns the costs of the literal and length symbols in the fixed Huffman codes.
+    *
+    * @return the cost in bits of each symbol.
+    */
+   private static float[] getFixedLiteralLengthCosts() {
+      final float[] costs = new float[LITERAL_LENGTH_SYMBOLS];
+      for (int symbol = 0; symbol < costs.length; symbol++) {
+         if (symbol < 144) {
+            costs[symbol] = 8;
+         } else if (symbol < END_OF_BLOCK) {
+            costs[symbol] = 9;
+         } else if (symbol < 280) {
+            costs[symbol] = 7;
+         } else {
+            costs[symbol] = 8;
+         }
+      }
+      return costs;
+   }
+
+   /**
+    * Returns the entropy costs of symbols. Unused symbols cost as much as a symbol used once.
+    *
+    * @param counts
+    *           the number of times each symbol is used.
+    * @return the cost in bits of each symbol.
+    */
+   private static float[] getCosts(final int[] counts) {
+      long total = 0;
+      for (final int count : counts) {
+         total += count;
+      }
+      final double log2Total = log2(Math.max(1, total));
+      final float[] costs = new float[counts.length];
+      for (int symbol = 0; symbol < counts.length; symbol++) {
+         costs[symbol] = (float) (log2Total - (counts[symbol] == 0 ? 0 : log2(counts[symbol])));
+      }
+      return costs;
+   }
+
+   /**
+    * Returns the binary logarithm of a number.
+    *
+    * @param value
+    *           the number.
+    * @return the logarithm.
+    */
+   private static double log2(final double value) {
+      return Math.log(value) / Math.log(2);
+   }
+
+   /**
+    * Counts the symbols of a parse.
+    *
+    * @param parse
+    *           the parse.
+    * @param literalLengthCounts
+    *           the counts of the literal and length symbols to update.
+    * @param distanceCounts
+    *           the counts of the distance symbols to update.
+    */
+   private static void count(final Parse parse, final int[] literalLengthCounts,
+         final int[] distanceCounts) {
+      for (int i = 0; i < parse.size; i++) {
+         if (parse.distances[i] == 0) {
+            literalLengthCounts[parse.values[i]]++;
+         } else {
+            literalLengthCounts[END_OF_BLOCK + 1 + LENGTH_SYMBOLS[parse.values[i]]]++;
+            distanceCounts[DISTANCE_SYMBOLS_BY_DISTANCE[parse.distances[i]]]++;
+         }
+      }
+      literalLengthCounts[END_OF_BLOCK]++;
+   }
+
+   /**
+    * Encodes a parse as a single final dynamic Huffman block.
+    *
+    * @param parse
+    *           the parse.
+    * @param literalLengthCounts
+    *           the counts of the literal and length symbols of the parse.
+    * @param distanceCounts
+    *           the counts of the distance symbols of the parse.
+    * @return the deflate stream.
+    */
+   private static byte[] encode(final Parse parse, final int[] literalLengthCounts,
+         final int[] distanceCounts) {
+      final int[] literalLengthLengths = getCodeLengths(literalLengthCounts, MAX_CODE_LENGTH);
+      final int[] distanceLengths = getCodeLengths(distanceCounts, MAX_CODE_LENGTH);
+      final int[] literalLengthCodes = getCodes(literalLengthLengths);
+      final int[] distanceCodes = getCodes(distanceLengths);
+
+      final BitWriter writer = new BitWriter();
+      writer.write(1, 1);
+      writer.write(2, 2);
+      writeCodeLengths(writer, literalLengthLengths, distanceLengths);
+      for (int i = 0; i < parse.size; i++) {
+         final int value = parse.values[i];
+         final int distance = parse.distances[i];
+         if (distance == 0) {
+            writer.write(literalLengthCodes[value], literalLengthLengths[value]);
+         } else {
+            final int lengthSymbol = LENGTH_SYMBOLS[value];
+            final int symbol = END_OF_BLOCK + 1 + lengthSymbol;
+            writer.write(literalLengthCodes[symbol], literalLengthLengths[symbol]);
+            writer.write(value - LENGTH_BASE[lengthSymbol], LENGTH_EXTRA_BITS[lengthSymbol]);
+            final int distanceSymbol = DISTANCE_SYMBOLS_BY_DISTANCE[distance];
+            writer.write(distanceCodes[distanceSymbol], distanceLengths[distanceSymbol]);
+            writer.write(distance - DISTANCE_BASE[distanceSymbol],
+                  DISTANCE_EXTRA_BITS[distanceSymbol]);
+         }
+      }
+      writer.write(literalLengthCodes[END_OF_BLOCK], literalLengthLengths[END_OF_BLOCK]);
+      return writer.toByteArray();
+   }
+
+   /**
+    * Writes the header of a dynamic Huffman block, with the code lengths run length encoded.
+    *
+    * @param writer
+    *           the output.
+    * @param literalLengthLengths
+    *           the code lengths of the literal and length symbols.
+    * @param distanceLengths
+    *           the code lengths of the distance symbols.
+    */
+   private static void writeCodeLengths(final BitWriter writer, final int[] literalLengthLengths,
+         final int[] distanceLengths) {
+      int literalLengthCount = LITERAL_LENGTH_SYMBOLS;
+      while ((literalLengthCount > END_OF_BLOCK + 1)
+            && (literalLengthLengths[literalLengthCount - 1] == 0)) {
+         literalLengthCount--;
+      }
+      int distanceCount = DISTANCE_SYMBOLS;
+      while ((distanceCount > 1) && (distanceLengths[distanceCount - 1] == 0)) {
+         distanceCount--;
+      }
+      final int[] lengths = new int[literalLengthCount + distanceCount];
+      System.arraycopy(literalLengthLengths, 0, lengths, 0, literalLengthCount);
+      System.arraycopy(distanceLengths, 0, lengths, literalLengthCount, distanceCount);
+
+      // Symbol 16 repeats the previous length 3 to 6 times, 17 and 18 repeat zero 3 to 10 and 11
+      // to 138 times.
+      final int[] symbols = new int[lengths.length];
+      final int[] extras = new int[lengths.length];
+      int size = 0;
+      for (int i = 0; i < lengths.length;) {
+         final int length = lengths[i];
+         int run = 1;
+         while ((i + run < lengths.length) && (lengths[i + run] == length)) {
+            run++;
+         }
+         i += run;
+         if (length == 0) {
+            while (run >= 11) {
+               final int repeat = Math.min(run, 138);
+               symbols[size] = 18;
+               extras[size++] = repeat - 11;
+               run -= repeat;
+            }
+            if (run >= 3) {
+               symbols[size] = 17;
+               extras[size++] = run - 3;
+               run = 0;
+            }
+         } else {
+            symbols[size++] = length;
+            run--;
+            while (run >= 3) {
+               final int repeat = Math.min(run, 6);
+               symbols[size] = 16;
+               extras[size++] = repeat - 3;
+               run -= repeat;
+            }
+         }
+         while (run > 0) {
+            symbols[size++] = length;
+            run--;
+         }
+      }
+
+      final int[] counts = new int[CODE_LENGTH_ORDER.length];
+      for (int i = 0; i < size; i++) {
+         counts[symbols[i]]++;
+      }
+      final int[] codeLengths = getCodeLengths(counts, MAX_CODE_LENGTH_CODE_LENGTH);
+      final int[] codes = getCodes(codeLengths);
+      int codeLengthCount = CODE_LENGTH_ORDER.length;
+      while ((codeLengthCount > 4) && (codeLengths[CODE_LENGTH_ORDER[codeLengthCount - 1]] == 0)) {
+         codeLengthCount--;
+      }
+
+      writer.write(literalLengthCount - (END_OF_BLOCK + 1), 5);
+      writer.write(distanceCount - 1, 5);
+      writer.write(codeLengthCount - 4, 4);
+      for (int i = 0; i < codeLengthCount; i++) {
+         writer.write(codeLengths[CODE_LENGTH_ORDER[i]], 3);
+      }
+      for (int i = 0; i < size; i++) {
+         final int symbol = symbols[i];
+         writer.write(codes[symbol], codeLengths[symbol]);
+         if (symbol == 16) {
+            writer.write(extras[i], 2);
+         } else if (symbol == 17) {
+            writer.write(extras[i], 3);
+         } else if (symbol == 18) {
+            writer.write(extras[i], 7);
+         }
+      }
+   }
+
+   /**
+    * Computes the lengths of the Huffman codes of symbols, no longer than a maximum. At least
+    * two symbols are given a code so that the code is complete, as required by decoders. When the
+    * Huffman code is too long, the counts are halved until it fits.
+    *
+    * @param counts
+    *           the number of times each symbol is used.
+    * @param maxLength
+    *           the longest code.
+    * @return the code length of each symbol or 0 for unused symbols.
+    */
+   static int[] getCodeLengths(final int[] counts, final int maxLength) {
+      final int[] weights = counts.clone();
+      int used = 0;
+      for (final int weight : weights) {
+         if (weight > 0) {
+            used++;
+         }
+      }
+      for (int symbol = 0; (used < 2) && (symbol < weights.length); symbol++) {
+         if (weights[symbol] == 0) {
+            weights[symbol] = 1;
+            used++;
+         }
+      }
+      while (true) {
+         final int[] lengths = getHuffmanCodeLengths(weights);
+         int longest = 0;
+         for (final int length : lengths) {
+            longest = Math.max(longest, length);
+         }
+         if (longest <= maxLength) {
+            return lengths;
+         }
+         for (int symbol = 0; symbol < weights.length; symbol++) {
+            if (weights[symbol] > 0) {
+               weights[symbol] = (weights[symbol] + 1) >> 1;
+            }
+         }
+      }
+   }
+
+   /**
+    * Computes the lengths of the Huffman codes of at least two used symbols.
+    *
+    * @param weights
+    *           the weight of each symbol.
+    * @return the code length of each symbol or 0 for unused symbols.
+    */
+   private static int[] getHuffmanCodeLengths(final int[] weights) {
+      final int symbols = weights.length;
+      final long[] nodeWeights = new long[symbols * 2];
+      final int[] parents = new int[symbols * 2];
+      final PriorityQueue<Integer> queue = new PriorityQueue<Integer>(symbols,
+            new Comparator<Integer>() {
+               @Override
+               public int compare(final Integer a, final Integer b) {
+                  final long difference = nodeWeights[a.intValue()] - nodeWeights[b.intValue()];
+                  return difference != 0 ? Long.signum(difference) : a.compareTo(b);
+               }
+            });
+      for (int symbol = 0; symbol < symbols; symbol++) {
+         if (weights[symbol] > 0) {
+            nodeWeights[symbol] = weights[symbol];
+            queue.add(Integer.valueOf(symbol));
+         }
+      }
+      int node = symbols;
+      while (queue.size() > 1) {
+         final int a = queue.poll().intValue();
+         final int b = queue.poll().intValue();
+         nodeWeights[node] = nodeWeights[a] + nodeWeights[b];
+         parents[a] = node;
+         parents[b] = node;
+         queue.add(Integer.valueOf(node++));
+      }
+      final int root = node - 1;
+      final int[] lengths = new int[symbols];
+      for (int symbol = 0; symbol < symbols; symbol++) {
+         if (weights[symbol] > 0) {
+            for (int parent = symbol; parent != root; parent = parents[parent]) {
+               lengths[symbol]++;
+            }
+         }
+      }
+      return lengths;
+   }
+
+   /**
+    * Assigns the canonical Huffman codes of code lengths. The bits of each code are reversed, as
+    * Huffman codes are written starting with their most significant bit.
+    *
+    * @param lengths
+    *           the code length of each symbol.
+    * @return the reversed code of each symbol.
+    */
+   private static int[] getCodes(final int[] lengths) {
+      final int[] lengthCounts = new int[MAX_CODE_LENGTH + 1];
+      for (final int length : lengths) {
+         if (length > 0) {
+            lengthCounts[length]++;
+         }
+      }
+      final int[] nextCodes = new int[MAX_CODE_LENGTH + 1];
+      int code = 0;
+      for (int length = 1; length <= MAX_CODE_LENGTH; length++) {
+         code = (code + lengthCounts[length - 1]) << 1;
+         nextCodes[length] = code;
+      }
+      final int[] codes = new int[lengths.length];
+      for (int symbol = 0; symbol < lengths.length; symbol++) {
+         final int length = lengths[symbol];
+         if (length > 0) {
+            codes[symbol] = Integer.reverse(nextCodes[length]++) >>> (32 - length);
+         }
+      }
+      return codes;
+   }
+}
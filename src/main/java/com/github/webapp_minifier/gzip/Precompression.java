@@ -0,0 +1,215 @@
+package com.github.webapp_minifier.gzip;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+import org.apache.maven.plugin.logging.Log;
+
+import com.github.webapp_minifier.summary.HtmlFileSummary;
+import com.github.webapp_minifier.summary.MinificationSummary;
+import com.github.webapp_minifier.summary.MinifiedFileMetrics;
+
+/**
+ * This class writes gzip compressed copies of the minified files referenced by a summary and,
+ * optionally, of the processed HTML files. Each file is compressed once by its own
+ * {@link GzipTask}, so the files are compressed concurrently by the threads of the executor. The
+ * compressed lengths of each minified file are attributed to the inputs it contains in proportion to
+ * their minified lengths. In the maximum compression mode, meant for release builds, each file is
+ * also compressed by a far slower encoder and the smaller copy is kept.
+ *
+ * @author Lonny
+ */
+public class Precompression {
+
+   /** The log instance. */
+   private final Log log;
+
+   /** The directory containing the minified files. */
+   private final File directory;
+
+   /** The deflate compression level. */
+   private final int level;
+
+   /** Indicates that the maximum compression mode is used. */
+   private final boolean maximum;
+
+   /**
+    * Constructs a new precompression.
+    *
+    * @param log
+    *           the log instance.
+    * @param directory
+    *           the directory containing the minified files.
+    * @param level
+    *           the deflate compression level, from 1 for the fastest to 9 for the smallest.
+    * @param maximum
+    *           <code>true</code> to also use the maximum compression mode.
+    */
+   public Precompression(final Log log, final File directory, final int level,
+         final boolean maximum) {
+      if ((level < 1) || (level > 9)) {
+         throw new IllegalArgumentException("The compression level must be between 1 and 9");
+      }
+      this.log = log;
+      this.directory = directory;
+      this.level = level;
+      this.maximum = maximum;
+   }
+
+   /**
+    * Compresses the minified files referenced by the summary and the given HTML files.
+    *
+    * @param summary
+    *           the summary of the minification, whose metrics are updated.
+    * @param htmlFiles
+    *           the HTML files to compress.
+    * @param executor
+    *           the executor compressing the files.
+    * @throws IOException
+    *            if a file could not be compressed.
+    */
+   public void compress(final MinificationSummary summary, final List<File> htmlFiles,
+         final ExecutorService executor) throws IOException {
+      final List<Map<File, List<MinifiedFileMetrics>>> pages = new ArrayList<Map<File, List<MinifiedFileMetrics>>>();
+      final Map<File, Future<GzipResult>> futures = new LinkedHashMap<File, Future<GzipResult>>();
+      for (final HtmlFileSummary htmlFile : summary.getHtmlFiles()) {
+         final Map<File, List<MinifiedFileMetrics>> minifiedFiles = getMinifiedFiles(htmlFile);
+         for (final File file : minifiedFiles.keySet()) {
+            if (!futures.containsKey(file)) {
+               futures.put(file, executor.submit(new GzipTask(file, this.level, this.maximum)));
+            }
+         }
+         pages.add(minifiedFiles);
+      }
+      for (final File file : htmlFiles) {
+         futures.put(file, executor.submit(new GzipTask(file, this.level, this.maximum)));
+      }
+
+      final Map<File, GzipResult> results = new LinkedHashMap<File, GzipResult>();
+      long length = 0;
+      long compressedLength = 0;
+      long deflateLength = 0;
+      for (final Entry<File, Future<GzipResult>> entry : futures.entrySet()) {
+         final GzipResult result = get(entry.getKey(), entry.getValue());
+         results.put(entry.getKey(), result);
+         length += entry.getKey().length();
+         compressedLength += result.getWrittenLength();
+         deflateLength += result.getLength();
+      }
+      for (final Map<File, List<MinifiedFileMetrics>> minifiedFiles : pages) {
+         for (final Entry<File, List<MinifiedFileMetrics>> entry : minifiedFiles.entrySet()) {
+            attribute(entry.getValue(), results.get(entry.getKey()));
+         }
+      }
+      this.log.info("Compressed " + futures.size() + " files from " + length + " to "
+            + compressedLength + " bytes"
+            + (this.maximum ? " (" + deflateLength + " bytes at level " + this.level + ")" : ""));
+   }
+
+   /**
+    * Collects the minified files referenced by an HTML file along with the metrics of their
+    * inputs. Embedded code and files which have not been written are ignored.
+    *
+    * @param htmlFile
+    *           the summary of the HTML file.
+    * @return the metrics keyed by minified file, in the order they are first referenced.
+    */
+   private Map<File, List<MinifiedFileMetrics>> getMinifiedFiles(final HtmlFileSummary htmlFile) {
+      final Map<File, List<MinifiedFileMetrics>> minifiedFiles = new LinkedHashMap<File, List<MinifiedFileMetrics>>();
+      for (final MinifiedFileMetrics metrics : htmlFile.getMinifiedFiles()) {
+         final String destination = metrics.getDestination();
+         if ((destination == null) || MinifiedFileMetrics.EMBEDDED_CSS.equals(destination)
+               || MinifiedFileMetrics.EMBEDDED_JS.equals(destination)) {
+            continue;
+         }
+         final File file = new File(this.directory, destination);
+         List<MinifiedFileMetrics> fileMetrics = minifiedFiles.get(file);
+         if (fileMetrics == null) {
+            if (!file.isFile()) {
+               continue;
+            }
+            fileMetrics = new ArrayList<MinifiedFileMetrics>();
+            minifiedFiles.put(file, fileMetrics);
+         }
+         fileMetrics.add(metrics);
+      }
+      return minifiedFiles;
+   }
+
+   /**
+    * Waits for a file to be compressed.
+    *
+    * @param file
+    *           the file.
+    * @param future
+    *           the result of the compression.
+    * @return the compressed lengths.
+    * @throws IOException
+    *            if the file could not be compressed.
+    */
+   private static GzipResult get(final File file, final Future<GzipResult> future)
+         throws IOException {
+      try {
+         return future.get();
+      } catch (final InterruptedException e) {
+         Thread.currentThread().interrupt();
+         throw new IOException("Interrupted while compressing " + file, e);
+      } catch (final ExecutionException e) {
+         throw new IOException("Failed to compress " + file, e.getCause());
+      }
+   }
+
+   /**
+    * Attributes the compressed lengths of a minified file to the inputs an HTML file placed in it,
+    * in proportion to their minified lengths.
+    *
+    * @param metrics
+    *           the metrics of the inputs of the file.
+    * @param result
+    *           the compressed lengths of the file.
+    */
+   static void attribute(final List<MinifiedFileMetrics> metrics, final GzipResult result) {
+      final int[] lengths = share(metrics, (int) result.getLength());
+      final int[] maximumLengths = share(metrics, (int) result.getMaximumLength());
+      for (int i = 0; i < metrics.size(); i++) {
+         metrics.get(i).setGzipLength(lengths[i]);
+         metrics.get(i).setMaxGzipLength(maximumLengths[i]);
+      }
+   }
+
+   /**
+    * Divides a compressed length between the inputs of a minified file in proportion to their
+    * minified lengths. The last input receives the remainder.
+    *
+    * @param metrics
+    *           the metrics of the inputs of the file.
+    * @param compressedLength
+    *           the compressed length of the file.
+    * @return the share of each input.
+    */
+   private static int[] share(final List<MinifiedFileMetrics> metrics, final int compressedLength) {
+      long total = 0;
+      for (final MinifiedFileMetrics input : metrics) {
+         total += input.getMinifiedLength();
+      }
+      final int[] shares = new int[metrics.size()];
+      int remaining = compressedLength;
+      for (int i = 0; i < shares.length - 1; i++) {
+         shares[i] = total == 0 ? 0
+               : (int) ((compressedLength * (long) metrics.get(i).getMinifiedLength()) / total);
+         remaining -= shares[i];
+      }
+      if (shares.length > 0) {
+         shares[shares.length - 1] = remaining;
+      }
+      return shares;
+   }
+}
@@ -0,0 +1,4 @@
+/**
+ * Contains classes that write precompressed copies of the minified files.
+ */
+package com.github.webapp_minifier.gzip;
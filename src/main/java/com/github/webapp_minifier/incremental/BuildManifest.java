@@ -0,0 +1,57 @@
+package com.github.webapp_minifier.incremental;
+
+import java.util.ArrayList;
+import java.util.Collection;
+
+import javax.xml.bind.annotation.XmlAccessType;
+import javax.xml.bind.annotation.XmlAccessorType;
+import javax.xml.bind.annotation.XmlAttribute;
+import javax.xml.bind.annotation.XmlElement;
+import javax.xml.bind.annotation.XmlRootElement;
+
+/**
+ * This class records the inputs and outputs of every HTML file processed by a build so that a
+ * later build can skip the files that have not changed.
+ * 
+ * @author Lonny
+ */
+@XmlRootElement
+@XmlAccessorType(XmlAccessType.FIELD)
+public class BuildManifest {
+
+   /** The fingerprint of the plugin options used by the build. */
+   @XmlAttribute
+   private String options;
+
+   /** The processed HTML files. */
+   @XmlElement(name = "page")
+   private final Collection<PageEntry> pages = new ArrayList<PageEntry>();
+
+   /**
+    * Sets the fingerprint of the plugin options used by the build.
+    * 
+    * @param options
+    *           the options fingerprint.
+    */
+   public void setOptions(final String options) {
+      this.options = options;
+   }
+
+   /**
+    * Returns the fingerprint of the plugin options used by the build.
+    * 
+    * @return the options fingerprint.
+    */
+   public String getOptions() {
+      return this.options;
+   }
+
+   /**
+    * Returns the processed HTML files.
+    * 
+    * @return the processed HTML files.
+    */
+   public Collection<PageEntry> getPages() {
+      return this.pages;
+   }
+}
@@ -0,0 +1,62 @@
+package com.github.webapp_minifier.incremental;
+
+import java.io.File;
+
+import javax.xml.bind.annotation.XmlAccessType;
+import javax.xml.bind.annotation.XmlAccessorType;
+import javax.xml.bind.annotation.XmlAttribute;
+import javax.xml.bind.annotation.XmlType;
+
+/**
+ * Records the hash of a CSS or JavaScript file read while processing an HTML file.
+ * 
+ * @author Lonny
+ */
+@XmlType
+@XmlAccessorType(XmlAccessType.FIELD)
+public class DependencyEntry {
+
+   /** The CSS or JavaScript file. */
+   @XmlAttribute
+   private File file;
+
+   /** The hash of the file's content or an empty string if the file did not exist. */
+   @XmlAttribute
+   private String hash;
+
+   /** Constructs a new instance. */
+   public DependencyEntry() {
+
+   }
+
+   /**
+    * Constructs a new instance with the given file and hash.
+    * 
+    * @param file
+    *           the CSS or JavaScript file.
+    * @param hash
+    *           the hash of the file's content.
+    */
+   public DependencyEntry(final File file, final String hash) {
+      this.file = file;
+      this.hash = hash;
+   }
+
+   /**
+    * Returns the CSS or JavaScript file.
+    * 
+    * @return the file.
+    */
+   public File getFile() {
+      return this.file;
+   }
+
+   /**
+    * Returns the hash of the file's content.
+    * 
+    * @return the hash or an empty string if the file did not exist.
+    */
+   public String getHash() {
+      return this.hash;
+   }
+}
@@ -0,0 +1,315 @@
+package com.github.webapp_minifier.incremental;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import javax.xml.bind.JAXBContext;
+import javax.xml.bind.JAXBException;
+import javax.xml.bind.Marshaller;
+
+import org.apache.maven.plugin.logging.Log;
+import org.codehaus.plexus.util.FileUtils;
+
+import com.github.webapp_minifier.HtmlFileResult;
+import com.github.webapp_minifier.HtmlFileTask;
+import com.github.webapp_minifier.MinifiedFileBuilder;
+import com.github.webapp_minifier.MinifiedFileInfo;
+import com.github.webapp_minifier.options.PluginOptions;
+import com.github.webapp_minifier.summary.HtmlFileSummary;
+import com.github.webapp_minifier.summary.MinifiedFileMetrics;
+import com.google.common.hash.Hashing;
+import com.google.common.io.Files;
+
+/**
+ * This class allows HTML files to be skipped when neither they, the CSS and JavaScript files they
+ * reference nor the plugin options have changed since the previous build. The processed HTML and
+ * minified files of every processed HTML file are kept in a state directory, under their temporary
+ * names, so that they can be restored and committed like freshly processed files.
+ * <p>
+ * The hash of each referenced file is computed once per build and shared by every HTML file
+ * referencing it.
+ * <p>
+ * The lookup methods may be called concurrently. The {@link #save(String, HtmlFileResult)} and
+ * {@link #write(File)} methods must be called from a single thread.
+ *
+ * @author Lonny
+ */
+public class IncrementalBuild {
+
+   /** The name of the manifest file written next to the summary file. */
+   public static final String MANIFEST_FILE_NAME = "webapp-minifier-manifest.xml";
+
+   /** The name of the processed HTML file within a page's state directory. */
+   private static final String PAGE_FILE_NAME = "page.html";
+
+   /** The log instance. */
+   private final Log log;
+
+   /** The directory holding the outputs of each processed HTML file. */
+   private final File stateDirectory;
+
+   /** The plugin options. */
+   private final PluginOptions options;
+
+   /** The entries of the previous build keyed by file name. */
+   private final Map<String, PageEntry> previousPages;
+
+   /** The manifest of the current build. */
+   private final BuildManifest manifest = new BuildManifest();
+
+   /** The hashes of the referenced files keyed by their normalized absolute path. */
+   private final ConcurrentMap<String, String> dependencyHashes = new ConcurrentHashMap<String, String>();
+
+   /**
+    * Constructs a new instance.
+    *
+    * @param log
+    *           the log instance.
+    * @param stateDirectory
+    *           the directory holding the outputs of each processed HTML file.
+    * @param options
+    *           the plugin options.
+    * @param fingerprint
+    *           the fingerprint of the plugin options.
+    * @param previous
+    *           the manifest of the previous build or <code>null</code> if there is none.
+    */
+   public IncrementalBuild(final Log log, final File stateDirectory, final PluginOptions options,
+         final String fingerprint, final BuildManifest previous) {
+      this.log = log;
+      this.stateDirectory = stateDirectory;
+      this.options = options;
+      this.manifest.setOptions(fingerprint);
+      final Map<String, PageEntry> pages = new HashMap<String, PageEntry>();
+      if ((previous != null) && fingerprint.equals(previous.getOptions())) {
+         for (final PageEntry entry : previous.getPages()) {
+            pages.put(entry.getFile(), entry);
+         }
+      }
+      this.previousPages = Collections.unmodifiableMap(pages);
+   }
+
+   /**
+    * Loads the manifest of a previous build.
+    *
+    * @param manifestFile
+    *           the manifest file.
+    * @param log
+    *           the log instance.
+    * @return the manifest or <code>null</code> if it does not exist or cannot be read.
+    */
+   public static BuildManifest load(final File manifestFile, final Log log) {
+      if (!manifestFile.isFile()) {
+         return null;
+      }
+      try {
+         final JAXBContext context = JAXBContext.newInstance(BuildManifest.class);
+         return (BuildManifest) context.createUnmarshaller().unmarshal(manifestFile);
+      } catch (final JAXBException e) {
+         log.warn("Failed to read " + manifestFile + ".  All files will be processed.", e);
+         return null;
+      }
+   }
+
+   /**
+    * Returns the hash of the file's content.
+    *
+    * @param file
+    *           the file.
+    * @return the hash or an empty string if the file does not exist.
+    * @throws IOException
+    *            if the file could not be read.
+    */
+   public static String hash(final File file) throws IOException {
+      return file.isFile() ? Files.hash(file, Hashing.sha256()).toString() : "";
+   }
+
+   /**
+    * Returns the hash of a file referenced by HTML files, computing it only the first time it is
+    * requested during this build.
+    *
+    * @param file
+    *           the referenced file.
+    * @return the hash or an empty string if the file does not exist.
+    * @throws IOException
+    *            if the file could not be read.
+    */
+   public String hashDependency(final File file) throws IOException {
+      final String normalized = FileUtils.normalize(file.getAbsolutePath());
+      final String path = normalized == null ? file.getAbsolutePath() : normalized;
+      String hash = this.dependencyHashes.get(path);
+      if (hash == null) {
+         hash = hash(file);
+         this.dependencyHashes.putIfAbsent(path, hash);
+      }
+      return hash;
+   }
+
+   /**
+    * Restores the outputs of the previous build for the given HTML file if nothing affecting them
+    * has changed.
+    *
+    * @param fileName
+    *           the name of the HTML file relative to the minified directory.
+    * @param htmlFile
+    *           the HTML file.
+    * @param hash
+    *           the hash of the HTML file.
+    * @return the restored result or <code>null</code> if the file must be processed.
+    * @throws IOException
+    *            if the outputs could not be restored.
+    */
+   public HtmlFileResult restore(final String fileName, final File htmlFile, final String hash)
+         throws IOException {
+      final PageEntry entry = this.previousPages.get(fileName);
+      if ((entry == null) || !hash.equals(entry.getHash())) {
+         return null;
+      }
+      for (final DependencyEntry dependency : entry.getDependencies()) {
+         if (!dependency.getHash().equals(hashDependency(dependency.getFile()))) {
+            this.log.debug(fileName + " changed because " + dependency.getFile() + " changed");
+            return null;
+         }
+      }
+      final File pageDirectory = new File(this.stateDirectory, entry.getToken());
+      final File pageFile = new File(pageDirectory, PAGE_FILE_NAME);
+      if (!pageFile.isFile()) {
+         return null;
+      }
+
+      this.log.info("Restoring unchanged " + htmlFile.getCanonicalFile());
+      final MinifiedFileBuilder cssFileBuilder = restoreFiles(pageDirectory,
+            HtmlFileTask.createFileBuilder(this.options, this.options.getCssPrefix(), "css",
+                  entry.getToken()), entry.getCssFiles());
+      final MinifiedFileBuilder jsFileBuilder = restoreFiles(pageDirectory,
+            HtmlFileTask.createFileBuilder(this.options, this.options.getJsPrefix(), "js",
+                  entry.getToken()), entry.getJsFiles());
+      final HtmlFileSummary summary = new HtmlFileSummary(entry.getSummary());
+      for (final MinifiedFileMetrics metrics : summary.getMinifiedFiles()) {
+         metrics.setCacheHit(true);
+      }
+      final HtmlFileResult result = new HtmlFileResult(htmlFile, Files.toByteArray(pageFile),
+            summary, cssFileBuilder, jsFileBuilder);
+      result.setToken(entry.getToken());
+      result.setHash(hash);
+      result.getDependencies().addAll(entry.getDependencies());
+      result.setRestored(true);
+      return result;
+   }
+
+   /**
+    * Copies the saved minified files into the target directory under their temporary names.
+    *
+    * @param pageDirectory
+    *           the page's state directory.
+    * @param builder
+    *           the builder of the temporary files.
+    * @param count
+    *           the number of files to restore.
+    * @return the builder.
+    * @throws IOException
+    *            if a file could not be copied.
+    */
+   private MinifiedFileBuilder restoreFiles(final File pageDirectory,
+         final MinifiedFileBuilder builder, final int count) throws IOException {
+      for (int i = 0; i < count; i++) {
+         final File file = builder.getCurrentFile().getFile();
+         builder.finishFile();
+         final File savedFile = new File(pageDirectory, file.getName());
+         if (savedFile.isFile()) {
+            FileUtils.copyFile(savedFile, file);
+         }
+      }
+      return builder;
+   }
+
+   /**
+    * Records the result in the manifest and, unless it was restored, saves its outputs. This must
+    * be called before the result is committed.
+    *
+    * @param fileName
+    *           the name of the HTML file relative to the minified directory.
+    * @param result
+    *           the result to save.
+    * @throws IOException
+    *            if the outputs could not be saved.
+    */
+   public void save(final String fileName, final HtmlFileResult result) throws IOException {
+      final PageEntry entry = new PageEntry();
+      entry.setFile(fileName);
+      entry.setHash(result.getHash());
+      entry.setToken(result.getToken());
+      entry.setCssFiles(result.getCssFileBuilder().getFiles().size());
+      entry.setJsFiles(result.getJsFileBuilder().getFiles().size());
+      entry.getDependencies().addAll(result.getDependencies());
+      entry.setSummary(new HtmlFileSummary(result.getSummary()));
+      this.manifest.getPages().add(entry);
+
+      if (!result.isRestored()) {
+         final File pageDirectory = new File(this.stateDirectory, result.getToken());
+         FileUtils.forceMkdir(pageDirectory);
+         Files.write(result.getHtml(), new File(pageDirectory, PAGE_FILE_NAME));
+         saveFiles(pageDirectory, result.getCssFileBuilder());
+         saveFiles(pageDirectory, result.getJsFileBuilder());
+      }
+   }
+
+   /**
+    * Copies the temporary minified files into the page's state directory.
+    *
+    * @param pageDirectory
+    *           the page's state directory.
+    * @param builder
+    *           the builder of the temporary files.
+    * @throws IOException
+    *            if a file could not be copied.
+    */
+   private void saveFiles(final File pageDirectory, final MinifiedFileBuilder builder)
+         throws IOException {
+      for (final MinifiedFileInfo fileInfo : builder.getFiles()) {
+         if (fileInfo.getFile().isFile()) {
+            FileUtils.copyFileToDirectory(fileInfo.getFile(), pageDirectory);
+         }
+      }
+   }
+
+   /**
+    * Writes the manifest of the current build and deletes the saved outputs it no longer
+    * references.
+    *
+    * @param manifestFile
+    *           the manifest file.
+    * @throws IOException
+    *            if the manifest could not be written.
+    */
+   public void write(final File manifestFile) throws IOException {
+      try {
+         final JAXBContext context = JAXBContext.newInstance(BuildManifest.class);
+         final Marshaller marshaller = context.createMarshaller();
+         marshaller.setProperty(Marshaller.JAXB_FORMATTED_OUTPUT, true);
+         marshaller.marshal(this.manifest, manifestFile);
+      } catch (final JAXBException e) {
+         throw new IOException("Failed to write " + manifestFile, e);
+      }
+
+      final Set<String> tokens = new HashSet<String>();
+      for (final PageEntry entry : this.manifest.getPages()) {
+         tokens.add(entry.getToken());
+      }
+      final File[] pageDirectories = this.stateDirectory.listFiles();
+      if (pageDirectories != null) {
+         for (final File pageDirectory : pageDirectories) {
+            if (!tokens.contains(pageDirectory.getName())) {
+               FileUtils.deleteDirectory(pageDirectory);
+            }
+         }
+      }
+   }
+}
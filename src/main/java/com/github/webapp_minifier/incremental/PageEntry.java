@@ -0,0 +1,173 @@
+package com.github.webapp_minifier.incremental;
+
+import java.util.ArrayList;
+import java.util.Collection;
+
+import javax.xml.bind.annotation.XmlAccessType;
+import javax.xml.bind.annotation.XmlAccessorType;
+import javax.xml.bind.annotation.XmlAttribute;
+import javax.xml.bind.annotation.XmlElement;
+import javax.xml.bind.annotation.XmlType;
+
+import com.github.webapp_minifier.summary.HtmlFileSummary;
+
+/**
+ * Records the inputs and outputs of a single processed HTML file.
+ * 
+ * @author Lonny
+ */
+@XmlType
+@XmlAccessorType(XmlAccessType.FIELD)
+public class PageEntry {
+
+   /** The name of the HTML file relative to the minified directory. */
+   @XmlAttribute
+   private String file;
+
+   /** The hash of the original HTML file. */
+   @XmlAttribute
+   private String hash;
+
+   /** The token used in the temporary names of the minified files. */
+   @XmlAttribute
+   private String token;
+
+   /** The number of minified CSS files created. */
+   @XmlAttribute
+   private int cssFiles;
+
+   /** The number of minified JavaScript files created. */
+   @XmlAttribute
+   private int jsFiles;
+
+   /** The CSS and JavaScript files read while processing the HTML file. */
+   @XmlElement(name = "dependency")
+   private final Collection<DependencyEntry> dependencies = new ArrayList<DependencyEntry>();
+
+   /** The summary of the minification performed on the HTML file. */
+   @XmlElement
+   private HtmlFileSummary summary;
+
+   /**
+    * Sets the name of the HTML file relative to the minified directory.
+    * 
+    * @param file
+    *           the relative file name.
+    */
+   public void setFile(final String file) {
+      this.file = file;
+   }
+
+   /**
+    * Returns the name of the HTML file relative to the minified directory.
+    * 
+    * @return the relative file name.
+    */
+   public String getFile() {
+      return this.file;
+   }
+
+   /**
+    * Sets the hash of the original HTML file.
+    * 
+    * @param hash
+    *           the hash.
+    */
+   public void setHash(final String hash) {
+      this.hash = hash;
+   }
+
+   /**
+    * Returns the hash of the original HTML file.
+    * 
+    * @return the hash.
+    */
+   public String getHash() {
+      return this.hash;
+   }
+
+   /**
+    * Sets the token used in the temporary names of the minified files.
+    * 
+    * @param token
+    *           the token.
+    */
+   public void setToken(final String token) {
+      this.token = token;
+   }
+
+   /**
+    * Returns the token used in the temporary names of the minified files.
+    * 
+    * @return the token.
+    */
+   public String getToken() {
+      return this.token;
+   }
+
+   /**
+    * Sets the number of minified CSS files created.
+    * 
+    * @param cssFiles
+    *           the number of files.
+    */
+   public void setCssFiles(final int cssFiles) {
+      this.cssFiles = cssFiles;
+   }
+
+   /**
+    * Returns the number of minified CSS files created.
+    * 
+    * @return the number of files.
+    */
+   public int getCssFiles() {
+      return this.cssFiles;
+   }
+
+   /**
+    * Sets the number of minified JavaScript files created.
+    * 
+    * @param jsFiles
+    *           the number of files.
+    */
+   public void setJsFiles(final int jsFiles) {
+      this.jsFiles = jsFiles;
+   }
+
+   /**
+    * Returns the number of minified JavaScript files created.
+    * 
+    * @return the number of files.
+    */
+   public int getJsFiles() {
+      return this.jsFiles;
+   }
+
+   /**
+    * Returns the CSS and JavaScript files read while processing the HTML file.
+    * 
+    * @return the dependencies.
+    */
+   public Collection<DependencyEntry> getDependencies() {
+      return this.dependencies;
+   }
+
+   /**
+    * Sets the summary of the minification performed on the HTML file.
+    * 
+    * @param summary
+    *           the summary.
+    */
+   public void setSummary(final HtmlFileSummary summary) {
+      this.summary = summary;
+   }
+
+   /**
+    * Returns the summary of the minification performed on the HTML file.
+    * 
+    * @return the summary.
+    */
+   public HtmlFileSummary getSummary() {
+      return this.summary;
+   }
+}
@@ -0,0 +1,4 @@
+/**
+ * Contains classes that allow unchanged HTML files to be skipped by later builds.
+ */
+package com.github.webapp_minifier.incremental;
@@ -0,0 +1,35 @@
+package com.github.webapp_minifier.options;
+
+/**
+ * This class describes the options that affect the output of a compressor as a single string.
+ * Two option sets with the same fingerprint always produce the same minified output for the same
+ * input.
+ *
+ * @author Lonny
+ */
+public final class CompressorFingerprint {
+
+   /** Prevents instantiation. */
+   private CompressorFingerprint() {
+   }
+
+   /**
+    * Returns the fingerprint of the options that affect compression.
+    *
+    * @param options
+    *           the options.
+    * @return the fingerprint.
+    */
+   public static String of(final OverridablePluginOptions options) {
+      final StringBuilder builder = new StringBuilder();
+      builder.append("jsCompressorEngine=").append(options.getJsCompressorEngine());
+      builder.append(";closureCompilationLevel=").append(options.getClosureCompilationLevel());
+      builder.append(";yuiCssLineBreak=").append(options.getYuiCssLineBreak());
+      builder.append(";yuiJsDisableOptimizations=").append(options.isYuiJsDisableOptimizations());
+      builder.append(";yuiJsLineBreak=").append(options.getYuiJsLineBreak());
+      builder.append(";yuiJsNoMunge=").append(options.isYuiJsNoMunge());
+      builder.append(";yuiJsPreserveAllSemiColons=").append(
+            options.isYuiJsPreserveAllSemiColons());
+      return builder.toString();
+   }
+}
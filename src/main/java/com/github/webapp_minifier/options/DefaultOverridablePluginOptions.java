@@ -52,6 +52,18 @@ public class DefaultOverridablePluginOptions implements
    /** Flag indicating if the YUI JS minification should preserve semicolons. */
    private boolean yuiJsPreserveAllSemiColons;
 
+   /** Flag indicating if HTML minification should be skipped. */
+   private boolean skipHtmlMinify;
+
+   /** Flag indicating if the spaces between HTML tags should be removed. */
+   private boolean htmlRemoveIntertagSpaces;
+
+   /** Flag indicating if unnecessary quotes around attribute values should be removed. */
+   private boolean htmlRemoveQuotes;
+
+   /** Flag indicating if line breaks should be preserved when minifying HTML. */
+   private boolean htmlPreserveLineBreaks;
+
    /** Constructs a new instance. */
    public DefaultOverridablePluginOptions() {
 
@@ -77,6 +89,10 @@ public class DefaultOverridablePluginOptions implements
       setYuiJsLineBreak(options.getYuiJsLineBreak());
       setYuiJsNoMunge(options.isYuiJsNoMunge());
       setYuiJsPreserveAllSemiColons(options.isYuiJsPreserveAllSemiColons());
+      setSkipHtmlMinify(options.isSkipHtmlMinify());
+      setHtmlRemoveIntertagSpaces(options.isHtmlRemoveIntertagSpaces());
+      setHtmlRemoveQuotes(options.isHtmlRemoveQuotes());
+      setHtmlPreserveLineBreaks(options.isHtmlPreserveLineBreaks());
    }
 
    @Override
@@ -210,4 +226,44 @@ public class DefaultOverridablePluginOptions implements
    public void setYuiJsPreserveAllSemiColons(final boolean flag) {
       this.yuiJsPreserveAllSemiColons = flag;
    }
+
+   @Override
+   public boolean isSkipHtmlMinify() {
+      return this.skipHtmlMinify;
+   }
+
+   @Override
+   public void setSkipHtmlMinify(final boolean flag) {
+      this.skipHtmlMinify = flag;
+   }
+
+   @Override
+   public boolean isHtmlRemoveIntertagSpaces() {
+      return this.htmlRemoveIntertagSpaces;
+   }
+
+   @Override
+   public void setHtmlRemoveIntertagSpaces(final boolean flag) {
+      this.htmlRemoveIntertagSpaces = flag;
+   }
+
+   @Override
+   public boolean isHtmlRemoveQuotes() {
+      return this.htmlRemoveQuotes;
+   }
+
+   @Override
+   public void setHtmlRemoveQuotes(final boolean flag) {
+      this.htmlRemoveQuotes = flag;
+   }
+
+   @Override
+   public boolean isHtmlPreserveLineBreaks() {
+      return this.htmlPreserveLineBreaks;
+   }
+
+   @Override
+   public void setHtmlPreserveLineBreaks(final boolean flag) {
+      this.htmlPreserveLineBreaks = flag;
+   }
 }
@@ -218,4 +218,68 @@ public interface OverridablePluginOptions {
     */
    void setYuiJsPreserveAllSemiColons(boolean flag);
 
+   /**
+    * Indicates if HTML minification should be skipped.
+    * 
+    * @return <code>true</code> if HTML minification should be skipped.
+    */
+   boolean isSkipHtmlMinify();
+
+   /**
+    * Sets the flag indicating if HTML should be minified.
+    * 
+    * @param flag
+    *           <code>true</code> to skip minifying HTML.
+    */
+   void setSkipHtmlMinify(boolean flag);
+
+   /**
+    * Indicates if the spaces between HTML tags should be removed.
+    * 
+    * @return <code>true</code> if the spaces between tags should be removed.
+    */
+   boolean isHtmlRemoveIntertagSpaces();
+
+   /**
+    * Sets the flag indicating if the spaces between HTML tags should be
+    * removed.
+    * 
+    * @param flag
+    *           <code>true</code> if the spaces between tags should be removed.
+    */
+   void setHtmlRemoveIntertagSpaces(boolean flag);
+
+   /**
+    * Indicates if unnecessary quotes around HTML attribute values should be
+    * removed.
+    * 
+    * @return <code>true</code> if unnecessary quotes should be removed.
+    */
+   boolean isHtmlRemoveQuotes();
+
+   /**
+    * Sets the flag indicating if unnecessary quotes around HTML attribute
+    * values should be removed.
+    * 
+    * @param flag
+    *           <code>true</code> if unnecessary quotes should be removed.
+    */
+   void setHtmlRemoveQuotes(boolean flag);
+
+   /**
+    * Indicates if line breaks should be preserved when minifying HTML.
+    * 
+    * @return <code>true</code> if line breaks should be preserved.
+    */
+   boolean isHtmlPreserveLineBreaks();
+
+   /**
+    * Sets the flag indicating if line breaks should be preserved when minifying
+    * HTML.
+    * 
+    * @param flag
+    *           <code>true</code> if line breaks should be preserved.
+    */
+   void setHtmlPreserveLineBreaks(boolean flag);
+
 }
\ No newline at end of file
@@ -0,0 +1,160 @@
+package com.github.webapp_minifier.replacer;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.jsoup.nodes.DataNode;
+import org.jsoup.nodes.Document;
+import org.jsoup.nodes.Element;
+import org.jsoup.nodes.Node;
+import org.jsoup.select.NodeTraversor;
+import org.jsoup.select.NodeVisitor;
+
+/**
+ * This class writes a jsoup document to an output stream without building the whole HTML as a
+ * string. Elements containing more than a few hundred nodes are written as a start tag, their
+ * children and an end tag, while smaller nodes are serialized whole, so only a small part of the
+ * document is held in memory at once. The HTML is encoded with the character set of the document's
+ * output settings.
+ * <p>
+ * The output is the same as {@link Document#outerHtml()} when pretty printing is disabled.
+ *
+ * @author Lonny
+ */
+final class DocumentWriter {
+
+   /** The size of the buffer of characters waiting to be encoded. */
+   private static final int BUFFER_SIZE = 8192;
+
+   /** The largest number of nodes serialized at once, unless a single node is larger. */
+   private static final int MAX_NODES = 256;
+
+   /** Separates the start tag from the end tag when serializing an element without its children. */
+   private static final String MARKER = "\u0000";
+
+   /** The document to write. */
+   private final Document document;
+
+   /**
+    * Writes the nodes of the document.
+    */
+   private class Visitor implements NodeVisitor {
+
+      /** The HTML output. */
+      private final Writer writer;
+
+      /** The document used to serialize the tags of elements without their children. */
+      private final Document scratch;
+
+      /** The end tags of the elements being written. */
+      private final List<String> endTags = new ArrayList<String>();
+
+      /** The node which has been written with its children or <code>null</code>. */
+      private Node written = null;
+
+      /**
+       * Constructs a new visitor.
+       *
+       * @param writer
+       *           the HTML output.
+       */
+      public Visitor(final Writer writer) {
+         this.writer = writer;
+         this.scratch = new Document(DocumentWriter.this.document.baseUri());
+         this.scratch.outputSettings(DocumentWriter.this.document.outputSettings());
+      }
+
+      @Override
+      public void head(final Node node, final int depth) {
+         if ((this.written != null) || (node instanceof Document)) {
+            return;
+         }
+         try {
+            if (countNodes(node, MAX_NODES) > MAX_NODES) {
+               final Element element = (Element) node;
+               final Element tags = new Element(element.tag(), element.baseUri(),
+                     element.attributes());
+               tags.appendChild(new DataNode(MARKER, element.baseUri()));
+               this.scratch.appendChild(tags);
+               final String html = tags.outerHtml();
+               tags.remove();
+               final int marker = html.indexOf(MARKER);
+               this.writer.write(html, 0, marker);
+               this.endTags.add(html.substring(marker + MARKER.length()));
+            } else {
+               this.writer.write(node.outerHtml());
+               this.written = node;
+            }
+         } catch (final IOException e) {
+            throw new ReplacerException(e);
+         }
+      }
+
+      @Override
+      public void tail(final Node node, final int depth) {
+         if (this.written == node) {
+            this.written = null;
+         } else if ((this.written == null) && !(node instanceof Document)) {
+            try {
+               this.writer.write(this.endTags.remove(this.endTags.size() - 1));
+            } catch (final IOException e) {
+               throw new ReplacerException(e);
+            }
+         }
+      }
+
+      /**
+       * Counts the nodes of a subtree, stopping once the limit is exceeded.
+       *
+       * @param node
+       *           the root of the subtree.
+       * @param limit
+       *           the limit.
+       * @return the number of nodes or a number greater than the limit.
+       */
+      private int countNodes(final Node node, final int limit) {
+         int count = 1;
+         for (int i = 0; (i < node.childNodeSize()) && (count <= limit); i++) {
+            count += countNodes(node.childNode(i), limit - count);
+         }
+         return count;
+      }
+   }
+
+   /**
+    * Constructs a new instance.
+    *
+    * @param document
+    *           the document to write.
+    */
+   public DocumentWriter(final Document document) {
+      this.document = document;
+   }
+
+   /**
+    * Writes the document.
+    *
+    * @param outputStream
+    *           the output stream, which is flushed but not closed.
+    * @throws IOException
+    *            if the document could not be written.
+    */
+   public void write(final OutputStream outputStream) throws IOException {
+      final Writer writer = new BufferedWriter(new OutputStreamWriter(outputStream, this.document
+            .outputSettings().charset()), BUFFER_SIZE);
+      try {
+         new NodeTraversor(new Visitor(writer)).traverse(this.document);
+      } catch (final ReplacerException e) {
+         if (e.getCause() instanceof IOException) {
+            throw (IOException) e.getCause();
+         }
+         throw e;
+      }
+      writer.flush();
+   }
+}
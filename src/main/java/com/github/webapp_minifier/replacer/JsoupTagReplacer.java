@@ -1,5 +1,6 @@
 package com.github.webapp_minifier.replacer;
 
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
@@ -13,6 +14,7 @@ import org.jsoup.Jsoup;
 import org.jsoup.nodes.Comment;
 import org.jsoup.nodes.DataNode;
 import org.jsoup.nodes.Document;
+import org.jsoup.nodes.Element;
 import org.jsoup.nodes.Node;
 import org.jsoup.nodes.TextNode;
 import org.jsoup.select.NodeTraversor;
@@ -23,6 +25,13 @@ import com.github.webapp_minifier.options.ParseOptionException;
 /**
  * This class is a {@link TagReplacer} implementation that uses the <a
  * href="http://jsoup.org/">jsoup</a> library.
+ * <p>
+ * By default the modified document is serialized again. When patching, the location of each
+ * replaced or deleted node within the HTML file is recorded instead, and the bytes of the original
+ * file are copied around the replacements. This keeps JSP scriptlets and whitespace as authored and
+ * avoids serializing the whole document. The document is serialized when the nodes cannot be
+ * located, for example when the parser moved them or the encoding is not UTF-8 or a single byte
+ * encoding.
  *
  * @author Lonny
  */
@@ -39,6 +48,9 @@ public class JsoupTagReplacer implements TagReplacer {
    /** The character set encoding name. */
    private final String charsetName;
 
+   /** Indicates that the original HTML is patched rather than the document serialized. */
+   private final boolean patching;
+
    private class Visitor implements NodeVisitor {
 
       private final NodeHandler handler;
@@ -49,16 +61,29 @@ public class JsoupTagReplacer implements TagReplacer {
       /** The collection of nodes to be deleted. */
       private final Collection<Node> toBeDeleted = new ArrayList<Node>();
 
-      public Visitor(final NodeHandler handler) {
+      /** The patch of the original HTML or <code>null</code> if it cannot be patched. */
+      private SourcePatch patch;
+
+      /** The location of the nodes within the original HTML. */
+      private final SourceIndex sourceIndex;
+
+      /** The location of the node currently being processed. */
+      private SourceIndex.Entry currentEntry = null;
+
+      public Visitor(final NodeHandler handler, final SourcePatch patch) {
          this.handler = handler;
+         this.patch = patch;
+         this.sourceIndex = patch == null ? null : new SourceIndex(patch.getHtml());
       }
 
       @Override
       public void head(final Node node, final int depth) {
          if (this.currentNode == null) {
+            final SourceIndex.Entry entry = locate(node);
             if ((node instanceof Comment) || (isExternalCss(node)) || (isEmbeddedCss(node))
                   || (isExternalJs(node)) || (isEmbeddedJs(node))) {
                this.currentNode = node;
+               this.currentEntry = entry;
             } else if (node instanceof TextNode) {
                this.handler.handleText(((TextNode) node).text());
             } else {
@@ -88,6 +113,59 @@ public class JsoupTagReplacer implements TagReplacer {
                throw new ReplacerException(e);
             }
             this.currentNode = null;
+            this.currentEntry = null;
+         }
+      }
+
+      /**
+       * Locates a comment, link, script or style node within the original HTML. Patching is
+       * abandoned if the node is not the next one authored.
+       *
+       * @param node
+       *           the node to locate.
+       * @return the location or <code>null</code> if the node is not located.
+       */
+      private SourceIndex.Entry locate(final Node node) {
+         if ((this.patch == null)
+               || !((node instanceof Comment) || ((node instanceof Element) && ("link"
+                     .equals(node.nodeName()) || "script".equals(node.nodeName()) || "style"
+                     .equals(node.nodeName()))))) {
+            return null;
+         }
+         final SourceIndex.Entry entry = this.sourceIndex.next();
+         final boolean located;
+         if (entry == null) {
+            located = false;
+         } else if (node instanceof Comment) {
+            located = SourceIndex.COMMENT.equals(entry.getName())
+                  && ((Comment) node).getData().equals(entry.getData());
+         } else {
+            located = node.nodeName().equals(entry.getName())
+                  && node.attr("src").equals(entry.getTag().attr("src"))
+                  && node.attr("href").equals(entry.getTag().attr("href"));
+         }
+         if (!located) {
+            JsoupTagReplacer.this.log.debug("Could not locate the <" + node.nodeName()
+                  + "> node in the original HTML.  Serializing the document.");
+            this.patch = null;
+            return null;
+         }
+         return entry;
+      }
+
+      /**
+       * Records the replacement of a range of the original HTML, if it is being patched.
+       *
+       * @param start
+       *           the offset of the first replaced character.
+       * @param end
+       *           the offset following the last replaced character.
+       * @param replacement
+       *           the replacement.
+       */
+      private void patch(final int start, final int end, final String replacement) {
+         if (this.patch != null) {
+            this.patch.replace(start, end, replacement);
          }
       }
 
@@ -103,6 +181,7 @@ public class JsoupTagReplacer implements TagReplacer {
          final boolean delete = this.handler.handleComment((node).getData());
          if (delete) {
             this.toBeDeleted.add(node);
+            deleteEntry();
          }
       }
 
@@ -118,8 +197,10 @@ public class JsoupTagReplacer implements TagReplacer {
          final String replacementHref = this.handler.handleExternalCss(node.attr("href"));
          if (replacementHref == null) {
             this.toBeDeleted.add(node);
+            deleteEntry();
          } else {
             node.attr("href", replacementHref);
+            replaceAttribute("href", replacementHref);
          }
       }
 
@@ -148,6 +229,7 @@ public class JsoupTagReplacer implements TagReplacer {
                   removed++;
                } else {
                   dataNode.setWholeData(replacementCss);
+                  replaceContent(replacementCss);
                }
             }
          }
@@ -156,6 +238,7 @@ public class JsoupTagReplacer implements TagReplacer {
          // well.
          if (node.childNodeSize() == removed) {
             this.toBeDeleted.add(node);
+            deleteEntry();
          }
       }
 
@@ -171,8 +254,10 @@ public class JsoupTagReplacer implements TagReplacer {
          final String replacementSrc = this.handler.handleExternalJs(node.attr("src"));
          if (replacementSrc == null) {
             this.toBeDeleted.add(node);
+            deleteEntry();
          } else {
             node.attr("src", replacementSrc);
+            replaceAttribute("src", replacementSrc);
          }
       }
 
@@ -195,6 +280,7 @@ public class JsoupTagReplacer implements TagReplacer {
                   removed++;
                } else {
                   dataNode.setWholeData(replacementJs);
+                  replaceContent(replacementJs);
                }
             }
          }
@@ -203,6 +289,41 @@ public class JsoupTagReplacer implements TagReplacer {
          // well.
          if (node.childNodeSize() == removed) {
             this.toBeDeleted.add(node);
+            deleteEntry();
+         }
+      }
+
+      /** Deletes the node currently being processed from the original HTML. */
+      private void deleteEntry() {
+         if (this.currentEntry != null) {
+            patch(this.currentEntry.getStart(), this.currentEntry.getEnd(), "");
+         }
+      }
+
+      /**
+       * Replaces an attribute of the node currently being processed in the original HTML.
+       *
+       * @param attributeName
+       *           the lower case attribute name.
+       * @param value
+       *           the new value.
+       */
+      private void replaceAttribute(final String attributeName, final String value) {
+         if (this.currentEntry != null) {
+            patch(this.currentEntry.getStart(), this.currentEntry.getContentStart(),
+                  this.currentEntry.getTag().replace(attributeName, value));
+         }
+      }
+
+      /**
+       * Replaces the content of the node currently being processed in the original HTML.
+       *
+       * @param content
+       *           the new content.
+       */
+      private void replaceContent(final String content) {
+         if (this.currentEntry != null) {
+            patch(this.currentEntry.getContentStart(), this.currentEntry.getContentEnd(), content);
          }
       }
 
@@ -287,11 +408,36 @@ public class JsoupTagReplacer implements TagReplacer {
             node.remove();
          }
       }
+
+      /**
+       * Returns the patch of the original HTML.
+       *
+       * @return the patch or <code>null</code> if the document must be serialized.
+       */
+      public SourcePatch getPatch() {
+         return (this.patch != null) && this.sourceIndex.isComplete() ? this.patch : null;
+      }
    }
 
    public JsoupTagReplacer(final Log log, final String charsetName) {
+      this(log, charsetName, false);
+   }
+
+   /**
+    * Constructs a new instance.
+    *
+    * @param log
+    *           the log instance.
+    * @param charsetName
+    *           the character set encoding name.
+    * @param patching
+    *           indicates that the original HTML should be patched rather than the document
+    *           serialized.
+    */
+   public JsoupTagReplacer(final Log log, final String charsetName, final boolean patching) {
       this.log = log;
       this.charsetName = charsetName;
+      this.patching = patching;
    }
 
    @Override
@@ -307,15 +453,35 @@ public class JsoupTagReplacer implements TagReplacer {
          throw new IllegalArgumentException("The base URI cannot be null");
       }
 
-      final Visitor visitor = new Visitor(handler);
+      final SourcePatch patch;
+      final Document document;
+      if (this.patching) {
+         final byte[] bytes = IOUtil.toByteArray(inputStream);
+         patch = SourcePatch.create(bytes, this.charsetName);
+         if (patch == null) {
+            document = Jsoup.parse(new ByteArrayInputStream(bytes), this.charsetName, baseUri);
+         } else {
+            document = Jsoup.parse(patch.getHtml(), baseUri);
+            // A document parsed from a string is otherwise serialized as UTF-8.
+            if (this.charsetName != null) {
+               document.outputSettings().charset(this.charsetName);
+            }
+         }
+      } else {
+         patch = null;
+         document = Jsoup.parse(inputStream, this.charsetName, baseUri);
+      }
+      final Visitor visitor = new Visitor(handler, patch);
       final NodeTraversor traversor = new NodeTraversor(visitor);
-      final Document document = Jsoup.parse(inputStream, this.charsetName, baseUri);
 
       traversor.traverse(document);
       visitor.cleanUp();
 
+      if (visitor.getPatch() != null) {
+         visitor.getPatch().write(outputStream);
+         return;
+      }
       document.outputSettings().prettyPrint(false);
-      final String html = document.outerHtml();
-      IOUtil.copy(html, outputStream);
+      new DocumentWriter(document).write(outputStream);
    }
 }
@@ -0,0 +1,298 @@
+package com.github.webapp_minifier.replacer;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * This class locates the comments and the <code>&lt;link></code>, <code>&lt;script></code> and
+ * <code>&lt;style></code> elements of an HTML file in the order they are authored. The contents of
+ * JSP scriptlets and of elements whose content is not markup are skipped, as a parser would.
+ *
+ * @author Lonny
+ */
+final class SourceIndex {
+
+   /** The node name of comments. */
+   static final String COMMENT = "#comment";
+
+   /** The elements whose content is not markup. */
+   private static final String[] RAW_TEXT_ELEMENTS = { "textarea", "title", "xmp", "iframe",
+         "noembed", "noframes", "plaintext" };
+
+   /**
+    * A comment or element of the HTML file.
+    */
+   static final class Entry {
+      /** The node name, which is {@link SourceIndex#COMMENT} for comments. */
+      private final String name;
+
+      /** The start tag or <code>null</code> for comments. */
+      private final StartTag tag;
+
+      /** The comment data or <code>null</code> for elements. */
+      private final String data;
+
+      /** The offset of the first character. */
+      private final int start;
+
+      /** The offset following the start tag or the start of the comment. */
+      private final int contentStart;
+
+      /** The offset of the end tag or of the end of the comment. */
+      private final int contentEnd;
+
+      /** The offset following the last character. */
+      private final int end;
+
+      /**
+       * Constructs a new entry.
+       *
+       * @param name
+       *           the node name.
+       * @param tag
+       *           the start tag or <code>null</code> for comments.
+       * @param data
+       *           the comment data or <code>null</code> for elements.
+       * @param start
+       *           the offset of the first character.
+       * @param contentStart
+       *           the offset following the start tag or the start of the comment.
+       * @param contentEnd
+       *           the offset of the end tag or of the end of the comment.
+       * @param end
+       *           the offset following the last character.
+       */
+      Entry(final String name, final StartTag tag, final String data, final int start,
+            final int contentStart, final int contentEnd, final int end) {
+         this.name = name;
+         this.tag = tag;
+         this.data = data;
+         this.start = start;
+         this.contentStart = contentStart;
+         this.contentEnd = contentEnd;
+         this.end = end;
+      }
+
+      /**
+       * Returns the node name.
+       *
+       * @return the lower case element name or {@link SourceIndex#COMMENT}.
+       */
+      public String getName() {
+         return this.name;
+      }
+
+      /**
+       * Returns the start tag.
+       *
+       * @return the start tag or <code>null</code> for comments.
+       */
+      public StartTag getTag() {
+         return this.tag;
+      }
+
+      /**
+       * Returns the comment data.
+       *
+       * @return the comment data or <code>null</code> for elements.
+       */
+      public String getData() {
+         return this.data;
+      }
+
+      /**
+       * Returns the offset of the first character.
+       *
+       * @return the offset.
+       */
+      public int getStart() {
+         return this.start;
+      }
+
+      /**
+       * Returns the offset following the start tag.
+       *
+       * @return the offset.
+       */
+      public int getContentStart() {
+         return this.contentStart;
+      }
+
+      /**
+       * Returns the offset of the end tag.
+       *
+       * @return the offset.
+       */
+      public int getContentEnd() {
+         return this.contentEnd;
+      }
+
+      /**
+       * Returns the offset following the last character.
+       *
+       * @return the offset.
+       */
+      public int getEnd() {
+         return this.end;
+      }
+   }
+
+   /** The entries in the order they are authored. */
+   private final List<Entry> entries = new ArrayList<Entry>();
+
+   /** The index of the next entry. */
+   private int next;
+
+   /**
+    * Constructs a new index of the given HTML.
+    *
+    * @param html
+    *           the HTML as authored.
+    */
+   public SourceIndex(final String html) {
+      final int length = html.length();
+      int i = html.indexOf('<');
+      while ((i >= 0) && (i + 1 < length)) {
+         final char c = html.charAt(i + 1);
+         if (c == '%') {
+            i = skipPast(html, "%>", i + 2);
+         } else if (html.startsWith("!--", i + 1)) {
+            final int close = html.indexOf("-->", i + 4);
+            final int contentEnd = close < 0 ? length : close;
+            final int end = close < 0 ? length : close + 3;
+            this.entries.add(new Entry(COMMENT, null, html.substring(i + 4, contentEnd), i,
+                  i + 4, contentEnd, end));
+            i = end;
+         } else if (((c == '!') && !html.regionMatches(true, i + 2, "doctype", 0, 7))
+               || (c == '?') || ((c == '/') && (i + 2 < length) && (html.charAt(i + 2) != '>')
+                     && !StartTag.isLetter(html.charAt(i + 2)))) {
+            // Parsers treat these as comments, the data starting after the '?', '!' or '/'.
+            final int dataStart = c == '?' ? i + 1 : i + 2;
+            final int close = html.indexOf('>', dataStart);
+            final int contentEnd = close < 0 ? length : close;
+            final int end = close < 0 ? length : close + 1;
+            this.entries.add(new Entry(COMMENT, null, html.substring(dataStart, contentEnd), i,
+                  dataStart, contentEnd, end));
+            i = end;
+         } else if ((c == '!') || (c == '/')) {
+            i = skipPast(html, ">", i + 2);
+         } else if (StartTag.isLetter(c)) {
+            final int tagEnd = findTagEnd(html, i + 1);
+            final StartTag tag = new StartTag(html.substring(i, tagEnd));
+            final String name = tag.getName();
+            if ("script".equals(name) || "style".equals(name)) {
+               final int contentEnd = findEndTag(html, name, tagEnd);
+               final int end = contentEnd < length ? skipPast(html, ">", contentEnd) : length;
+               this.entries.add(new Entry(name, tag, null, i, tagEnd, contentEnd, end));
+               i = end;
+            } else if ("link".equals(name)) {
+               this.entries.add(new Entry(name, tag, null, i, tagEnd, tagEnd, tagEnd));
+               i = tagEnd;
+            } else {
+               i = tagEnd;
+               for (final String rawTextElement : RAW_TEXT_ELEMENTS) {
+                  if (rawTextElement.equals(name)) {
+                     i = findEndTag(html, name, tagEnd);
+                     break;
+                  }
+               }
+            }
+         } else {
+            i++;
+         }
+         i = i < length ? html.indexOf('<', i) : -1;
+      }
+   }
+
+   /**
+    * Returns the next entry.
+    *
+    * @return the next entry or <code>null</code> if every entry has been returned.
+    */
+   public Entry next() {
+      return this.next < this.entries.size() ? this.entries.get(this.next++) : null;
+   }
+
+   /**
+    * Determines if every entry has been returned.
+    *
+    * @return <code>true</code> if there are no more entries.
+    */
+   public boolean isComplete() {
+      return this.next == this.entries.size();
+   }
+
+   /**
+    * Returns the offset following the terminator.
+    *
+    * @param html
+    *           the HTML.
+    * @param terminator
+    *           the terminator.
+    * @param offset
+    *           the offset to start searching from.
+    * @return the offset following the terminator or the length of the HTML if it is not found.
+    */
+   private static int skipPast(final String html, final String terminator, final int offset) {
+      final int index = html.indexOf(terminator, offset);
+      return index < 0 ? html.length() : index + terminator.length();
+   }
+
+   /**
+    * Returns the offset following a start tag, ignoring any <code>></code> within quoted
+    * attribute values.
+    *
+    * @param html
+    *           the HTML.
+    * @param offset
+    *           the offset following the <code>&lt;</code>.
+    * @return the offset following the start tag.
+    */
+   private static int findTagEnd(final String html, final int offset) {
+      char quote = 0;
+      boolean afterEquals = false;
+      for (int i = offset; i < html.length(); i++) {
+         final char c = html.charAt(i);
+         if (quote != 0) {
+            if (c == quote) {
+               quote = 0;
+            }
+         } else if (c == '>') {
+            return i + 1;
+         } else if (afterEquals && ((c == '"') || (c == '\''))) {
+            quote = c;
+            afterEquals = false;
+         } else if (c == '=') {
+            afterEquals = true;
+         } else if (!StartTag.isSpace(c)) {
+            afterEquals = false;
+         }
+      }
+      return html.length();
+   }
+
+   /**
+    * Returns the offset of the end tag of a raw text element.
+    *
+    * @param html
+    *           the HTML.
+    * @param name
+    *           the lower case element name.
+    * @param offset
+    *           the offset following the start tag.
+    * @return the offset of the end tag or the length of the HTML if it is not found.
+    */
+   private static int findEndTag(final String html, final String name, final int offset) {
+      int i = html.indexOf("</", offset);
+      while (i >= 0) {
+         final int after = i + 2 + name.length();
+         if (html.regionMatches(true, i + 2, name, 0, name.length())
+               && ((after == html.length()) || (html.charAt(after) == '>')
+                     || (html.charAt(after) == '/') || StartTag.isSpace(html.charAt(after)))) {
+            return i;
+         }
+         i = html.indexOf("</", i + 2);
+      }
+      return html.length();
+   }
+}
@@ -0,0 +1,208 @@
+package com.github.webapp_minifier.replacer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.CharacterCodingException;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CodingErrorAction;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * This class writes an HTML file by copying the bytes of the original file between the replaced
+ * ranges and encoding only the replacements. Character offsets within the decoded HTML are mapped
+ * to byte offsets, which is only possible for UTF-8 and single byte encodings.
+ *
+ * @author Lonny
+ */
+final class SourcePatch {
+
+   /** The byte order mark. */
+   private static final char BYTE_ORDER_MARK = '\uFEFF';
+
+   /**
+    * A replaced range of the HTML.
+    */
+   private static final class Edit {
+      /** The offset of the first replaced character. */
+      private final int start;
+
+      /** The offset following the last replaced character. */
+      private final int end;
+
+      /** The replacement. */
+      private final String replacement;
+
+      /**
+       * Constructs a new edit.
+       *
+       * @param start
+       *           the offset of the first replaced character.
+       * @param end
+       *           the offset following the last replaced character.
+       * @param replacement
+       *           the replacement.
+       */
+      public Edit(final int start, final int end, final String replacement) {
+         this.start = start;
+         this.end = end;
+         this.replacement = replacement;
+      }
+   }
+
+   /** The original bytes. */
+   private final byte[] bytes;
+
+   /** The character set encoding. */
+   private final Charset charset;
+
+   /** Indicates that the encoding is UTF-8 rather than a single byte encoding. */
+   private final boolean utf8;
+
+   /** The decoded HTML without any byte order mark. */
+   private final String html;
+
+   /** The number of bytes of the byte order mark. */
+   private final int byteOrderMarkLength;
+
+   /** The edits in the order of their offsets. */
+   private final List<Edit> edits = new ArrayList<Edit>();
+
+   /** The character offset of the last mapped byte offset. */
+   private int mappedOffset;
+
+   /** The last mapped byte offset. */
+   private int mappedByteOffset;
+
+   /**
+    * Constructs a new instance.
+    *
+    * @param bytes
+    *           the original bytes.
+    * @param charset
+    *           the character set encoding.
+    * @param utf8
+    *           indicates that the encoding is UTF-8 rather than a single byte encoding.
+    * @param html
+    *           the decoded HTML.
+    */
+   private SourcePatch(final byte[] bytes, final Charset charset, final boolean utf8,
+         final String html) {
+      this.bytes = bytes;
+      this.charset = charset;
+      this.utf8 = utf8;
+      if (utf8 && !html.isEmpty() && (html.charAt(0) == BYTE_ORDER_MARK)) {
+         this.html = html.substring(1);
+         this.byteOrderMarkLength = 3;
+      } else {
+         this.html = html;
+         this.byteOrderMarkLength = 0;
+      }
+      this.mappedByteOffset = this.byteOrderMarkLength;
+   }
+
+   /**
+    * Decodes an HTML file which can be patched.
+    *
+    * @param bytes
+    *           the original bytes.
+    * @param charsetName
+    *           the character set encoding name.
+    * @return the patch or <code>null</code> if the encoding is not supported or the bytes are not
+    *         valid in the encoding.
+    */
+   public static SourcePatch create(final byte[] bytes, final String charsetName) {
+      if ((charsetName == null) || !Charset.isSupported(charsetName)) {
+         return null;
+      }
+      final Charset charset = Charset.forName(charsetName);
+      final boolean utf8 = "UTF-8".equals(charset.name());
+      final CharsetDecoder decoder = charset.newDecoder();
+      if (!utf8 && ((decoder.maxCharsPerByte() != 1.0f)
+            || (charset.newEncoder().maxBytesPerChar() != 1.0f))) {
+         return null;
+      }
+      try {
+         final String html = decoder.onMalformedInput(CodingErrorAction.REPORT)
+               .onUnmappableCharacter(CodingErrorAction.REPORT).decode(ByteBuffer.wrap(bytes))
+               .toString();
+         return new SourcePatch(bytes, charset, utf8, html);
+      } catch (final CharacterCodingException e) {
+         return null;
+      }
+   }
+
+   /**
+    * Returns the decoded HTML without any byte order mark. The offsets of the edits are within
+    * this HTML.
+    *
+    * @return the HTML.
+    */
+   public String getHtml() {
+      return this.html;
+   }
+
+   /**
+    * Replaces a range of the HTML. The ranges must be replaced in order and must not overlap.
+    *
+    * @param start
+    *           the offset of the first replaced character.
+    * @param end
+    *           the offset following the last replaced character.
+    * @param replacement
+    *           the replacement, which may be empty to delete the range.
+    */
+   public void replace(final int start, final int end, final String replacement) {
+      this.edits.add(new Edit(start, end, replacement));
+   }
+
+   /**
+    * Writes the patched HTML.
+    *
+    * @param outputStream
+    *           the output stream.
+    * @throws IOException
+    *            if the HTML could not be written.
+    */
+   public void write(final OutputStream outputStream) throws IOException {
+      int byteOffset = 0;
+      for (final Edit edit : this.edits) {
+         final int start = toByteOffset(edit.start);
+         outputStream.write(this.bytes, byteOffset, start - byteOffset);
+         outputStream.write(edit.replacement.getBytes(this.charset));
+         byteOffset = toByteOffset(edit.end);
+      }
+      outputStream.write(this.bytes, byteOffset, this.bytes.length - byteOffset);
+   }
+
+   /**
+    * Maps an offset within the HTML to an offset within the original bytes. Offsets must be
+    * mapped in ascending order.
+    *
+    * @param offset
+    *           the character offset.
+    * @return the byte offset.
+    */
+   private int toByteOffset(final int offset) {
+      if (!this.utf8) {
+         return this.byteOrderMarkLength + offset;
+      }
+      for (int i = this.mappedOffset; i < offset; i++) {
+         final char c = this.html.charAt(i);
+         if (c < 0x80) {
+            this.mappedByteOffset++;
+         } else if (c < 0x800) {
+            this.mappedByteOffset += 2;
+         } else if ((c >= Character.MIN_SURROGATE) && (c <= Character.MAX_SURROGATE)) {
+            // Each half of a surrogate pair accounts for two of its four bytes.
+            this.mappedByteOffset += 2;
+         } else {
+            this.mappedByteOffset += 3;
+         }
+      }
+      this.mappedOffset = offset;
+      return this.mappedByteOffset;
+   }
+}
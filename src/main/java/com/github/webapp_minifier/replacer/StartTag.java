@@ -0,0 +1,298 @@
+package com.github.webapp_minifier.replacer;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * This class is a start tag as it appears in the HTML. It allows the value of an attribute to be
+ * replaced while the rest of the tag is kept as authored.
+ *
+ * @author Lonny
+ */
+final class StartTag {
+
+   /**
+    * An attribute of a start tag.
+    */
+   private static class Attribute {
+      /** The lower case name. */
+      private final String name;
+
+      /** The decoded value. */
+      private final String value;
+
+      /** The offset of the first character of the value within the tag or -1. */
+      private final int start;
+
+      /** The offset following the last character of the value within the tag. */
+      private final int end;
+
+      /** Indicates that the value is quoted. */
+      private final boolean quoted;
+
+      /**
+       * Constructs a new attribute.
+       *
+       * @param name
+       *           the lower case name.
+       * @param value
+       *           the decoded value.
+       * @param start
+       *           the offset of the first character of the value within the tag or -1 if the
+       *           attribute has no value.
+       * @param end
+       *           the offset following the last character of the value within the tag.
+       * @param quoted
+       *           indicates that the value is quoted.
+       */
+      public Attribute(final String name, final String value, final int start, final int end,
+            final boolean quoted) {
+         this.name = name;
+         this.value = value;
+         this.start = start;
+         this.end = end;
+         this.quoted = quoted;
+      }
+   }
+
+   /** The tag as authored. */
+   private final String text;
+
+   /** The lower case element name. */
+   private final String name;
+
+   /** The attributes. */
+   private final List<Attribute> attributes;
+
+   /**
+    * Constructs a new start tag.
+    *
+    * @param text
+    *           the tag as authored, starting with the <code>&lt;</code>.
+    */
+   public StartTag(final String text) {
+      this.text = text;
+      int i = 1;
+      while ((i < text.length()) && !isSpace(text.charAt(i)) && (text.charAt(i) != '>')
+            && (text.charAt(i) != '/')) {
+         i++;
+      }
+      this.name = text.substring(1, i).toLowerCase(Locale.ENGLISH);
+      this.attributes = parseAttributes(text, i);
+   }
+
+   /**
+    * Returns the tag as authored.
+    *
+    * @return the tag.
+    */
+   public String getText() {
+      return this.text;
+   }
+
+   /**
+    * Returns the element name.
+    *
+    * @return the lower case element name.
+    */
+   public String getName() {
+      return this.name;
+   }
+
+   /**
+    * Returns the value of the attribute with the given name.
+    *
+    * @param attributeName
+    *           the lower case attribute name.
+    * @return the value or an empty string if the tag does not have the attribute.
+    */
+   public String attr(final String attributeName) {
+      final Attribute attribute = getAttribute(attributeName);
+      return attribute == null ? "" : attribute.value;
+   }
+
+   /**
+    * Determines if the tag has the attribute.
+    *
+    * @param attributeName
+    *           the lower case attribute name.
+    * @return <code>true</code> if the tag has the attribute.
+    */
+   public boolean hasAttr(final String attributeName) {
+      return getAttribute(attributeName) != null;
+   }
+
+   /**
+    * Returns the tag with the value of an attribute replaced.
+    *
+    * @param attributeName
+    *           the lower case name of an attribute of the tag.
+    * @param value
+    *           the new value.
+    * @return the modified tag.
+    */
+   public String replace(final String attributeName, final String value) {
+      final Attribute attribute = getAttribute(attributeName);
+      final String escaped = value.replace("&", "&amp;").replace("\"", "&quot;");
+      if (attribute.start < 0) {
+         return this.text.substring(0, attribute.end) + "=\"" + escaped + '"'
+               + this.text.substring(attribute.end);
+      } else if (attribute.quoted) {
+         final char quote = this.text.charAt(attribute.start - 1);
+         return this.text.substring(0, attribute.start)
+               + (quote == '\'' ? escaped.replace("'", "&#39;") : escaped)
+               + this.text.substring(attribute.end);
+      }
+      return this.text.substring(0, attribute.start) + '"' + escaped + '"'
+            + this.text.substring(attribute.end);
+   }
+
+   /**
+    * Returns the attribute with the given name.
+    *
+    * @param attributeName
+    *           the lower case attribute name.
+    * @return the attribute or <code>null</code> if the tag does not have it.
+    */
+   private Attribute getAttribute(final String attributeName) {
+      for (final Attribute attribute : this.attributes) {
+         if (attribute.name.equals(attributeName)) {
+            return attribute;
+         }
+      }
+      return null;
+   }
+
+   /**
+    * Parses the attributes of a start tag.
+    *
+    * @param text
+    *           the start tag.
+    * @param offset
+    *           the offset following the element name.
+    * @return the attributes.
+    */
+   private static List<Attribute> parseAttributes(final String text, final int offset) {
+      final List<Attribute> attributes = new ArrayList<Attribute>();
+      int i = offset;
+      final int length = text.endsWith(">") ? text.length() - 1 : text.length();
+      while (i < length) {
+         final char c = text.charAt(i);
+         if (isSpace(c) || (c == '/')) {
+            i++;
+            continue;
+         }
+         final int nameStart = i;
+         while ((i < length) && !isSpace(text.charAt(i)) && (text.charAt(i) != '=')
+               && (text.charAt(i) != '/')) {
+            i++;
+         }
+         final String name = text.substring(nameStart, i).toLowerCase(Locale.ENGLISH);
+         final int nameEnd = i;
+         while ((i < length) && isSpace(text.charAt(i))) {
+            i++;
+         }
+         if ((i < length) && (text.charAt(i) == '=')) {
+            i++;
+            while ((i < length) && isSpace(text.charAt(i))) {
+               i++;
+            }
+            final int start;
+            final int end;
+            final boolean quoted = (i < length)
+                  && ((text.charAt(i) == '"') || (text.charAt(i) == '\''));
+            if (quoted) {
+               final char quote = text.charAt(i);
+               start = i + 1;
+               final int close = text.indexOf(quote, start);
+               end = (close < 0) || (close > length) ? length : close;
+               i = Math.min(end + 1, length);
+            } else {
+               start = i;
+               while ((i < length) && !isSpace(text.charAt(i))) {
+                  i++;
+               }
+               end = i;
+            }
+            attributes.add(new Attribute(name, decode(text.substring(start, end)), start, end,
+                  quoted));
+         } else {
+            attributes.add(new Attribute(name, "", -1, nameEnd, false));
+         }
+      }
+      return attributes;
+   }
+
+   /**
+    * Decodes the common character references of an attribute value.
+    *
+    * @param value
+    *           the attribute value as authored.
+    * @return the decoded value.
+    */
+   private static String decode(final String value) {
+      if (value.indexOf('&') < 0) {
+         return value;
+      }
+      final StringBuilder builder = new StringBuilder(value.length());
+      int i = 0;
+      while (i < value.length()) {
+         final char c = value.charAt(i);
+         final int semicolon = value.indexOf(';', i);
+         if ((c == '&') && (semicolon > i + 1) && (semicolon - i <= 10)) {
+            final String entity = value.substring(i + 1, semicolon);
+            String decoded = null;
+            if ("amp".equals(entity)) {
+               decoded = "&";
+            } else if ("quot".equals(entity)) {
+               decoded = "\"";
+            } else if ("apos".equals(entity)) {
+               decoded = "'";
+            } else if ("lt".equals(entity)) {
+               decoded = "<";
+            } else if ("gt".equals(entity)) {
+               decoded = ">";
+            } else if (entity.startsWith("#")) {
+               try {
+                  final int codePoint = (entity.startsWith("#x") || entity.startsWith("#X")) ? Integer
+                        .parseInt(entity.substring(2), 16) : Integer.parseInt(entity.substring(1));
+                  decoded = new String(Character.toChars(codePoint));
+               } catch (final IllegalArgumentException e) {
+                  decoded = null;
+               }
+            }
+            if (decoded != null) {
+               builder.append(decoded);
+               i = semicolon + 1;
+               continue;
+            }
+         }
+         builder.append(c);
+         i++;
+      }
+      return builder.toString();
+   }
+
+   /**
+    * Determines if the character is HTML whitespace.
+    *
+    * @param c
+    *           the character.
+    * @return <code>true</code> if the character is whitespace.
+    */
+   static boolean isSpace(final int c) {
+      return (c == ' ') || (c == '\t') || (c == '\n') || (c == '\r') || (c == '\f');
+   }
+
+   /**
+    * Determines if the character is an ASCII letter.
+    *
+    * @param c
+    *           the character.
+    * @return <code>true</code> if the character is a letter.
+    */
+   static boolean isLetter(final int c) {
+      return ((c >= 'a') && (c <= 'z')) || ((c >= 'A') && (c <= 'Z'));
+   }
+}
@@ -0,0 +1,451 @@
+package com.github.webapp_minifier.replacer;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.PushbackReader;
+import java.io.Writer;
+
+import org.apache.maven.plugin.logging.Log;
+import org.codehaus.plexus.component.annotations.Component;
+
+import com.github.webapp_minifier.options.ParseOptionException;
+
+/**
+ * This class is a {@link TagReplacer} implementation that tokenizes the HTML as it is read rather
+ * than building a document. Everything except the replaced or deleted <code>&lt;link></code>,
+ * <code>&lt;script></code> and <code>&lt;style></code> tags and the deleted comments is copied to
+ * the output exactly as authored, including JSP scriptlets. The replacer itself only holds the
+ * largest single tag, comment, script or style rather than the whole page, although the caller may
+ * still buffer the input and output.
+ * <p>
+ * Unlike {@link JsoupTagReplacer}, elements which are implied but not present in the HTML, such as
+ * a missing <code>&lt;head></code>, are not reported to the {@link NodeHandler}.
+ *
+ * @author Lonny
+ */
+@Component(role = TagReplacer.class, hint = "streaming")
+public class StreamingTagReplacer implements TagReplacer {
+
+   private static final String TEXT_CSS = "text/css";
+   private static final String APPLICATION_JS = "application/javascript";
+   private static final String TEXT_JS = "text/javascript";
+
+   /** The number of characters of text reported to the handler at once. */
+   private static final int TEXT_CHUNK_SIZE = 8192;
+
+   /** The elements whose content is copied without looking for tags. */
+   private static final String[] RAW_TEXT_ELEMENTS = { "textarea", "title", "xmp", "iframe",
+         "noembed", "noframes" };
+
+   /** The log instance. */
+   private final Log log;
+
+   /** The character set encoding name. */
+   private final String charsetName;
+
+   /**
+    * Reads the HTML, reports the tags to the handler and writes the result.
+    */
+   private class Scanner {
+
+      /** The node handler. */
+      private final NodeHandler handler;
+
+      /** The HTML input. */
+      private final PushbackReader reader;
+
+      /** The HTML output. */
+      private final Writer writer;
+
+      /**
+       * Constructs a new scanner.
+       *
+       * @param handler
+       *           the node handler.
+       * @param reader
+       *           the HTML input.
+       * @param writer
+       *           the HTML output.
+       */
+      public Scanner(final NodeHandler handler, final PushbackReader reader, final Writer writer) {
+         this.handler = handler;
+         this.reader = reader;
+         this.writer = writer;
+      }
+
+      /**
+       * Scans the HTML.
+       *
+       * @throws IOException
+       *            if the HTML could not be read or written.
+       * @throws ParseOptionException
+       *            if an error occurs while parsing options from a comment.
+       */
+      public void scan() throws IOException, ParseOptionException {
+         final StringBuilder text = new StringBuilder();
+         int c;
+         while ((c = this.reader.read()) != -1) {
+            if (c == '<') {
+               final int next = peek();
+               if ((next == '!') || (next == '/') || (next == '?') || (next == '%')
+                     || StartTag.isLetter(next)) {
+                  handleText(text);
+                  scanMarkup(next);
+                  continue;
+               }
+            }
+            text.append((char) c);
+            if (text.length() >= TEXT_CHUNK_SIZE) {
+               handleText(text);
+            }
+         }
+         handleText(text);
+      }
+
+      /**
+       * Scans the markup following a <code>&lt;</code>.
+       *
+       * @param next
+       *           the character following the <code>&lt;</code>.
+       * @throws IOException
+       *            if the HTML could not be read or written.
+       * @throws ParseOptionException
+       *            if an error occurs while parsing options from a comment.
+       */
+      private void scanMarkup(final int next) throws IOException, ParseOptionException {
+         if (next == '%') {
+            // Copy JSP scriptlets, directives and expressions as text.
+            final StringBuilder scriptlet = new StringBuilder("<");
+            readUntil("%>", scriptlet);
+            this.writer.write(scriptlet.toString());
+            this.handler.handleText(scriptlet.toString());
+         } else if (next == '!') {
+            final StringBuilder markup = new StringBuilder("<");
+            markup.append((char) this.reader.read());
+            if (lookingAt("--")) {
+               markup.append("--");
+               final int start = markup.length();
+               final boolean closed = readUntil("-->", markup);
+               final String data = markup.substring(start, markup.length() - (closed ? 3 : 0));
+               if (!this.handler.handleComment(data)) {
+                  this.writer.write(markup.toString());
+               }
+            } else {
+               readUntil(">", markup);
+               this.writer.write(markup.toString());
+               this.handler.handleOther("#doctype");
+            }
+         } else if ((next == '/') || (next == '?')) {
+            final StringBuilder markup = new StringBuilder("<");
+            readUntil(">", markup);
+            this.writer.write(markup.toString());
+         } else {
+            scanElement(new StartTag(readStartTag()));
+         }
+      }
+
+      /**
+       * Scans an element following its start tag.
+       *
+       * @param tag
+       *           the start tag.
+       * @throws IOException
+       *            if the HTML could not be read or written.
+       */
+      private void scanElement(final StartTag tag) throws IOException {
+         if ("script".equals(tag.getName())) {
+            final StringBuilder content = new StringBuilder();
+            final String endTag = readRawText(tag.getName(), content);
+            if (isJsScript(tag) && tag.hasAttr("src")) {
+               final String replacementSrc = this.handler.handleExternalJs(tag.attr("src"));
+               if (replacementSrc != null) {
+                  write(tag.replace("src", replacementSrc), content, endTag);
+               }
+            } else if (isJsScript(tag)) {
+               if (content.length() > 0) {
+                  final String replacementJs = this.handler.handleEmbeddedJs(content.toString());
+                  if (replacementJs != null) {
+                     write(tag.getText(), replacementJs, endTag);
+                  }
+               }
+            } else {
+               this.handler.handleOther(tag.getName());
+               write(tag.getText(), content, endTag);
+            }
+         } else if ("style".equals(tag.getName())) {
+            final StringBuilder content = new StringBuilder();
+            final String endTag = readRawText(tag.getName(), content);
+            if (TEXT_CSS.equalsIgnoreCase(tag.attr("type"))) {
+               final String css = content.toString();
+               final boolean scoped = tag.hasAttr("scoped");
+               String replacementCss = css.length() > 0 ? this.handler.handleEmbeddedCss(css,
+                     scoped) : null;
+               if (scoped && (replacementCss == null) && (css.length() > 0)) {
+                  StreamingTagReplacer.this.log
+                        .warn("Scoped style cannot be removed.  Preserving the embedded CSS:\n"
+                              + css);
+                  replacementCss = css;
+               }
+               if (replacementCss != null) {
+                  write(tag.getText(), replacementCss, endTag);
+               }
+            } else {
+               this.handler.handleOther(tag.getName());
+               write(tag.getText(), content, endTag);
+            }
+         } else if ("link".equals(tag.getName()) && "stylesheet".equalsIgnoreCase(tag.attr("rel"))
+               && TEXT_CSS.equalsIgnoreCase(tag.attr("type")) && tag.hasAttr("href")) {
+            final String replacementHref = this.handler.handleExternalCss(tag.attr("href"));
+            if (replacementHref != null) {
+               this.writer.write(tag.replace("href", replacementHref));
+            }
+         } else {
+            this.handler.handleOther(tag.getName());
+            this.writer.write(tag.getText());
+            for (final String rawTextElement : RAW_TEXT_ELEMENTS) {
+               if (rawTextElement.equals(tag.getName())) {
+                  this.writer.write(readRawText(tag.getName(), this.writer));
+                  break;
+               }
+            }
+         }
+      }
+
+      /**
+       * Writes an element.
+       *
+       * @param startTag
+       *           the start tag.
+       * @param content
+       *           the content.
+       * @param endTag
+       *           the end tag.
+       * @throws IOException
+       *            if the element could not be written.
+       */
+      private void write(final String startTag, final CharSequence content, final String endTag)
+            throws IOException {
+         this.writer.write(startTag);
+         this.writer.append(content);
+         this.writer.write(endTag);
+      }
+
+      /**
+       * Writes the text and reports it to the handler.
+       *
+       * @param text
+       *           the text, which is cleared.
+       * @throws IOException
+       *            if the text could not be written.
+       */
+      private void handleText(final StringBuilder text) throws IOException {
+         if (text.length() > 0) {
+            final String string = text.toString();
+            this.writer.write(string);
+            this.handler.handleText(string);
+            text.setLength(0);
+         }
+      }
+
+      /**
+       * Reads a start tag. The <code>&lt;</code> has already been read.
+       *
+       * @return the start tag as authored.
+       * @throws IOException
+       *            if the HTML could not be read.
+       */
+      private String readStartTag() throws IOException {
+         final StringBuilder tag = new StringBuilder("<");
+         char quote = 0;
+         boolean afterEquals = false;
+         int c;
+         while ((c = this.reader.read()) != -1) {
+            tag.append((char) c);
+            if (quote != 0) {
+               if (c == quote) {
+                  quote = 0;
+               }
+            } else if (c == '>') {
+               break;
+            } else if (afterEquals && ((c == '"') || (c == '\''))) {
+               quote = (char) c;
+               afterEquals = false;
+            } else if (c == '=') {
+               afterEquals = true;
+            } else if (!StartTag.isSpace(c)) {
+               afterEquals = false;
+            }
+         }
+         return tag.toString();
+      }
+
+      /**
+       * Reads the content of a raw text element up to and including its end tag.
+       *
+       * @param name
+       *           the lower case element name.
+       * @param content
+       *           the place to append the content.
+       * @return the end tag or an empty string if the input ended first.
+       * @throws IOException
+       *            if the HTML could not be read or the content could not be appended.
+       */
+      private String readRawText(final String name, final Appendable content)
+            throws IOException {
+         int c;
+         while ((c = this.reader.read()) != -1) {
+            if ((c == '<') && (peek() == '/')) {
+               final StringBuilder endTag = new StringBuilder("<");
+               endTag.append((char) this.reader.read());
+               boolean matches = true;
+               for (int i = 0; matches && (i < name.length()); i++) {
+                  final int n = this.reader.read();
+                  if (n != -1) {
+                     endTag.append((char) n);
+                  }
+                  matches = Character.toLowerCase(n) == name.charAt(i);
+               }
+               final int n = peek();
+               if (matches && ((n == -1) || (n == '>') || (n == '/') || StartTag.isSpace(n))) {
+                  readUntil(">", endTag);
+                  return endTag.toString();
+               }
+               // Not the end tag, so the last character read may start another tag.
+               if ((endTag.length() > 2) && (endTag.charAt(endTag.length() - 1) == '<')) {
+                  endTag.setLength(endTag.length() - 1);
+                  this.reader.unread('<');
+               }
+               content.append(endTag);
+            } else {
+               content.append((char) c);
+            }
+         }
+         return "";
+      }
+
+      /**
+       * Reads up to and including the terminator or the end of the input.
+       *
+       * @param terminator
+       *           the terminator.
+       * @param builder
+       *           the place to append the characters read.
+       * @return <code>true</code> if the terminator was found.
+       * @throws IOException
+       *            if the HTML could not be read.
+       */
+      private boolean readUntil(final String terminator, final StringBuilder builder)
+            throws IOException {
+         int c;
+         while ((c = this.reader.read()) != -1) {
+            builder.append((char) c);
+            if ((c == terminator.charAt(terminator.length() - 1))
+                  && (builder.length() >= terminator.length())
+                  && builder.substring(builder.length() - terminator.length()).equals(terminator)) {
+               return true;
+            }
+         }
+         return false;
+      }
+
+      /**
+       * Determines if the input continues with the given characters, consuming them if it does.
+       *
+       * @param expected
+       *           the expected characters.
+       * @return <code>true</code> if they were found and consumed.
+       * @throws IOException
+       *            if the HTML could not be read.
+       */
+      private boolean lookingAt(final String expected) throws IOException {
+         final char[] buffer = new char[expected.length()];
+         int length = 0;
+         while (length < buffer.length) {
+            final int c = this.reader.read();
+            if (c == -1) {
+               break;
+            }
+            buffer[length++] = (char) c;
+            if (c != expected.charAt(length - 1)) {
+               break;
+            }
+         }
+         if ((length == buffer.length) && expected.equals(new String(buffer))) {
+            return true;
+         }
+         this.reader.unread(buffer, 0, length);
+         return false;
+      }
+
+      /**
+       * Returns the next character without consuming it.
+       *
+       * @return the next character or -1 at the end of the input.
+       * @throws IOException
+       *            if the HTML could not be read.
+       */
+      private int peek() throws IOException {
+         final int c = this.reader.read();
+         if (c != -1) {
+            this.reader.unread(c);
+         }
+         return c;
+      }
+   }
+
+   /**
+    * Constructs a new instance.
+    *
+    * @param log
+    *           the log instance.
+    * @param charsetName
+    *           the character set encoding name or <code>null</code> for UTF-8.
+    */
+   public StreamingTagReplacer(final Log log, final String charsetName) {
+      this.log = log;
+      this.charsetName = charsetName == null ? "UTF-8" : charsetName;
+   }
+
+   @Override
+   public void process(final InputStream inputStream, final NodeHandler handler,
+         final String baseUri, final OutputStream outputStream) throws IOException {
+      if (inputStream == null) {
+         throw new IllegalArgumentException("The inputStream cannot be null");
+      }
+      if (handler == null) {
+         throw new IllegalArgumentException("The node handler cannot be null");
+      }
+      if (baseUri == null) {
+         throw new IllegalArgumentException("The base URI cannot be null");
+      }
+
+      final PushbackReader reader = new PushbackReader(new BufferedReader(new InputStreamReader(
+            inputStream, this.charsetName)), 16);
+      final Writer writer = new BufferedWriter(new OutputStreamWriter(outputStream,
+            this.charsetName));
+      try {
+         new Scanner(handler, reader, writer).scan();
+      } catch (final ParseOptionException e) {
+         throw new ReplacerException(e);
+      }
+      handler.complete();
+      writer.flush();
+   }
+
+   /**
+    * Determines if the tag is a JavaScript tag.
+    *
+    * @param tag
+    *           the start tag.
+    * @return <code>true</code> if the tag contains or references JavaScript.
+    */
+   private static boolean isJsScript(final StartTag tag) {
+      return !tag.hasAttr("type") || TEXT_JS.equalsIgnoreCase(tag.attr("type"))
+            || APPLICATION_JS.equalsIgnoreCase(tag.attr("type"));
+   }
+}
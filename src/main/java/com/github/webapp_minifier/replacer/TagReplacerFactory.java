@@ -12,6 +12,10 @@ public final class TagReplacerFactory {
       TagReplacer processor = null;
       if ("jsoup".equalsIgnoreCase(parser)) {
          processor = new JsoupTagReplacer(log, charsetName);
+      } else if ("jsoup-patch".equalsIgnoreCase(parser)) {
+         processor = new JsoupTagReplacer(log, charsetName, true);
+      } else if ("streaming".equalsIgnoreCase(parser)) {
+         processor = new StreamingTagReplacer(log, charsetName);
       } else {
          throw new IllegalArgumentException("The parser '" + parser
                + "' is not supported");
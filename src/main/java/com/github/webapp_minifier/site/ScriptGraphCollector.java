@@ -0,0 +1,157 @@
+package com.github.webapp_minifier.site;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.maven.plugin.logging.Log;
+import org.codehaus.plexus.util.FileUtils;
+
+import com.github.webapp_minifier.SourceFileLocator;
+import com.github.webapp_minifier.options.OptionsParser;
+import com.github.webapp_minifier.replacer.NodeHandler;
+import com.github.webapp_minifier.summary.MinificationSummary;
+
+/**
+ * This class records the external JavaScript files loaded by the first run of consecutive script
+ * tags of an HTML file. Only this leading run can be served by a chunk shared with other HTML files
+ * without changing the order in which the scripts execute. The run ends at the first node which
+ * would split a minified JavaScript file, an embedded script, a script which cannot be found or a
+ * comment containing inline options.
+ * <p>
+ * Each script is identified by the file its URL resolves to from the HTML file, so that the same
+ * relative URL used by HTML files in different directories names different scripts, and
+ * different URLs of the same file name the same script.
+ * <p>
+ * The collector does not modify the HTML file.
+ *
+ * @author Lonny
+ */
+public class ScriptGraphCollector implements NodeHandler {
+
+   /** Finds the external files. */
+   private final SourceFileLocator locator;
+
+   /** Detects comments containing inline options. */
+   private final OptionsParser optionsParser;
+
+   /** The directory of the HTML file relative to the target directory, ending with a slash. */
+   private final String baseUri;
+
+   /** The files of the leading scripts. */
+   private final List<File> scripts = new ArrayList<File>();
+
+   /** Indicates that the leading run of scripts ended. */
+   private boolean ended;
+
+   /**
+    * Constructs a new instance.
+    *
+    * @param log
+    *           the log instance.
+    * @param locator
+    *           finds the external files.
+    * @param baseUri
+    *           the directory of the HTML file relative to the target directory, ending with a
+    *           slash.
+    */
+   public ScriptGraphCollector(final Log log, final SourceFileLocator locator,
+         final String baseUri) {
+      this.locator = locator;
+      this.baseUri = baseUri;
+      this.optionsParser = new OptionsParser(log);
+   }
+
+   /**
+    * Returns the files of the leading run of scripts.
+    *
+    * @return the normalized absolute script files.
+    */
+   public List<File> getScripts() {
+      return this.scripts;
+   }
+
+   @Override
+   public void start(final File file) {
+      this.scripts.clear();
+      this.ended = false;
+   }
+
+   @Override
+   public boolean handleComment(final String text) {
+      if (this.optionsParser.containsOptionsHeader(text)) {
+         this.ended = true;
+      }
+      return false;
+   }
+
+   @Override
+   public String handleExternalCss(final String url) {
+      return url;
+   }
+
+   @Override
+   public String handleEmbeddedCss(final String text, final boolean scoped) {
+      return text;
+   }
+
+   @Override
+   public String handleExternalJs(final String url) {
+      if (!this.ended) {
+         final File file = this.locator.locate(url, this.baseUri, null);
+         if (file == null) {
+            this.ended = true;
+         } else {
+            this.scripts.add(normalize(file));
+         }
+      }
+      return url;
+   }
+
+   @Override
+   public String handleEmbeddedJs(final String text) {
+      endRun();
+      return text;
+   }
+
+   @Override
+   public void handleText(final String text) {
+      // Do nothing.
+   }
+
+   @Override
+   public void handleOther(final String nodeName) {
+      endRun();
+   }
+
+   @Override
+   public void complete() {
+      this.ended = true;
+   }
+
+   @Override
+   public MinificationSummary getReport() {
+      return new MinificationSummary();
+   }
+
+   /**
+    * Returns the absolute file without any <code>.</code> or <code>..</code> names.
+    *
+    * @param file
+    *           the file.
+    * @return the normalized file.
+    */
+   static File normalize(final File file) {
+      final String path = FileUtils.normalize(file.getAbsolutePath());
+      return path == null ? file.getAbsoluteFile() : new File(path);
+   }
+
+   /**
+    * Ends the leading run of scripts if it has started.
+    */
+   private void endRun() {
+      if (!this.scripts.isEmpty()) {
+         this.ended = true;
+      }
+   }
+}
@@ -0,0 +1,92 @@
+package com.github.webapp_minifier.site;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.InputStream;
+import java.util.List;
+import java.util.concurrent.Callable;
+
+import org.apache.maven.plugin.logging.Log;
+import org.codehaus.plexus.util.IOUtil;
+
+import com.github.webapp_minifier.AssetIndex;
+import com.github.webapp_minifier.SourceFileLocator;
+import com.github.webapp_minifier.options.PluginOptions;
+import com.github.webapp_minifier.replacer.TagReplacer;
+import com.github.webapp_minifier.replacer.TagReplacerFactory;
+import com.github.webapp_minifier.utils.CommonUtils;
+import com.google.common.io.ByteStreams;
+
+/**
+ * This class collects the leading scripts of a single HTML file for the planning pass of the site
+ * compilation. The HTML file is parsed but not modified.
+ *
+ * @author Lonny
+ */
+public class ScriptGraphTask implements Callable<List<File>> {
+
+   /** The log instance. */
+   private final Log log;
+
+   /** The plugin options. */
+   private final PluginOptions options;
+
+   /** The HTML document parser name. */
+   private final String parser;
+
+   /** The HTML file to examine. */
+   private final File htmlFile;
+
+   /** The index of the referenced files or <code>null</code> to search the file system. */
+   private AssetIndex assetIndex;
+
+   /**
+    * Constructs a new task.
+    *
+    * @param log
+    *           the log instance.
+    * @param options
+    *           the plugin options.
+    * @param parser
+    *           the HTML document parser name.
+    * @param htmlFile
+    *           the HTML file to examine.
+    */
+   public ScriptGraphTask(final Log log, final PluginOptions options, final String parser,
+         final File htmlFile) {
+      this.log = log;
+      this.options = options;
+      this.parser = parser;
+      this.htmlFile = htmlFile;
+   }
+
+   /**
+    * Sets the index in which the files referenced by script URLs are looked up instead of the
+    * file system.
+    *
+    * @param assetIndex
+    *           the index or <code>null</code> to search the file system.
+    */
+   public void setAssetIndex(final AssetIndex assetIndex) {
+      this.assetIndex = assetIndex;
+   }
+
+   @Override
+   public List<File> call() throws Exception {
+      final String baseUri = CommonUtils.getBaseUri(this.htmlFile,
+            this.options.getTargetDirectory());
+      final ScriptGraphCollector collector = new ScriptGraphCollector(this.log,
+            new SourceFileLocator(this.log, this.options, this.assetIndex), baseUri);
+      final TagReplacer tagReplacer = TagReplacerFactory.getReplacer(this.parser, this.log,
+            this.options.getEncoding());
+      InputStream inputStream = null;
+      try {
+         inputStream = new FileInputStream(this.htmlFile);
+         collector.start(this.htmlFile);
+         tagReplacer.process(inputStream, collector, baseUri, ByteStreams.nullOutputStream());
+      } finally {
+         IOUtil.close(inputStream);
+      }
+      return collector.getScripts();
+   }
+}
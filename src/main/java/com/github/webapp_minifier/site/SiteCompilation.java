@@ -0,0 +1,204 @@
+package com.github.webapp_minifier.site;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.maven.plugin.logging.Log;
+import org.codehaus.plexus.util.FileUtils;
+
+import com.github.webapp_minifier.HtmlFileResult;
+import com.github.webapp_minifier.MinifiedFileInfo;
+import com.github.webapp_minifier.MinifiedFileInput;
+import com.github.webapp_minifier.compressor.ClosureJavaScriptCompressor;
+import com.github.webapp_minifier.options.PluginOptions;
+import com.github.webapp_minifier.summary.MinifiedFileMetrics;
+import com.google.javascript.jscomp.CompilationLevel;
+
+/**
+ * This class compiles the common chunk of a {@link SitePlan} together with the minified JavaScript
+ * files of every HTML file loading it, in a single Closure Compiler compilation. Each minified file
+ * becomes a module depending on the common chunk or on the previous minified file of its HTML file,
+ * which allows the compiler to share and move code between them.
+ * <p>
+ * Pages must be added in the order their results are committed. If the compilation fails, each
+ * chunk is compiled alone, unless the compilation level is
+ * {@link CompilationLevel#ADVANCED_OPTIMIZATIONS}. Chunks compiled alone at that level would
+ * rename the names they share differently and would no longer link, so the compilation fails
+ * instead.
+ *
+ * @author Lonny
+ */
+public class SiteCompilation {
+
+   /** The log instance. */
+   private final Log log;
+
+   /** The plugin options. */
+   private final PluginOptions options;
+
+   /** The plan of the site compilation. */
+   private final SitePlan plan;
+
+   /** The metrics of the common scripts recorded by each HTML file. */
+   private final List<MinifiedFileMetrics> commonMetrics = new ArrayList<MinifiedFileMetrics>();
+
+   /** The index in the common chunk of the script of each of the common metrics. */
+   private final List<Integer> commonIndexes = new ArrayList<Integer>();
+
+   /** The inputs of each page module. */
+   private final List<List<MinifiedFileInput>> modules = new ArrayList<List<MinifiedFileInput>>();
+
+   /** The final file of each page module. */
+   private final List<File> moduleFiles = new ArrayList<File>();
+
+   /** The index of the module each page module depends on, the common chunk being 0. */
+   private final List<Integer> dependencies = new ArrayList<Integer>();
+
+   /**
+    * Constructs a new instance.
+    *
+    * @param log
+    *           the log instance.
+    * @param options
+    *           the plugin options.
+    * @param plan
+    *           the plan of the site compilation.
+    */
+   public SiteCompilation(final Log log, final PluginOptions options, final SitePlan plan) {
+      if (plan == null) {
+         throw new IllegalArgumentException("The site plan cannot be null");
+      }
+      this.log = log;
+      this.options = options;
+      this.plan = plan;
+   }
+
+   /**
+    * Adds the minified JavaScript files of a committed HTML file to the compilation.
+    *
+    * @param result
+    *           the committed result of the HTML file.
+    */
+   public void addPage(final HtmlFileResult result) {
+      int index = 0;
+      for (final MinifiedFileMetrics metrics : result.getSummary().getMinifiedFiles()) {
+         if (this.plan.getCommonFileName().equals(metrics.getDestination())) {
+            this.commonMetrics.add(metrics);
+            this.commonIndexes.add(index++);
+         }
+      }
+      int previous = 0;
+      for (final MinifiedFileInfo fileInfo : result.getSiteFiles()) {
+         this.modules.add(new ArrayList<MinifiedFileInput>(fileInfo.getInputs()));
+         this.moduleFiles.add(result.getCommittedFile(fileInfo));
+         this.dependencies.add(previous);
+         previous = this.modules.size();
+      }
+   }
+
+   /**
+    * Compiles the common chunk and the page modules and writes them.
+    *
+    * @param compressor
+    *           the compressor configured with the options of the site compilation.
+    * @throws IOException
+    *            if a common script could not be read, a chunk could not be written or the
+    *            compilation failed with {@link CompilationLevel#ADVANCED_OPTIMIZATIONS}.
+    */
+   public void compile(final ClosureJavaScriptCompressor compressor) throws IOException {
+      if (this.commonMetrics.isEmpty()) {
+         return;
+      }
+
+      // Read the common scripts.
+      final List<MinifiedFileInput> commonInputs = new ArrayList<MinifiedFileInput>();
+      for (final File file : this.plan.getCommonScripts()) {
+         if (!file.isFile()) {
+            throw new IOException("Failed to find the common script " + file);
+         }
+         final MinifiedFileMetrics metrics = new MinifiedFileMetrics();
+         metrics.setSource(file.getPath());
+         commonInputs.add(new MinifiedFileInput(compressor, null, FileUtils.fileRead(file,
+               this.options.getEncoding()), metrics));
+      }
+
+      final List<List<MinifiedFileInput>> allModules = new ArrayList<List<MinifiedFileInput>>();
+      allModules.add(commonInputs);
+      allModules.addAll(this.modules);
+      final List<List<String>> sources = new ArrayList<List<String>>();
+      final int[] moduleDependencies = new int[allModules.size()];
+      int originalLength = 0;
+      for (int i = 0; i < allModules.size(); i++) {
+         final List<String> codes = new ArrayList<String>();
+         for (final MinifiedFileInput input : allModules.get(i)) {
+            codes.add(input.getCode());
+            originalLength += input.getCode().length();
+         }
+         sources.add(codes);
+         moduleDependencies[i] = i == 0 ? -1 : this.dependencies.get(i - 1);
+      }
+
+      final long start = System.currentTimeMillis();
+      List<String> output = compressor.compressModules(sources, moduleDependencies);
+      if (output == null) {
+         if (compressor.getCompilationLevel() == CompilationLevel.ADVANCED_OPTIMIZATIONS) {
+            throw new IOException("The site compilation failed.  Its chunks cannot be compiled "
+                  + "alone with ADVANCED_OPTIMIZATIONS since they would no longer link.");
+         }
+         this.log.warn("The site compilation failed.  Each chunk will be compiled alone.");
+         output = new ArrayList<String>();
+         for (final List<String> codes : sources) {
+            output.add(compressor.compressBundle(codes));
+         }
+      }
+      final long time = System.currentTimeMillis() - start;
+
+      // Write the chunks and attribute the results to their inputs.
+      int minifiedLength = 0;
+      for (int i = 0; i < allModules.size(); i++) {
+         final File file = i == 0 ? new File(this.options.getTargetDirectory(),
+               this.plan.getCommonFileName()) : this.moduleFiles.get(i - 1);
+         final String code = output.get(i);
+         FileUtils.fileWrite(file, this.options.getEncoding(), code);
+         minifiedLength += code.length();
+
+         final MinifiedFileMetrics total = new MinifiedFileMetrics();
+         int length = 0;
+         for (final String source : sources.get(i)) {
+            length += source.length();
+         }
+         total.setOriginalLength(length);
+         total.setMinifiedLength(code.length());
+         total.setTime(originalLength == 0 ? 0 : (time * length) / originalLength);
+         MinifiedFileInput.attribute(allModules.get(i), total);
+      }
+      copyCommonMetrics(commonInputs);
+      this.log.info("Compiled " + this.plan.getCommonScripts().size() + " common scripts and "
+            + this.modules.size() + " page chunks from " + originalLength + " to "
+            + minifiedLength + " characters");
+   }
+
+   /**
+    * Copies the metrics of the common scripts to the metrics recorded by each HTML file, which
+    * records them in the order of the common chunk whatever the URLs it uses. The time is only
+    * reported by the first HTML file loading each script.
+    *
+    * @param commonInputs
+    *           the common scripts.
+    */
+   private void copyCommonMetrics(final List<MinifiedFileInput> commonInputs) {
+      for (int i = 0; i < this.commonMetrics.size(); i++) {
+         final int index = this.commonIndexes.get(i);
+         if (index < commonInputs.size()) {
+            final MinifiedFileMetrics metrics = this.commonMetrics.get(i);
+            final MinifiedFileMetrics result = commonInputs.get(index).getMetrics();
+            metrics.setOriginalLength(result.getOriginalLength());
+            metrics.setMinifiedLength(result.getMinifiedLength());
+            metrics.setTime(result.getTime());
+            result.setTime(0);
+         }
+      }
+   }
+}
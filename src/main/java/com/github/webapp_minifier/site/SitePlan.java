@@ -0,0 +1,141 @@
+package com.github.webapp_minifier.site;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Set;
+
+/**
+ * This class describes how the JavaScript of every HTML file is split into chunks. The run of
+ * leading scripts shared by several HTML files which replaces the most script tags is moved into a
+ * common chunk. Each HTML file starting with those scripts loads the common
+ * chunk in their place, followed by its own chunks. HTML files never load a script they did not
+ * reference.
+ *
+ * @author Lonny
+ */
+public class SitePlan {
+
+   /** The name of the common chunk relative to the target directory. */
+   private final String commonFileName;
+
+   /** The fingerprint of the compressor options used by the site compilation. */
+   private final String fingerprint;
+
+   /** The files of the scripts in the common chunk in the order they are loaded. */
+   private final List<File> commonScripts;
+
+   /** The HTML files which load the common chunk. */
+   private final Set<File> commonPages;
+
+   /**
+    * Constructs a new plan.
+    *
+    * @param commonFileName
+    *           the name of the common chunk relative to the target directory.
+    * @param fingerprint
+    *           the fingerprint of the compressor options used by the site compilation.
+    * @param commonScripts
+    *           the files of the scripts in the common chunk.
+    * @param commonPages
+    *           the HTML files which load the common chunk.
+    */
+   public SitePlan(final String commonFileName, final String fingerprint,
+         final List<File> commonScripts, final Set<File> commonPages) {
+      this.commonFileName = commonFileName;
+      this.fingerprint = fingerprint;
+      this.commonScripts = Collections.unmodifiableList(commonScripts);
+      this.commonPages = Collections.unmodifiableSet(commonPages);
+   }
+
+   /**
+    * Creates the plan from the leading scripts of each HTML file.
+    *
+    * @param commonFileName
+    *           the name of the common chunk relative to the target directory.
+    * @param fingerprint
+    *           the fingerprint of the compressor options used by the site compilation.
+    * @param leadingScripts
+    *           the files of the leading run of scripts of each HTML file, in processing order.
+    * @return the plan.
+    */
+   public static SitePlan create(final String commonFileName, final String fingerprint,
+         final Map<File, List<File>> leadingScripts) {
+      // Count the HTML files starting with each sequence of scripts.
+      final Map<List<File>, Integer> counts = new LinkedHashMap<List<File>, Integer>();
+      for (final List<File> scripts : leadingScripts.values()) {
+         for (int i = 1; i <= scripts.size(); i++) {
+            final List<File> sequence = new ArrayList<File>(scripts.subList(0, i));
+            final Integer count = counts.get(sequence);
+            counts.put(sequence, count == null ? 1 : count + 1);
+         }
+      }
+
+      // Share the sequence which saves the most script tags.
+      List<File> commonScripts = Collections.emptyList();
+      int best = 0;
+      for (final Entry<List<File>, Integer> entry : counts.entrySet()) {
+         final int count = entry.getValue();
+         final int saved = count * entry.getKey().size();
+         if ((count >= 2) && (saved > best)) {
+            commonScripts = entry.getKey();
+            best = saved;
+         }
+      }
+
+      final Set<File> commonPages = new HashSet<File>();
+      if (!commonScripts.isEmpty()) {
+         for (final Entry<File, List<File>> entry : leadingScripts.entrySet()) {
+            final List<File> scripts = entry.getValue();
+            if ((scripts.size() >= commonScripts.size())
+                  && scripts.subList(0, commonScripts.size()).equals(commonScripts)) {
+               commonPages.add(entry.getKey());
+            }
+         }
+      }
+      return new SitePlan(commonFileName, fingerprint, commonScripts, commonPages);
+   }
+
+   /**
+    * Returns the name of the common chunk relative to the target directory.
+    *
+    * @return the common file name.
+    */
+   public String getCommonFileName() {
+      return this.commonFileName;
+   }
+
+   /**
+    * Returns the fingerprint of the compressor options used by the site compilation.
+    *
+    * @return the fingerprint.
+    */
+   public String getFingerprint() {
+      return this.fingerprint;
+   }
+
+   /**
+    * Returns the files of the scripts in the common chunk in the order they are loaded.
+    *
+    * @return the common scripts.
+    */
+   public List<File> getCommonScripts() {
+      return this.commonScripts;
+   }
+
+   /**
+    * Returns whether the HTML file loads the common chunk in place of its leading scripts.
+    *
+    * @param htmlFile
+    *           the HTML file.
+    * @return <code>true</code> if the HTML file loads the common chunk.
+    */
+   public boolean isCommonLoaded(final File htmlFile) {
+      return this.commonPages.contains(htmlFile);
+   }
+}
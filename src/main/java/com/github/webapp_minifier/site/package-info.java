@@ -0,0 +1,4 @@
+/**
+ * Contains classes that compile the JavaScript of every HTML file in a single pass.
+ */
+package com.github.webapp_minifier.site;
@@ -22,9 +22,47 @@ public class HtmlFileSummary {
    @XmlAttribute
    private File file;
 
+   /** Indicates that the HTML file itself was minified. */
+   @XmlAttribute
+   private boolean htmlMinified;
+
+   /** The number of bytes of the HTML before it was minified. */
+   @XmlAttribute
+   private int htmlOriginalLength;
+
+   /** The number of bytes of the minified HTML. */
+   @XmlAttribute
+   private int htmlMinifiedLength;
+
+   /** The number of nanoseconds to minify the HTML. */
+   @XmlAttribute
+   private long htmlTime;
+
    /** The individual minification results. */
    private final Collection<MinifiedFileMetrics> minifiedFiles = new ArrayList<MinifiedFileMetrics>();
 
+   /** Constructs a new instance. */
+   public HtmlFileSummary() {
+
+   }
+
+   /**
+    * Constructs a copy of the given summary.
+    * 
+    * @param other
+    *           the summary to copy.
+    */
+   public HtmlFileSummary(final HtmlFileSummary other) {
+      this.file = other.file;
+      this.htmlMinified = other.htmlMinified;
+      this.htmlOriginalLength = other.htmlOriginalLength;
+      this.htmlMinifiedLength = other.htmlMinifiedLength;
+      this.htmlTime = other.htmlTime;
+      for (final MinifiedFileMetrics metrics : other.minifiedFiles) {
+         this.minifiedFiles.add(new MinifiedFileMetrics(metrics));
+      }
+   }
+
    /**
     * Sets the file that references the code.
     * 
@@ -44,6 +82,82 @@ public class HtmlFileSummary {
       return this.file;
    }
 
+   /**
+    * Sets the flag indicating if the HTML file itself was minified.
+    * 
+    * @param flag
+    *           <code>true</code> if the HTML was minified.
+    */
+   public void setHtmlMinified(final boolean flag) {
+      this.htmlMinified = flag;
+   }
+
+   /**
+    * Indicates if the HTML file itself was minified.
+    * 
+    * @return <code>true</code> if the HTML was minified.
+    */
+   public boolean isHtmlMinified() {
+      return this.htmlMinified;
+   }
+
+   /**
+    * Sets the number of bytes of the HTML before it was minified.
+    * 
+    * @param length
+    *           the number of bytes.
+    */
+   public void setHtmlOriginalLength(final int length) {
+      this.htmlOriginalLength = length;
+   }
+
+   /**
+    * Returns the number of bytes of the HTML before it was minified.
+    * 
+    * @return the number of bytes.
+    */
+   public int getHtmlOriginalLength() {
+      return this.htmlOriginalLength;
+   }
+
+   /**
+    * Sets the number of bytes of the minified HTML.
+    * 
+    * @param length
+    *           the number of bytes.
+    */
+   public void setHtmlMinifiedLength(final int length) {
+      this.htmlMinifiedLength = length;
+   }
+
+   /**
+    * Returns the number of bytes of the minified HTML.
+    * 
+    * @return the number of bytes.
+    */
+   public int getHtmlMinifiedLength() {
+      return this.htmlMinifiedLength;
+   }
+
+   /**
+    * Sets the number of nanoseconds to minify the HTML.
+    * 
+    * @param time
+    *           the number of nanoseconds.
+    */
+   public void setHtmlTime(final long time) {
+      this.htmlTime = time;
+   }
+
+   /**
+    * Returns the number of nanoseconds to minify the HTML.
+    * 
+    * @return the number of nanoseconds.
+    */
+   public long getHtmlTime() {
+      return this.htmlTime;
+   }
+
    /**
     * Returns the collection of individual minification results.
     * 
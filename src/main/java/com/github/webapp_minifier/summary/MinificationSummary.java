@@ -3,6 +3,8 @@ package com.github.webapp_minifier.summary;
 import java.util.ArrayList;
 import java.util.Collection;
 
+import javax.xml.bind.annotation.XmlAccessType;
+import javax.xml.bind.annotation.XmlAccessorType;
 import javax.xml.bind.annotation.XmlElement;
 import javax.xml.bind.annotation.XmlRootElement;
 
@@ -12,12 +14,25 @@ import javax.xml.bind.annotation.XmlRootElement;
  * @author Lonny
  */
 @XmlRootElement
+@XmlAccessorType(XmlAccessType.FIELD)
 public class MinificationSummary {
 
    /** The HTML files processed. */
    @XmlElement
    private final Collection<HtmlFileSummary> htmlFiles = new ArrayList<HtmlFileSummary>();
 
+   /** The number of HTML files left untouched because they contain nothing to minify. */
+   @XmlElement
+   private int skippedHtmlFiles;
+
+   /** The number of minified results found in the persistent cache. */
+   @XmlElement
+   private int cacheHits;
+
+   /** The number of minified results not found in the persistent cache. */
+   @XmlElement
+   private int cacheMisses;
+
    /**
     * Returns the HTML files processed.
     * 
@@ -26,4 +41,61 @@ public class MinificationSummary {
    public Collection<HtmlFileSummary> getHtmlFiles() {
       return this.htmlFiles;
    }
+
+   /**
+    * Sets the number of HTML files left untouched because they contain nothing to minify.
+    * 
+    * @param skippedHtmlFiles
+    *           the number of skipped HTML files.
+    */
+   public void setSkippedHtmlFiles(final int skippedHtmlFiles) {
+      this.skippedHtmlFiles = skippedHtmlFiles;
+   }
+
+   /**
+    * Returns the number of HTML files left untouched because they contain nothing to minify.
+    * 
+    * @return the number of skipped HTML files.
+    */
+   public int getSkippedHtmlFiles() {
+      return this.skippedHtmlFiles;
+   }
+
+   /**
+    * Sets the number of minified results found in the persistent cache.
+    * 
+    * @param cacheHits
+    *           the number of cache hits.
+    */
+   public void setCacheHits(final int cacheHits) {
+      this.cacheHits = cacheHits;
+   }
+
+   /**
+    * Returns the number of minified results found in the persistent cache.
+    * 
+    * @return the number of cache hits.
+    */
+   public int getCacheHits() {
+      return this.cacheHits;
+   }
+
+   /**
+    * Sets the number of minified results not found in the persistent cache.
+    * 
+    * @param cacheMisses
+    *           the number of cache misses.
+    */
+   public void setCacheMisses(final int cacheMisses) {
+      this.cacheMisses = cacheMisses;
+   }
+
+   /**
+    * Returns the number of minified results not found in the persistent cache.
+    * 
+    * @return the number of cache misses.
+    */
+   public int getCacheMisses() {
+      return this.cacheMisses;
+   }
 }
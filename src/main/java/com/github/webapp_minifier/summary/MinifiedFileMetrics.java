@@ -41,6 +41,10 @@ public class MinifiedFileMetrics {
    @XmlElement
    private long time;
 
+   /** Indicates if the minified code was reused from a previous minification. */
+   @XmlElement
+   private boolean cacheHit;
+
    /** The original length of the code. */
    @XmlElement
    private int originalLength;
@@ -49,6 +53,43 @@ public class MinifiedFileMetrics {
    @XmlElement
    private int minifiedLength;
 
+   /**
+    * The gzip compressed length of the minified code at the deflate compression level or 0 if it
+    * was not compressed.
+    */
+   @XmlElement
+   private int gzipLength;
+
+   /**
+    * The gzip compressed length of the minified code in the maximum compression mode or 0 if the
+    * mode was not used.
+    */
+   @XmlElement
+   private int maxGzipLength;
+
+   /** Constructs a new instance. */
+   public MinifiedFileMetrics() {
+
+   }
+
+   /**
+    * Constructs a copy of the given metrics.
+    * 
+    * @param other
+    *           the metrics to copy.
+    */
+   public MinifiedFileMetrics(final MinifiedFileMetrics other) {
+      this.source = other.source;
+      this.destination = other.destination;
+      this.minifier = other.minifier;
+      this.time = other.time;
+      this.cacheHit = other.cacheHit;
+      this.originalLength = other.originalLength;
+      this.minifiedLength = other.minifiedLength;
+      this.gzipLength = other.gzipLength;
+      this.maxGzipLength = other.maxGzipLength;
+   }
+
    /**
     * Sets the source of the minified code.
     * 
@@ -106,6 +147,27 @@ public class MinifiedFileMetrics {
       return this.time;
    }
 
+   /**
+    * Sets the flag indicating if the minified code was reused from a previous minification.
+    * 
+    * @param cacheHit
+    *           <code>true</code> if the minified code was reused.
+    */
+   public void setCacheHit(final boolean cacheHit) {
+      this.cacheHit = cacheHit;
+   }
+
+   /**
+    * Indicates if the minified code was reused from a previous minification. When
+    * <code>true</code>, the time is the time spent finding the previous result rather than
+    * minifying.
+    * 
+    * @return <code>true</code> if the minified code was reused.
+    */
+   public boolean isCacheHit() {
+      return this.cacheHit;
+   }
+
    /**
     * Sets the original length of the code.
     * 
@@ -144,6 +206,46 @@ public class MinifiedFileMetrics {
       return this.minifiedLength;
    }
 
+   /**
+    * Sets the gzip compressed length of the minified code. When the code was compressed together
+    * with other code, this is its share of the compressed length.
+    * 
+    * @param length
+    *           the compressed length.
+    */
+   public void setGzipLength(final int length) {
+      this.gzipLength = length;
+   }
+
+   /**
+    * Returns the gzip compressed length of the minified code.
+    * 
+    * @return the compressed length or 0 if the code was not compressed.
+    */
+   public int getGzipLength() {
+      return this.gzipLength;
+   }
+
+   /**
+    * Sets the gzip compressed length of the minified code in the maximum compression mode. When
+    * the code was compressed together with other code, this is its share of the compressed length.
+    * 
+    * @param length
+    *           the compressed length.
+    */
+   public void setMaxGzipLength(final int length) {
+      this.maxGzipLength = length;
+   }
+
+   /**
+    * Returns the gzip compressed length of the minified code in the maximum compression mode.
+    * 
+    * @return the compressed length or 0 if the mode was not used.
+    */
+   public int getMaxGzipLength() {
+      return this.maxGzipLength;
+   }
+
    /**
     * Sets the minifier used on this file.
     * 
@@ -0,0 +1,270 @@
+package com.github.webapp_minifier.sync;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+
+import org.apache.maven.plugin.logging.Log;
+import org.codehaus.plexus.util.FileUtils;
+
+import com.google.common.hash.Hashing;
+import com.google.common.io.Files;
+
+/**
+ * This class makes a target directory match a source directory. Unless the mode is
+ * {@link SyncMode#COPY}, files which are unchanged in the target directory are left untouched, so a
+ * build in which few source files changed performs little I/O. Copied files keep the modification
+ * time of their source. Files are placed using a {@link FileStager}; only the files which will be
+ * modified are materialized as real copies. The source directory may be given as a
+ * {@link SourceTree} which has already been walked, so that it is not listed again.
+ *
+ * @author Lonny
+ */
+public class DirectorySynchronizer {
+
+   /** The log instance. */
+   private final Log log;
+
+   /** The way unchanged files are detected. */
+   private final SyncMode mode;
+
+   /** Places the changed files into the target directory. */
+   private final FileStager stager;
+
+   /** The relative names of the files which must be real copies. */
+   private Set<String> materializedFiles = Collections.emptySet();
+
+   /** The number of files copied. */
+   private int copied;
+
+   /** The number of files and directories deleted. */
+   private int deleted;
+
+   /** The number of files left untouched. */
+   private int unchanged;
+
+   /**
+    * Constructs a new instance.
+    *
+    * @param log
+    *           the log instance.
+    * @param mode
+    *           the way unchanged files are detected.
+    */
+   public DirectorySynchronizer(final Log log, final SyncMode mode) {
+      this(log, mode, new FileStager(log, StagingStrategy.COPY));
+   }
+
+   /**
+    * Constructs a new instance which places files using the given stager.
+    *
+    * @param log
+    *           the log instance.
+    * @param mode
+    *           the way unchanged files are detected.
+    * @param stager
+    *           places the changed files into the target directory.
+    */
+   public DirectorySynchronizer(final Log log, final SyncMode mode, final FileStager stager) {
+      if (mode == null) {
+         throw new IllegalArgumentException("The sync mode cannot be null");
+      }
+      this.log = log;
+      this.mode = mode;
+      this.stager = stager;
+   }
+
+   /**
+    * Sets the names of the files, relative to the source directory, which will be modified in the
+    * target directory and must therefore be real copies rather than links.
+    *
+    * @param materializedFiles
+    *           the relative file names.
+    */
+   public void setMaterializedFiles(final Collection<String> materializedFiles) {
+      this.materializedFiles = new HashSet<String>(materializedFiles);
+   }
+
+   /**
+    * Makes the target directory match the source directory.
+    *
+    * @param sourceDirectory
+    *           the source directory.
+    * @param targetDirectory
+    *           the target directory.
+    * @throws IOException
+    *            if a file could not be copied or deleted.
+    */
+   public void synchronize(final File sourceDirectory, final File targetDirectory)
+         throws IOException {
+      synchronize(SourceTree.walk(sourceDirectory), targetDirectory);
+   }
+
+   /**
+    * Makes the target directory match an already walked source directory.
+    *
+    * @param sourceTree
+    *           the walked source directory.
+    * @param targetDirectory
+    *           the target directory.
+    * @throws IOException
+    *            if a file could not be copied or deleted.
+    */
+   public void synchronize(final SourceTree sourceTree, final File targetDirectory)
+         throws IOException {
+      if ((this.mode == SyncMode.COPY) && targetDirectory.exists()) {
+         FileUtils.deleteDirectory(targetDirectory);
+      }
+      synchronizeDirectory(sourceTree, targetDirectory, "");
+      this.stager.flush();
+      this.log.info("Synchronized " + targetDirectory + ": " + this.copied + " copied, "
+            + this.deleted + " deleted, " + this.unchanged + " unchanged");
+   }
+
+   /**
+    * Makes one target directory match one source directory, recursively.
+    *
+    * @param sourceTree
+    *           the walked source directory.
+    * @param targetDirectory
+    *           the target directory.
+    * @param path
+    *           the name of the directories relative to the root source directory.
+    * @throws IOException
+    *            if a file could not be copied or deleted.
+    */
+   private void synchronizeDirectory(final SourceTree sourceTree, final File targetDirectory,
+         final String path) throws IOException {
+      if (targetDirectory.isFile()) {
+         delete(targetDirectory);
+      }
+      FileUtils.forceMkdir(targetDirectory);
+
+      final File sourceDirectory = new File(sourceTree.getDirectory(), path);
+      final String[] sourceNames = sourceTree.list(path);
+      final Set<String> sourceNameSet = new HashSet<String>(Arrays.asList(sourceNames));
+      for (final String name : sourceNames) {
+         final String sourceName = path.length() == 0 ? name : path + File.separatorChar + name;
+         final File source = new File(sourceDirectory, name);
+         final File target = new File(targetDirectory, name);
+         if (sourceTree.isDirectory(sourceName)) {
+            synchronizeDirectory(sourceTree, target, sourceName);
+         } else {
+            if (target.isDirectory()) {
+               delete(target);
+            }
+            final boolean materialize = this.materializedFiles.contains(sourceName);
+            if (isUnchanged(source, target)) {
+               this.unchanged++;
+            } else {
+               copy(source, target, materialize);
+               this.copied++;
+            }
+         }
+      }
+      this.stager.flush(targetDirectory);
+
+      // Delete the files which no longer exist in the source directory.
+      final String[] targetNames = targetDirectory.list();
+      if (targetNames != null) {
+         for (final String name : targetNames) {
+            if (!sourceNameSet.contains(name)) {
+               delete(new File(targetDirectory, name));
+            }
+         }
+      }
+   }
+
+   /**
+    * Determines if the target file already matches the source file.
+    *
+    * @param source
+    *           the source file.
+    * @param target
+    *           the target file.
+    * @return <code>true</code> if the target file does not need to be copied.
+    * @throws IOException
+    *            if a file could not be read.
+    */
+   protected boolean isUnchanged(final File source, final File target) throws IOException {
+      if (!target.isFile() || (source.length() != target.length())) {
+         return false;
+      }
+      switch (this.mode) {
+      case TIMESTAMP:
+         return source.lastModified() == target.lastModified();
+      case HASH:
+         return Files.hash(source, Hashing.sha256()).equals(Files.hash(target, Hashing.sha256()));
+      default:
+         return false;
+      }
+   }
+
+   /**
+    * Copies the source file to the target file, keeping its modification time. The target file is
+    * deleted first so that a link to another file is never written through. A queued clone is
+    * only created when its directory is flushed, once every file of the directory is staged.
+    *
+    * @param source
+    *           the source file.
+    * @param target
+    *           the target file.
+    * @param materialize
+    *           <code>true</code> if the target will be modified and must be a real copy.
+    * @throws IOException
+    *            if the file could not be copied.
+    */
+   protected void copy(final File source, final File target, final boolean materialize)
+         throws IOException {
+      if (target.exists()) {
+         FileUtils.forceDelete(target);
+      }
+      this.stager.stage(source, target, materialize);
+      target.setLastModified(source.lastModified());
+   }
+
+   /**
+    * Deletes a file or directory from the target directory.
+    *
+    * @param file
+    *           the file or directory to delete.
+    * @throws IOException
+    *            if the file could not be deleted.
+    */
+   private void delete(final File file) throws IOException {
+      this.log.debug("Deleting " + file);
+      FileUtils.forceDelete(file);
+      this.deleted++;
+   }
+
+   /**
+    * Returns the number of files copied.
+    *
+    * @return the number of files copied.
+    */
+   public int getCopied() {
+      return this.copied;
+   }
+
+   /**
+    * Returns the number of files and directories deleted.
+    *
+    * @return the number of files and directories deleted.
+    */
+   public int getDeleted() {
+      return this.deleted;
+   }
+
+   /**
+    * Returns the number of files left untouched.
+    *
+    * @return the number of files left untouched.
+    */
+   public int getUnchanged() {
+      return this.unchanged;
+   }
+}
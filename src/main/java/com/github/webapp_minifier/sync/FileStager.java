@@ -0,0 +1,301 @@
+package com.github.webapp_minifier.sync;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.maven.plugin.logging.Log;
+import org.codehaus.plexus.util.FileUtils;
+import org.codehaus.plexus.util.IOUtil;
+import org.codehaus.plexus.util.Os;
+
+/**
+ * This class places a single source file into the minified directory using a
+ * {@link StagingStrategy}. Files which will be modified must always be materialized as real
+ * copies. When linking or cloning fails, for example because the directories are on different
+ * devices, the file is copied and the strategy falls back to copying for the remaining files.
+ * <p>
+ * Hard links are created through <code>java.nio.file.Files</code> when running on Java 7 or
+ * later. Clones are created by the platform's <code>cp</code> command. Since starting a process
+ * costs far more than cloning a small file, the clones are queued by target directory and created
+ * by one <code>cp</code> per directory, or per {@link #BATCH_SIZE} files, when the directory is
+ * {@link #flush() flushed}. The queued files keep the modification time of their source.
+ * <p>
+ * The methods of this class must be called from a single thread.
+ *
+ * @author Lonny
+ */
+public class FileStager {
+
+   /** The maximum number of files cloned by one <code>cp</code> command. */
+   public static final int BATCH_SIZE = 256;
+
+   /** The <code>java.nio.file.Files.createLink(Path, Path)</code> method if available. */
+   private static final Method CREATE_LINK;
+
+   /** The <code>java.io.File.toPath()</code> method if available. */
+   private static final Method TO_PATH;
+
+   static {
+      Method createLink = null;
+      Method toPath = null;
+      try {
+         final Class<?> pathClass = Class.forName("java.nio.file.Path");
+         final Class<?> filesClass = Class.forName("java.nio.file.Files");
+         createLink = filesClass.getMethod("createLink", pathClass, pathClass);
+         toPath = File.class.getMethod("toPath");
+      } catch (final ClassNotFoundException e) {
+         createLink = null;
+      } catch (final NoSuchMethodException e) {
+         createLink = null;
+      }
+      CREATE_LINK = createLink;
+      TO_PATH = toPath;
+   }
+
+   /** The log instance. */
+   private final Log log;
+
+   /** The requested strategy. */
+   private final StagingStrategy strategy;
+
+   /** Indicates that linking or cloning failed and files are now copied. */
+   private volatile boolean fallback;
+
+   /** The source files waiting to be cloned, keyed by target directory. */
+   private final Map<File, List<File>> pendingClones = new LinkedHashMap<File, List<File>>();
+
+   /**
+    * Constructs a new instance.
+    *
+    * @param log
+    *           the log instance.
+    * @param strategy
+    *           the requested strategy.
+    */
+   public FileStager(final Log log, final StagingStrategy strategy) {
+      if (strategy == null) {
+         throw new IllegalArgumentException("The staging strategy cannot be null");
+      }
+      this.log = log;
+      this.strategy = strategy;
+      if ((strategy == StagingStrategy.HARDLINK) && (CREATE_LINK == null)) {
+         log.warn("Hard links require Java 7 or later.  Files will be copied.");
+         this.fallback = true;
+      }
+   }
+
+   /**
+    * Places the source file at the target location. The target must not exist. A clone keeping
+    * the name of its source is only queued, and is created when its directory is flushed.
+    *
+    * @param source
+    *           the source file.
+    * @param target
+    *           the target file.
+    * @param materialize
+    *           <code>true</code> if the target will be modified and must be a real copy.
+    * @throws IOException
+    *            if the file could not be copied.
+    */
+   public void stage(final File source, final File target, final boolean materialize)
+         throws IOException {
+      if (!materialize && !this.fallback) {
+         try {
+            if (this.strategy == StagingStrategy.HARDLINK) {
+               link(source, target);
+               return;
+            } else if (this.strategy == StagingStrategy.REFLINK) {
+               if (source.getName().equals(target.getName())) {
+                  queue(source, target.getParentFile());
+               } else {
+                  clone(source, target);
+               }
+               return;
+            }
+         } catch (final IOException e) {
+            this.log.info("Failed to " + this.strategy + " " + source + " (" + e.getMessage()
+                  + ").  Files will be copied.");
+            this.fallback = true;
+            target.delete();
+         }
+      }
+      FileUtils.copyFile(source, target);
+   }
+
+   /**
+    * Creates the queued clones of every directory.
+    *
+    * @throws IOException
+    *            if a file could not be copied.
+    */
+   public void flush() throws IOException {
+      while (!this.pendingClones.isEmpty()) {
+         flush(this.pendingClones.keySet().iterator().next());
+      }
+   }
+
+   /**
+    * Creates the queued clones of a directory. If cloning fails, the files are copied instead and
+    * the strategy falls back to copying for the remaining files.
+    *
+    * @param directory
+    *           the target directory.
+    * @throws IOException
+    *            if a file could not be copied.
+    */
+   public void flush(final File directory) throws IOException {
+      final List<File> sources = this.pendingClones.remove(directory);
+      if (sources == null) {
+         return;
+      }
+      if (!this.fallback) {
+         try {
+            clone(sources, directory);
+         } catch (final IOException e) {
+            this.log.info("Failed to " + this.strategy + " " + sources.size() + " files into "
+                  + directory + " (" + e.getMessage() + ").  Files will be copied.");
+            this.fallback = true;
+         }
+      }
+      for (final File source : sources) {
+         final File target = new File(directory, source.getName());
+         if (this.fallback) {
+            target.delete();
+            FileUtils.copyFile(source, target);
+         }
+         target.setLastModified(source.lastModified());
+      }
+   }
+
+   /**
+    * Queues a clone, creating the clones of its directory once {@link #BATCH_SIZE} are queued.
+    *
+    * @param source
+    *           the source file.
+    * @param directory
+    *           the target directory.
+    * @throws IOException
+    *            if a file could not be copied.
+    */
+   private void queue(final File source, final File directory) throws IOException {
+      List<File> sources = this.pendingClones.get(directory);
+      if (sources == null) {
+         sources = new ArrayList<File>();
+         this.pendingClones.put(directory, sources);
+      }
+      sources.add(source);
+      if (sources.size() >= BATCH_SIZE) {
+         flush(directory);
+      }
+   }
+
+   /**
+    * Creates a hard link to the source file.
+    *
+    * @param source
+    *           the source file.
+    * @param target
+    *           the link to create.
+    * @throws IOException
+    *            if the link could not be created.
+    */
+   private void link(final File source, final File target) throws IOException {
+      try {
+         CREATE_LINK.invoke(null, TO_PATH.invoke(target), TO_PATH.invoke(source));
+      } catch (final IllegalAccessException e) {
+         throw new IOException("Failed to link " + target, e);
+      } catch (final InvocationTargetException e) {
+         throw new IOException(String.valueOf(e.getCause()), e.getCause());
+      }
+   }
+
+   /**
+    * Creates a copy-on-write clone of the source file.
+    *
+    * @param source
+    *           the source file.
+    * @param target
+    *           the clone to create.
+    * @throws IOException
+    *            if the clone could not be created.
+    */
+   private void clone(final File source, final File target) throws IOException {
+      final List<String> command = getCloneCommand();
+      command.add(source.getAbsolutePath());
+      command.add(target.getAbsolutePath());
+      run(command, source);
+   }
+
+   /**
+    * Creates copy-on-write clones of source files into a directory, keeping their names, with a
+    * single <code>cp</code> command.
+    *
+    * @param sources
+    *           the source files.
+    * @param directory
+    *           the target directory.
+    * @throws IOException
+    *            if the clones could not be created.
+    */
+   protected void clone(final List<File> sources, final File directory) throws IOException {
+      final List<String> command = getCloneCommand();
+      for (final File source : sources) {
+         command.add(source.getAbsolutePath());
+      }
+      command.add(directory.getAbsolutePath() + File.separatorChar);
+      run(command, directory);
+   }
+
+   /**
+    * Returns the <code>cp</code> command creating clones on the current platform.
+    *
+    * @return the command without its arguments.
+    * @throws IOException
+    *            if clones are not supported on the current platform.
+    */
+   private static List<String> getCloneCommand() throws IOException {
+      final List<String> command = new ArrayList<String>();
+      command.add("cp");
+      if (Os.isFamily(Os.FAMILY_MAC)) {
+         command.add("-c");
+      } else if (Os.isFamily(Os.FAMILY_UNIX)) {
+         command.add("--reflink=always");
+      } else {
+         throw new IOException("Clones are not supported on " + Os.OS_NAME);
+      }
+      return command;
+   }
+
+   /**
+    * Runs a <code>cp</code> command.
+    *
+    * @param command
+    *           the command.
+    * @param file
+    *           the file named if the command is interrupted.
+    * @throws IOException
+    *            if the command failed.
+    */
+   private static void run(final List<String> command, final File file) throws IOException {
+      final Process process = new ProcessBuilder(command).redirectErrorStream(true).start();
+      try {
+         process.getOutputStream().close();
+         final String output = IOUtil.toString(process.getInputStream()).trim();
+         if (process.waitFor() != 0) {
+            throw new IOException(output);
+         }
+      } catch (final InterruptedException e) {
+         Thread.currentThread().interrupt();
+         throw new IOException("Interrupted while cloning " + file, e);
+      } finally {
+         process.getInputStream().close();
+         process.getErrorStream().close();
+      }
+   }
+}
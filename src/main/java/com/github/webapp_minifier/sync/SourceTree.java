@@ -0,0 +1,301 @@
+package com.github.webapp_minifier.sync;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.Executor;
+
+import org.codehaus.plexus.util.MatchPatterns;
+import org.codehaus.plexus.util.SelectorUtils;
+import org.codehaus.plexus.util.StringUtils;
+
+import com.google.common.util.concurrent.MoreExecutors;
+
+/**
+ * This class holds the files and directories of a directory, enumerated once by a walk in which
+ * the subdirectories are listed concurrently by the threads of an executor. The same enumeration
+ * then serves every stage which needs the contents of the directory, such as the
+ * {@link DirectorySynchronizer} and the matching of the HTML files to process. This class is
+ * immutable once walked.
+ * <p>
+ * Names are relative to the walked directory and separated by {@link File#separatorChar}. The
+ * walked directory itself is named by the empty string. Every enumeration is in the depth-first
+ * order of the directory listings, which is the order of a
+ * {@link org.codehaus.plexus.util.DirectoryScanner}.
+ *
+ * @author Lonny
+ */
+public final class SourceTree {
+
+   /**
+    * The listing of one directory.
+    */
+   private static final class Listing {
+      /** The name of the directory. */
+      private final String path;
+
+      /** The names of the entries of the directory. */
+      private final String[] names;
+
+      /** Indicates which of the entries are directories. */
+      private final boolean[] directories;
+
+      /**
+       * Constructs a new listing.
+       *
+       * @param path
+       *           the name of the directory.
+       * @param names
+       *           the names of the entries of the directory.
+       * @param directories
+       *           indicates which of the entries are directories.
+       */
+      public Listing(final String path, final String[] names, final boolean[] directories) {
+         this.path = path;
+         this.names = names;
+         this.directories = directories;
+      }
+
+      /**
+       * Returns the name of an entry of the directory.
+       *
+       * @param index
+       *           the index of the entry.
+       * @return the name relative to the walked directory.
+       */
+      public String getName(final int index) {
+         return this.path.length() == 0 ? this.names[index] : this.path + File.separatorChar
+               + this.names[index];
+      }
+   }
+
+   /**
+    * Lists one directory.
+    */
+   private static final class ListTask implements Callable<Listing> {
+      /** The directory. */
+      private final File directory;
+
+      /** The name of the directory. */
+      private final String path;
+
+      /**
+       * Constructs a new task.
+       *
+       * @param directory
+       *           the directory.
+       * @param path
+       *           the name of the directory.
+       */
+      public ListTask(final File directory, final String path) {
+         this.directory = directory;
+         this.path = path;
+      }
+
+      @Override
+      public Listing call() throws IOException {
+         final String[] names = this.directory.list();
+         if (names == null) {
+            throw new IOException("Failed to list " + this.directory);
+         }
+         final boolean[] directories = new boolean[names.length];
+         for (int i = 0; i < names.length; i++) {
+            directories[i] = new File(this.directory, names[i]).isDirectory();
+         }
+         return new Listing(this.path, names, directories);
+      }
+   }
+
+   /** The walked directory. */
+   private final File directory;
+
+   /** The listings keyed by the name of their directory. */
+   private final Map<String, Listing> listings;
+
+   /** The names of the files in walk order. */
+   private final List<String> files = new ArrayList<String>();
+
+   /**
+    * Constructs a new tree.
+    *
+    * @param directory
+    *           the walked directory.
+    * @param listings
+    *           the listings keyed by the name of their directory.
+    */
+   private SourceTree(final File directory, final Map<String, Listing> listings) {
+      this.directory = directory;
+      this.listings = listings;
+      addFiles(listings.get(""));
+   }
+
+   /**
+    * Walks a directory on the current thread.
+    *
+    * @param directory
+    *           the directory.
+    * @return the tree of the directory.
+    * @throws IOException
+    *            if a directory could not be listed.
+    */
+   public static SourceTree walk(final File directory) throws IOException {
+      return walk(directory, MoreExecutors.sameThreadExecutor());
+   }
+
+   /**
+    * Walks a directory, listing its subdirectories concurrently. The tasks of the executor never
+    * wait for one another, so any executor may be used.
+    *
+    * @param directory
+    *           the directory.
+    * @param executor
+    *           the executor listing the directories.
+    * @return the tree of the directory.
+    * @throws IOException
+    *            if a directory could not be listed.
+    */
+   public static SourceTree walk(final File directory, final Executor executor)
+         throws IOException {
+      final CompletionService<Listing> completionService = new ExecutorCompletionService<Listing>(
+            executor);
+      final Map<String, Listing> listings = new HashMap<String, Listing>();
+      completionService.submit(new ListTask(directory, ""));
+      int pending = 1;
+      try {
+         while (pending > 0) {
+            final Listing listing = completionService.take().get();
+            pending--;
+            listings.put(listing.path, listing);
+            for (int i = 0; i < listing.names.length; i++) {
+               if (listing.directories[i]) {
+                  final String name = listing.getName(i);
+                  completionService.submit(new ListTask(new File(directory, name), name));
+                  pending++;
+               }
+            }
+         }
+      } catch (final InterruptedException e) {
+         Thread.currentThread().interrupt();
+         throw new IOException("Interrupted while walking " + directory, e);
+      } catch (final ExecutionException e) {
+         if (e.getCause() instanceof IOException) {
+            throw (IOException) e.getCause();
+         }
+         throw new IOException("Failed to walk " + directory, e.getCause());
+      }
+      return new SourceTree(directory, listings);
+   }
+
+   /**
+    * Adds the files of a directory and its subdirectories in walk order.
+    *
+    * @param listing
+    *           the listing of the directory.
+    */
+   private void addFiles(final Listing listing) {
+      for (int i = 0; i < listing.names.length; i++) {
+         if (listing.directories[i]) {
+            addFiles(this.listings.get(listing.getName(i)));
+         } else {
+            this.files.add(listing.getName(i));
+         }
+      }
+   }
+
+   /**
+    * Returns the walked directory.
+    *
+    * @return the directory.
+    */
+   public File getDirectory() {
+      return this.directory;
+   }
+
+   /**
+    * Returns the names of the files within the directory and its subdirectories.
+    *
+    * @return the names of the files in walk order.
+    */
+   public List<String> getFiles() {
+      return this.files;
+   }
+
+   /**
+    * Returns the names of the entries of a directory.
+    *
+    * @param path
+    *           the name of the directory.
+    * @return the names of the entries, or <code>null</code> if the directory was not walked.
+    */
+   public String[] list(final String path) {
+      final Listing listing = this.listings.get(path);
+      return listing == null ? null : listing.names.clone();
+   }
+
+   /**
+    * Determines if an entry is a directory.
+    *
+    * @param path
+    *           the name of the entry.
+    * @return <code>true</code> if the entry is a walked directory.
+    */
+   public boolean isDirectory(final String path) {
+      return this.listings.containsKey(path);
+   }
+
+   /**
+    * Returns the names of the files matching the includes and not matching the excludes, using
+    * the pattern syntax of a {@link org.codehaus.plexus.util.DirectoryScanner}.
+    *
+    * @param includes
+    *           the include patterns.
+    * @param excludes
+    *           the exclude patterns.
+    * @return the names of the matching files in walk order.
+    */
+   public String[] match(final String[] includes, final String[] excludes) {
+      final MatchPatterns includePatterns = getPatterns(includes);
+      final MatchPatterns excludePatterns = getPatterns(excludes);
+      final List<String> matches = new ArrayList<String>();
+      for (final String name : this.files) {
+         if (includePatterns.matches(name, true) && !excludePatterns.matches(name, true)) {
+            matches.add(name);
+         }
+      }
+      return matches.toArray(new String[matches.size()]);
+   }
+
+   /**
+    * Compiles patterns the way a {@link org.codehaus.plexus.util.DirectoryScanner} does, using the
+    * platform separator and treating a trailing separator as matching everything below it.
+    * Regular expression patterns only have their escaped separators converted.
+    *
+    * @param patterns
+    *           the patterns.
+    * @return the compiled patterns.
+    */
+   private static MatchPatterns getPatterns(final String[] patterns) {
+      final List<String> normalized = new ArrayList<String>();
+      for (final String pattern : patterns) {
+         String name = pattern.trim();
+         if (name.startsWith(SelectorUtils.REGEX_HANDLER_PREFIX)) {
+            name = File.separatorChar == '\\' ? StringUtils.replace(name, "/", "\\\\")
+                  : StringUtils.replace(name, "\\\\", "/");
+         } else {
+            name = name.replace(File.separatorChar == '/' ? '\\' : '/', File.separatorChar);
+            if (name.endsWith(File.separator)) {
+               name += "**";
+            }
+         }
+         normalized.add(name);
+      }
+      return MatchPatterns.from(normalized);
+   }
+}
@@ -0,0 +1,25 @@
+package com.github.webapp_minifier.sync;
+
+/**
+ * The ways a file from the source directory can be placed into the minified directory.
+ *
+ * @author Lonny
+ */
+public enum StagingStrategy {
+   /**
+    * Copies the file's content.
+    */
+   COPY,
+
+   /**
+    * Creates a hard link to the source file. Falls back to copying when the directories are on
+    * different devices or the file system does not support hard links.
+    */
+   HARDLINK,
+
+   /**
+    * Creates a copy-on-write clone of the source file. Falls back to copying when the file system
+    * does not support clones.
+    */
+   REFLINK;
+}
@@ -0,0 +1,25 @@
+package com.github.webapp_minifier.sync;
+
+/**
+ * The ways the source directory can be staged into the minified directory.
+ *
+ * @author Lonny
+ */
+public enum SyncMode {
+   /**
+    * Deletes the minified directory and copies every file.
+    */
+   COPY,
+
+   /**
+    * Copies the files whose size or modification time differ and deletes the files which no longer
+    * exist in the source directory.
+    */
+   TIMESTAMP,
+
+   /**
+    * Copies the files whose size or content hash differ and deletes the files which no longer exist
+    * in the source directory.
+    */
+   HASH;
+}
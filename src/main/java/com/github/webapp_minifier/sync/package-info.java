@@ -0,0 +1,4 @@
+/**
+ * Contains classes that stage the source directory into the minified directory.
+ */
+package com.github.webapp_minifier.sync;
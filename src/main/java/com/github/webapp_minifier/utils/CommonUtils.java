@@ -1,13 +1,28 @@
 package com.github.webapp_minifier.utils;
 
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.IOException;
+import java.nio.charset.Charset;
+import java.util.Arrays;
 import java.util.Collection;
+import java.util.List;
 
 /**
  * @author Lonny
  */
 public final class CommonUtils {
+   /** The printable ASCII characters. */
+   private static final String PRINTABLE_ASCII;
+
+   static {
+      final StringBuilder builder = new StringBuilder();
+      for (char c = ' '; c <= '~'; c++) {
+         builder.append(c);
+      }
+      PRINTABLE_ASCII = builder.toString();
+   }
+
    /**
     * Checks if the collection is empty or <code>null</code>.
     * 
@@ -54,4 +69,218 @@ public final class CommonUtils {
       }
       return baseUri;
    }
+
+   /**
+    * Returns the named charset or the platform default when it is not set or not supported.
+    * 
+    * @param charsetName
+    *           the name of the charset or <code>null</code>.
+    * @return the charset.
+    */
+   public static Charset getCharset(final String charsetName) {
+      if ((charsetName == null) || !Charset.isSupported(charsetName)) {
+         return Charset.defaultCharset();
+      }
+      return Charset.forName(charsetName);
+   }
+
+   /**
+    * Determines if a charset encodes every printable ASCII character as the single byte of its
+    * code.
+    * 
+    * @param charset
+    *           the charset.
+    * @return <code>true</code> if the charset is ASCII compatible.
+    */
+   public static boolean isAsciiCompatible(final Charset charset) {
+      return Arrays.equals(toAscii(PRINTABLE_ASCII), PRINTABLE_ASCII.getBytes(charset));
+   }
+
+   /**
+    * Replaces every occurrence of a string within content encoded with the given charset. When
+    * the charset is ASCII compatible and both strings are printable ASCII, the bytes are replaced
+    * without decoding the content, which is safe since the search string cannot match part of a
+    * multi-byte character. Otherwise the content is decoded, replaced and encoded again.
+    * 
+    * @param content
+    *           the encoded content.
+    * @param search
+    *           the string to search for.
+    * @param replacement
+    *           the replacement string.
+    * @param charset
+    *           the encoding of the content.
+    * @return the content with every occurrence replaced.
+    */
+   public static byte[] replace(final byte[] content, final String search,
+         final String replacement, final Charset charset) {
+      if (search.length() == 0) {
+         return content;
+      }
+      if (!isPrintableAscii(search) || !isPrintableAscii(replacement)
+            || !isAsciiCompatible(charset)) {
+         final String text = new String(content, charset);
+         return text.contains(search) ? text.replace(search, replacement).getBytes(charset)
+               : content;
+      }
+      final byte[] searchBytes = toAscii(search);
+      final byte[] replacementBytes = toAscii(replacement);
+      final ByteArrayOutputStream result = new ByteArrayOutputStream(content.length);
+      int start = 0;
+      for (int i = 0; i <= content.length - searchBytes.length;) {
+         if (regionMatches(content, i, searchBytes)) {
+            result.write(content, start, i - start);
+            result.write(replacementBytes, 0, replacementBytes.length);
+            i += searchBytes.length;
+            start = i;
+         } else {
+            i++;
+         }
+      }
+      if (start == 0) {
+         return content;
+      }
+      result.write(content, start, content.length - start);
+      return result.toByteArray();
+   }
+
+   /**
+    * Replaces every occurrence of a prefix followed by a decimal index within content encoded with
+    * the given charset by the replacement of that index, in a single pass. When the charset is
+    * ASCII compatible and the prefix is printable ASCII, the bytes are replaced without decoding
+    * the content. Otherwise the content is decoded, replaced and encoded again.
+    * 
+    * @param content
+    *           the encoded content.
+    * @param prefix
+    *           the prefix of the indexed strings, which must not end with a digit.
+    * @param replacements
+    *           the replacement of each index.
+    * @param charset
+    *           the encoding of the content.
+    * @return the content with every indexed string replaced.
+    * @throws IllegalArgumentException
+    *            if an index has no replacement.
+    */
+   public static byte[] replaceIndexed(final byte[] content, final String prefix,
+         final List<String> replacements, final Charset charset) {
+      if (replacements.isEmpty()) {
+         return content;
+      }
+      if (!isPrintableAscii(prefix) || !isAsciiCompatible(charset)) {
+         final String text = new String(content, charset);
+         final StringBuilder result = new StringBuilder(text.length());
+         int start = 0;
+         for (int i = text.indexOf(prefix); i >= 0; i = text.indexOf(prefix, start)) {
+            int end = i + prefix.length();
+            while ((end < text.length()) && Character.isDigit(text.charAt(end))) {
+               end++;
+            }
+            result.append(text, start, i);
+            result.append(getReplacement(text.substring(i + prefix.length(), end),
+                  replacements));
+            start = end;
+         }
+         result.append(text, start, text.length());
+         return result.toString().getBytes(charset);
+      }
+      final byte[] prefixBytes = toAscii(prefix);
+      final ByteArrayOutputStream result = new ByteArrayOutputStream(content.length);
+      int start = 0;
+      for (int i = 0; i <= content.length - prefixBytes.length;) {
+         if (regionMatches(content, i, prefixBytes)) {
+            int end = i + prefixBytes.length;
+            while ((end < content.length) && (content[end] >= '0') && (content[end] <= '9')) {
+               end++;
+            }
+            final byte[] replacement = getReplacement(
+                  new String(content, i + prefixBytes.length, end - i - prefixBytes.length,
+                        charset), replacements).getBytes(charset);
+            result.write(content, start, i - start);
+            result.write(replacement, 0, replacement.length);
+            i = end;
+            start = i;
+         } else {
+            i++;
+         }
+      }
+      result.write(content, start, content.length - start);
+      return result.toByteArray();
+   }
+
+   /**
+    * Returns the replacement of an index.
+    * 
+    * @param index
+    *           the decimal index.
+    * @param replacements
+    *           the replacement of each index.
+    * @return the replacement.
+    * @throws IllegalArgumentException
+    *            if the index has no replacement.
+    */
+   private static String getReplacement(final String index, final List<String> replacements) {
+      try {
+         final int i = Integer.parseInt(index);
+         if ((i >= 0) && (i < replacements.size()) && (replacements.get(i) != null)) {
+            return replacements.get(i);
+         }
+      } catch (final NumberFormatException e) {
+         // Reported below.
+      }
+      throw new IllegalArgumentException("No replacement for the index '" + index + "'");
+   }
+
+   /**
+    * Determines if the bytes at the given offset match the search bytes.
+    * 
+    * @param content
+    *           the content to test.
+    * @param offset
+    *           the offset within the content.
+    * @param search
+    *           the bytes to match.
+    * @return <code>true</code> if the region matches.
+    */
+   private static boolean regionMatches(final byte[] content, final int offset,
+         final byte[] search) {
+      for (int j = 0; j < search.length; j++) {
+         if (content[offset + j] != search[j]) {
+            return false;
+         }
+      }
+      return true;
+   }
+
+   /**
+    * Determines if a string only contains printable ASCII characters.
+    * 
+    * @param text
+    *           the string.
+    * @return <code>true</code> if every character is printable ASCII.
+    */
+   private static boolean isPrintableAscii(final String text) {
+      for (int i = 0; i < text.length(); i++) {
+         final char c = text.charAt(i);
+         if ((c < ' ') || (c > '~')) {
+            return false;
+         }
+      }
+      return true;
+   }
+
+   /**
+    * Encodes the ASCII string as bytes.
+    * 
+    * @param text
+    *           the ASCII string.
+    * @return the encoded bytes.
+    */
+   private static byte[] toAscii(final String text) {
+      final byte[] bytes = new byte[text.length()];
+      for (int i = 0; i < bytes.length; i++) {
+         bytes[i] = (byte) text.charAt(i);
+      }
+      return bytes;
+   }
 }
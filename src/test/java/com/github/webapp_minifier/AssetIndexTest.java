@@ -0,0 +1,120 @@
+package com.github.webapp_minifier;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+
+import org.codehaus.plexus.util.FileUtils;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * This class tests {@link AssetIndex}.
+ *
+ * @author Lonny
+ */
+public class AssetIndexTest {
+
+   /** The directory containing the indexed directories. */
+   private final File directory = new File("target/test-asset-index");
+
+   /**
+    * Creates the files to index.
+    *
+    * @throws IOException
+    *            if a file could not be written.
+    */
+   @Before
+   public void setUp() throws IOException {
+      FileUtils.deleteDirectory(this.directory);
+      new File(this.directory, "webapp/js").mkdirs();
+      new File(this.directory, "shared").mkdirs();
+      FileUtils.fileWrite(new File(this.directory, "webapp/js/app.js"), "UTF-8", "var a;");
+      FileUtils.fileWrite(new File(this.directory, "shared/lib.js"), "UTF-8", "var b;");
+   }
+
+   /**
+    * Tests that the files of the target and other directories are indexed.
+    *
+    * @throws IOException
+    *            if any
+    */
+   @Test
+   public void testBuild() throws IOException {
+      final Properties otherDirectories = new Properties();
+      otherDirectories.setProperty("/shared", new File(this.directory, "shared").getPath());
+      final AssetIndex index = AssetIndex.build(new File(this.directory, "webapp"),
+            otherDirectories);
+
+      assertEquals(2, index.size());
+      assertTrue(index.exists(new File(this.directory, "webapp/js/app.js")));
+      assertTrue(index.exists(new File(this.directory, "webapp/js/../js/./app.js")));
+      assertTrue(index.exists(new File(this.directory, "shared/lib.js")));
+      assertFalse(index.exists(new File(this.directory, "webapp/js")));
+      assertFalse(index.exists(new File(this.directory, "webapp/lib.js")));
+   }
+
+   /**
+    * Tests that relative URLs are resolved against the directory of the HTML file before the
+    * target directory.
+    *
+    * @throws IOException
+    *            if any
+    */
+   @Test
+   public void testLocateRelative() throws IOException {
+      final File target = new File(this.directory, "webapp");
+      FileUtils.fileWrite(new File(target, "app.js"), "UTF-8", "var c;");
+      final AssetIndex index = AssetIndex.build(target, null);
+      final WebappMinifierMojo options = new WebappMinifierMojo();
+      options.setTargetDirectory(target);
+      final SourceFileLocator locator = new SourceFileLocator(null, options, index);
+
+      final List<File> searched = new ArrayList<File>();
+      assertEquals(AssetIndex.normalize(new File(target, "js/app.js")),
+            AssetIndex.normalize(locator.locate("app.js", "js", searched)));
+      assertEquals(1, searched.size());
+      assertEquals(AssetIndex.normalize(new File(target, "app.js")),
+            AssetIndex.normalize(locator.locate("/app.js", "js", searched)));
+   }
+
+   /**
+    * Tests that a case-insensitive index finds files whose names differ only by case.
+    */
+   @Test
+   public void testCaseInsensitive() {
+      final AssetIndex index = new AssetIndex(true);
+      index.add(new File(this.directory, "webapp/js/jquery.js"));
+
+      assertTrue(index.exists(new File(this.directory, "webapp/js/JQuery.js")));
+      assertTrue(index.exists(new File(this.directory, "WebApp/JS/../js/jquery.JS")));
+      assertFalse(index.exists(new File(this.directory, "webapp/js/jquery.min.js")));
+      assertFalse(new AssetIndex(false).exists(new File(this.directory, "webapp/js/JQuery.js")));
+   }
+
+   /**
+    * Tests that the case sensitivity detected for a directory matches the file system.
+    */
+   @Test
+   public void testIsCaseInsensitive() {
+      final File target = new File(this.directory, "webapp").getAbsoluteFile();
+      assertEquals(new File(this.directory, "WEBAPP").exists(),
+            AssetIndex.isCaseInsensitive(target));
+      assertEquals(new File(this.directory, "WEBAPP/js/APP.JS").exists(),
+            AssetIndex.isCaseInsensitive(new File(target, "js")));
+   }
+
+   /**
+    * Tests that paths are normalized without accessing the file system.
+    */
+   @Test
+   public void testNormalize() {
+      final String expected = new File("/a/c/d.js").getAbsolutePath();
+      assertEquals(expected, AssetIndex.normalize(new File("/a/b/../c/./d.js")));
+      assertEquals(expected, AssetIndex.normalize(new File("/a//c/d.js")));
+   }
+}
@@ -0,0 +1,271 @@
+package com.github.webapp_minifier;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.apache.maven.plugin.logging.SystemStreamLog;
+import org.codehaus.plexus.util.FileUtils;
+import org.junit.Test;
+
+import com.github.webapp_minifier.compressor.CompressorRegistry;
+import com.github.webapp_minifier.options.DefaultOverridablePluginOptions;
+import com.github.webapp_minifier.options.JavaScriptCompressor;
+import com.github.webapp_minifier.summary.HtmlFileSummary;
+import com.github.webapp_minifier.summary.MinifiedFileMetrics;
+import com.google.common.base.Charsets;
+import com.googlecode.htmlcompressor.compressor.Compressor;
+import com.googlecode.htmlcompressor.compressor.YuiCssCompressor;
+import com.googlecode.htmlcompressor.compressor.YuiJavaScriptCompressor;
+
+/**
+ * This class tests {@link BundleExecution}.
+ *
+ * @author Lonny
+ */
+public class BundleExecutionTest {
+
+   /** The directory containing the minified files. */
+   private final File directory = new File("target/test-bundle-execution");
+
+   /** The registry of the compressors of each thread. */
+   private final CompressorRegistry compressorRegistry = new CompressorRegistry();
+
+   /** The options of the planned inputs. */
+   private final DefaultOverridablePluginOptions options = new DefaultOverridablePluginOptions();
+
+   /**
+    * Tests that identical minified files planned by different HTML files are compressed once on
+    * the threads of the executor and that every planned file is written.
+    *
+    * @throws IOException
+    *            if any
+    */
+   @Test
+   public void testExecute() throws IOException {
+      FileUtils.deleteDirectory(this.directory);
+      this.directory.mkdirs();
+      this.options.setJsCompressorEngine(JavaScriptCompressor.YUI);
+      final HtmlFileResult first = plan("first", "var  a = 1;", "var  b = 2;");
+      final HtmlFileResult second = plan("second", "var  a = 1;", "var  b = 2;");
+      final HtmlFileResult third = plan("third", "var  c = 3;");
+
+      final BundleExecution execution = new BundleExecution(new SystemStreamLog(),
+            new MinificationCache(), this.compressorRegistry, Charset.forName("UTF-8"));
+      execution.add(first);
+      execution.add(second);
+      execution.add(third);
+      assertEquals(3, execution.getFileCount());
+      assertEquals(2, execution.getDistinctCount());
+
+      final ExecutorService executor = Executors.newFixedThreadPool(2);
+      try {
+         execution.execute(executor);
+      } finally {
+         executor.shutdownNow();
+      }
+
+      assertEquals("var a=1;var b=2;", read(first));
+      assertEquals(read(first), read(second));
+      assertEquals("var c=3;", read(third));
+      final MinifiedFileMetrics compressed = first.getSummary().getMinifiedFiles().iterator()
+            .next();
+      final MinifiedFileMetrics reused = second.getSummary().getMinifiedFiles().iterator().next();
+      assertFalse(compressed.isCacheHit());
+      assertTrue(reused.isCacheHit());
+      assertEquals(compressed.getMinifiedLength(), reused.getMinifiedLength());
+      assertTrue(first.getJsFileBuilder().getFiles().get(0).getInputs().isEmpty());
+   }
+
+   /**
+    * Tests that identical embedded code planned by different HTML files is compressed once and
+    * that its placeholders are replaced in the HTML content, whose minified sizes are updated.
+    *
+    * @throws IOException
+    *            if any
+    */
+   @Test
+   public void testExecuteEmbedded() throws IOException {
+      this.options.setJsCompressorEngine(JavaScriptCompressor.YUI);
+      final HtmlFileResult first = planEmbedded("first", "var  a = 1;", "var  b = 2;");
+      final HtmlFileResult second = planEmbedded("second", "var  a = 1;");
+      final int placeholderLength = first.getHtml().length;
+      first.getSummary().setHtmlMinified(true);
+      first.getSummary().setHtmlOriginalLength(100);
+      first.getSummary().setHtmlMinifiedLength(placeholderLength);
+
+      final BundleExecution execution = new BundleExecution(new SystemStreamLog(),
+            new MinificationCache(), this.compressorRegistry, Charset.forName("UTF-8"));
+      execution.add(first);
+      execution.add(second);
+      assertEquals(0, execution.getFileCount());
+      assertEquals(2, execution.getDistinctCount());
+      assertTrue(second.getEmbeddedInputs().isEmpty());
+
+      final ExecutorService executor = Executors.newFixedThreadPool(2);
+      try {
+         execution.execute(executor);
+      } finally {
+         executor.shutdownNow();
+      }
+
+      final String firstHtml = "<script>var a=1;</script><script>var b=2;</script>";
+      assertEquals(firstHtml, new String(first.getHtml(), "UTF-8"));
+      assertEquals("<script>var a=1;</script>", new String(second.getHtml(), "UTF-8"));
+      assertEquals(firstHtml.length(), first.getSummary().getHtmlMinifiedLength());
+      assertEquals((100 + firstHtml.length()) - placeholderLength, first.getSummary()
+            .getHtmlOriginalLength());
+      final MinifiedFileMetrics compressed = first.getSummary().getMinifiedFiles().iterator()
+            .next();
+      final MinifiedFileMetrics reused = second.getSummary().getMinifiedFiles().iterator().next();
+      assertFalse(compressed.isCacheHit());
+      assertTrue(reused.isCacheHit());
+      assertEquals(compressed.getMinifiedLength(), reused.getMinifiedLength());
+   }
+
+   /**
+    * Tests that identical code planned by different HTML files is interned and that the inputs of
+    * the files which reuse an identical file are cleared once added.
+    */
+   @Test
+   public void testIntern() {
+      final BundleExecution execution = new BundleExecution(new SystemStreamLog(),
+            new MinificationCache(), this.compressorRegistry, Charset.forName("UTF-8"));
+      final YuiJavaScriptCompressor compressor = new YuiJavaScriptCompressor();
+      final MinifiedFileInput first = execution.intern(input(compressor, this.options,
+            new String("var a;")));
+      final MinifiedFileInput second = input(compressor, this.options, new String("var a;"));
+      final MinifiedFileInput interned = execution.intern(second);
+
+      assertNotSame(first.getCode(), second.getCode());
+      assertSame(first.getCode(), interned.getCode());
+      assertSame(second.getMetrics(), interned.getMetrics());
+      assertEquals(first.getHash(), interned.getHash());
+
+      this.options.setJsCompressorEngine(JavaScriptCompressor.YUI);
+      final HtmlFileResult planned = plan("first", "var  a = 1;");
+      final HtmlFileResult reused = plan("second", "var  a = 1;");
+      execution.add(planned);
+      execution.add(reused);
+      assertTrue(reused.getJsFileBuilder().getFiles().get(0).getInputs().isEmpty());
+   }
+
+   /**
+    * Tests that the key depends upon the order, code, compressor and options of the inputs.
+    */
+   @Test
+   public void testKey() {
+      final DefaultOverridablePluginOptions otherOptions = new DefaultOverridablePluginOptions();
+      otherOptions.setYuiJsNoMunge(true);
+      final YuiJavaScriptCompressor compressor = new YuiJavaScriptCompressor();
+      final String key = BundleExecution.getKey(Arrays.asList(
+            input(compressor, this.options, "var a;"), input(compressor, this.options, "var b;")));
+
+      assertEquals(key, BundleExecution.getKey(Arrays.asList(
+            input(compressor, this.options, "var a;"),
+            input(new YuiJavaScriptCompressor(), this.options, "var b;"))));
+      assertNotEquals(key, BundleExecution.getKey(Arrays.asList(
+            input(compressor, this.options, "var b;"), input(compressor, this.options, "var a;"))));
+      assertNotEquals(key, BundleExecution.getKey(Arrays.asList(
+            input(compressor, this.options, "var a;"), input(compressor, otherOptions, "var b;"))));
+      assertNotEquals(key, BundleExecution.getKey(Arrays.asList(
+            input(compressor, this.options, "var a;"),
+            input(new YuiCssCompressor(), this.options, "var b;"))));
+   }
+
+   /**
+    * Creates an input.
+    *
+    * @param compressor
+    *           the compressor.
+    * @param options
+    *           the options.
+    * @param code
+    *           the code.
+    * @return the input.
+    */
+   private static MinifiedFileInput input(final Compressor compressor,
+         final DefaultOverridablePluginOptions options, final String code) {
+      return new MinifiedFileInput(compressor, options, code, new MinifiedFileMetrics());
+   }
+
+   /**
+    * Plans the result of an HTML file with a single minified JavaScript file.
+    *
+    * @param token
+    *           the token of the minified file names.
+    * @param codes
+    *           the inputs of the minified file.
+    * @return the planned result.
+    */
+   private HtmlFileResult plan(final String token, final String... codes) {
+      final MinifiedFileBuilder cssFileBuilder = new MinifiedFileBuilder(this.directory, "css-"
+            + token, "css");
+      final MinifiedFileBuilder jsFileBuilder = new MinifiedFileBuilder(this.directory, "js-"
+            + token, "js");
+      final HtmlFileSummary summary = new HtmlFileSummary();
+      final MinifiedFileInfo fileInfo = jsFileBuilder.getCurrentFile();
+      for (final String code : codes) {
+         final MinifiedFileMetrics metrics = new MinifiedFileMetrics();
+         summary.getMinifiedFiles().add(metrics);
+         fileInfo.getInputs().add(
+               new MinifiedFileInput(this.compressorRegistry.getJavaScriptCompressor(this.options),
+                     this.options, code, metrics));
+      }
+      jsFileBuilder.finishFile();
+      return new HtmlFileResult(new File(this.directory, token + ".html"), new byte[0], summary,
+            cssFileBuilder, jsFileBuilder);
+   }
+
+   /**
+    * Plans the result of an HTML file with embedded JavaScript, whose content holds a placeholder
+    * for each block.
+    *
+    * @param token
+    *           the token of the placeholders.
+    * @param codes
+    *           the embedded code.
+    * @return the planned result.
+    */
+   private HtmlFileResult planEmbedded(final String token, final String... codes) {
+      final HtmlFileSummary summary = new HtmlFileSummary();
+      final List<MinifiedFileInput> inputs = new ArrayList<MinifiedFileInput>();
+      final StringBuilder html = new StringBuilder();
+      for (final String code : codes) {
+         final MinifiedFileMetrics metrics = new MinifiedFileMetrics();
+         summary.getMinifiedFiles().add(metrics);
+         html.append("<script>").append(token).append('-').append(inputs.size())
+               .append("</script>");
+         inputs.add(new MinifiedFileInput(
+               this.compressorRegistry.getJavaScriptCompressor(this.options), this.options, code,
+               metrics));
+      }
+      final HtmlFileResult result = new HtmlFileResult(new File(this.directory, token + ".html"),
+            html.toString().getBytes(Charsets.UTF_8), summary, new MinifiedFileBuilder(
+                  this.directory, "css-" + token, "css"), new MinifiedFileBuilder(
+                  this.directory, "js-" + token, "js"));
+      result.setEmbeddedPrefix(token + "-");
+      result.getEmbeddedInputs().addAll(inputs);
+      return result;
+   }
+
+   /**
+    * Reads the minified JavaScript file of a result.
+    *
+    * @param result
+    *           the result.
+    * @return the content of the file.
+    * @throws IOException
+    *            if the file could not be read.
+    */
+   private static String read(final HtmlFileResult result) throws IOException {
+      return FileUtils.fileRead(result.getJsFileBuilder().getFiles().get(0).getFile(), "UTF-8");
+   }
+}
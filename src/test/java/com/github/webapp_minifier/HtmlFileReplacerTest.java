@@ -0,0 +1,118 @@
+package com.github.webapp_minifier;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.IOException;
+
+import org.codehaus.plexus.util.FileUtils;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * This class tests {@link HtmlFileReplacer}.
+ *
+ * @author Lonny
+ */
+public class HtmlFileReplacerTest {
+
+   /** The directory containing the HTML files. */
+   private final File directory = new File("target/test-html-replacer/webapp");
+
+   /** The directory keeping the originals. */
+   private final File originalsDirectory = new File("target/test-html-replacer/originals");
+
+   /**
+    * Creates an HTML file to replace.
+    *
+    * @throws IOException
+    *            if the file could not be written.
+    */
+   @Before
+   public void setUp() throws IOException {
+      FileUtils.deleteDirectory(this.directory.getParentFile());
+      new File(this.directory, "pages").mkdirs();
+      FileUtils.fileWrite(new File(this.directory, "pages/index.html"), "UTF-8", "original");
+   }
+
+   /**
+    * Tests that {@link HtmlOutput#BACKUP} keeps the original next to the HTML file.
+    *
+    * @throws IOException
+    *            if any
+    */
+   @Test
+   public void testBackup() throws IOException {
+      new HtmlFileReplacer(this.directory, HtmlOutput.BACKUP, null).replace("pages/index.html",
+            "processed".getBytes("UTF-8"));
+
+      assertEquals("processed", FileUtils.fileRead(new File(this.directory, "pages/index.html")));
+      assertEquals("original",
+            FileUtils.fileRead(new File(this.directory, "pages/index.html.bak")));
+      assertEquals(2, new File(this.directory, "pages").list().length);
+   }
+
+   /**
+    * Tests that {@link HtmlOutput#REPLACE} leaves only the processed HTML file.
+    *
+    * @throws IOException
+    *            if any
+    */
+   @Test
+   public void testReplace() throws IOException {
+      new HtmlFileReplacer(this.directory, HtmlOutput.REPLACE, null).replace("pages/index.html",
+            "processed".getBytes("UTF-8"));
+
+      assertEquals("processed", FileUtils.fileRead(new File(this.directory, "pages/index.html")));
+      assertArrayEquals(new String[] { "index.html" }, new File(this.directory, "pages").list());
+   }
+
+   /**
+    * Tests that {@link HtmlOutput#REPLACE} keeps the original in the originals directory.
+    *
+    * @throws IOException
+    *            if any
+    */
+   @Test
+   public void testReplaceKeepingOriginals() throws IOException {
+      new HtmlFileReplacer(this.directory, HtmlOutput.REPLACE, this.originalsDirectory).replace(
+            "pages/index.html", "processed".getBytes("UTF-8"));
+
+      assertEquals("processed", FileUtils.fileRead(new File(this.directory, "pages/index.html")));
+      assertArrayEquals(new String[] { "index.html" }, new File(this.directory, "pages").list());
+      assertEquals("original",
+            FileUtils.fileRead(new File(this.originalsDirectory, "pages/index.html")));
+   }
+
+   /**
+    * Tests that the HTML file is left in place when its original cannot be kept.
+    *
+    * @throws IOException
+    *            if any
+    */
+   @Test
+   public void testReplaceFailingToKeepOriginal() throws IOException {
+      this.originalsDirectory.mkdirs();
+      FileUtils.fileWrite(new File(this.originalsDirectory, "pages"), "UTF-8", "not a directory");
+      try {
+         new HtmlFileReplacer(this.directory, HtmlOutput.REPLACE, this.originalsDirectory)
+               .replace("pages/index.html", "processed".getBytes("UTF-8"));
+         fail("The original should not have been kept");
+      } catch (final IOException e) {
+         assertEquals("original",
+               FileUtils.fileRead(new File(this.directory, "pages/index.html")));
+      }
+   }
+
+   /**
+    * Tests that the originals cannot be kept within the directory of the HTML files.
+    *
+    * @throws IOException
+    *            if any
+    */
+   @Test(expected = IllegalArgumentException.class)
+   public void testOriginalsWithinDirectory() throws IOException {
+      new HtmlFileReplacer(this.directory, HtmlOutput.REPLACE, new File(this.directory,
+            "originals"));
+   }
+}
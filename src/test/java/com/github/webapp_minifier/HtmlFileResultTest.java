@@ -0,0 +1,115 @@
+package com.github.webapp_minifier;
+
+import static junitparams.JUnitParamsRunner.*;
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.Charset;
+
+import junitparams.JUnitParamsRunner;
+import junitparams.Parameters;
+
+import org.codehaus.plexus.util.FileUtils;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import com.github.webapp_minifier.summary.HtmlFileSummary;
+
+/**
+ * This class tests {@link HtmlFileResult}.
+ *
+ * @author Lonny
+ */
+@RunWith(JUnitParamsRunner.class)
+public class HtmlFileResultTest {
+
+   /** The directory containing the minified files. */
+   private final File directory = new File("target/test-html-file-result");
+
+   /**
+    * Returns the namings of the final files.
+    *
+    * @return the namings.
+    */
+   protected Object[] parametersForTestCommitIdentical() {
+      return $($(BundleNaming.SEQUENTIAL), $(BundleNaming.CONTENT_HASH));
+   }
+
+   /**
+    * Tests that a minified file identical to one already committed is given its final file,
+    * which is kept as is, and that its temporary file is deleted.
+    *
+    * @param naming
+    *           the naming of the final files.
+    * @throws IOException
+    *            if any
+    */
+   @Test
+   @Parameters
+   public void testCommitIdentical(final BundleNaming naming) throws IOException {
+      FileUtils.deleteDirectory(this.directory);
+      this.directory.mkdirs();
+      final MinifiedFileBuilder jsNames = new MinifiedFileBuilder(this.directory, "js", "js",
+            naming);
+      final HtmlFileResult first = commit(jsNames, "first", "var a=1;");
+      final File committed = first.getCommittedFile(first.getJsFileBuilder().getFiles().get(0));
+      committed.setLastModified(1000000000000L);
+
+      final HtmlFileResult second = commit(jsNames, "second", "var a=1;");
+
+      final MinifiedFileInfo fileInfo = second.getJsFileBuilder().getFiles().get(0);
+      assertEquals(committed, second.getCommittedFile(fileInfo));
+      assertFalse(fileInfo.getFile().exists());
+      assertEquals(1000000000000L, committed.lastModified());
+      assertEquals("var a=1;", FileUtils.fileRead(committed, "UTF-8"));
+      assertEquals("<script src=\"" + committed.getName() + "\"></script>", new String(
+            second.getHtml(), "UTF-8"));
+   }
+
+   /**
+    * Tests that a stale file left under the final name of a different minified file is replaced.
+    *
+    * @throws IOException
+    *            if any
+    */
+   @Test
+   public void testCommitReplacesStaleFile() throws IOException {
+      FileUtils.deleteDirectory(this.directory);
+      this.directory.mkdirs();
+      FileUtils.fileWrite(new File(this.directory, "js-1.js"), "UTF-8", "var stale;");
+
+      commit(new MinifiedFileBuilder(this.directory, "js", "js"), "first", "var a=1;");
+
+      assertEquals("var a=1;", FileUtils.fileRead(new File(this.directory, "js-1.js"), "UTF-8"));
+   }
+
+   /**
+    * Commits an HTML file loading one minified JavaScript file.
+    *
+    * @param jsNames
+    *           the builder providing the final names.
+    * @param token
+    *           the token of the temporary file names.
+    * @param code
+    *           the content of the minified file.
+    * @return the committed result.
+    * @throws IOException
+    *            if any
+    */
+   private HtmlFileResult commit(final MinifiedFileBuilder jsNames, final String token,
+         final String code) throws IOException {
+      final MinifiedFileBuilder jsFileBuilder = new MinifiedFileBuilder(this.directory, "js-"
+            + token, "js");
+      final File temporaryFile = jsFileBuilder.getCurrentFile().getFile();
+      FileUtils.fileWrite(temporaryFile, "UTF-8", code);
+      jsFileBuilder.finishFile();
+      final HtmlFileResult result = new HtmlFileResult(new File(this.directory, token + ".html"),
+            ("<script src=\"" + temporaryFile.getName() + "\"></script>").getBytes("UTF-8"),
+            new HtmlFileSummary(), new MinifiedFileBuilder(this.directory, "css-" + token, "css"),
+            jsFileBuilder);
+      result.commit(new MinifiedFileBuilder(this.directory, "css", "css"), jsNames,
+            Charset.forName("UTF-8"));
+      return result;
+   }
+}
@@ -0,0 +1,160 @@
+package com.github.webapp_minifier;
+
+import java.io.File;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+
+import org.apache.maven.plugin.logging.SystemStreamLog;
+import org.codehaus.plexus.util.FileUtils;
+
+import com.github.webapp_minifier.compressor.CompressorRegistry;
+
+/**
+ * This class measures the memory used by {@link HtmlFileTask} to process one large generated HTML
+ * file with each parser. It is not a test and is run from the test classpath:
+ *
+ * <pre>
+ * mvn test-compile dependency:build-classpath -Dmdep.outputFile=target/classpath.txt
+ * java -cp target/classes:target/test-classes:$(cat target/classpath.txt) \
+ *       com.github.webapp_minifier.HtmlFileTaskBenchmark [megabytes]
+ * </pre>
+ *
+ * For each parser, the best of several runs reports the bytes allocated by the processing thread,
+ * read from <code>com.sun.management.ThreadMXBean</code>, and the peak heap used above the heap
+ * used before the run, read from the heap memory pools after a garbage collection.
+ *
+ * @author Lonny
+ */
+public final class HtmlFileTaskBenchmark {
+
+   /** The parsers to measure. */
+   private static final String[] PARSERS = { "jsoup", "jsoup-patch", "streaming" };
+
+   /** The number of runs before measuring. */
+   private static final int WARMUP_RUNS = 3;
+
+   /** The number of measured runs. */
+   private static final int RUNS = 5;
+
+   /**
+    * Prevents instantiation.
+    */
+   private HtmlFileTaskBenchmark() {
+   }
+
+   /**
+    * Runs the benchmark.
+    *
+    * @param args
+    *           the size of the generated HTML file in megabytes, 4 by default.
+    * @throws Exception
+    *            if the HTML file could not be processed.
+    */
+   public static void main(final String[] args) throws Exception {
+      final int megabytes = args.length > 0 ? Integer.parseInt(args[0]) : 4;
+      final File directory = new File("target/html-file-task-benchmark");
+      FileUtils.deleteDirectory(directory);
+      new File(directory, "js").mkdirs();
+      FileUtils.fileWrite(new File(directory, "js/app.js"), "UTF-8",
+            "function app(value) {\n  return value + 1;\n}\n");
+      final File htmlFile = new File(directory, "page.html");
+      FileUtils.fileWrite(htmlFile, "UTF-8", generate(megabytes * 1024 * 1024));
+
+      final WebappMinifierMojo options = new WebappMinifierMojo();
+      options.setTargetDirectory(directory);
+      options.setEncoding("UTF-8");
+      final com.sun.management.ThreadMXBean threadBean = (com.sun.management.ThreadMXBean) ManagementFactory
+            .getThreadMXBean();
+      System.out.println("HTML file: " + htmlFile.length() + " bytes");
+      for (final String parser : PARSERS) {
+         long allocated = Long.MAX_VALUE;
+         long peak = Long.MAX_VALUE;
+         for (int i = 0; i < WARMUP_RUNS + RUNS; i++) {
+            final HtmlFileTask task = new HtmlFileTask(new SystemStreamLog() {
+               @Override
+               public boolean isInfoEnabled() {
+                  return false;
+               }
+
+               @Override
+               public void info(final CharSequence content) {
+               }
+            }, options, parser, htmlFile.getName(), htmlFile, new MinificationCache(),
+                  new CompressorRegistry(), null);
+            System.gc();
+            final long used = resetPeakHeap();
+            final long start = threadBean.getThreadAllocatedBytes(Thread.currentThread().getId());
+            final HtmlFileResult result = task.call();
+            final long end = threadBean.getThreadAllocatedBytes(Thread.currentThread().getId());
+            final long runPeak = getPeakHeap() - used;
+            if (result.getHtml().length == 0) {
+               throw new IllegalStateException("No HTML produced by " + parser);
+            }
+            if (i >= WARMUP_RUNS) {
+               allocated = Math.min(allocated, end - start);
+               peak = Math.min(peak, runPeak);
+            }
+         }
+         System.out.println(String.format("%-12s allocated %7.1f MB, peak heap %7.1f MB", parser,
+               allocated / 1048576.0, peak / 1048576.0));
+      }
+   }
+
+   /**
+    * Generates an HTML file referencing a script, with embedded scripts and styles among many
+    * rows of text.
+    *
+    * @param size
+    *           the approximate size of the HTML file in characters.
+    * @return the HTML.
+    */
+   private static String generate(final int size) {
+      final StringBuilder html = new StringBuilder(size + 1024);
+      html.append("<!DOCTYPE html>\n<html>\n<head>\n<title>Benchmark</title>\n");
+      html.append("<script type=\"text/javascript\" src=\"js/app.js\"></script>\n");
+      html.append("<style>\n.row {\n  margin: 0px;\n}\n</style>\n</head>\n<body>\n");
+      for (int row = 0; html.length() < size; row++) {
+         html.append("<div class=\"row\" id=\"r").append(row).append("\"><p>Item ").append(row)
+               .append(" &amp; café <a href=\"/item/").append(row)
+               .append("\">details</a></p></div>\n");
+         if ((row % 1000) == 0) {
+            html.append("<script type=\"text/javascript\">\nvar row").append(row)
+                  .append(" = app(").append(row).append(");\n</script>\n");
+         }
+      }
+      html.append("</body>\n</html>\n");
+      return html.toString();
+   }
+
+   /**
+    * Resets the peak usage of the heap memory pools.
+    *
+    * @return the heap currently used.
+    */
+   private static long resetPeakHeap() {
+      long used = 0;
+      for (final MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+         if (pool.getType() == MemoryType.HEAP) {
+            pool.resetPeakUsage();
+            used += pool.getUsage().getUsed();
+         }
+      }
+      return used;
+   }
+
+   /**
+    * Returns the sum of the peak usage of the heap memory pools since they were reset.
+    *
+    * @return the peak heap.
+    */
+   private static long getPeakHeap() {
+      long peak = 0;
+      for (final MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+         if (pool.getType() == MemoryType.HEAP) {
+            peak += pool.getPeakUsage().getUsed();
+         }
+      }
+      return peak;
+   }
+}
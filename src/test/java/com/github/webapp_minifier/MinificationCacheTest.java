@@ -0,0 +1,91 @@
+package com.github.webapp_minifier;
+
+import static org.junit.Assert.*;
+import static org.mockito.Mockito.*;
+
+import java.io.File;
+
+import org.apache.maven.plugin.logging.SystemStreamLog;
+import org.codehaus.plexus.util.FileUtils;
+import org.junit.Test;
+
+import com.github.webapp_minifier.options.DefaultOverridablePluginOptions;
+import com.github.webapp_minifier.options.JavaScriptCompressor;
+import com.github.webapp_minifier.summary.MinifiedFileMetrics;
+import com.google.javascript.jscomp.CompilationLevel;
+import com.googlecode.htmlcompressor.compressor.Compressor;
+
+/**
+ * This class tests {@link MinificationCache}.
+ *
+ * @author Lonny
+ */
+public class MinificationCacheTest {
+   /**
+    * Tests that identical input and options are only compressed once.
+    */
+   @Test
+   public void testCompress() {
+      final Compressor compressor = mock(Compressor.class);
+      when(compressor.compress("var a = 1;")).thenReturn("var a=1;");
+      final DefaultOverridablePluginOptions options = new DefaultOverridablePluginOptions();
+      options.setJsCompressorEngine(JavaScriptCompressor.CLOSURE);
+      options.setClosureCompilationLevel(CompilationLevel.SIMPLE_OPTIMIZATIONS);
+      final MinificationCache cache = new MinificationCache();
+
+      final MinifiedFileMetrics first = new MinifiedFileMetrics();
+      assertEquals("var a=1;", cache.compress(compressor, options, "var a = 1;", first));
+      assertFalse("The first compression should not be a cache hit", first.isCacheHit());
+      assertEquals(10, first.getOriginalLength());
+      assertEquals(8, first.getMinifiedLength());
+
+      final MinifiedFileMetrics second = new MinifiedFileMetrics();
+      assertEquals("var a=1;", cache.compress(compressor, options, "var a = 1;", second));
+      assertTrue("The second compression should be a cache hit", second.isCacheHit());
+      assertEquals(8, second.getMinifiedLength());
+      verify(compressor, times(1)).compress("var a = 1;");
+
+      // Different options must not share results.
+      options.setClosureCompilationLevel(CompilationLevel.WHITESPACE_ONLY);
+      final MinifiedFileMetrics third = new MinifiedFileMetrics();
+      cache.compress(compressor, options, "var a = 1;", third);
+      assertFalse("Different options should not be a cache hit", third.isCacheHit());
+      verify(compressor, times(2)).compress("var a = 1;");
+   }
+
+   /**
+    * Tests that results are reused from the persistent cache by a later run and that the cache is
+    * bounded in size.
+    *
+    * @throws Exception
+    *            if any
+    */
+   @Test
+   public void testPersistentCache() throws Exception {
+      final File directory = new File("target/test-persistent-cache");
+      FileUtils.deleteDirectory(directory);
+      final Compressor compressor = mock(Compressor.class);
+      when(compressor.compress("var a = 1;")).thenReturn("var a=1;");
+      final DefaultOverridablePluginOptions options = new DefaultOverridablePluginOptions();
+
+      final PersistentMinificationCache firstRun = new PersistentMinificationCache(
+            new SystemStreamLog(), directory, 1024, "1.0");
+      new MinificationCache(firstRun).compress(compressor, options, "var a = 1;",
+            new MinifiedFileMetrics());
+      assertEquals(0, firstRun.getHits());
+      assertEquals(1, firstRun.getMisses());
+
+      final PersistentMinificationCache secondRun = new PersistentMinificationCache(
+            new SystemStreamLog(), directory, 1024, "1.0");
+      final MinifiedFileMetrics metrics = new MinifiedFileMetrics();
+      assertEquals("var a=1;", new MinificationCache(secondRun).compress(compressor, options,
+            "var a = 1;", metrics));
+      assertTrue("The result should be reused from the previous run", metrics.isCacheHit());
+      assertEquals(1, secondRun.getHits());
+      verify(compressor, times(1)).compress("var a = 1;");
+
+      // A cache limited to zero bytes evicts everything.
+      new PersistentMinificationCache(new SystemStreamLog(), directory, 0, "1.0").evict();
+      assertEquals(0, FileUtils.getFiles(directory, "**/*", null).size());
+   }
+}
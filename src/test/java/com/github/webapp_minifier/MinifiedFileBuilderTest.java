@@ -4,10 +4,13 @@ import static junitparams.JUnitParamsRunner.*;
 import static org.junit.Assert.*;
 
 import java.io.File;
+import java.io.IOException;
+import java.nio.charset.Charset;
 
 import junitparams.JUnitParamsRunner;
 import junitparams.Parameters;
 
+import org.codehaus.plexus.util.FileUtils;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 
@@ -88,4 +91,93 @@ public class MinifiedFileBuilderTest {
       assertNotEquals(fileInfo2, fileInfo1);
       assertNotEquals(fileInfo2.getFile(), fileInfo1.getFile());
    }
+
+   /**
+    * Tests that {@link BundleNaming#CONTENT_HASH} names files after their content and numbers
+    * files which have not been written.
+    *
+    * @throws IOException
+    *            if a temporary file could not be written.
+    */
+   @Test
+   public void testContentHashNaming() throws IOException {
+      final File targetDirectory = new File("target/test-content-hash");
+      FileUtils.deleteDirectory(targetDirectory);
+      targetDirectory.mkdirs();
+      final MinifiedFileBuilder builder = new MinifiedFileBuilder(targetDirectory, "js", "js",
+            BundleNaming.CONTENT_HASH);
+      final File first = new File(targetDirectory, "first.js");
+      final File second = new File(targetDirectory, "second.js");
+      final File other = new File(targetDirectory, "other.js");
+      FileUtils.fileWrite(first, "UTF-8", "var a=1;");
+      FileUtils.fileWrite(second, "UTF-8", "var a=1;");
+      FileUtils.fileWrite(other, "UTF-8", "var b=2;");
+
+      final File file = builder.getFinalFile(first);
+      assertTrue(file.getName(), file.getName().matches("js-[0-9a-f]{12}\\.js"));
+      assertEquals(targetDirectory, file.getParentFile());
+      assertEquals(file, builder.getFinalFile(second));
+      assertNotEquals(file, builder.getFinalFile(other));
+      assertEquals(new File(targetDirectory, "js-1.js"),
+            builder.getFinalFile(new File(targetDirectory, "missing.js")));
+   }
+
+   /**
+    * Tests that {@link BundleNaming#SEQUENTIAL} gives identical files the number of the first.
+    *
+    * @throws IOException
+    *            if a temporary file could not be written.
+    */
+   @Test
+   public void testSequentialNaming() throws IOException {
+      final File targetDirectory = new File("target/test-sequential");
+      FileUtils.deleteDirectory(targetDirectory);
+      targetDirectory.mkdirs();
+      final MinifiedFileBuilder builder = new MinifiedFileBuilder(targetDirectory, "js", "js");
+      final File first = new File(targetDirectory, "first.js");
+      final File other = new File(targetDirectory, "other.js");
+      final File second = new File(targetDirectory, "second.js");
+      FileUtils.fileWrite(first, "UTF-8", "var a=1;");
+      FileUtils.fileWrite(other, "UTF-8", "var b=2;");
+      FileUtils.fileWrite(second, "UTF-8", "var a=1;");
+
+      assertEquals(new File(targetDirectory, "js-1.js"), builder.getFinalFile(first));
+      assertEquals(new File(targetDirectory, "js-2.js"), builder.getFinalFile(other));
+      assertEquals(new File(targetDirectory, "js-1.js"), builder.getFinalFile(second));
+      assertEquals(new File(targetDirectory, "js-3.js"),
+            builder.getFinalFile(new File(targetDirectory, "missing.js")));
+   }
+
+   /**
+    * Tests that the writes to a minified file are appended through one channel, which is closed
+    * when another file is written or the file is finished.
+    *
+    * @throws IOException
+    *            if a file could not be written.
+    */
+   @Test
+   public void testWrite() throws IOException {
+      final File targetDirectory = new File("target/test-builder-write");
+      FileUtils.deleteDirectory(targetDirectory);
+      targetDirectory.mkdirs();
+      final MinifiedFileBuilder builder = new MinifiedFileBuilder(targetDirectory, "js", "js");
+      final Charset charset = Charset.forName("UTF-8");
+      final MinifiedFileInfo first = builder.getCurrentFile();
+      builder.finishFile();
+      final MinifiedFileInfo second = builder.getCurrentFile();
+      final StringBuilder longCode = new StringBuilder();
+      for (int i = 0; i < 5000; i++) {
+         longCode.append("var \u00e9").append(i).append(';');
+      }
+
+      builder.write(first, "var a=1;", charset);
+      builder.write(first, longCode, charset);
+      builder.write(second, "var b=2;", charset);
+      builder.finishFile();
+
+      assertEquals("var a=1;" + longCode, FileUtils.fileRead(first.getFile(), "UTF-8"));
+      assertEquals("var b=2;", FileUtils.fileRead(second.getFile(), "UTF-8"));
+      assertTrue(first.getFile().delete());
+      assertTrue(second.getFile().delete());
+   }
 }
@@ -0,0 +1,59 @@
+package com.github.webapp_minifier;
+
+import static junitparams.JUnitParamsRunner.*;
+import static org.junit.Assert.*;
+
+import java.io.UnsupportedEncodingException;
+
+import junitparams.JUnitParamsRunner;
+import junitparams.Parameters;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+/**
+ * This class tests {@link PageScanner}.
+ *
+ * @author Lonny
+ */
+@RunWith(JUnitParamsRunner.class)
+public class PageScannerTest {
+
+   /**
+    * Tests which HTML files need processing.
+    *
+    * @param html
+    *           the HTML.
+    * @param expected
+    *           whether the HTML needs processing.
+    * @throws UnsupportedEncodingException
+    *            if UTF-8 is not supported.
+    */
+   @Test
+   @Parameters
+   public void testNeedsProcessing(final String html, final boolean expected)
+         throws UnsupportedEncodingException {
+      assertEquals(expected, new PageScanner("UTF-8").needsProcessing(html.getBytes("UTF-8")));
+   }
+
+   @SuppressWarnings("unused")
+   private Object[] parametersForTestNeedsProcessing() {
+      return $($("<div><p>café</p><!-- comment --></div>", false),
+            $("<p>The script and style are described below.</p><a href=\"link\">", false),
+            $("", false), $("<scrip", false), $("<SCRIPT SRC=a.js></SCRIPT>", true),
+            $("<Link rel=stylesheet href=a.css>", true), $("<style>p {}</style>", true),
+            $("<!-- webapp-minifier-maven-plugin: skipJsMinify=true -->", true));
+   }
+
+   /**
+    * Tests that every HTML file needs processing when the encoding cannot be scanned.
+    */
+   @Test
+   public void testUnsupportedEncoding() {
+      final PageScanner scanner = new PageScanner("UTF-16");
+      assertFalse(scanner.isEnabled());
+      assertTrue(scanner.needsProcessing(new byte[0]));
+      assertFalse(new PageScanner(null).isEnabled());
+      assertTrue(new PageScanner("ISO-8859-1").isEnabled());
+   }
+}
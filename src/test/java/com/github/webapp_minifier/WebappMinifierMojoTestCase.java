@@ -2,11 +2,18 @@ package com.github.webapp_minifier;
 
 import java.io.File;
 import java.io.FilenameFilter;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 
+import org.apache.maven.plugin.MojoExecutionException;
 import org.apache.maven.plugin.testing.AbstractMojoTestCase;
 import org.codehaus.plexus.util.FileUtils;
 
 import com.github.webapp_minifier.WebappMinifierMojo;
+import com.github.webapp_minifier.incremental.IncrementalBuild;
 
 /**
  * This class tests {@link WebappMinifierMojo}.
@@ -76,4 +83,337 @@ public class WebappMinifierMojoTestCase extends AbstractMojoTestCase {
                contents.contains("/test1"));
       }
    }
+
+   /**
+    * Ensures that processing HTML files concurrently produces the same output as processing them
+    * one at a time.
+    *
+    * @throws Exception
+    *            if any
+    */
+   public void testThreads() throws Exception {
+      final File pom = getTestFile("src/test/resources/test1/yui-plugin-config.xml");
+      final File singleDirectory = getTestFile("target/test-threads-1");
+      final File multipleDirectory = getTestFile("target/test-threads-4");
+
+      final WebappMinifierMojo singleMojo = (WebappMinifierMojo) lookupMojo("minify-webapp", pom);
+      singleMojo.setTargetDirectory(singleDirectory);
+      setVariableValueToObject(singleMojo, "threads", 1);
+      singleMojo.execute();
+
+      final WebappMinifierMojo multipleMojo = (WebappMinifierMojo) lookupMojo("minify-webapp",
+            pom);
+      multipleMojo.setTargetDirectory(multipleDirectory);
+      setVariableValueToObject(multipleMojo, "threads", 4);
+      multipleMojo.execute();
+
+      final String[] names = singleDirectory.list();
+      Arrays.sort(names);
+      final String[] otherNames = multipleDirectory.list();
+      Arrays.sort(otherNames);
+      assertTrue(Arrays.equals(names, otherNames));
+      for (final String name : names) {
+         final File file = new File(singleDirectory, name);
+         if (file.isFile() && !name.endsWith(".xml")) {
+            assertTrue(name + " should match", FileUtils.contentEquals(file, new File(
+                  multipleDirectory, name)));
+         }
+      }
+   }
+
+   /**
+    * Tests that a second build restores the unchanged HTML files and produces the same output as
+    * the first.
+    *
+    * @throws Exception
+    *            if any
+    */
+   public void testIncremental() throws Exception {
+      final File pom = getTestFile("src/test/resources/test1/yui-plugin-config.xml");
+      final File targetDirectory = getTestFile("target/test-incremental");
+      final File firstDirectory = getTestFile("target/test-incremental-first");
+      final File stateDirectory = getTestFile("target/test-incremental-state");
+      FileUtils.deleteDirectory(stateDirectory);
+      FileUtils.deleteDirectory(targetDirectory);
+
+      final WebappMinifierMojo firstMojo = (WebappMinifierMojo) lookupMojo("minify-webapp", pom);
+      firstMojo.setTargetDirectory(targetDirectory);
+      setVariableValueToObject(firstMojo, "incrementalDirectory", stateDirectory);
+      firstMojo.execute();
+      assertTrue(new File(targetDirectory, IncrementalBuild.MANIFEST_FILE_NAME).isFile());
+      FileUtils.deleteDirectory(firstDirectory);
+      FileUtils.copyDirectoryStructure(targetDirectory, firstDirectory);
+
+      final WebappMinifierMojo secondMojo = (WebappMinifierMojo) lookupMojo("minify-webapp", pom);
+      secondMojo.setTargetDirectory(targetDirectory);
+      setVariableValueToObject(secondMojo, "incrementalDirectory", stateDirectory);
+      secondMojo.execute();
+
+      final String[] names = firstDirectory.list();
+      Arrays.sort(names);
+      final String[] otherNames = targetDirectory.list();
+      Arrays.sort(otherNames);
+      assertTrue(Arrays.equals(names, otherNames));
+      for (final String name : names) {
+         final File file = new File(firstDirectory, name);
+         if (file.isFile() && !name.endsWith(".xml")) {
+            assertTrue(name + " should match", FileUtils.contentEquals(file, new File(
+                  targetDirectory, name)));
+         }
+      }
+   }
+
+   /**
+    * Tests that the scripts leading every HTML file are compiled into a common chunk which replaces
+    * them.
+    *
+    * @throws Exception
+    *            if any
+    */
+   public void testWholeSiteJs() throws Exception {
+      final File pom = getTestFile("src/test/resources/test1/closure-plugin-config.xml");
+      final File targetDirectory = getTestFile("target/test-whole-site");
+      FileUtils.deleteDirectory(targetDirectory);
+
+      final WebappMinifierMojo myMojo = (WebappMinifierMojo) lookupMojo("minify-webapp", pom);
+      myMojo.setTargetDirectory(targetDirectory);
+      setVariableValueToObject(myMojo, "wholeSiteJs", true);
+      myMojo.execute();
+
+      final File commonFile = new File(targetDirectory, "js-common.js");
+      assertTrue(commonFile + " should exist", commonFile.isFile());
+      assertTrue(commonFile + " should not be empty", commonFile.length() > 0);
+      for (final String name : new String[] { "html4_test.html", "html5_test.html",
+            "xhtml_test.html" }) {
+         final String html = FileUtils.fileRead(new File(targetDirectory, name), "UTF-8");
+         assertTrue(name + " should load the common chunk", html.contains("js-common.js"));
+         assertFalse(name + " should not load js/test-1.js", html.contains("js/test-1.js"));
+         assertFalse(name + " should not load js/test-2.js", html.contains("js/test-2.js"));
+      }
+      assertTrue(new File(targetDirectory, "js-1.js").length() > 0);
+   }
+
+   /**
+    * Tests that HTML files containing nothing to minify are left untouched and counted in the
+    * summary.
+    *
+    * @throws Exception
+    *            if any
+    */
+   public void testSkippedHtmlFiles() throws Exception {
+      final File pom = getTestFile("src/test/resources/test1/yui-plugin-config.xml");
+      final File sourceDirectory = getTestFile("target/test-skip-src");
+      final File targetDirectory = getTestFile("target/test-skip");
+      FileUtils.deleteDirectory(sourceDirectory);
+      FileUtils.deleteDirectory(targetDirectory);
+      FileUtils.copyDirectoryStructure(getTestFile("src/test/resources/test1/src/main/webapp"),
+            sourceDirectory);
+      final String fragment = "<%@ page contentType=\"text/html\" %>\n<DIV class=x>\n"
+            + "  <p>No scripts &amp; no styles</p>\n  <!-- a comment -->\n</DIV>\n";
+      FileUtils.fileWrite(new File(sourceDirectory, "fragment.jsp"), "UTF-8", fragment);
+
+      final WebappMinifierMojo myMojo = (WebappMinifierMojo) lookupMojo("minify-webapp", pom);
+      myMojo.setSourceDirectory(sourceDirectory);
+      myMojo.setTargetDirectory(targetDirectory);
+      myMojo.execute();
+
+      assertEquals(fragment,
+            FileUtils.fileRead(new File(targetDirectory, "fragment.jsp"), "UTF-8"));
+      assertFalse(new File(targetDirectory, "fragment.jsp.bak").exists());
+      assertTrue(new File(targetDirectory, "html4_test.html.bak").exists());
+      final String summary = FileUtils.fileRead(new File(targetDirectory,
+            "webapp-minifier-summary.xml"), "UTF-8");
+      assertTrue(summary, summary.contains("<skippedHtmlFiles>1</skippedHtmlFiles>"));
+   }
+
+   /**
+    * Tests that HTML files are minified when enabled, unless disabled inline, and that the sizes
+    * are recorded in the summary.
+    *
+    * @throws Exception
+    *            if any
+    */
+   public void testHtmlMinify() throws Exception {
+      final File pom = getTestFile("src/test/resources/test1/yui-plugin-config.xml");
+      final File sourceDirectory = getTestFile("target/test-html-minify-src");
+      final File targetDirectory = getTestFile("target/test-html-minify");
+      FileUtils.deleteDirectory(sourceDirectory);
+      FileUtils.deleteDirectory(targetDirectory);
+      FileUtils.copyDirectoryStructure(getTestFile("src/test/resources/test1/src/main/webapp"),
+            sourceDirectory);
+      final String fragment = "<%@ page contentType=\"text/html\" %>\n<DIV class=x>\n"
+            + "  <p>No   scripts</p>\n  <!-- a comment -->\n<pre>  keep\n  me</pre></DIV>\n";
+      FileUtils.fileWrite(new File(sourceDirectory, "fragment.jsp"), "UTF-8", fragment);
+      final String kept = "<!--\nwebapp-minifier-maven-plugin:\nskipHtmlMinify=true\n-->\n"
+            + "<DIV class=x>\n  <p>No   scripts</p>\n</DIV>\n";
+      FileUtils.fileWrite(new File(sourceDirectory, "kept.jsp"), "UTF-8", kept);
+
+      final WebappMinifierMojo myMojo = (WebappMinifierMojo) lookupMojo("minify-webapp", pom);
+      myMojo.setSourceDirectory(sourceDirectory);
+      myMojo.setTargetDirectory(targetDirectory);
+      myMojo.setSkipHtmlMinify(false);
+      myMojo.execute();
+
+      assertEquals("<%@ page contentType=\"text/html\" %> <DIV class=x> <p>No scripts</p> "
+            + "<pre>  keep\n  me</pre></DIV>",
+            FileUtils.fileRead(new File(targetDirectory, "fragment.jsp"), "UTF-8"));
+      final String keptHtml = FileUtils.fileRead(new File(targetDirectory, "kept.jsp"), "UTF-8");
+      assertTrue(keptHtml, keptHtml.contains("<p>No   scripts</p>\n"));
+      assertFalse(keptHtml, keptHtml.contains("skipHtmlMinify"));
+      final String html = FileUtils.fileRead(new File(targetDirectory, "html4_test.html"),
+            "UTF-8");
+      assertFalse(html, html.contains("\n\n"));
+      final String summary = FileUtils.fileRead(new File(targetDirectory,
+            "webapp-minifier-summary.xml"), "UTF-8");
+      assertTrue(summary, summary.contains("htmlMinified=\"true\""));
+      assertTrue(summary, summary.contains("htmlOriginalLength=\"" + fragment.length() + '"'));
+   }
+
+   /**
+    * Tests that an unsupported encoding fails the build when HTML minification is enabled
+    * instead of silently leaving the HTML files unminified.
+    *
+    * @throws Exception
+    *            if any
+    */
+   public void testHtmlMinifyUnsupportedEncoding() throws Exception {
+      final File pom = getTestFile("src/test/resources/test1/yui-plugin-config.xml");
+      final File targetDirectory = getTestFile("target/test-html-minify-encoding");
+      FileUtils.deleteDirectory(targetDirectory);
+
+      final WebappMinifierMojo myMojo = (WebappMinifierMojo) lookupMojo("minify-webapp", pom);
+      myMojo.setTargetDirectory(targetDirectory);
+      myMojo.setEncoding("x-unsupported");
+      myMojo.setSkipHtmlMinify(false);
+      try {
+         myMojo.execute();
+         fail("The unsupported encoding was accepted");
+      } catch (final MojoExecutionException e) {
+         assertTrue(e.getMessage(), e.getMessage().endsWith(" x-unsupported"));
+      }
+      assertFalse(targetDirectory.exists());
+   }
+
+   /**
+    * Tests that minified files are named after their content and that identical files produced
+    * by different HTML files are shared.
+    *
+    * @throws Exception
+    *            if any
+    */
+   public void testContentHashNaming() throws Exception {
+      final File pom = getTestFile("src/test/resources/test1/yui-plugin-config.xml");
+      final File sourceDirectory = getTestFile("target/test-content-hash-src");
+      final File targetDirectory = getTestFile("target/test-content-hash-names");
+      FileUtils.deleteDirectory(sourceDirectory);
+      FileUtils.deleteDirectory(targetDirectory);
+      FileUtils.copyDirectoryStructure(getTestFile("src/test/resources/test1/src/main/webapp"),
+            sourceDirectory);
+      FileUtils.copyFile(new File(sourceDirectory, "html4_test.html"), new File(sourceDirectory,
+            "html4_copy.html"));
+
+      final WebappMinifierMojo myMojo = (WebappMinifierMojo) lookupMojo("minify-webapp", pom);
+      myMojo.setSourceDirectory(sourceDirectory);
+      myMojo.setTargetDirectory(targetDirectory);
+      setVariableValueToObject(myMojo, "bundleNaming", "content_hash");
+      myMojo.execute();
+
+      final String html = FileUtils.fileRead(new File(targetDirectory, "html4_test.html"),
+            "UTF-8");
+      assertEquals(html, FileUtils.fileRead(new File(targetDirectory, "html4_copy.html"),
+            "UTF-8"));
+      final Matcher matcher = Pattern.compile("(?:css|js)-[0-9a-f]{12}\\.(?:css|js)").matcher(
+            html);
+      final Set<String> names = new HashSet<String>();
+      while (matcher.find()) {
+         names.add(matcher.group());
+      }
+      assertFalse(html, names.isEmpty());
+      for (final String name : names) {
+         assertTrue(name + " should exist", new File(targetDirectory, name).isFile());
+      }
+      assertFalse(new File(targetDirectory, "js-1.js").exists());
+   }
+
+   /**
+    * Tests that gzip compressed copies are written next to the minified and HTML files and that
+    * their sizes are recorded in the summary.
+    *
+    * @throws Exception
+    *            if any
+    */
+   public void testGzip() throws Exception {
+      final File pom = getTestFile("src/test/resources/test1/yui-plugin-config.xml");
+      final File targetDirectory = getTestFile("target/test-gzip-min");
+      FileUtils.deleteDirectory(targetDirectory);
+
+      final WebappMinifierMojo myMojo = (WebappMinifierMojo) lookupMojo("minify-webapp", pom);
+      myMojo.setTargetDirectory(targetDirectory);
+      setVariableValueToObject(myMojo, "gzip", true);
+      setVariableValueToObject(myMojo, "gzipHtml", true);
+      myMojo.execute();
+
+      for (final String name : new String[] { "js-1.js", "js-2.js", "html4_test.html" }) {
+         final File compressedFile = new File(targetDirectory, name + ".gz");
+         assertTrue(compressedFile + " should exist", compressedFile.isFile());
+         assertTrue(compressedFile.length() > 0);
+      }
+      assertFalse(new File(targetDirectory, "html4_test.html.bak.gz").exists());
+      final String summary = FileUtils.fileRead(new File(targetDirectory,
+            "webapp-minifier-summary.xml"), "UTF-8");
+      assertTrue(summary, summary.matches("(?s).*<gzipLength>[1-9][0-9]*</gzipLength>.*"));
+   }
+
+   /**
+    * Tests that release builds record the sizes of the maximum compression mode.
+    *
+    * @throws Exception
+    *            if any
+    */
+   public void testGzipRelease() throws Exception {
+      final File pom = getTestFile("src/test/resources/test1/yui-plugin-config.xml");
+      final File targetDirectory = getTestFile("target/test-gzip-release-min");
+      FileUtils.deleteDirectory(targetDirectory);
+
+      final WebappMinifierMojo myMojo = (WebappMinifierMojo) lookupMojo("minify-webapp", pom);
+      myMojo.setTargetDirectory(targetDirectory);
+      setVariableValueToObject(myMojo, "gzip", true);
+      setVariableValueToObject(myMojo, "release", true);
+      myMojo.execute();
+
+      final File compressedFile = new File(targetDirectory, "js-2.js.gz");
+      assertTrue(compressedFile + " should exist", compressedFile.isFile());
+      final String summary = FileUtils.fileRead(new File(targetDirectory,
+            "webapp-minifier-summary.xml"), "UTF-8");
+      assertTrue(summary, summary.matches("(?s).*<maxGzipLength>[1-9][0-9]*</maxGzipLength>.*"));
+   }
+
+   /**
+    * Tests that the <code>REPLACE</code> HTML output leaves no backup files in the minified
+    * directory and keeps the originals in the originals directory.
+    *
+    * @throws Exception
+    *            if any
+    */
+   public void testHtmlOutputReplace() throws Exception {
+      final File pom = getTestFile("src/test/resources/test1/yui-plugin-config.xml");
+      final File targetDirectory = getTestFile("target/test-replace-min");
+      final File originalsDirectory = getTestFile("target/test-replace-originals");
+      FileUtils.deleteDirectory(targetDirectory);
+      FileUtils.deleteDirectory(originalsDirectory);
+
+      final WebappMinifierMojo myMojo = (WebappMinifierMojo) lookupMojo("minify-webapp", pom);
+      myMojo.setTargetDirectory(targetDirectory);
+      setVariableValueToObject(myMojo, "htmlOutput", "replace");
+      setVariableValueToObject(myMojo, "originalsDirectory", originalsDirectory);
+      myMojo.execute();
+
+      assertTrue(FileUtils.getFiles(targetDirectory, "**/*.bak,**/*.min", null).isEmpty());
+      final File original = new File(originalsDirectory, "html4_test.html");
+      assertEquals(
+            FileUtils.fileRead(getTestFile("src/test/resources/test1/src/main/webapp/html4_test.html")),
+            FileUtils.fileRead(original));
+      assertFalse(FileUtils.fileRead(new File(targetDirectory, "html4_test.html")).equals(
+            FileUtils.fileRead(original)));
+   }
 }
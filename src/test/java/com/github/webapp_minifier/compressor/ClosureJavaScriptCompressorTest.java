@@ -0,0 +1,59 @@
+package com.github.webapp_minifier.compressor;
+
+import static org.junit.Assert.*;
+
+import java.util.Arrays;
+
+import org.junit.Test;
+
+import com.google.javascript.jscomp.CompilationLevel;
+
+/**
+ * This class tests {@link ClosureJavaScriptCompressor}.
+ *
+ * @author Lonny
+ */
+public class ClosureJavaScriptCompressorTest {
+   /**
+    * Tests that the default externs are read once and shared.
+    */
+   @Test
+   public void testDefaultExterns() {
+      assertFalse(ClosureJavaScriptCompressor.getDefaultExterns().isEmpty());
+      assertSame(ClosureJavaScriptCompressor.getDefaultExterns(),
+            ClosureJavaScriptCompressor.getDefaultExterns());
+   }
+
+   /**
+    * Tests that failing to read externs is reported instead of yielding no externs.
+    */
+   @Test(expected = IllegalStateException.class)
+   public void testReadMissingExterns() {
+      ClosureJavaScriptCompressor.readExterns("/missing-externs.zip");
+   }
+
+   /**
+    * Tests that an instance can be reused for several compilations.
+    */
+   @Test
+   public void testCompress() {
+      final ClosureJavaScriptCompressor compressor = new ClosureJavaScriptCompressor(
+            CompilationLevel.SIMPLE_OPTIMIZATIONS);
+      assertEquals("var a=1;", compressor.compress("var a = 1;"));
+      assertEquals("var b=2;", compressor.compress("var b = 2;"));
+   }
+
+   /**
+    * Tests that several sources are compiled together and that a failing bundle falls back to
+    * compressing each source on its own.
+    */
+   @Test
+   public void testCompressBundle() {
+      final ClosureJavaScriptCompressor compressor = new ClosureJavaScriptCompressor(
+            CompilationLevel.SIMPLE_OPTIMIZATIONS);
+      assertEquals("var a=1;var b=2;",
+            compressor.compressBundle(Arrays.asList("var a = 1;", "var b = 2;")));
+      assertEquals("var a=1;var b = ;",
+            compressor.compressBundle(Arrays.asList("var a = 1;", "var b = ;")));
+   }
+}
@@ -0,0 +1,88 @@
+package com.github.webapp_minifier.compressor;
+
+import static org.junit.Assert.*;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.junit.Test;
+
+import com.github.webapp_minifier.options.DefaultOverridablePluginOptions;
+import com.github.webapp_minifier.options.JavaScriptCompressor;
+import com.google.javascript.jscomp.CompilationLevel;
+import com.googlecode.htmlcompressor.compressor.Compressor;
+
+/**
+ * This class tests {@link CompressorRegistry}.
+ *
+ * @author Lonny
+ */
+public class CompressorRegistryTest {
+   /**
+    * Tests that compressors are reused for the same options and recreated for different options.
+    */
+   @Test
+   public void testReuse() {
+      final CompressorRegistry registry = new CompressorRegistry();
+      final DefaultOverridablePluginOptions options = new DefaultOverridablePluginOptions();
+      options.setJsCompressorEngine(JavaScriptCompressor.CLOSURE);
+      options.setClosureCompilationLevel(CompilationLevel.SIMPLE_OPTIMIZATIONS);
+      final Compressor closure = registry.getJavaScriptCompressor(options);
+      assertTrue(closure instanceof ClosureJavaScriptCompressor);
+      assertSame(closure, registry.getJavaScriptCompressor(options));
+      assertSame(registry.getCssCompressor(options), registry.getCssCompressor(options));
+
+      options.setClosureCompilationLevel(CompilationLevel.WHITESPACE_ONLY);
+      final Compressor whitespace = registry.getJavaScriptCompressor(options);
+      assertNotSame(closure, whitespace);
+
+      // Switching back reuses the first compressor.
+      options.setClosureCompilationLevel(CompilationLevel.SIMPLE_OPTIMIZATIONS);
+      assertSame(closure, registry.getJavaScriptCompressor(options));
+   }
+
+   /**
+    * Tests that HTML compressors are reused for the same options and recreated for different
+    * options.
+    */
+   @Test
+   public void testHtmlReuse() {
+      final CompressorRegistry registry = new CompressorRegistry();
+      final DefaultOverridablePluginOptions options = new DefaultOverridablePluginOptions();
+      final Compressor compressor = registry.getHtmlCompressor(options);
+      assertSame(compressor, registry.getHtmlCompressor(options));
+      assertEquals("<p>a b</p> <%= x  %>", compressor.compress("<p>a  b</p>\n<!-- c -->\n<%= x  %>"));
+
+      options.setHtmlRemoveIntertagSpaces(true);
+      final Compressor intertag = registry.getHtmlCompressor(options);
+      assertNotSame(compressor, intertag);
+      assertEquals("<p>a</p><p>b</p>", intertag.compress("<p>a</p>\n  <p>b</p>"));
+   }
+
+   /**
+    * Tests that each thread is given its own compressors.
+    *
+    * @throws Exception
+    *            if any
+    */
+   @Test
+   public void testThreads() throws Exception {
+      final CompressorRegistry registry = new CompressorRegistry();
+      final DefaultOverridablePluginOptions options = new DefaultOverridablePluginOptions();
+      options.setJsCompressorEngine(JavaScriptCompressor.YUI);
+      final Compressor compressor = registry.getJavaScriptCompressor(options);
+      final ExecutorService executor = Executors.newSingleThreadExecutor();
+      try {
+         final Compressor other = executor.submit(new Callable<Compressor>() {
+            @Override
+            public Compressor call() {
+               return registry.getJavaScriptCompressor(options);
+            }
+         }).get();
+         assertNotSame(compressor, other);
+      } finally {
+         executor.shutdownNow();
+      }
+   }
+}
@@ -0,0 +1,97 @@
+package com.github.webapp_minifier.gzip;
+
+import static junitparams.JUnitParamsRunner.*;
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.InputStream;
+import java.util.zip.GZIPInputStream;
+
+import junitparams.JUnitParamsRunner;
+import junitparams.Parameters;
+
+import org.codehaus.plexus.util.FileUtils;
+import org.codehaus.plexus.util.IOUtil;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+/**
+ * This class tests {@link GzipTask}.
+ *
+ * @author Lonny
+ */
+@RunWith(JUnitParamsRunner.class)
+public class GzipTaskTest {
+
+   /**
+    * Tests that the compressed copy decompresses to the original content at every level.
+    *
+    * @param level
+    *           the compression level.
+    * @throws Exception
+    *            if any
+    */
+   @Test
+   @Parameters
+   public void testRoundTrip(final int level) throws Exception {
+      final File directory = new File("target/test-gzip");
+      directory.mkdirs();
+      final File file = new File(directory, "test-" + level + ".js");
+      final StringBuilder content = new StringBuilder();
+      for (int i = 0; i < 1000; i++) {
+         content.append("var a").append(i).append("=").append(i % 7).append(";");
+      }
+      FileUtils.fileWrite(file, "UTF-8", content.toString());
+
+      final long length = new GzipTask(file, level).call().getLength();
+
+      final File compressedFile = GzipTask.getCompressedFile(file);
+      assertEquals(new File(directory, "test-" + level + ".js.gz"), compressedFile);
+      assertEquals(compressedFile.length(), length);
+      assertTrue(length < file.length());
+      final InputStream inputStream = new GZIPInputStream(new FileInputStream(compressedFile));
+      try {
+         assertEquals(content.toString(), IOUtil.toString(inputStream, "UTF-8"));
+      } finally {
+         inputStream.close();
+      }
+   }
+
+   @SuppressWarnings("unused")
+   private Object[] parametersForTestRoundTrip() {
+      return $($(1), $(6), $(9));
+   }
+
+   /**
+    * Tests that the maximum compression mode writes the smaller copy and reports both lengths.
+    *
+    * @throws Exception
+    *            if any
+    */
+   @Test
+   public void testMaximum() throws Exception {
+      final File directory = new File("target/test-gzip");
+      directory.mkdirs();
+      final File file = new File(directory, "test-max.js");
+      final StringBuilder content = new StringBuilder();
+      for (int i = 0; i < 1000; i++) {
+         content.append("var a").append(i).append("=").append(i % 7).append(";");
+      }
+      FileUtils.fileWrite(file, "UTF-8", content.toString());
+
+      final GzipResult result = new GzipTask(file, 9, true).call();
+
+      final File compressedFile = GzipTask.getCompressedFile(file);
+      assertTrue(result.getLength() > 0);
+      assertTrue(result.getMaximumLength() < result.getLength());
+      assertEquals(result.getMaximumLength(), result.getWrittenLength());
+      assertEquals(compressedFile.length(), result.getWrittenLength());
+      final InputStream inputStream = new GZIPInputStream(new FileInputStream(compressedFile));
+      try {
+         assertEquals(content.toString(), IOUtil.toString(inputStream, "UTF-8"));
+      } finally {
+         inputStream.close();
+      }
+   }
+}
@@ -0,0 +1,121 @@
+package com.github.webapp_minifier.gzip;
+
+import static junitparams.JUnitParamsRunner.*;
+import static org.junit.Assert.*;
+
+import java.util.Arrays;
+import java.util.Random;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+import junitparams.JUnitParamsRunner;
+import junitparams.Parameters;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+/**
+ * This class tests {@link OptimalDeflater}.
+ *
+ * @author Lonny
+ */
+@RunWith(JUnitParamsRunner.class)
+public class OptimalDeflaterTest {
+
+   /**
+    * Tests that the deflate stream inflates to the original data.
+    *
+    * @param data
+    *           the data.
+    * @throws Exception
+    *            if any
+    */
+   @Test
+   @Parameters
+   public void testRoundTrip(final byte[] data) throws Exception {
+      final byte[] deflated = OptimalDeflater.deflate(data, 3);
+
+      final Inflater inflater = new Inflater(true);
+      inflater.setInput(deflated);
+      final byte[] inflated = new byte[data.length + 1];
+      final int length = inflater.inflate(inflated);
+      assertTrue(inflater.finished());
+      assertEquals(0, inflater.getRemaining());
+      assertArrayEquals(data, Arrays.copyOf(inflated, length));
+   }
+
+   @SuppressWarnings("unused")
+   private Object[] parametersForTestRoundTrip() {
+      final byte[] random = new byte[50000];
+      new Random(42).nextBytes(random);
+      final byte[] run = new byte[70000];
+      Arrays.fill(run, (byte) 'a');
+      return $($(new byte[0]), $(new byte[] { 'a' }), $(run), $(random), $(getScript()));
+   }
+
+   /**
+    * Tests that text is compressed better than by the best deflate compression level.
+    *
+    * @throws Exception
+    *            if any
+    */
+   @Test
+   public void testSmallerThanDeflater() throws Exception {
+      final byte[] data = getScript();
+      final Deflater deflater = new Deflater(Deflater.BEST_COMPRESSION, true);
+      deflater.setInput(data);
+      deflater.finish();
+      final int length = deflater.deflate(new byte[data.length]);
+      deflater.end();
+
+      assertTrue(OptimalDeflater.deflate(data, 15).length < length);
+   }
+
+   /**
+    * Tests that code lengths are limited while every used symbol keeps a code.
+    */
+   @Test
+   public void testCodeLengthLimit() {
+      // Fibonacci counts produce the deepest Huffman trees.
+      final int[] counts = new int[30];
+      counts[0] = 1;
+      counts[1] = 1;
+      for (int i = 2; i < counts.length; i++) {
+         counts[i] = counts[i - 1] + counts[i - 2];
+      }
+
+      final int[] lengths = OptimalDeflater.getCodeLengths(counts, 15);
+
+      double kraft = 0;
+      for (final int length : lengths) {
+         assertTrue(length >= 1);
+         assertTrue(length <= 15);
+         kraft += Math.pow(2, -length);
+      }
+      assertEquals(1.0, kraft, 0.0);
+   }
+
+   /**
+    * Tests that a single used symbol gets a complete code.
+    */
+   @Test
+   public void testSingleSymbol() {
+      final int[] lengths = OptimalDeflater.getCodeLengths(new int[] { 0, 0, 5, 0 }, 7);
+
+      assertArrayEquals(new int[] { 1, 0, 1, 0 }, lengths);
+   }
+
+   /**
+    * Returns a repetitive script.
+    *
+    * @return the script.
+    */
+   private static byte[] getScript() {
+      final StringBuilder script = new StringBuilder();
+      for (int i = 0; i < 2000; i++) {
+         script.append("function f").append(i).append("(a,b){return a*").append(i % 13)
+               .append("+b.length;}");
+      }
+      return script.toString().getBytes();
+   }
+}
@@ -0,0 +1,56 @@
+package com.github.webapp_minifier.incremental;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.IOException;
+
+import org.apache.maven.plugin.logging.SystemStreamLog;
+import org.codehaus.plexus.util.FileUtils;
+import org.junit.Test;
+
+import com.github.webapp_minifier.WebappMinifierMojo;
+
+/**
+ * This class tests {@link IncrementalBuild}.
+ *
+ * @author Lonny
+ */
+public class IncrementalBuildTest {
+
+   /**
+    * Tests that the hash of a referenced file is computed once per build, whatever the path used
+    * to reach it.
+    *
+    * @throws IOException
+    *            if any
+    */
+   @Test
+   public void testHashDependency() throws IOException {
+      final File directory = new File("target/test-incremental-build");
+      FileUtils.deleteDirectory(directory);
+      new File(directory, "js").mkdirs();
+      final File file = new File(directory, "js/app.js");
+      FileUtils.fileWrite(file, "UTF-8", "var a;");
+      final IncrementalBuild build = createBuild(directory);
+
+      final String hash = build.hashDependency(file);
+      assertEquals(IncrementalBuild.hash(file), hash);
+      FileUtils.fileWrite(file, "UTF-8", "var b;");
+      assertEquals(hash, build.hashDependency(new File(directory, "js/../js/app.js")));
+      assertFalse(hash.equals(createBuild(directory).hashDependency(file)));
+      assertEquals("", build.hashDependency(new File(directory, "missing.js")));
+   }
+
+   /**
+    * Creates a build without a previous manifest.
+    *
+    * @param directory
+    *           the directory holding the state.
+    * @return the build.
+    */
+   private static IncrementalBuild createBuild(final File directory) {
+      return new IncrementalBuild(new SystemStreamLog(), new File(directory, "state"),
+            new WebappMinifierMojo(), "options", null);
+   }
+}
@@ -0,0 +1,74 @@
+package com.github.webapp_minifier.replacer;
+
+import static junitparams.JUnitParamsRunner.*;
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+
+import junitparams.JUnitParamsRunner;
+import junitparams.Parameters;
+
+import org.jsoup.Jsoup;
+import org.jsoup.nodes.Document;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+/**
+ * This class tests {@link DocumentWriter}.
+ *
+ * @author Lonny
+ */
+@RunWith(JUnitParamsRunner.class)
+public class DocumentWriterTest {
+
+   /**
+    * Tests that the output is the same as serializing the whole document.
+    *
+    * @param fileName
+    *           the name of the HTML file.
+    * @throws IOException
+    *            if an unexpected I/O exception occurs.
+    */
+   @Test
+   @Parameters
+   public void testSameAsOuterHtml(final String fileName) throws IOException {
+      final Document document = Jsoup.parse(new File("src/test/resources/test1/src/main/webapp",
+            fileName), "UTF-8");
+      document.outputSettings().prettyPrint(false);
+
+      final ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+      new DocumentWriter(document).write(outputStream);
+
+      assertEquals(document.outerHtml(), outputStream.toString("UTF-8"));
+   }
+
+   @SuppressWarnings("unused")
+   private Object[] parametersForTestSameAsOuterHtml() {
+      return $($("html4_test.html"), $("html5_test.html"), $("xhtml_test.html"));
+   }
+
+   /**
+    * Tests that the output is encoded with the character set of the document rather than the
+    * platform default.
+    *
+    * @throws IOException
+    *            if an unexpected I/O exception occurs.
+    */
+   @Test
+   public void testCharset() throws IOException {
+      final String html = "<html><head><script>var s = 'é€';</script></head>"
+            + "<body><p>café €</p><br><img src=\"a.png\"></body></html>";
+      final Document document = Jsoup.parse(html);
+      document.outputSettings().prettyPrint(false).charset("ISO-8859-1");
+
+      final ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+      new DocumentWriter(document).write(outputStream);
+
+      // Text is escaped when it cannot be encoded, scripts are not.
+      assertEquals("<html><head><script>var s = 'é?';</script></head>"
+            + "<body><p>café &#x20ac;</p><br><img src=\"a.png\"></body></html>",
+            outputStream.toString("ISO-8859-1"));
+   }
+}
@@ -40,7 +40,7 @@ public class JsoupTagReplacerTest {
    private static final String HTML4_DOCTYPE = "<!DOCTYPE html PUBLIC \"-//W3C//DTD HTML 4.01 Transitional//EN\" \"http://www.w3.org/TR/html4/loose.dtd\">\n";
    private static final String HTML5_DOCTYPE = "<!DOCTYPE html>\n";
    private final String charsetName = "UTF-8";
-   private JsoupTagReplacer tagReplacer;
+   private TagReplacer tagReplacer;
 
    private final StringBuilder xhtmlStart = new StringBuilder(XHTML_DOCTYPE);
    private final StringBuilder html4Start = new StringBuilder(HTML4_DOCTYPE);
@@ -70,7 +70,7 @@ public class JsoupTagReplacerTest {
       } else {
          log = new SilentLog();
       }
-      this.tagReplacer = new JsoupTagReplacer(log, this.charsetName);
+      this.tagReplacer = createTagReplacer(log, this.charsetName);
 
       this.xhtmlStart.append("<html xmlns=\"http://www.w3.org/1999/xhtml\">");
       this.xhtmlStart.append("<head>");
@@ -96,6 +96,19 @@ public class JsoupTagReplacerTest {
       this.html5Middle.append("<body><h1>HTML 5 Test</h1>");
    }
 
+   /**
+    * Creates the tag replacer under test.
+    *
+    * @param log
+    *           the log instance.
+    * @param charset
+    *           the character set encoding name.
+    * @return the tag replacer.
+    */
+   protected TagReplacer createTagReplacer(final Log log, final String charset) {
+      return new JsoupTagReplacer(log, charset);
+   }
+
    /**
     * This enumeration indicates how CSS/JavaScript should be handled.
     *
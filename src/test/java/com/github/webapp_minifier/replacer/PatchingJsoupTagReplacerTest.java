@@ -0,0 +1,131 @@
+package com.github.webapp_minifier.replacer;
+
+import static org.junit.Assert.*;
+import static org.mockito.Mockito.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+
+import org.apache.maven.plugin.logging.Log;
+import org.apache.maven.plugin.testing.SilentLog;
+import org.junit.Test;
+
+/**
+ * This class tests {@link JsoupTagReplacer} when patching the original HTML. It runs every test of
+ * {@link JsoupTagReplacerTest} along with tests specific to patching.
+ *
+ * @author Lonny
+ */
+public class PatchingJsoupTagReplacerTest extends JsoupTagReplacerTest {
+
+   @Override
+   protected TagReplacer createTagReplacer(final Log log, final String charset) {
+      return new JsoupTagReplacer(log, charset, true);
+   }
+
+   /**
+    * Tests that everything except the replaced tags is copied exactly as authored.
+    *
+    * @throws Exception
+    *            if any
+    */
+   @Test
+   public void testVerbatim() throws Exception {
+      final String input = "﻿<%@ page contentType=\"text/html\" %>\n<HTML>\n<head>\n"
+            + "  <SCRIPT type='text/javascript' SRC=a.js></SCRIPT>\n"
+            + "  <script src=\"b.js?x=1&amp;y=2\"></script>\n"
+            + "  <script>if (a < b && c > d) { x = '</p>'; }</script>\n"
+            + "  <!-- keep me --><!-- remove me -->\n"
+            + "  <link rel=\"stylesheet\" type=\"text/css\" href=\"c.css\">\n"
+            + "</head>\n<body class=x>\n<% if (a > b) { %>\n<p>café &amp; <b>bar</b></p>\n"
+            + "<textarea><script src=\"ignored.js\"></script></textarea>\n<% } %>\n</body>\n</HTML>";
+      final NodeHandler handler = mock(NodeHandler.class);
+      when(handler.handleExternalJs("a.js")).thenReturn("js-1.js");
+      when(handler.handleExternalJs("b.js?x=1&y=2")).thenReturn(null);
+      when(handler.handleEmbeddedJs("if (a < b && c > d) { x = '</p>'; }")).thenReturn(
+            "x=\"</p>\";");
+      when(handler.handleComment(" remove me ")).thenReturn(true);
+      when(handler.handleExternalCss("c.css")).thenReturn("c&d.css");
+
+      final ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+      createTagReplacer(new SilentLog(), "UTF-8").process(
+            new ByteArrayInputStream(input.getBytes("UTF-8")), handler, "", outputStream);
+
+      final String expected = input.replace("SRC=a.js", "SRC=\"js-1.js\"")
+            .replace("<script src=\"b.js?x=1&amp;y=2\"></script>", "")
+            .replace("if (a < b && c > d) { x = '</p>'; }", "x=\"</p>\";")
+            .replace("<!-- remove me -->", "").replace("href=\"c.css\"", "href=\"c&amp;d.css\"");
+      assertEquals(expected, outputStream.toString("UTF-8"));
+      verify(handler, never()).handleExternalJs("ignored.js");
+      verify(handler).complete();
+   }
+
+   /**
+    * Tests that the original bytes of a single byte encoding are kept.
+    *
+    * @throws Exception
+    *            if any
+    */
+   @Test
+   public void testSingleByteEncoding() throws Exception {
+      final String input = "<html><head><script src=\"a.js\"></script></head>"
+            + "<body><p>café</p></body></html>";
+      final NodeHandler handler = mock(NodeHandler.class);
+      when(handler.handleExternalJs("a.js")).thenReturn("résumé.js");
+
+      final ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+      createTagReplacer(new SilentLog(), "ISO-8859-1").process(
+            new ByteArrayInputStream(input.getBytes("ISO-8859-1")), handler, "", outputStream);
+
+      assertEquals(input.replace("a.js", "résumé.js"),
+            outputStream.toString("ISO-8859-1"));
+   }
+
+   /**
+    * Tests that the document is serialized when the parser moves a replaced node.
+    *
+    * @throws Exception
+    *            if any
+    */
+   @Test
+   public void testMovedNode() throws Exception {
+      final String input = "<html><head></head><body><table><!-- c --><div>"
+            + "<script src=\"a.js\"></script></div></table></body></html>";
+      final NodeHandler handler = mock(NodeHandler.class);
+      when(handler.handleExternalJs("a.js")).thenReturn("b.js");
+
+      final ByteArrayOutputStream patched = new ByteArrayOutputStream();
+      createTagReplacer(new SilentLog(), "UTF-8").process(
+            new ByteArrayInputStream(input.getBytes("UTF-8")), handler, "", patched);
+      final ByteArrayOutputStream serialized = new ByteArrayOutputStream();
+      new JsoupTagReplacer(new SilentLog(), "UTF-8").process(
+            new ByteArrayInputStream(input.getBytes("UTF-8")), handler, "", serialized);
+
+      assertEquals(serialized.toString("UTF-8"), patched.toString("UTF-8"));
+      assertTrue(patched.toString("UTF-8").contains("b.js"));
+   }
+
+   /**
+    * Tests that a document serialized when patching fails keeps a single byte encoding.
+    *
+    * @throws Exception
+    *            if any
+    */
+   @Test
+   public void testSingleByteEncodingSerialized() throws Exception {
+      final String input = "<p>café</p><!-- a --!><script src=\"a.js\"></script>";
+      final NodeHandler handler = mock(NodeHandler.class);
+      when(handler.handleComment(" a ")).thenReturn(true);
+      when(handler.handleExternalJs("a.js")).thenReturn("b.js");
+
+      final ByteArrayOutputStream patched = new ByteArrayOutputStream();
+      createTagReplacer(new SilentLog(), "ISO-8859-1").process(
+            new ByteArrayInputStream(input.getBytes("ISO-8859-1")), handler, "", patched);
+      final ByteArrayOutputStream serialized = new ByteArrayOutputStream();
+      new JsoupTagReplacer(new SilentLog(), "ISO-8859-1").process(
+            new ByteArrayInputStream(input.getBytes("ISO-8859-1")), handler, "", serialized);
+
+      assertArrayEquals(serialized.toByteArray(), patched.toByteArray());
+      assertTrue(patched.toString("ISO-8859-1").contains("<p>café</p>"));
+   }
+}
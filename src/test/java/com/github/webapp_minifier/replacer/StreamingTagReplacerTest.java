@@ -0,0 +1,117 @@
+package com.github.webapp_minifier.replacer;
+
+import static org.junit.Assert.*;
+import static org.mockito.Mockito.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+import org.apache.maven.plugin.logging.Log;
+import org.apache.maven.plugin.testing.SilentLog;
+import org.junit.Test;
+
+/**
+ * This class tests {@link StreamingTagReplacer}. It runs every test of {@link JsoupTagReplacerTest}
+ * along with tests specific to streaming.
+ *
+ * @author Lonny
+ */
+public class StreamingTagReplacerTest extends JsoupTagReplacerTest {
+
+   @Override
+   protected TagReplacer createTagReplacer(final Log log, final String charset) {
+      return new StreamingTagReplacer(log, charset);
+   }
+
+   /**
+    * Tests that everything except the replaced tags is copied exactly as authored.
+    *
+    * @throws Exception
+    *            if any
+    */
+   @Test
+   public void testVerbatim() throws Exception {
+      final String input = "<%@ page contentType=\"text/html\" %>\n<HTML>\n<head>\n"
+            + "  <SCRIPT type='text/javascript' SRC=a.js></SCRIPT>\n"
+            + "  <script src=\"b.js?x=1&amp;y=2\"></script>\n"
+            + "  <script>if (a < b && c > d) { x = '</p>'; }</script>\n"
+            + "  <!-- keep me -->\n"
+            + "  <link rel=\"stylesheet\" type=\"text/css\" href=\"c.css\">\n"
+            + "</head>\n<body class=x>\n<% if (a > b) { %>\n<p>café &amp; <b>bar</b></p>\n"
+            + "<textarea><script src=\"ignored.js\"></script></textarea>\n<% } %>\n</body>\n</HTML>";
+      final NodeHandler handler = mock(NodeHandler.class);
+      when(handler.handleExternalJs("a.js")).thenReturn("js-1.js");
+      when(handler.handleExternalJs("b.js?x=1&y=2")).thenReturn(null);
+      when(handler.handleEmbeddedJs("if (a < b && c > d) { x = '</p>'; }")).thenReturn(
+            "x=\"</p>\";");
+      when(handler.handleExternalCss("c.css")).thenReturn("c&d.css");
+
+      final ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+      createTagReplacer(new SilentLog(), "UTF-8").process(
+            new ByteArrayInputStream(input.getBytes("UTF-8")), handler, "", outputStream);
+
+      final String expected = input.replace("SRC=a.js", "SRC=\"js-1.js\"")
+            .replace("<script src=\"b.js?x=1&amp;y=2\"></script>", "")
+            .replace("if (a < b && c > d) { x = '</p>'; }", "x=\"</p>\";")
+            .replace("href=\"c.css\"", "href=\"c&amp;d.css\"");
+      assertEquals(expected, outputStream.toString("UTF-8"));
+      verify(handler).handleComment(" keep me ");
+      verify(handler, never()).handleExternalJs("ignored.js");
+      verify(handler).complete();
+   }
+
+   /**
+    * Tests that a page much larger than any buffer is copied completely.
+    *
+    * @throws IOException
+    *            if an unexpected I/O exception occurs.
+    */
+   @Test
+   public void testLargePage() throws IOException {
+      final byte[] line = "<div class=\"row\"><span>Some generated text</span></div>\n"
+            .getBytes("UTF-8");
+      final long length = 4L * 1024 * 1024;
+      final InputStream inputStream = new InputStream() {
+         private long position;
+
+         @Override
+         public int read() {
+            if (this.position >= length) {
+               return -1;
+            }
+            return line[(int) (this.position++ % line.length)];
+         }
+
+         @Override
+         public int read(final byte[] b, final int off, final int len) {
+            if (this.position >= length) {
+               return -1;
+            }
+            final int count = (int) Math.min(len, length - this.position);
+            for (int i = 0; i < count; i++) {
+               b[off + i] = line[(int) (this.position++ % line.length)];
+            }
+            return count;
+         }
+      };
+      final long[] written = new long[1];
+      final OutputStream outputStream = new OutputStream() {
+         @Override
+         public void write(final int b) {
+            written[0]++;
+         }
+
+         @Override
+         public void write(final byte[] b, final int off, final int len) {
+            written[0] += len;
+         }
+      };
+      // Do not record the invocations, which would grow with the size of the page.
+      final NodeHandler handler = mock(NodeHandler.class, withSettings().stubOnly());
+      createTagReplacer(new SilentLog(), "UTF-8").process(inputStream, handler, "", outputStream);
+      assertEquals(length, written[0]);
+   }
+}
@@ -0,0 +1,239 @@
+package com.github.webapp_minifier.site;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.script.ScriptEngine;
+import javax.script.ScriptEngineManager;
+
+import org.apache.maven.plugin.logging.SystemStreamLog;
+import org.codehaus.plexus.util.FileUtils;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.github.webapp_minifier.HtmlFileResult;
+import com.github.webapp_minifier.MinifiedFileBuilder;
+import com.github.webapp_minifier.MinifiedFileInfo;
+import com.github.webapp_minifier.MinifiedFileInput;
+import com.github.webapp_minifier.WebappMinifierMojo;
+import com.github.webapp_minifier.compressor.ClosureJavaScriptCompressor;
+import com.github.webapp_minifier.summary.HtmlFileSummary;
+import com.github.webapp_minifier.summary.MinifiedFileMetrics;
+import com.google.javascript.jscomp.CompilationLevel;
+import com.google.javascript.jscomp.SourceFile;
+
+/**
+ * This class tests {@link SiteCompilation}.
+ *
+ * @author Lonny
+ */
+public class SiteCompilationTest {
+
+   /** The target directory. */
+   private final File directory = new File("target/test-site-compilation");
+
+   /** The plugin options. */
+   private final WebappMinifierMojo options = new WebappMinifierMojo();
+
+   /** The builder providing the final minified JavaScript file names. */
+   private MinifiedFileBuilder jsNames;
+
+   /** The compressor compiling with ADVANCED_OPTIMIZATIONS. */
+   private ClosureJavaScriptCompressor compressor;
+
+   /**
+    * Writes the common script.
+    *
+    * @throws IOException
+    *            if any
+    */
+   @Before
+   public void setUp() throws IOException {
+      FileUtils.deleteDirectory(this.directory);
+      this.directory.mkdirs();
+      FileUtils.fileWrite(new File(this.directory, "common.js"), "UTF-8",
+            "function helper(value) {\n  return value * 2;\n}\n");
+      this.options.setTargetDirectory(this.directory);
+      this.options.setEncoding("UTF-8");
+      this.jsNames = new MinifiedFileBuilder(this.directory, "js", "js");
+      this.compressor = new ClosureJavaScriptCompressor(CompilationLevel.ADVANCED_OPTIMIZATIONS);
+      this.compressor.setCustomExternsOnly(true);
+      this.compressor.setExterns(Arrays.asList(SourceFile.fromCode("externs.js", "var window;")));
+   }
+
+   /**
+    * Tests that the common chunk and the page chunks compiled with ADVANCED_OPTIMIZATIONS still
+    * link, the names they share being renamed consistently.
+    *
+    * @throws Exception
+    *            if any
+    */
+   @Test
+   public void testCompileAdvanced() throws Exception {
+      final SiteCompilation compilation = new SiteCompilation(new SystemStreamLog(), this.options,
+            createPlan());
+      final HtmlFileResult first = addPage(compilation, "first", "window['a'] = helper(21);");
+      final HtmlFileResult second = addPage(compilation, "second", "window['b'] = helper(4);");
+
+      compilation.compile(this.compressor);
+
+      final String common = FileUtils.fileRead(new File(this.directory, "js-common.js"), "UTF-8");
+      assertFalse(common, common.contains("helper"));
+      assertEquals(42, run(common, read(first), "a"));
+      assertEquals(8, run(common, read(second), "b"));
+   }
+
+   /**
+    * Tests that a failed compilation with ADVANCED_OPTIMIZATIONS fails instead of compiling each
+    * chunk alone.
+    *
+    * @throws Exception
+    *            if any
+    */
+   @Test(expected = IOException.class)
+   public void testCompileAdvancedFailure() throws Exception {
+      final SiteCompilation compilation = new SiteCompilation(new SystemStreamLog(), this.options,
+            createPlan());
+      addPage(compilation, "first", "window['a'] = helper(21);");
+      addPage(compilation, "second", "window['b'] = helper(;");
+
+      compilation.compile(this.compressor);
+   }
+
+   /**
+    * Tests that the same relative URL used by HTML files in sibling directories names different
+    * scripts, which are compiled from the files of each HTML file, while different URLs of the
+    * same file name one common script.
+    *
+    * @throws Exception
+    *            if any
+    */
+   @Test
+   public void testCompileSiblingDirectories() throws Exception {
+      final Map<File, List<File>> leadingScripts = new LinkedHashMap<File, List<File>>();
+      for (final String page : new String[] { "first", "second" }) {
+         final File directory = new File(this.directory, page);
+         new File(directory, "js").mkdirs();
+         final String name = page.substring(0, 1);
+         FileUtils.fileWrite(new File(directory, "js/app.js"), "UTF-8", "window['" + name
+               + "'] = helper(" + page.length() + ");");
+         final File htmlFile = new File(directory, "index.html");
+         FileUtils.fileWrite(htmlFile, "UTF-8", "<html><head>"
+               + "<script src=\"../common.js\"></script><script src=\"js/app.js\"></script>"
+               + "</head><body></body></html>");
+         leadingScripts.put(htmlFile, new ScriptGraphTask(new SystemStreamLog(), this.options,
+               "jsoup", htmlFile).call());
+      }
+      final SitePlan plan = SitePlan.create("js-common.js", "", leadingScripts);
+      assertEquals(Arrays.asList(new File(this.directory, "common.js").getAbsoluteFile()),
+            plan.getCommonScripts());
+      assertEquals(Arrays.asList(new File(this.directory, "first/js/app.js").getAbsoluteFile()),
+            leadingScripts.get(new File(this.directory, "first/index.html")).subList(1, 2));
+
+      final SiteCompilation compilation = new SiteCompilation(new SystemStreamLog(), this.options,
+            plan);
+      final HtmlFileResult first = addPage(compilation, "first", FileUtils.fileRead(new File(
+            this.directory, "first/js/app.js"), "UTF-8"));
+      final HtmlFileResult second = addPage(compilation, "second", FileUtils.fileRead(new File(
+            this.directory, "second/js/app.js"), "UTF-8"));
+      compilation.compile(this.compressor);
+
+      final String common = FileUtils.fileRead(new File(this.directory, "js-common.js"), "UTF-8");
+      assertEquals(10, run(common, read(first), "f"));
+      assertEquals(12, run(common, read(second), "s"));
+   }
+
+   /**
+    * Creates the plan sharing the common script.
+    *
+    * @return the plan.
+    */
+   private static SitePlan createPlan() {
+      return new SitePlan("js-common.js", "", Arrays.asList(new File(
+            "target/test-site-compilation/common.js").getAbsoluteFile()),
+            Collections.<File> emptySet());
+   }
+
+   /**
+    * Adds a committed HTML file loading the common chunk followed by a page chunk.
+    *
+    * @param compilation
+    *           the compilation.
+    * @param token
+    *           the token of the temporary minified file names.
+    * @param code
+    *           the script of the page chunk.
+    * @return the committed result.
+    * @throws IOException
+    *            if any
+    */
+   private HtmlFileResult addPage(final SiteCompilation compilation, final String token,
+         final String code) throws IOException {
+      final MinifiedFileBuilder cssFileBuilder = new MinifiedFileBuilder(this.directory, "css-"
+            + token, "css");
+      final MinifiedFileBuilder jsFileBuilder = new MinifiedFileBuilder(this.directory, "js-"
+            + token, "js");
+      final HtmlFileSummary summary = new HtmlFileSummary();
+      final MinifiedFileMetrics commonMetrics = new MinifiedFileMetrics();
+      commonMetrics.setSource("common.js");
+      commonMetrics.setDestination("js-common.js");
+      summary.getMinifiedFiles().add(commonMetrics);
+      final MinifiedFileMetrics metrics = new MinifiedFileMetrics();
+      summary.getMinifiedFiles().add(metrics);
+      final MinifiedFileInfo fileInfo = jsFileBuilder.getCurrentFile();
+      fileInfo.getInputs().add(new MinifiedFileInput(this.compressor, null, code, metrics));
+      jsFileBuilder.finishFile();
+
+      final HtmlFileResult result = new HtmlFileResult(new File(this.directory, token + ".html"),
+            new byte[0], summary, cssFileBuilder, jsFileBuilder);
+      result.getSiteFiles().add(fileInfo);
+      result.commit(new MinifiedFileBuilder(this.directory, "css", "css"), this.jsNames,
+            Charset.forName("UTF-8"));
+      compilation.addPage(result);
+      return result;
+   }
+
+   /**
+    * Reads the page chunk of a committed HTML file.
+    *
+    * @param result
+    *           the committed result.
+    * @return the content of the page chunk.
+    * @throws IOException
+    *            if any
+    */
+   private static String read(final HtmlFileResult result) throws IOException {
+      return FileUtils.fileRead(result.getCommittedFile(result.getSiteFiles().get(0)), "UTF-8");
+   }
+
+   /**
+    * Runs the common chunk followed by a page chunk and returns a global variable.
+    *
+    * @param common
+    *           the common chunk.
+    * @param page
+    *           the page chunk.
+    * @param name
+    *           the name of the global variable.
+    * @return the value of the variable.
+    * @throws Exception
+    *            if any
+    */
+   private static int run(final String common, final String page, final String name)
+         throws Exception {
+      final ScriptEngine engine = new ScriptEngineManager().getEngineByName("JavaScript");
+      assertNotNull("A JavaScript engine is required", engine);
+      engine.eval("var window = this;");
+      engine.eval(common);
+      engine.eval(page);
+      return ((Number) engine.eval("window['" + name + "']")).intValue();
+   }
+}
@@ -0,0 +1,176 @@
+package com.github.webapp_minifier.sync;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.apache.maven.plugin.logging.SystemStreamLog;
+import org.codehaus.plexus.util.FileUtils;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * This class tests {@link DirectorySynchronizer}.
+ *
+ * @author Lonny
+ */
+public class DirectorySynchronizerTest {
+
+   /** The source directory. */
+   private final File sourceDirectory = new File("target/test-sync/source");
+
+   /** The target directory. */
+   private final File targetDirectory = new File("target/test-sync/target");
+
+   /**
+    * Creates the source directory.
+    *
+    * @throws Exception
+    *            if any
+    */
+   @Before
+   public void setUp() throws Exception {
+      FileUtils.deleteDirectory("target/test-sync");
+      FileUtils.forceMkdir(new File(this.sourceDirectory, "images"));
+      FileUtils.fileWrite(new File(this.sourceDirectory, "index.html").getPath(), "<html/>");
+      FileUtils.fileWrite(new File(this.sourceDirectory, "images/logo.png").getPath(), "png");
+   }
+
+   /**
+    * Tests that only changed files are copied and that orphans are deleted.
+    *
+    * @throws Exception
+    *            if any
+    */
+   @Test
+   public void testTimestamp() throws Exception {
+      final DirectorySynchronizer first = new DirectorySynchronizer(new SystemStreamLog(),
+            SyncMode.TIMESTAMP);
+      first.synchronize(this.sourceDirectory, this.targetDirectory);
+      assertEquals(2, first.getCopied());
+      assertEquals("png", FileUtils.fileRead(new File(this.targetDirectory, "images/logo.png")));
+
+      // Modify one file and leave an orphan behind.
+      final File html = new File(this.targetDirectory, "index.html");
+      FileUtils.fileWrite(html.getPath(), "<html>minified</html>");
+      FileUtils.fileWrite(new File(this.targetDirectory, "css-1.css").getPath(), "a{}");
+
+      final DirectorySynchronizer second = new DirectorySynchronizer(new SystemStreamLog(),
+            SyncMode.TIMESTAMP);
+      second.synchronize(this.sourceDirectory, this.targetDirectory);
+      assertEquals(1, second.getCopied());
+      assertEquals(1, second.getDeleted());
+      assertEquals(1, second.getUnchanged());
+      assertEquals("<html/>", FileUtils.fileRead(html));
+      assertFalse(new File(this.targetDirectory, "css-1.css").exists());
+   }
+
+   /**
+    * Tests that files with the same size and content are left untouched regardless of their
+    * modification time.
+    *
+    * @throws Exception
+    *            if any
+    */
+   @Test
+   public void testHash() throws Exception {
+      new DirectorySynchronizer(new SystemStreamLog(), SyncMode.HASH).synchronize(
+            this.sourceDirectory, this.targetDirectory);
+      final File logo = new File(this.targetDirectory, "images/logo.png");
+      logo.setLastModified(0);
+      FileUtils.fileWrite(new File(this.targetDirectory, "index.html").getPath(), "<html>");
+
+      final DirectorySynchronizer second = new DirectorySynchronizer(new SystemStreamLog(),
+            SyncMode.HASH);
+      second.synchronize(this.sourceDirectory, this.targetDirectory);
+      assertEquals(1, second.getCopied());
+      assertEquals(1, second.getUnchanged());
+      assertEquals(0, logo.lastModified());
+   }
+
+   /**
+    * Tests that hard links are created for the files which are not modified and copies for the
+    * others.
+    *
+    * @throws Exception
+    *            if any
+    */
+   @Test
+   public void testHardLink() throws Exception {
+      final DirectorySynchronizer synchronizer = new DirectorySynchronizer(new SystemStreamLog(),
+            SyncMode.TIMESTAMP, new FileStager(new SystemStreamLog(), StagingStrategy.HARDLINK));
+      synchronizer.setMaterializedFiles(Arrays.asList("index.html"));
+      synchronizer.synchronize(this.sourceDirectory, this.targetDirectory);
+
+      // Writing through the source file is visible through a link but not a copy.
+      append(new File(this.sourceDirectory, "images/logo.png"));
+      append(new File(this.sourceDirectory, "index.html"));
+      assertEquals("png!", FileUtils.fileRead(new File(this.targetDirectory, "images/logo.png")));
+      assertEquals("<html/>", FileUtils.fileRead(new File(this.targetDirectory, "index.html")));
+   }
+
+   /**
+    * Tests that the clones of a directory are created by one command, keeping the modification
+    * time of their source, and that the files are copied if cloning fails.
+    *
+    * @throws Exception
+    *            if any
+    */
+   @Test
+   public void testReflink() throws Exception {
+      FileUtils.fileWrite(new File(this.sourceDirectory, "images/icon.png").getPath(), "ico");
+      new File(this.sourceDirectory, "images/icon.png").setLastModified(1000000000000L);
+      final List<String> batches = new ArrayList<String>();
+      final FileStager stager = new FileStager(new SystemStreamLog(), StagingStrategy.REFLINK) {
+         @Override
+         protected void clone(final List<File> sources, final File directory)
+               throws IOException {
+            batches.add(directory.getName() + sources.size());
+            for (final File source : sources) {
+               FileUtils.copyFileToDirectory(source, directory);
+            }
+         }
+      };
+      final DirectorySynchronizer synchronizer = new DirectorySynchronizer(new SystemStreamLog(),
+            SyncMode.TIMESTAMP, stager);
+      synchronizer.setMaterializedFiles(Arrays.asList("index.html"));
+      synchronizer.synchronize(this.sourceDirectory, this.targetDirectory);
+
+      assertEquals(Arrays.asList("images2"), batches);
+      assertEquals("ico", FileUtils.fileRead(new File(this.targetDirectory, "images/icon.png")));
+      assertEquals(1000000000000L, new File(this.targetDirectory, "images/icon.png")
+            .lastModified());
+
+      // Whether or not the file system supports clones, the files are placed.
+      FileUtils.deleteDirectory(this.targetDirectory);
+      final DirectorySynchronizer fallback = new DirectorySynchronizer(new SystemStreamLog(),
+            SyncMode.TIMESTAMP, new FileStager(new SystemStreamLog(), StagingStrategy.REFLINK));
+      fallback.synchronize(this.sourceDirectory, this.targetDirectory);
+      assertEquals(3, fallback.getCopied());
+      assertEquals("png", FileUtils.fileRead(new File(this.targetDirectory, "images/logo.png")));
+      assertEquals(1000000000000L, new File(this.targetDirectory, "images/icon.png")
+            .lastModified());
+   }
+
+   /**
+    * Appends a character to the file in place.
+    *
+    * @param file
+    *           the file.
+    * @throws Exception
+    *            if any
+    */
+   private void append(final File file) throws Exception {
+      final FileOutputStream outputStream = new FileOutputStream(file, true);
+      try {
+         outputStream.write('!');
+      } finally {
+         outputStream.close();
+      }
+   }
+}
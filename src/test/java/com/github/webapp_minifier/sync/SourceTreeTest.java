@@ -0,0 +1,123 @@
+package com.github.webapp_minifier.sync;
+
+import static junitparams.JUnitParamsRunner.*;
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import junitparams.JUnitParamsRunner;
+import junitparams.Parameters;
+
+import org.codehaus.plexus.util.DirectoryScanner;
+import org.codehaus.plexus.util.FileUtils;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+/**
+ * This class tests {@link SourceTree}.
+ *
+ * @author Lonny
+ */
+@RunWith(JUnitParamsRunner.class)
+public class SourceTreeTest {
+
+   /** The walked directory. */
+   private final File directory = new File("target/test-source-tree");
+
+   /**
+    * Creates the directory to walk.
+    *
+    * @throws Exception
+    *            if any
+    */
+   @Before
+   public void setUp() throws Exception {
+      FileUtils.deleteDirectory(this.directory);
+      for (final String name : new String[] { "index.html", "about.htm", "css/site.css",
+            "js/app.js", "js/lib/jquery.js", "pages/a.jsp", "pages/b.html", "pages/old/c.html",
+            "WEB-INF/web.xml", "WEB-INF/jsp/view.jsp" }) {
+         final File file = new File(this.directory, name);
+         FileUtils.forceMkdir(file.getParentFile());
+         FileUtils.fileWrite(file.getPath(), name);
+      }
+      FileUtils.forceMkdir(new File(this.directory, "empty"));
+   }
+
+   /**
+    * Tests that a concurrent walk finds the files in the order of a {@link DirectoryScanner}.
+    *
+    * @throws Exception
+    *            if any
+    */
+   @Test
+   public void testWalk() throws Exception {
+      final ExecutorService executor = Executors.newFixedThreadPool(3);
+      final SourceTree tree;
+      try {
+         tree = SourceTree.walk(this.directory, executor);
+      } finally {
+         executor.shutdownNow();
+      }
+
+      assertEquals(Arrays.asList(scan(new String[] { "**" }, new String[0])), tree.getFiles());
+      assertEquals(SourceTree.walk(this.directory).getFiles(), tree.getFiles());
+      assertTrue(tree.isDirectory(""));
+      assertTrue(tree.isDirectory("js" + File.separator + "lib"));
+      assertTrue(tree.isDirectory("empty"));
+      assertFalse(tree.isDirectory("index.html"));
+      assertEquals(0, tree.list("empty").length);
+   }
+
+   /**
+    * Tests that matching the walked files agrees with a {@link DirectoryScanner}.
+    *
+    * @param includes
+    *           the include patterns.
+    * @param excludes
+    *           the exclude patterns.
+    * @throws Exception
+    *            if any
+    */
+   @Test
+   @Parameters
+   public void testMatch(final String includes, final String excludes) throws Exception {
+      final String[] includePatterns = includes.split(",");
+      final String[] excludePatterns = excludes.length() == 0 ? new String[0] : excludes
+            .split(",");
+      assertArrayEquals(scan(includePatterns, excludePatterns),
+            SourceTree.walk(this.directory).match(includePatterns, excludePatterns));
+   }
+
+   /**
+    * Returns the parameters of {@link #testMatch(String, String)}.
+    *
+    * @return the parameters.
+    */
+   protected Object[] parametersForTestMatch() {
+      return $($("**/*.html,**/*.htm,**/*.jsp", ""), $("**/*.html", "pages/old/"),
+            $("**/*.jsp", "WEB-INF/**"), $("pages\\*", ""), $("*.html", ""),
+            $("%regex[.*\\.js]", "js/lib/**"));
+   }
+
+   /**
+    * Scans the walked directory using a {@link DirectoryScanner}.
+    *
+    * @param includes
+    *           the include patterns.
+    * @param excludes
+    *           the exclude patterns.
+    * @return the included files.
+    */
+   private String[] scan(final String[] includes, final String[] excludes) {
+      final DirectoryScanner scanner = new DirectoryScanner();
+      scanner.setBasedir(this.directory);
+      scanner.setIncludes(includes);
+      scanner.setExcludes(excludes);
+      scanner.scan();
+      return scanner.getIncludedFiles();
+   }
+}
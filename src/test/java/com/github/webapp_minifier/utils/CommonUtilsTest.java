@@ -0,0 +1,99 @@
+package com.github.webapp_minifier.utils;
+
+import static junitparams.JUnitParamsRunner.*;
+import static org.junit.Assert.*;
+
+import java.nio.charset.Charset;
+import java.util.Arrays;
+
+import junitparams.JUnitParamsRunner;
+import junitparams.Parameters;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+/**
+ * This class tests {@link CommonUtils}.
+ *
+ * @author Lonny
+ */
+@RunWith(JUnitParamsRunner.class)
+public class CommonUtilsTest {
+
+   /**
+    * Tests that the temporary names are replaced within HTML encoded with any charset, including
+    * names which are not ASCII.
+    *
+    * @param charsetName
+    *           the name of the charset.
+    * @param search
+    *           the temporary name.
+    * @param replacement
+    *           the final name.
+    */
+   @Test
+   @Parameters
+   public void testReplace(final String charsetName, final String search,
+         final String replacement) {
+      final Charset charset = Charset.forName(charsetName);
+      final String html = "<p>café</p><script src=\"" + search + "\"></script><link href=\""
+            + search + "\">";
+
+      final byte[] result = CommonUtils.replace(html.getBytes(charset), search, replacement,
+            charset);
+
+      assertEquals(html.replace(search, replacement), new String(result, charset));
+   }
+
+   @SuppressWarnings("unused")
+   private Object[] parametersForTestReplace() {
+      return $($("UTF-8", "js-a1b2-1.js", "js-1.js"), $("ISO-8859-1", "js-a1b2-1.js", "js-1.js"),
+            $("UTF-16", "js-a1b2-1.js", "js-1.js"), $("UTF-32", "js-a1b2-1.js", "js-1.js"),
+            $("UTF-8", "脚本-a1b2-1.js", "脚本-1.js"), $("UTF-16LE", "脚本-a1b2-1.js", "脚本-1.js"));
+   }
+
+   /**
+    * Tests that indexed strings are replaced in a single pass within HTML encoded with any
+    * charset, by replacements which may not be ASCII.
+    *
+    * @param charsetName
+    *           the name of the charset.
+    */
+   @Test
+   @Parameters
+   public void testReplaceIndexed(final String charsetName) {
+      final Charset charset = Charset.forName(charsetName);
+      final String html = "<p>café</p><script>p-1</script><style>p-0</style><script>p-10</script>";
+
+      final byte[] result = CommonUtils.replaceIndexed(html.getBytes(charset), "p-",
+            Arrays.asList("a{}", "var é=1;", "", "", "", "", "", "", "", "", "x()"), charset);
+
+      assertEquals("<p>café</p><script>var é=1;</script><style>a{}</style><script>x()</script>",
+            new String(result, charset));
+   }
+
+   @SuppressWarnings("unused")
+   private Object[] parametersForTestReplaceIndexed() {
+      return $($("UTF-8"), $("ISO-8859-1"), $("UTF-16"), $("UTF-32"));
+   }
+
+   /**
+    * Tests that an index without a replacement is rejected.
+    */
+   @Test(expected = IllegalArgumentException.class)
+   public void testReplaceIndexedMissing() {
+      CommonUtils.replaceIndexed("<script>p-2</script>".getBytes(), "p-", Arrays.asList("a"),
+            Charset.forName("UTF-8"));
+   }
+
+   /**
+    * Tests which charsets are ASCII compatible.
+    */
+   @Test
+   public void testIsAsciiCompatible() {
+      assertTrue(CommonUtils.isAsciiCompatible(Charset.forName("UTF-8")));
+      assertTrue(CommonUtils.isAsciiCompatible(Charset.forName("ISO-8859-1")));
+      assertFalse(CommonUtils.isAsciiCompatible(Charset.forName("UTF-16")));
+      assertFalse(CommonUtils.isAsciiCompatible(Charset.forName("UTF-32")));
+   }
+}